@@ -0,0 +1,121 @@
+package com.xsearch.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xsearch.io.WritableUtils;
+import com.xsearch.rpc.RequestHeader;
+import com.xsearch.search.SearchRequest;
+import com.xsearch.search.TopDocs;
+
+/**
+ * @Description: RPC编码的基本类型、请求头以及查询请求和结果的序列化
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 10:52:08 AM
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+	private static final int VALUES = 1024;
+
+	private final int[] values = new int[VALUES];
+	private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private final RequestHeader header = new RequestHeader();
+	private String text;
+	private SearchRequest request;
+	private ByteBuffer encodedRequest;
+	private TopDocs topDocs;
+	private ByteBuffer encodedTopDocs;
+
+	@Setup
+	public void setup() {
+		// 调用id、词频、文档号差值等，以小值为主
+		Random random = new Random(1);
+		for (int i = 0; i < VALUES; i++) {
+			values[i] = random.nextInt(1 << (1 + random.nextInt(24)));
+		}
+		text = "xsearch 分布式搜索引擎 benchmark 中英文混合的查询串";
+		request = new SearchRequest("body", "distributed search engine 搜索引擎", 100);
+		encodedRequest = request.encode();
+
+		int[] docs = new int[100];
+		float[] scores = new float[100];
+		for (int i = 0; i < docs.length; i++) {
+			docs[i] = random.nextInt(10000000);
+			scores[i] = 100 - i * 0.5f;
+		}
+		topDocs = new TopDocs(123456, docs, scores);
+		encodedTopDocs = topDocs.encode();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public int vInt() {
+		buffer.clear();
+		for (int value : values) {
+			WritableUtils.writeVInt(buffer, value);
+		}
+		buffer.flip();
+		int sum = 0;
+		for (int i = 0; i < VALUES; i++) {
+			sum += WritableUtils.readVInt(buffer);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public String string() {
+		buffer.clear();
+		WritableUtils.writeString(buffer, text);
+		buffer.flip();
+		return WritableUtils.readString(buffer);
+	}
+
+	@Benchmark
+	public int requestHeader() {
+		buffer.clear();
+		new RequestHeader(123456, 3, 0).write(buffer);
+		buffer.flip();
+		header.readFields(buffer);
+		return header.getCallId();
+	}
+
+	@Benchmark
+	public ByteBuffer encodeSearchRequest() {
+		return request.encode();
+	}
+
+	@Benchmark
+	public SearchRequest decodeSearchRequest() {
+		return SearchRequest.decode(encodedRequest.duplicate());
+	}
+
+	@Benchmark
+	public ByteBuffer encodeTopDocs() {
+		return topDocs.encode();
+	}
+
+	@Benchmark
+	public TopDocs decodeTopDocs() {
+		return TopDocs.decode(encodedTopDocs.duplicate());
+	}
+}
@@ -0,0 +1,94 @@
+package com.xsearch.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.xsearch.ipc.BufferPool;
+import com.xsearch.ipc.FrameDecoder;
+import com.xsearch.rpc.RequestHeader;
+
+/**
+ * @Description: 请求帧拼接和请求头解析，模拟Reader线程每次读取readSize字节、一次读取包含多个流水线请求的情况
+ *               <p>
+ *               每次调用解码FRAMES个帧，吞吐量按帧计。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 10:15:31 AM
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+	@Param({ "64", "1024" })
+	private int payloadSize;
+
+	@Param({ "4096", "65536" })
+	private int readSize;
+
+	private static final int FRAMES = 256;
+
+	private ByteBuffer stream;
+	private ByteBuffer[] reads;
+	private BufferPool bufferPool;
+	private FrameDecoder decoder;
+
+	@Setup
+	public void setup() {
+		byte[] payload = new byte[payloadSize];
+		stream = ByteBuffer.allocate(FRAMES * (4 + RequestHeader.MAX_SIZE + payloadSize));
+		for (int i = 0; i < FRAMES; i++) {
+			new RequestHeader(1000000 + i, RequestHeader.DEFAULT_METHOD, 0).writeFrame(stream, ByteBuffer.wrap(payload));
+		}
+		stream.flip();
+
+		// 按读缓冲大小切开，帧会跨越读取的边界
+		int count = (stream.remaining() + readSize - 1) / readSize;
+		reads = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			ByteBuffer read = stream.duplicate();
+			read.position(i * readSize);
+			read.limit(Math.min(stream.limit(), (i + 1) * readSize));
+			reads[i] = read.slice();
+		}
+		bufferPool = new BufferPool();
+		decoder = new FrameDecoder(bufferPool, 16 * 1024 * 1024);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public void decode(final Blackhole blackhole) throws Exception {
+		FrameDecoder.FrameHandler handler = new FrameDecoder.FrameHandler() {
+			private final RequestHeader header = new RequestHeader();
+
+			@Override
+			public void onFrame(ByteBuffer frame) {
+				header.readFields(frame);
+				blackhole.consume(header.getCallId());
+				bufferPool.release(frame);
+			}
+		};
+		for (ByteBuffer read : reads) {
+			read.clear();
+			decoder.decode(read, handler);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.xsearch.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import com.xsearch.index.Document;
+import com.xsearch.index.SegmentBuilder;
+import com.xsearch.ipc.CallProcessor;
+import com.xsearch.ipc.ServerConfig;
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.ipc.XsearchServer;
+import com.xsearch.metrics.Histogram;
+import com.xsearch.metrics.MetricsRegistry;
+import com.xsearch.search.IndexSearcher;
+import com.xsearch.search.SearchProcessor;
+import com.xsearch.search.SearchRequest;
+
+/**
+ * @Description: 回环压测，在本进程内启动XsearchServer，用XsearchClient按不同的连接数和流水线深度持续请求，
+ *               报告端到端的QPS和延迟分位数
+ *               <p>
+ *               每个连接一个发送线程，每个线程最多有depth个未完成的调用，响应到达后立即发出下一个，
+ *               因此同时在途的调用数为 连接数 × 深度，测到的是该并发下的吞吐和延迟。
+ *               <p>
+ *               参数（均可省略）：
+ *               --mode=echo|search --connections=1,4,16 --depth=1,8,64 --payload=64 --warmup=2 --duration=10
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 3:10:44 PM
+ */
+public class LoadGenerator {
+	private String mode = "echo";
+	private int[] connections = { 1, 4, 16 };
+	private int[] depths = { 1, 8, 64 };
+	private int payloadSize = 64;
+	private int warmupSeconds = 2;
+	private int durationSeconds = 10;
+
+	// 当前测量区间的统计，以及发送线程的停止标志
+	private volatile Stats current;
+	private volatile boolean stopped;
+
+	public static void main(String[] args) throws Exception {
+		LoadGenerator generator = new LoadGenerator();
+		for (String arg : args) {
+			generator.parse(arg);
+		}
+		generator.run();
+	}
+
+	private void parse(String arg) {
+		int eq = arg.indexOf('=');
+		if (!arg.startsWith("--") || eq < 0) {
+			throw new IllegalArgumentException("Expected --name=value: " + arg);
+		}
+		String name = arg.substring(2, eq);
+		String value = arg.substring(eq + 1);
+		if (name.equals("mode")) {
+			mode = value;
+		} else if (name.equals("connections")) {
+			connections = parseInts(value);
+		} else if (name.equals("depth")) {
+			depths = parseInts(value);
+		} else if (name.equals("payload")) {
+			payloadSize = Integer.parseInt(value);
+		} else if (name.equals("warmup")) {
+			warmupSeconds = Integer.parseInt(value);
+		} else if (name.equals("duration")) {
+			durationSeconds = Integer.parseInt(value);
+		} else {
+			throw new IllegalArgumentException("Unknown option: " + arg);
+		}
+	}
+
+	private static int[] parseInts(String value) {
+		String[] parts = value.split(",");
+		int[] result = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			result[i] = Integer.parseInt(parts[i].trim());
+		}
+		return result;
+	}
+
+	private void run() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setHandlerThreads(Runtime.getRuntime().availableProcessors());
+		config.setMetricsRegistry(new MetricsRegistry());
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		ByteBuffer param;
+		if (mode.equals("search")) {
+			server.setProcessor(new SearchProcessor(buildSearcher()));
+			param = new SearchRequest("body", "t10 t100", 10).encode();
+		} else if (mode.equals("echo")) {
+			param = ByteBuffer.allocate(payloadSize); // 缺省处理器原样返回
+		} else {
+			throw new IllegalArgumentException("Unknown mode: " + mode);
+		}
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		System.out.println("mode=" + mode + ", payload=" + param.remaining() + " bytes, warmup=" + warmupSeconds
+				+ "s, duration=" + durationSeconds + "s");
+		System.out.println(String.format("%11s %6s %10s %9s %9s %9s %9s %7s", "connections", "depth", "qps", "p50(us)",
+				"p99(us)", "p999(us)", "max(us)", "errors"));
+		try {
+			for (int c : connections) {
+				for (int depth : depths) {
+					runOne(address, param, c, depth);
+				}
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * @Description: 一组参数的压测，预热后清空统计再测量
+	 */
+	private void runOne(final InetSocketAddress address, final ByteBuffer param, int connectionCount, final int depth)
+			throws Exception {
+		try (final XsearchClient client = new XsearchClient(connectionCount)) {
+			current = new Stats();
+			stopped = false;
+			Thread[] senders = new Thread[connectionCount];
+			for (int i = 0; i < senders.length; i++) {
+				senders[i] = new Thread("LoadGenerator Sender #" + (i + 1)) {
+					@Override
+					public void run() {
+						final Semaphore outstanding = new Semaphore(depth);
+						while (!stopped) {
+							try {
+								if (!outstanding.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+									continue;
+								}
+							} catch (InterruptedException e) {
+								break;
+							}
+							final long start = System.nanoTime();
+							client.call(address, param.duplicate(), 10, TimeUnit.SECONDS).whenComplete(
+									new BiConsumer<ByteBuffer, Throwable>() {
+										@Override
+										public void accept(ByteBuffer value, Throwable e) {
+											current.record(start, e);
+											outstanding.release();
+										}
+									});
+						}
+					}
+				};
+				senders[i].setDaemon(true);
+				senders[i].start();
+			}
+
+			Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+			Stats stats = new Stats();
+			current = stats;
+			long start = System.nanoTime();
+			Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+			current = new Stats(); // 之后完成的调用不计入
+			double seconds = (System.nanoTime() - start) / 1e9;
+			stopped = true;
+			for (Thread sender : senders) {
+				sender.join();
+			}
+
+			Histogram latency = stats.latency;
+			System.out.println(String.format("%11d %6d %10.0f %9d %9d %9d %9d %7d", connectionCount, depth,
+					latency.count() / seconds, latency.percentile(50), latency.percentile(99), latency.percentile(99.9),
+					latency.max(), stats.errors.get()));
+		}
+	}
+
+	/**
+	 * @Description: 搜索模式的索引，与PostingsBenchmark的文档分布相同
+	 */
+	private static IndexSearcher buildSearcher() {
+		Random random = new Random(2);
+		SegmentBuilder builder = new SegmentBuilder();
+		StringBuilder text = new StringBuilder();
+		for (int doc = 0; doc < 100000; doc++) {
+			text.setLength(0);
+			for (int density : new int[] { 2, 10, 100 }) {
+				if (random.nextInt(density) == 0) {
+					text.append('t').append(density).append(' ');
+				}
+			}
+			text.append("filler").append(random.nextInt(1000));
+			builder.addDocument(new Document().addText("body", text.toString()));
+		}
+		return new IndexSearcher(Arrays.asList(builder.build("_load")));
+	}
+
+	/**
+	 * @Description: 一个测量区间的延迟（微秒）和失败数
+	 */
+	private static class Stats {
+		final Histogram latency = new Histogram();
+		final AtomicLong errors = new AtomicLong();
+
+		void record(long startNanos, Throwable e) {
+			if (e != null) {
+				errors.incrementAndGet();
+			} else {
+				latency.record((System.nanoTime() - startNanos) / 1000);
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.xsearch.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.DocIdSetIterator;
+import com.xsearch.index.Document;
+import com.xsearch.index.Segment;
+import com.xsearch.index.SegmentBuilder;
+import com.xsearch.index.Term;
+import com.xsearch.search.BooleanClause;
+import com.xsearch.search.BooleanQuery;
+import com.xsearch.search.IndexSearcher;
+import com.xsearch.search.Query;
+import com.xsearch.search.TermQuery;
+import com.xsearch.search.TopDocs;
+
+/**
+ * @Description: 倒排解码、两个倒排求交，以及经过打分和WAND的完整查询
+ *               <p>
+ *               文档正文由几个密度不同的词组成：t2出现在约1/2的文档中，t10约1/10，t100约1/100，
+ *               高频词的倒排块内文档号差值小，低频词的倒排在求交时主要走跳表。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 11:30:47 AM
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostingsBenchmark {
+	private static final int MAX_DOC = 200000;
+	private static final int[] DENSITIES = { 2, 10, 100 };
+
+	@Param({ "t2", "t10", "t100" })
+	private String term;
+
+	private Segment segment;
+	private IndexSearcher searcher;
+	private Query conjunction;
+	private Query disjunction;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(2);
+		SegmentBuilder builder = new SegmentBuilder();
+		StringBuilder text = new StringBuilder();
+		for (int doc = 0; doc < MAX_DOC; doc++) {
+			text.setLength(0);
+			for (int density : DENSITIES) {
+				if (random.nextInt(density) == 0) {
+					// 词频1到3
+					for (int freq = random.nextInt(3); freq >= 0; freq--) {
+						text.append('t').append(density).append(' ');
+					}
+				}
+			}
+			text.append("filler").append(random.nextInt(1000));
+			builder.addDocument(new Document().addText("body", text.toString()));
+		}
+		segment = builder.build("_bench");
+		searcher = new IndexSearcher(Arrays.asList(segment));
+
+		conjunction = new BooleanQuery(Arrays.asList(new BooleanClause(new TermQuery("body", term),
+				BooleanClause.Occur.MUST), new BooleanClause(new TermQuery("body", "t100"), BooleanClause.Occur.MUST)));
+		disjunction = new BooleanQuery(Arrays.asList(new BooleanClause(new TermQuery("body", term),
+				BooleanClause.Occur.SHOULD), new BooleanClause(new TermQuery("body", "t100"), BooleanClause.Occur.SHOULD)));
+	}
+
+	/**
+	 * @Description: 顺序解码一个词的全部文档号和词频
+	 */
+	@Benchmark
+	public long decode() {
+		BlockPostingsEnum postings = segment.postings(new Term("body", term));
+		long sum = 0;
+		for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+			sum += doc + postings.freq();
+		}
+		return sum;
+	}
+
+	/**
+	 * @Description: term与t100求交，低频的一方驱动，另一方advance
+	 */
+	@Benchmark
+	public int intersect() {
+		BlockPostingsEnum lead = segment.postings(new Term("body", "t100"));
+		BlockPostingsEnum other = segment.postings(new Term("body", term));
+		int count = 0;
+		int doc = lead.nextDoc();
+		while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+			int next = other.advance(doc);
+			if (next == doc) {
+				count++;
+				doc = lead.nextDoc();
+			} else if (next == DocIdSetIterator.NO_MORE_DOCS) {
+				break;
+			} else {
+				doc = lead.advance(next);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @Description: +term +t100，打分并取前10
+	 */
+	@Benchmark
+	public TopDocs searchConjunction() {
+		return searcher.search(conjunction, 10);
+	}
+
+	/**
+	 * @Description: term t100，打分并由WAND剪枝取前10
+	 */
+	@Benchmark
+	public TopDocs searchDisjunction() {
+		return searcher.search(disjunction, 10);
+	}
+}
@@ -0,0 +1,70 @@
+package com.xsearch.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.xsearch.search.TopDocs;
+import com.xsearch.search.TopKCollector;
+
+/**
+ * @Description: TopKCollector 收集100000个命中。随机得分时堆满后多数文档在与堆顶比较后直接丢弃，
+ *               递增得分是最坏情况，每个文档都要替换堆顶
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 2:05:19 PM
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKBenchmark {
+	private static final int HITS = 100000;
+
+	@Param({ "10", "100", "1000" })
+	private int k;
+
+	private final float[] randomScores = new float[HITS];
+	private final float[] ascendingScores = new float[HITS];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(3);
+		for (int i = 0; i < HITS; i++) {
+			randomScores[i] = random.nextFloat() * 20;
+			ascendingScores[i] = i * 0.001f;
+		}
+	}
+
+	@Benchmark
+	public TopDocs randomScores() {
+		return collect(randomScores);
+	}
+
+	@Benchmark
+	public TopDocs ascendingScores() {
+		return collect(ascendingScores);
+	}
+
+	private TopDocs collect(float[] scores) {
+		TopKCollector collector = new TopKCollector(k);
+		for (int doc = 0; doc < HITS; doc++) {
+			collector.collect(doc, scores[doc]);
+		}
+		return collector.topDocs(HITS, true);
+	}
+}
@@ -0,0 +1,69 @@
+package com.xsearch.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Description: 分析器，把文本转为词流
+ *               <p>
+ *               子类用createComponents组装分词器和过滤器。每个线程第一次使用时创建一条分析链，之后一直复用，
+ *               分析器本身可以被多个线程同时使用，同一线程同时只能遍历一个tokenStream返回的词流。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 2:05:47 PM
+ */
+public abstract class Analyzer {
+
+	/**
+	 * @Description: 一条分析链，source为链的源头，sink为链的末端
+	 */
+	public static final class Components {
+		final Tokenizer source;
+		final TokenStream sink;
+
+		public Components(Tokenizer source, TokenStream sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+	}
+
+	private final ThreadLocal<Components> components = new ThreadLocal<Components>() {
+		@Override
+		protected Components initialValue() {
+			return createComponents();
+		}
+	};
+
+	/**
+	 * @Description: 创建一条新的分析链
+	 * @return: Components
+	 */
+	protected abstract Components createComponents();
+
+	/**
+	 * @Description: 当前线程复用的词流，已经reset，下一次调用tokenStream前有效
+	 * @param text
+	 * @return: TokenStream
+	 */
+	public final TokenStream tokenStream(String text) {
+		Components chain = components.get();
+		chain.source.setInput(text);
+		chain.sink.reset();
+		return chain.sink;
+	}
+
+	/**
+	 * @Description: 分析为词的字符串列表，每个词创建一个String，用于查询解析等非热点路径
+	 * @param text
+	 * @return: List<String>
+	 */
+	public List<String> terms(String text) {
+		List<String> terms = new ArrayList<String>();
+		TokenStream stream = tokenStream(text);
+		while (stream.incrementToken()) {
+			terms.add(stream.term().toString());
+		}
+		return terms;
+	}
+}
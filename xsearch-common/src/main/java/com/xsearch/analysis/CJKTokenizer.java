@@ -0,0 +1,101 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 中日韩文本的分词器
+ *               <p>
+ *               连续的字母数字作为一个词；连续的中日韩文字按相邻两字切分为重叠的二元词，如“北京大学”切为“北京”“京大”“大学”，
+ *               位置依次加一，短语查询按同样的方式切分后可以精确匹配原文；只有一个字的连续段作为一个单字词。
+ *               其他字符为分隔符，增补平面的字符（代理对）也按分隔符处理。
+ *               字符的类别预先计算为64KB的表，分词时每个字符只查一次表。
+ *               超过MAX_TOKEN_LENGTH的字母数字段按最大长度截断为多个词。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 10:12:35 AM
+ */
+public final class CJKTokenizer extends Tokenizer {
+	public static final int MAX_TOKEN_LENGTH = 255;
+
+	private static final byte DELIMITER = 0;
+	private static final byte ALPHANUM = 1;
+	private static final byte CJK = 2;
+	private static final byte[] TYPES = new byte[Character.MAX_VALUE + 1];
+
+	static {
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (Character.isSurrogate((char) c)) {
+				continue;
+			}
+			Character.UnicodeScript script = Character.UnicodeScript.of(c);
+			if (script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+					|| script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL) {
+				TYPES[c] = CJK;
+			} else if (Character.isLetterOrDigit(c)) {
+				TYPES[c] = ALPHANUM;
+			}
+		}
+	}
+
+	private int offset;
+	private boolean pendingBigram; // 上一个二元词的第二个字后面还有中日韩文字
+
+	@Override
+	public void reset() {
+		offset = 0;
+		pendingBigram = false;
+	}
+
+	@Override
+	public boolean incrementToken() {
+		char[] chars = input;
+		int end = inputLength;
+		term.setPositionIncrement(1);
+
+		if (pendingBigram) {
+			// offset指向上一个二元词的第二个字
+			emitBigram(chars, end);
+			return true;
+		}
+
+		while (offset < end && TYPES[chars[offset]] == DELIMITER) {
+			offset++;
+		}
+		if (offset == end) {
+			return false;
+		}
+
+		int start = offset;
+		if (TYPES[chars[start]] == CJK) {
+			if (start + 1 < end && TYPES[chars[start + 1]] == CJK) {
+				emitBigram(chars, end);
+			} else {
+				term.copyBuffer(chars, start, 1);
+				term.setOffset(start, start + 1);
+				offset = start + 1;
+			}
+			return true;
+		}
+
+		int limit = Math.min(end, start + MAX_TOKEN_LENGTH);
+		while (offset < limit && TYPES[chars[offset]] == ALPHANUM) {
+			offset++;
+		}
+		term.copyBuffer(chars, start, offset - start);
+		term.setOffset(start, offset);
+		return true;
+	}
+
+	/**
+	 * @Description: 输出从offset开始的两个字，offset前进一个字
+	 */
+	private void emitBigram(char[] chars, int end) {
+		int start = offset;
+		term.copyBuffer(chars, start, 2);
+		term.setOffset(start, start + 2);
+		offset = start + 1;
+		pendingBigram = start + 2 < end && TYPES[chars[start + 2]] == CJK;
+		if (!pendingBigram) {
+			offset = start + 2;
+		}
+	}
+}
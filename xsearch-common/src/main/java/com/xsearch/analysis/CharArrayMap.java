@@ -0,0 +1,141 @@
+package com.xsearch.analysis;
+
+import java.util.Arrays;
+
+/**
+ * @Description: 以字符序列为键的哈希表，可以直接用char[]的一段查找，不需要为每个词创建String
+ *               <p>
+ *               开放地址、线性探测，容量为2的幂，装载因子不超过1/2。键在put时复制保存。不支持删除，不是线程安全的。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 10:55:30 AM
+ */
+public class CharArrayMap<V> {
+	private char[][] keys;
+	private Object[] values;
+	private int size;
+
+	public CharArrayMap() {
+		this(16);
+	}
+
+	public CharArrayMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 4 - 1);
+		this.keys = new char[capacity][];
+		this.values = new Object[capacity];
+	}
+
+	/**
+	 * @Description: 查找chars[offset, offset+length)对应的值
+	 * @return: V 不存在时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(char[] chars, int offset, int length) {
+		int slot = slot(keys, chars, offset, length);
+		return keys[slot] == null ? null : (V) values[slot];
+	}
+
+	public V get(CharSequence key) {
+		char[] chars = key.toString().toCharArray();
+		return get(chars, 0, chars.length);
+	}
+
+	public boolean containsKey(char[] chars, int offset, int length) {
+		return keys[slot(keys, chars, offset, length)] != null;
+	}
+
+	/**
+	 * @Description: 加入或替换，键复制保存
+	 * @return: V 原来的值
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(char[] chars, int offset, int length, V value) {
+		int slot = slot(keys, chars, offset, length);
+		if (keys[slot] != null) {
+			V old = (V) values[slot];
+			values[slot] = value;
+			return old;
+		}
+		keys[slot] = Arrays.copyOfRange(chars, offset, offset + length);
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			rehash();
+		}
+		return null;
+	}
+
+	public V put(CharSequence key, V value) {
+		char[] chars = key.toString().toCharArray();
+		return put(chars, 0, chars.length, value);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @Description: 按槽位遍历，槽位为空时keyAt返回null
+	 * @return: int 槽位数
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public char[] keyAt(int slot) {
+		return keys[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	private void rehash() {
+		char[][] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new char[oldKeys.length * 2][];
+		values = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			char[] key = oldKeys[i];
+			if (key != null) {
+				int slot = slot(keys, key, 0, key.length);
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * @Description: 键所在的槽位，不存在时为第一个空槽位
+	 */
+	private static int slot(char[][] keys, char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		hash *= 0x9E3779B9;
+		hash ^= hash >>> 16;
+		int mask = keys.length - 1;
+		int slot = hash & mask;
+		while (true) {
+			char[] key = keys[slot];
+			if (key == null || equals(key, chars, offset, length)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static boolean equals(char[] key, char[] chars, int offset, int length) {
+		if (key.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key[i] != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
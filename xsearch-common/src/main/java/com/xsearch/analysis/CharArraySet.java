@@ -0,0 +1,45 @@
+package com.xsearch.analysis;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * @Description: 以字符序列为元素的集合，用于停用词等词表，创建后只读，可以被多个线程共享
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 11:08:44 AM
+ */
+public final class CharArraySet {
+	public static final CharArraySet EMPTY = new CharArraySet(Collections.<String> emptyList());
+
+	private final CharArrayMap<Boolean> map;
+
+	public CharArraySet(Collection<String> words) {
+		this.map = new CharArrayMap<Boolean>(words.size());
+		for (String word : words) {
+			map.put(word, Boolean.TRUE);
+		}
+	}
+
+	public static CharArraySet of(String... words) {
+		return new CharArraySet(Arrays.asList(words));
+	}
+
+	public boolean contains(char[] chars, int offset, int length) {
+		return map.containsKey(chars, offset, length);
+	}
+
+	public boolean contains(String word) {
+		return contains(word.toCharArray(), 0, word.length());
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public boolean isEmpty() {
+		return map.size() == 0;
+	}
+}
@@ -0,0 +1,31 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 英文为主的文本的分析器：CJKTokenizer -> LowerCaseFilter -> StopFilter -> PorterStemFilter
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 2:26:10 PM
+ */
+public class EnglishAnalyzer extends Analyzer {
+	public static final CharArraySet ENGLISH_STOP_WORDS = CharArraySet.of("a", "an", "and", "are", "as", "at", "be",
+			"but", "by", "for", "if", "in", "into", "is", "it", "no", "not", "of", "on", "or", "such", "that", "the",
+			"their", "then", "there", "these", "they", "this", "to", "was", "will", "with");
+
+	private final CharArraySet stopWords;
+
+	public EnglishAnalyzer() {
+		this(ENGLISH_STOP_WORDS);
+	}
+
+	public EnglishAnalyzer(CharArraySet stopWords) {
+		this.stopWords = stopWords;
+	}
+
+	@Override
+	protected Components createComponents() {
+		Tokenizer source = new CJKTokenizer();
+		TokenStream sink = new StopFilter(new LowerCaseFilter(source), stopWords);
+		return new Components(source, new PorterStemFilter(sink));
+	}
+}
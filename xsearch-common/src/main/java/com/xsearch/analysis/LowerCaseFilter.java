@@ -0,0 +1,34 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 原地把词转为小写，只处理基本多文种平面的字符
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 10:40:17 AM
+ */
+public final class LowerCaseFilter extends TokenFilter {
+
+	public LowerCaseFilter(TokenStream input) {
+		super(input);
+	}
+
+	@Override
+	public boolean incrementToken() {
+		if (!input.incrementToken()) {
+			return false;
+		}
+		char[] buffer = term.buffer();
+		for (int i = 0, length = term.length(); i < length; i++) {
+			char c = buffer[i];
+			if (c < 0x80) {
+				if (c >= 'A' && c <= 'Z') {
+					buffer[i] = (char) (c + ('a' - 'A'));
+				}
+			} else {
+				buffer[i] = Character.toLowerCase(c);
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,33 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 用Porter算法提取英文单词的词干，只处理全部由小写ASCII字母组成的词，需要放在LowerCaseFilter之后
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 11:52:19 AM
+ */
+public final class PorterStemFilter extends TokenFilter {
+	private final PorterStemmer stemmer = new PorterStemmer();
+
+	public PorterStemFilter(TokenStream input) {
+		super(input);
+	}
+
+	@Override
+	public boolean incrementToken() {
+		if (!input.incrementToken()) {
+			return false;
+		}
+		int length = term.length();
+		char[] buffer = term.buffer();
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] < 'a' || buffer[i] > 'z') {
+				return true;
+			}
+		}
+		buffer = term.resizeBuffer(length + 1);
+		term.setLength(stemmer.stem(buffer, length));
+		return true;
+	}
+}
@@ -0,0 +1,415 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: Porter词干提取算法，原地处理小写英文单词
+ *               <p>
+ *               按Martin Porter的参考实现逐步去掉后缀，b为词的字符，k为词尾下标，j为当前匹配的后缀之前的下标。
+ *               实例保存处理中的状态，不是线程安全的，每条分析链各用一个。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 11:30:08 AM
+ */
+final class PorterStemmer {
+	private char[] b;
+	private int k;
+	private int j;
+
+	/**
+	 * @Description: 提取词干
+	 * @param buffer
+	 *            容量至少为length+1，个别规则会先把词加长一个字符
+	 * @param length
+	 * @return: int 词干的长度
+	 */
+	int stem(char[] buffer, int length) {
+		if (length <= 2) {
+			return length;
+		}
+		b = buffer;
+		k = length - 1;
+		step1ab();
+		step1c();
+		step2();
+		step3();
+		step4();
+		step5();
+		b = null;
+		return k + 1;
+	}
+
+	/**
+	 * @Description: b[i]是否为辅音，y在辅音之后时为元音
+	 */
+	private boolean cons(int i) {
+		switch (b[i]) {
+		case 'a':
+		case 'e':
+		case 'i':
+		case 'o':
+		case 'u':
+			return false;
+		case 'y':
+			return i == 0 || !cons(i - 1);
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * @Description: b[0..j]中“元音-辅音”序列的个数，即[C](VC){m}[V]中的m
+	 */
+	private int m() {
+		int n = 0;
+		int i = 0;
+		while (true) {
+			if (i > j) {
+				return n;
+			}
+			if (!cons(i)) {
+				break;
+			}
+			i++;
+		}
+		i++;
+		while (true) {
+			while (true) {
+				if (i > j) {
+					return n;
+				}
+				if (cons(i)) {
+					break;
+				}
+				i++;
+			}
+			i++;
+			n++;
+			while (true) {
+				if (i > j) {
+					return n;
+				}
+				if (!cons(i)) {
+					break;
+				}
+				i++;
+			}
+			i++;
+		}
+	}
+
+	private boolean vowelInStem() {
+		for (int i = 0; i <= j; i++) {
+			if (!cons(i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @Description: b[i-1..i]是否为相同的两个辅音
+	 */
+	private boolean doublec(int i) {
+		return i >= 1 && b[i] == b[i - 1] && cons(i);
+	}
+
+	/**
+	 * @Description: b[i-2..i]是否为辅音-元音-辅音，并且最后的辅音不是w、x、y，如hop、cav
+	 */
+	private boolean cvc(int i) {
+		if (i < 2 || !cons(i) || cons(i - 1) || !cons(i - 2)) {
+			return false;
+		}
+		char c = b[i];
+		return c != 'w' && c != 'x' && c != 'y';
+	}
+
+	/**
+	 * @Description: b[0..k]是否以s结尾，是则j指向s之前
+	 */
+	private boolean ends(String s) {
+		int length = s.length();
+		int offset = k - length + 1;
+		if (offset < 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (b[offset + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		j = k - length;
+		return true;
+	}
+
+	/**
+	 * @Description: 把b[j+1..k]替换为s
+	 */
+	private void setTo(String s) {
+		int length = s.length();
+		s.getChars(0, length, b, j + 1);
+		k = j + length;
+	}
+
+	private void replace(String s) {
+		if (m() > 0) {
+			setTo(s);
+		}
+	}
+
+	/**
+	 * @Description: 去掉复数和-ed、-ing，如caresses -> caress, ponies -> poni, meetings -> meet
+	 */
+	private void step1ab() {
+		if (b[k] == 's') {
+			if (ends("sses")) {
+				k -= 2;
+			} else if (ends("ies")) {
+				setTo("i");
+			} else if (b[k - 1] != 's') {
+				k--;
+			}
+		}
+		if (ends("eed")) {
+			if (m() > 0) {
+				k--;
+			}
+		} else if ((ends("ed") || ends("ing")) && vowelInStem()) {
+			k = j;
+			if (ends("at")) {
+				setTo("ate");
+			} else if (ends("bl")) {
+				setTo("ble");
+			} else if (ends("iz")) {
+				setTo("ize");
+			} else if (doublec(k)) {
+				k--;
+				char c = b[k];
+				if (c == 'l' || c == 's' || c == 'z') {
+					k++;
+				}
+			} else if (m() == 1 && cvc(k)) {
+				setTo("e");
+			}
+		}
+	}
+
+	/**
+	 * @Description: 词干中有元音时词尾的y改为i
+	 */
+	private void step1c() {
+		if (ends("y") && vowelInStem()) {
+			b[k] = 'i';
+		}
+	}
+
+	/**
+	 * @Description: 双重后缀改为单个后缀，如-ization -> -ize
+	 */
+	private void step2() {
+		if (k == 0) {
+			return;
+		}
+		switch (b[k - 1]) {
+		case 'a':
+			if (ends("ational")) {
+				replace("ate");
+			} else if (ends("tional")) {
+				replace("tion");
+			}
+			break;
+		case 'c':
+			if (ends("enci")) {
+				replace("ence");
+			} else if (ends("anci")) {
+				replace("ance");
+			}
+			break;
+		case 'e':
+			if (ends("izer")) {
+				replace("ize");
+			}
+			break;
+		case 'l':
+			if (ends("bli")) {
+				replace("ble");
+			} else if (ends("alli")) {
+				replace("al");
+			} else if (ends("entli")) {
+				replace("ent");
+			} else if (ends("eli")) {
+				replace("e");
+			} else if (ends("ousli")) {
+				replace("ous");
+			}
+			break;
+		case 'o':
+			if (ends("ization")) {
+				replace("ize");
+			} else if (ends("ation")) {
+				replace("ate");
+			} else if (ends("ator")) {
+				replace("ate");
+			}
+			break;
+		case 's':
+			if (ends("alism")) {
+				replace("al");
+			} else if (ends("iveness")) {
+				replace("ive");
+			} else if (ends("fulness")) {
+				replace("ful");
+			} else if (ends("ousness")) {
+				replace("ous");
+			}
+			break;
+		case 't':
+			if (ends("aliti")) {
+				replace("al");
+			} else if (ends("iviti")) {
+				replace("ive");
+			} else if (ends("biliti")) {
+				replace("ble");
+			}
+			break;
+		case 'g':
+			if (ends("logi")) {
+				replace("log");
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * @Description: 处理-ic-、-full、-ness等
+	 */
+	private void step3() {
+		switch (b[k]) {
+		case 'e':
+			if (ends("icate")) {
+				replace("ic");
+			} else if (ends("ative")) {
+				replace("");
+			} else if (ends("alize")) {
+				replace("al");
+			}
+			break;
+		case 'i':
+			if (ends("iciti")) {
+				replace("ic");
+			}
+			break;
+		case 'l':
+			if (ends("ical")) {
+				replace("ic");
+			} else if (ends("ful")) {
+				replace("");
+			}
+			break;
+		case 's':
+			if (ends("ness")) {
+				replace("");
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * @Description: 在m>1时去掉-ant、-ence等后缀
+	 */
+	private void step4() {
+		if (k == 0) {
+			return;
+		}
+		switch (b[k - 1]) {
+		case 'a':
+			if (ends("al")) {
+				break;
+			}
+			return;
+		case 'c':
+			if (ends("ance") || ends("ence")) {
+				break;
+			}
+			return;
+		case 'e':
+			if (ends("er")) {
+				break;
+			}
+			return;
+		case 'i':
+			if (ends("ic")) {
+				break;
+			}
+			return;
+		case 'l':
+			if (ends("able") || ends("ible")) {
+				break;
+			}
+			return;
+		case 'n':
+			if (ends("ant") || ends("ement") || ends("ment") || ends("ent")) {
+				break;
+			}
+			return;
+		case 'o':
+			if (ends("ion") && j >= 0 && (b[j] == 's' || b[j] == 't')) {
+				break;
+			}
+			if (ends("ou")) {
+				break;
+			}
+			return;
+		case 's':
+			if (ends("ism")) {
+				break;
+			}
+			return;
+		case 't':
+			if (ends("ate") || ends("iti")) {
+				break;
+			}
+			return;
+		case 'u':
+			if (ends("ous")) {
+				break;
+			}
+			return;
+		case 'v':
+			if (ends("ive")) {
+				break;
+			}
+			return;
+		case 'z':
+			if (ends("ize")) {
+				break;
+			}
+			return;
+		default:
+			return;
+		}
+		if (m() > 1) {
+			k = j;
+		}
+	}
+
+	/**
+	 * @Description: 在m>1时去掉词尾的e，m>1时-ll改为-l
+	 */
+	private void step5() {
+		j = k;
+		if (b[k] == 'e') {
+			int a = m();
+			if (a > 1 || a == 1 && !cvc(k - 1)) {
+				k--;
+			}
+		}
+		if (b[k] == 'l' && doublec(k) && m() > 1) {
+			k--;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 缺省的分析器：CJKTokenizer -> LowerCaseFilter [-> StopFilter]
+ *               <p>
+ *               中文按二元切分，字母数字转小写，缺省不去停用词，不提取词干。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 2:20:33 PM
+ */
+public class StandardAnalyzer extends Analyzer {
+	private final CharArraySet stopWords;
+
+	public StandardAnalyzer() {
+		this(CharArraySet.EMPTY);
+	}
+
+	public StandardAnalyzer(CharArraySet stopWords) {
+		this.stopWords = stopWords;
+	}
+
+	public CharArraySet getStopWords() {
+		return stopWords;
+	}
+
+	@Override
+	protected Components createComponents() {
+		Tokenizer source = new CJKTokenizer();
+		TokenStream sink = new LowerCaseFilter(source);
+		if (!stopWords.isEmpty()) {
+			sink = new StopFilter(sink, stopWords);
+		}
+		return new Components(source, sink);
+	}
+}
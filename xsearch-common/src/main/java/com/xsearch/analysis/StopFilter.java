@@ -0,0 +1,37 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 去掉停用词，被去掉的词的位置保留为空位，短语查询不会跨过停用词匹配
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 10:46:52 AM
+ */
+public final class StopFilter extends TokenFilter {
+	private final CharArraySet stopWords;
+
+	/**
+	 * @param input
+	 * @param stopWords
+	 *            按小写匹配，需要放在LowerCaseFilter之后
+	 */
+	public StopFilter(TokenStream input, CharArraySet stopWords) {
+		super(input);
+		this.stopWords = stopWords;
+	}
+
+	@Override
+	public boolean incrementToken() {
+		int skipped = 0;
+		while (input.incrementToken()) {
+			if (!stopWords.contains(term.buffer(), 0, term.length())) {
+				if (skipped > 0) {
+					term.setPositionIncrement(term.getPositionIncrement() + skipped);
+				}
+				return true;
+			}
+			skipped += term.getPositionIncrement();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,98 @@
+package com.xsearch.analysis;
+
+import java.util.Arrays;
+
+/**
+ * @Description: 分析链中当前词的属性，由一条链上的分词器和所有过滤器共享
+ *               <p>
+ *               词的字符保存在可复用的char[]中，过滤器原地修改，整条链处理一个词不创建对象。
+ *               positionIncrement为与上一个词的位置差，被停用词过滤掉的词使下一个词的位置差大于1。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 9:40:21 AM
+ */
+public final class TermAttribute implements CharSequence {
+	private char[] buffer = new char[16];
+	private int length;
+	private int positionIncrement = 1;
+	private int startOffset;
+	private int endOffset;
+
+	/**
+	 * @Description: 词的字符，有效部分为 [0, length())
+	 * @return: char[]
+	 */
+	public char[] buffer() {
+		return buffer;
+	}
+
+	/**
+	 * @Description: 保证缓冲区至少有size个字符，保留已有内容
+	 * @param size
+	 * @return: char[] 可能是新的缓冲区
+	 */
+	public char[] resizeBuffer(int size) {
+		if (buffer.length < size) {
+			buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+		}
+		return buffer;
+	}
+
+	public void copyBuffer(char[] chars, int offset, int length) {
+		resizeBuffer(length);
+		System.arraycopy(chars, offset, buffer, 0, length);
+		this.length = length;
+	}
+
+	public void setLength(int length) {
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return buffer[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new String(buffer, start, end - start);
+	}
+
+	public int getPositionIncrement() {
+		return positionIncrement;
+	}
+
+	public void setPositionIncrement(int positionIncrement) {
+		this.positionIncrement = positionIncrement;
+	}
+
+	public int startOffset() {
+		return startOffset;
+	}
+
+	public int endOffset() {
+		return endOffset;
+	}
+
+	/**
+	 * @Description: 词在原文中的范围 [startOffset, endOffset)
+	 */
+	public void setOffset(int startOffset, int endOffset) {
+		this.startOffset = startOffset;
+		this.endOffset = endOffset;
+	}
+
+	/**
+	 * @Description: 当前词的字符串，只在查询解析等非热点路径使用
+	 */
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length);
+	}
+}
@@ -0,0 +1,22 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 对上游词流的每个词做变换或过滤
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 9:55:43 AM
+ */
+public abstract class TokenFilter extends TokenStream {
+	protected final TokenStream input;
+
+	protected TokenFilter(TokenStream input) {
+		super(input.term());
+		this.input = input;
+	}
+
+	@Override
+	public void reset() {
+		input.reset();
+	}
+}
@@ -0,0 +1,35 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 词流，分词器和过滤器的公共父类
+ *               <p>
+ *               用法为先reset，再反复调用incrementToken直到返回false，每次返回true时从term()读取当前词。
+ *               一条链上的所有节点共享同一个TermAttribute，链由Analyzer按线程复用。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 9:52:06 AM
+ */
+public abstract class TokenStream {
+	protected final TermAttribute term;
+
+	protected TokenStream(TermAttribute term) {
+		this.term = term;
+	}
+
+	public final TermAttribute term() {
+		return term;
+	}
+
+	/**
+	 * @Description: 前进到下一个词
+	 * @return: boolean 没有更多的词时返回false
+	 */
+	public abstract boolean incrementToken();
+
+	/**
+	 * @Description: 开始处理新的输入前调用，清除上一次的状态
+	 */
+	public void reset() {
+	}
+}
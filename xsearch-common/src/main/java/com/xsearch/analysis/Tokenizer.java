@@ -0,0 +1,32 @@
+package com.xsearch.analysis;
+
+/**
+ * @Description: 分析链的源头，把文本切分为词
+ *               <p>
+ *               输入复制到可复用的char[]中，分词时直接读数组。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 9:58:12 AM
+ */
+public abstract class Tokenizer extends TokenStream {
+	protected char[] input = new char[256];
+	protected int inputLength;
+
+	protected Tokenizer() {
+		super(new TermAttribute());
+	}
+
+	/**
+	 * @Description: 设置新的输入，之后需要reset
+	 * @param text
+	 * @return: void
+	 */
+	public void setInput(String text) {
+		if (input.length < text.length()) {
+			input = new char[Math.max(text.length(), input.length * 2)];
+		}
+		text.getChars(0, text.length(), input, 0);
+		inputLength = text.length();
+	}
+}
@@ -0,0 +1,40 @@
+package com.xsearch.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 可以直接在ByteBuffer上序列化的对象
+ *               <p>
+ *               写入方先用serializedSize得到编码长度，一次申请好缓冲再write，不经过中间的字节数组；
+ *               读取方从ByteBuffer的当前位置readFields，对象可以复用。不使用Java序列化。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 10:05:14 AM
+ */
+public interface Writable {
+
+	/**
+	 * @Description: 编码后的字节数，与write实际写入的字节数相同
+	 * @return: int
+	 */
+	int serializedSize();
+
+	/**
+	 * @Description: 从out的当前位置写入，out至少有serializedSize()字节的剩余空间
+	 * @param out
+	 * @return: void
+	 */
+	void write(ByteBuffer out);
+
+	/**
+	 * @Description: 从in的当前位置读取，覆盖对象当前的字段
+	 * @param in
+	 * @return: void
+	 * @throws IllegalArgumentException
+	 *             编码不合法
+	 * @throws java.nio.BufferUnderflowException
+	 *             数据不完整
+	 */
+	void readFields(ByteBuffer in);
+}
@@ -0,0 +1,182 @@
+package com.xsearch.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: Writable编码的基本类型读写，全部直接在ByteBuffer上进行
+ *               <p>
+ *               变长整数每个字节低7位存数据，最高位为1表示后面还有字节，低位组在前；负数的int占5个字节，
+ *               可能为负的值用zigzag编码（writeZInt）使绝对值小的负数也只占1个字节。
+ *               字符串为 [UTF-8字节数 vint][UTF-8字节]，编码时逐个字符写入ByteBuffer，不调用String.getBytes。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 10:12:40 AM
+ */
+public final class WritableUtils {
+
+	private WritableUtils() {
+	}
+
+	public static void writeVInt(ByteBuffer out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	public static int readVInt(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed vint");
+	}
+
+	public static int vIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	public static void writeVLong(ByteBuffer out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	public static long readVLong(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed vlong");
+	}
+
+	public static int vLongSize(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * @Description: zigzag变长编码，0, -1, 1, -2 ... 依次编码为 0, 1, 2, 3 ...
+	 */
+	public static void writeZInt(ByteBuffer out, int value) {
+		writeVInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	public static int readZInt(ByteBuffer in) {
+		int value = readVInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	public static int zIntSize(int value) {
+		return vIntSize((value << 1) ^ (value >> 31));
+	}
+
+	public static void writeString(ByteBuffer out, String value) {
+		writeVInt(out, utf8Length(value));
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out.put((byte) c);
+			} else if (c < 0x800) {
+				out.put((byte) (0xC0 | (c >> 6)));
+				out.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				out.put((byte) (0xF0 | (codePoint >> 18)));
+				out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				out.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				if (Character.isSurrogate(c)) {
+					c = '?'; // 不成对的代理字符
+				}
+				out.put((byte) (0xE0 | (c >> 12)));
+				out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				out.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	public static String readString(ByteBuffer in) {
+		int length = readVInt(in);
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalArgumentException("Invalid string length: " + length);
+		}
+		char[] chars = new char[length]; // 字符数不超过UTF-8字节数
+		int n = 0;
+		int end = in.position() + length;
+		while (in.position() < end) {
+			int b = in.get() & 0xFF;
+			if (b < 0x80) {
+				chars[n++] = (char) b;
+				continue;
+			}
+			// 多字节序列不能越过字符串的结尾，否则会读到后面的字段
+			int needed = b < 0xE0 ? 1 : b < 0xF0 ? 2 : 3;
+			if (in.position() + needed > end) {
+				throw new IllegalArgumentException("Malformed UTF-8 string");
+			}
+			if (b < 0xE0) {
+				chars[n++] = (char) (((b & 0x1F) << 6) | (in.get() & 0x3F));
+			} else if (b < 0xF0) {
+				chars[n++] = (char) (((b & 0x0F) << 12) | ((in.get() & 0x3F) << 6) | (in.get() & 0x3F));
+			} else {
+				int codePoint = ((b & 0x07) << 18) | ((in.get() & 0x3F) << 12) | ((in.get() & 0x3F) << 6)
+						| (in.get() & 0x3F);
+				chars[n++] = Character.highSurrogate(codePoint);
+				chars[n++] = Character.lowSurrogate(codePoint);
+			}
+		}
+		if (in.position() != end) {
+			throw new IllegalArgumentException("Malformed UTF-8 string");
+		}
+		return new String(chars, 0, n);
+	}
+
+	public static int stringSize(String value) {
+		int length = utf8Length(value);
+		return vIntSize(length) + length;
+	}
+
+	/**
+	 * @Description: 字符串的UTF-8字节数
+	 */
+	public static int utf8Length(String value) {
+		int bytes = 0;
+		for (int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				bytes += 4;
+				i++;
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,36 @@
+package com.xsearch.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Description: 单调递增的计数，多个线程同时累加时各自写不同的单元，不争用同一个缓存行
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:07:30 PM
+ */
+public class Counter implements Metric {
+	private final LongAdder count = new LongAdder();
+
+	public void inc() {
+		count.increment();
+	}
+
+	public void add(long n) {
+		count.add(n);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	@Override
+	public Object snapshot() {
+		return count.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(count.sum());
+	}
+}
@@ -0,0 +1,23 @@
+package com.xsearch.metrics;
+
+/**
+ * @Description: 瞬时值，如队列长度、连接数，导出时才读取
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:08:51 PM
+ */
+public abstract class Gauge implements Metric {
+
+	public abstract long value();
+
+	@Override
+	public Object snapshot() {
+		return value();
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(value());
+	}
+}
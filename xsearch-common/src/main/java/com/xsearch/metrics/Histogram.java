@@ -0,0 +1,140 @@
+package com.xsearch.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Description: 对数-线性分桶的直方图，记录延迟等非负值的分布
+ *               <p>
+ *               与HdrHistogram的分桶方式相同：小于64的值每个值一个桶，之后每个2的幂区间等分为32个桶，
+ *               桶宽与值成正比，任何分位数的相对误差不超过1/32（约3%），覆盖整个long范围只需1888个桶。
+ *               记录只是一次桶下标计算和一次原子加，不加锁也不分配对象，可以放在请求处理的每个阶段上。
+ *               分位数按桶的上界报告，并且不超过记录过的最大值。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:12:03 PM
+ */
+public class Histogram implements Metric {
+	private static final int SUB_BITS = 5;
+	private static final int HALF = 1 << SUB_BITS; // 每个2的幂区间的桶数
+	private static final int LINEAR = HALF * 2; // 小于该值的每个值一个桶
+	private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * HALF;
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @Description: 记录一个值，负数按0记录
+	 * @param value
+	 * @return: void
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(index(value));
+		sum.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	static int index(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS; // 保留最高的6位
+		return LINEAR + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+	}
+
+	/**
+	 * @Description: 桶内的最大值
+	 */
+	static long highestEquivalentValue(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int shift = (index - LINEAR) / HALF + 1;
+		long mantissa = (index - LINEAR) % HALF + HALF;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	public long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * @Description: 分位数，并发记录时为近似值
+	 * @param percentile
+	 *            [0, 100]
+	 * @return: long 没有记录时返回0
+	 */
+	public long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = copyCounts(snapshot);
+		return percentile(snapshot, total, percentile);
+	}
+
+	private long copyCounts(long[] snapshot) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		return total;
+	}
+
+	private long percentile(long[] snapshot, long total, double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestEquivalentValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * @Description: 导出为 {count, mean, max, p50, p90, p99, p999}
+	 */
+	@Override
+	public Object snapshot() {
+		long[] snapshot = new long[BUCKETS];
+		long total = copyCounts(snapshot);
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("count", total);
+		result.put("mean", total == 0 ? 0 : sum.sum() / total);
+		result.put("max", max.get());
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			result.put(PERCENTILE_NAMES[i], percentile(snapshot, total, PERCENTILES[i]));
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(snapshot());
+	}
+}
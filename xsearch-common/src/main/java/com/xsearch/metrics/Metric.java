@@ -0,0 +1,17 @@
+package com.xsearch.metrics;
+
+/**
+ * @Description: 指标，登记在MetricsRegistry中按名字导出
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:05:12 PM
+ */
+public interface Metric {
+
+	/**
+	 * @Description: 当前值的快照，为Long或者Map等可以直接序列化为JSON的对象
+	 * @return: Object
+	 */
+	Object snapshot();
+}
@@ -0,0 +1,69 @@
+package com.xsearch.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Description: 按名字登记的指标集合
+ *               <p>
+ *               名字用点分隔，由各模块加上自己的前缀，例如 ipc.9090.call.queue_us。
+ *               进程内的服务缺省登记在getDefault()上。web节点本身不运行服务，分片上的指标由服务的指标方法远程导出。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:31:44 PM
+ */
+public class MetricsRegistry {
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @Description: 登记指标，同名的指标被替换
+	 * @param name
+	 * @param metric
+	 * @return: T
+	 */
+	public <T extends Metric> T register(String name, T metric) {
+		metrics.put(name, metric);
+		return metric;
+	}
+
+	public Metric get(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * @Description: 移除名字以prefix开头的全部指标，服务停止时调用
+	 * @param prefix
+	 * @return: void
+	 */
+	public void removeAll(String prefix) {
+		for (String name : metrics.keySet()) {
+			if (name.startsWith(prefix)) {
+				metrics.remove(name);
+			}
+		}
+	}
+
+	/**
+	 * @Description: 名字以prefix开头的指标的快照，按名字排序
+	 * @param prefix
+	 *            为空串时导出全部
+	 * @return: Map<String,Object>
+	 */
+	public Map<String, Object> snapshot(String prefix) {
+		Map<String, Object> result = new TreeMap<String, Object>();
+		for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				result.put(entry.getKey(), entry.getValue().snapshot());
+			}
+		}
+		return result;
+	}
+}
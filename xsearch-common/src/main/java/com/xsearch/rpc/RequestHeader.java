@@ -0,0 +1,143 @@
+package com.xsearch.rpc;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.io.Writable;
+import com.xsearch.io.WritableUtils;
+
+/**
+ * @Description: 请求帧的头部，客户端和服务端共用
+ *               <p>
+ *               请求帧格式为 [4字节长度][头部][参数]，长度不含自身；
+ *               头部为 [调用id vint][方法id vint][重试次数 vint][超时毫秒 vint][优先级 byte]。
+ *               调用id在一个客户端内递增，响应按调用id匹配；方法id选择服务端的处理器，0为缺省方法；
+ *               重试次数为客户端重发同一请求的次数，首次发送为0。
+ *               超时为客户端还愿意等待的时间，0表示不限，服务端从收到请求开始计时，用相对时间避免两端时钟不一致；
+ *               优先级决定服务端过载时先拒绝哪些请求。不带超时的小请求头部只有5个字节。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 10:48:26 AM
+ */
+public final class RequestHeader implements Writable {
+	public static final int DEFAULT_METHOD = 0;
+	public static final int MAX_SIZE = 21; // 四个vint最多20字节，加1字节优先级
+
+	public static final int PRIORITY_LOW = 0; // 后台任务等，过载时最先被拒绝
+	public static final int PRIORITY_NORMAL = 1;
+	public static final int PRIORITY_HIGH = 2; // 过载时最后被拒绝
+
+	private int callId;
+	private int methodId;
+	private int retryCount;
+	private int timeout;
+	private int priority = PRIORITY_NORMAL;
+
+	public RequestHeader() {
+	}
+
+	public RequestHeader(int callId, int methodId, int retryCount) {
+		this(callId, methodId, retryCount, 0, PRIORITY_NORMAL);
+	}
+
+	/**
+	 * @param callId
+	 * @param methodId
+	 * @param retryCount
+	 * @param timeout
+	 *            超时毫秒数，0表示不限
+	 * @param priority
+	 *            PRIORITY_LOW到PRIORITY_HIGH
+	 */
+	public RequestHeader(int callId, int methodId, int retryCount, int timeout, int priority) {
+		this.callId = callId;
+		this.methodId = methodId;
+		this.retryCount = retryCount;
+		this.timeout = timeout;
+		this.priority = priority;
+	}
+
+	public int getCallId() {
+		return callId;
+	}
+
+	public int getMethodId() {
+		return methodId;
+	}
+
+	public int getRetryCount() {
+		return retryCount;
+	}
+
+	/**
+	 * @Description: 客户端的超时毫秒数，0表示不限
+	 * @return: int
+	 */
+	public int getTimeout() {
+		return timeout;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	@Override
+	public int serializedSize() {
+		return WritableUtils.vIntSize(callId) + WritableUtils.vIntSize(methodId) + WritableUtils.vIntSize(retryCount)
+				+ WritableUtils.vIntSize(timeout) + 1;
+	}
+
+	@Override
+	public void write(ByteBuffer out) {
+		WritableUtils.writeVInt(out, callId);
+		WritableUtils.writeVInt(out, methodId);
+		WritableUtils.writeVInt(out, retryCount);
+		WritableUtils.writeVInt(out, timeout);
+		out.put((byte) priority);
+	}
+
+	@Override
+	public void readFields(ByteBuffer in) {
+		callId = WritableUtils.readVInt(in);
+		methodId = WritableUtils.readVInt(in);
+		retryCount = WritableUtils.readVInt(in);
+		timeout = WritableUtils.readVInt(in);
+		priority = in.get();
+		if (methodId < 0 || retryCount < 0 || timeout < 0 || priority < PRIORITY_LOW || priority > PRIORITY_HIGH) {
+			throw new IllegalArgumentException("Invalid request header: " + this);
+		}
+	}
+
+	/**
+	 * @Description: 编码完整的请求帧
+	 * @param out
+	 *            至少有 4 + serializedSize() + param.remaining() 字节的剩余空间
+	 * @param param
+	 *            从position到limit的内容作为参数，position不变
+	 * @return: void
+	 */
+	public void writeFrame(ByteBuffer out, ByteBuffer param) {
+		out.putInt(serializedSize() + param.remaining());
+		write(out);
+		out.put(param.duplicate());
+	}
+
+	/**
+	 * @Description: 编码完整的请求帧，参数直接写入out
+	 * @param out
+	 *            至少有 4 + serializedSize() + param.serializedSize() 字节的剩余空间
+	 * @param param
+	 * @return: void
+	 */
+	public void writeFrame(ByteBuffer out, Writable param) {
+		out.putInt(serializedSize() + param.serializedSize());
+		write(out);
+		param.write(out);
+	}
+
+	@Override
+	public String toString() {
+		return "RequestHeader[callId=" + callId + ", methodId=" + methodId + ", retryCount=" + retryCount + ", timeout=" + timeout
+				+ ", priority=" + priority + "]";
+	}
+}
@@ -0,0 +1,66 @@
+package com.xsearch.rpc;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.io.Writable;
+import com.xsearch.io.WritableUtils;
+
+/**
+ * @Description: 响应帧的头部，客户端和服务端共用
+ *               <p>
+ *               响应帧格式为 [4字节长度][头部][数据]，长度不含自身；头部为 [调用id vint][状态 byte]。
+ *               状态为SUCCESS时数据为处理结果，否则为UTF-8编码的错误信息。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 11:02:53 AM
+ */
+public final class ResponseHeader implements Writable {
+	public static final byte SUCCESS = 0; // 成功，数据为处理结果
+	public static final byte ERROR = 1; // 处理失败，数据为UTF-8编码的错误信息
+	public static final byte BUSY = 2; // 请求队列已满被拒绝，数据为UTF-8编码的错误信息
+	public static final byte EXPIRED = 3; // 请求在队列中等待超过了客户端的超时，没有执行，数据为UTF-8编码的错误信息
+
+	public static final int MAX_SIZE = 6;
+
+	private int callId;
+	private byte status;
+
+	public ResponseHeader() {
+	}
+
+	public ResponseHeader(int callId, byte status) {
+		this.callId = callId;
+		this.status = status;
+	}
+
+	public int getCallId() {
+		return callId;
+	}
+
+	public byte getStatus() {
+		return status;
+	}
+
+	@Override
+	public int serializedSize() {
+		return WritableUtils.vIntSize(callId) + 1;
+	}
+
+	@Override
+	public void write(ByteBuffer out) {
+		WritableUtils.writeVInt(out, callId);
+		out.put(status);
+	}
+
+	@Override
+	public void readFields(ByteBuffer in) {
+		callId = WritableUtils.readVInt(in);
+		status = in.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ResponseHeader[callId=" + callId + ", status=" + status + "]";
+	}
+}
@@ -0,0 +1,103 @@
+package com.xsearch.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @Description: 分析链测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 4:35:17 PM
+ */
+public class AnalyzerTest {
+
+	/**
+	 * @Description: 每个词输出为 词/位置/起点-终点
+	 */
+	private static List<String> tokens(Analyzer analyzer, String text) {
+		List<String> tokens = new ArrayList<String>();
+		TokenStream stream = analyzer.tokenStream(text);
+		TermAttribute term = stream.term();
+		int position = -1;
+		while (stream.incrementToken()) {
+			position += term.getPositionIncrement();
+			tokens.add(term + "/" + position + "/" + term.startOffset() + "-" + term.endOffset());
+		}
+		return tokens;
+	}
+
+	@Test
+	public void testCJKTokenizer() {
+		Analyzer analyzer = new StandardAnalyzer();
+		assertEquals(Arrays.asList("北京/0/0-2", "京大/1/1-3", "大学/2/2-4", "hello/3/5-10", "搜/4/10-11", "x2/5/12-14",
+				"の/6/15-16"), tokens(analyzer, "北京大学 Hello搜 X2,の"));
+		assertEquals(Arrays.asList("搜索/0/0-2", "引擎/1/3-5"), tokens(analyzer, "搜索，引擎"));
+		assertEquals(0, tokens(analyzer, " ,.!").size());
+		assertEquals(0, tokens(analyzer, "").size());
+
+		// 超长的词按最大长度截断
+		char[] chars = new char[CJKTokenizer.MAX_TOKEN_LENGTH + 10];
+		Arrays.fill(chars, 'a');
+		List<String> terms = analyzer.terms(new String(chars));
+		assertEquals(2, terms.size());
+		assertEquals(CJKTokenizer.MAX_TOKEN_LENGTH, terms.get(0).length());
+
+		// 同一线程复用同一条分析链
+		assertSame(analyzer.tokenStream("a"), analyzer.tokenStream("b"));
+	}
+
+	@Test
+	public void testStopAndStem() {
+		Analyzer analyzer = new EnglishAnalyzer();
+		assertEquals(Arrays.asList("quick/1/4-9", "run/2/10-17", "dog/6/29-33", "中文/7/34-36"),
+				tokens(analyzer, "The quick Running and the of dogs 中文"));
+
+		String[] words = { "caresses", "ponies", "cats", "feed", "agreed", "plastered", "motoring", "sing", "hopping",
+				"filing", "happy", "relational", "generalizations", "connections", "hopeful", "goodness", "electrical",
+				"adjustment", "is", "running1" };
+		String[] stems = { "caress", "poni", "cat", "feed", "agre", "plaster", "motor", "sing", "hop", "file", "happi",
+				"relat", "gener", "connect", "hope", "good", "electr", "adjust", "is", "running1" };
+		StringBuilder text = new StringBuilder();
+		for (String word : words) {
+			text.append(word).append(' ');
+		}
+		List<String> expected = new ArrayList<String>(Arrays.asList(stems));
+		expected.remove("is"); // 停用词
+		assertEquals(expected, analyzer.terms(text.toString()));
+	}
+
+	@Test
+	public void testCharArrayMap() {
+		CharArrayMap<Integer> map = new CharArrayMap<Integer>(2);
+		char[] text = "xx hello world".toCharArray();
+		for (int i = 0; i < 1000; i++) {
+			assertNull(map.put("key" + i, i));
+		}
+		assertEquals(Integer.valueOf(5), map.put("key5", 5));
+		assertNull(map.put(text, 3, 5, -1));
+		assertEquals(1001, map.size());
+		assertEquals(Integer.valueOf(-1), map.get("hello"));
+		assertEquals(Integer.valueOf(999), map.get("key999"));
+		assertNull(map.get(text, 9, 5));
+		assertTrue(map.containsKey(text, 3, 5));
+		assertFalse(map.containsKey(text, 3, 4));
+
+		int count = 0;
+		for (int slot = 0; slot < map.capacity(); slot++) {
+			if (map.keyAt(slot) != null) {
+				count++;
+			}
+		}
+		assertEquals(1001, count);
+	}
+}
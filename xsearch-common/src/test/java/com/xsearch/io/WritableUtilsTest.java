@@ -0,0 +1,103 @@
+package com.xsearch.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @Description: WritableUtils 测试，编码长度与size方法一致，读写往返不变
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 2:26:51 PM
+ */
+public class WritableUtilsTest {
+
+	@Test
+	public void testVarInts() {
+		Random random = new Random(7);
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		int[] fixed = { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+		for (int i = 0; i < 10000; i++) {
+			int value = i < fixed.length ? fixed[i] : random.nextInt() >> random.nextInt(32);
+			long longValue = i < fixed.length ? fixed[i] : random.nextLong() >> random.nextInt(64);
+
+			buffer.clear();
+			WritableUtils.writeVInt(buffer, value);
+			assertEquals(WritableUtils.vIntSize(value), buffer.position());
+			buffer.flip();
+			assertEquals(value, WritableUtils.readVInt(buffer));
+
+			buffer.clear();
+			WritableUtils.writeZInt(buffer, value);
+			assertEquals(WritableUtils.zIntSize(value), buffer.position());
+			buffer.flip();
+			assertEquals(value, WritableUtils.readZInt(buffer));
+
+			buffer.clear();
+			WritableUtils.writeVLong(buffer, longValue);
+			assertEquals(WritableUtils.vLongSize(longValue), buffer.position());
+			buffer.flip();
+			assertEquals(longValue, WritableUtils.readVLong(buffer));
+		}
+		assertEquals(1, WritableUtils.vIntSize(127));
+		assertEquals(5, WritableUtils.vIntSize(-1));
+		assertEquals(1, WritableUtils.zIntSize(-1));
+		assertEquals(10, WritableUtils.vLongSize(-1L));
+	}
+
+	@Test
+	public void testStrings() {
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		String[] values = { "", "xsearch", "搜索引擎", "mixed 中文 text", "😀 emoji", "éࠀ￿" };
+		for (String value : values) {
+			buffer.clear();
+			WritableUtils.writeString(buffer, value);
+			assertEquals(WritableUtils.stringSize(value), buffer.position());
+			assertEquals(value.getBytes(StandardCharsets.UTF_8).length, WritableUtils.utf8Length(value));
+
+			// 与JDK的UTF-8编码一致
+			buffer.flip();
+			int length = WritableUtils.readVInt(buffer);
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			assertEquals(value, new String(bytes, StandardCharsets.UTF_8));
+
+			buffer.rewind();
+			assertEquals(value, WritableUtils.readString(buffer));
+			assertFalse(buffer.hasRemaining());
+		}
+	}
+
+	@Test
+	public void testTruncated() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		WritableUtils.writeString(buffer, "truncated");
+		buffer.flip();
+		buffer.limit(buffer.limit() - 1);
+		try {
+			WritableUtils.readString(buffer);
+			fail();
+		} catch (RuntimeException e) {
+			// 长度前缀超过剩余字节
+		}
+
+		// 长度内的多字节序列不完整：4字节序列的首字节后面是下一个字段
+		byte[][] malformed = { { 1, (byte) 0xF0, 'a', 'b', 'c' }, { 2, 'x', (byte) 0xE4, (byte) 0xB8 },
+				{ 1, (byte) 0xC3, (byte) 0xA9 } };
+		for (byte[] bytes : malformed) {
+			try {
+				WritableUtils.readString(ByteBuffer.wrap(bytes));
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals("Malformed UTF-8 string", e.getMessage());
+			}
+		}
+	}
+}
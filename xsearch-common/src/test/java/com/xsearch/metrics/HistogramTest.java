@@ -0,0 +1,58 @@
+package com.xsearch.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @Description: Histogram 测试，分位数与排序后精确值的相对误差不超过1/32
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 5:20:36 PM
+ */
+public class HistogramTest {
+
+	@Test
+	public void testBuckets() {
+		Random random = new Random(11);
+		for (int i = 0; i < 100000; i++) {
+			long value = i < 1000 ? i : random.nextLong() >>> (1 + random.nextInt(63));
+			int index = Histogram.index(value);
+			assertTrue(value <= Histogram.highestEquivalentValue(index));
+			assertTrue(index == 0 || value > Histogram.highestEquivalentValue(index - 1));
+		}
+		assertEquals(Long.MAX_VALUE, Histogram.highestEquivalentValue(Histogram.index(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentiles() {
+		Random random = new Random(12);
+		Histogram histogram = new Histogram();
+		long[] values = new long[50000];
+		for (int i = 0; i < values.length; i++) {
+			// 长尾分布，大部分在几百微秒，少量到几百毫秒
+			values[i] = (long) Math.exp(random.nextGaussian() * 1.5 + 6);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.count());
+		assertEquals(values[values.length - 1], histogram.max());
+		for (double p : new double[] { 50, 90, 99, 99.9, 100 }) {
+			long exact = values[(int) Math.ceil(values.length * p / 100) - 1];
+			long estimate = histogram.percentile(p);
+			assertTrue(p + ": " + exact + " vs " + estimate, estimate >= exact && estimate <= exact + exact / 32);
+		}
+
+		Map<?, ?> snapshot = (Map<?, ?>) histogram.snapshot();
+		assertEquals((long) values.length, snapshot.get("count"));
+		assertEquals(histogram.percentile(99), snapshot.get("p99"));
+		assertEquals(0L, new Histogram().percentile(99));
+	}
+}
@@ -0,0 +1,170 @@
+package com.xsearch.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.xsearch.analysis.Analyzer;
+import com.xsearch.analysis.TermAttribute;
+import com.xsearch.analysis.TokenStream;
+
+/**
+ * @Description: 分析后的文档：原文档加上每个TEXT字段分出的词
+ *               <p>
+ *               分析是写入中最耗CPU的一步，与写缓冲无关，可以在writer的锁外并行执行，锁内只把词加入写缓冲。
+ *               所有词的字符连续保存在一个char[]中，每个词记录起点、长度和位置差，整篇文档只分配几个数组，不为每个词创建String。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 26, 2017 3:10:42 PM
+ */
+public final class AnalyzedDocument {
+	private static final int PARALLEL_THRESHOLD = 16; // 每个子任务至少分析的文档数
+
+	private final Document document;
+	private final int[] fieldEnds; // 第i个字段的词为 [fieldEnds[i-1], fieldEnds[i])，非TEXT字段没有词
+	private char[] chars = new char[64];
+	private int charCount;
+	private int[] starts = new int[16];
+	private int[] lengths = new int[16];
+	private int[] positionIncrements = new int[16];
+	private int tokenCount;
+
+	private AnalyzedDocument(Document document) {
+		this.document = document;
+		this.fieldEnds = new int[document.getFields().size()];
+	}
+
+	/**
+	 * @Description: 在当前线程分析文档
+	 * @param document
+	 * @param analyzer
+	 * @return: AnalyzedDocument
+	 */
+	public static AnalyzedDocument analyze(Document document, Analyzer analyzer) {
+		AnalyzedDocument analyzed = new AnalyzedDocument(document);
+		List<Field> fields = document.getFields();
+		for (int i = 0; i < fields.size(); i++) {
+			Field field = fields.get(i);
+			if (field.type() == Field.Type.TEXT) {
+				TokenStream stream = analyzer.tokenStream(field.value());
+				TermAttribute term = stream.term();
+				while (stream.incrementToken()) {
+					analyzed.add(term.buffer(), term.length(), term.getPositionIncrement());
+				}
+			}
+			analyzed.fieldEnds[i] = analyzed.tokenCount;
+		}
+		return analyzed;
+	}
+
+	/**
+	 * @Description: 在pool中并行分析一批文档，返回时全部分析完成
+	 * @param documents
+	 * @param analyzer
+	 * @param pool
+	 * @return: AnalyzedDocument[] 与documents顺序相同
+	 */
+	public static AnalyzedDocument[] analyzeAll(final List<Document> documents, final Analyzer analyzer,
+			ForkJoinPool pool) {
+		final AnalyzedDocument[] analyzed = new AnalyzedDocument[documents.size()];
+		if (documents.size() <= PARALLEL_THRESHOLD) {
+			for (int i = 0; i < analyzed.length; i++) {
+				analyzed[i] = analyze(documents.get(i), analyzer);
+			}
+			return analyzed;
+		}
+		pool.invoke(new AnalyzeTask(documents, analyzer, analyzed, 0, analyzed.length));
+		return analyzed;
+	}
+
+	/**
+	 * @Description: 对半拆分直到不超过PARALLEL_THRESHOLD篇文档
+	 */
+	private static final class AnalyzeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Document> documents;
+		private final Analyzer analyzer;
+		private final AnalyzedDocument[] analyzed;
+		private final int from;
+		private final int to;
+
+		AnalyzeTask(List<Document> documents, Analyzer analyzer, AnalyzedDocument[] analyzed, int from, int to) {
+			this.documents = documents;
+			this.analyzer = analyzer;
+			this.analyzed = analyzed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					analyzed[i] = analyze(documents.get(i), analyzer);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new AnalyzeTask(documents, analyzer, analyzed, from, mid),
+					new AnalyzeTask(documents, analyzer, analyzed, mid, to));
+		}
+	}
+
+	private void add(char[] buffer, int length, int positionIncrement) {
+		if (charCount + length > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(charCount + length, chars.length * 2));
+		}
+		if (tokenCount == starts.length) {
+			starts = Arrays.copyOf(starts, tokenCount * 2);
+			lengths = Arrays.copyOf(lengths, tokenCount * 2);
+			positionIncrements = Arrays.copyOf(positionIncrements, tokenCount * 2);
+		}
+		System.arraycopy(buffer, 0, chars, charCount, length);
+		starts[tokenCount] = charCount;
+		lengths[tokenCount] = length;
+		positionIncrements[tokenCount] = positionIncrement;
+		charCount += length;
+		tokenCount++;
+	}
+
+	public Document document() {
+		return document;
+	}
+
+	/**
+	 * @Description: 第field个字段的第一个词的下标
+	 */
+	int fieldStart(int field) {
+		return field == 0 ? 0 : fieldEnds[field - 1];
+	}
+
+	int fieldEnd(int field) {
+		return fieldEnds[field];
+	}
+
+	/**
+	 * @Description: 所有词的字符，第i个词为 [start(i), start(i)+length(i))
+	 */
+	char[] chars() {
+		return chars;
+	}
+
+	int start(int token) {
+		return starts[token];
+	}
+
+	int length(int token) {
+		return lengths[token];
+	}
+
+	int positionIncrement(int token) {
+		return positionIncrements[token];
+	}
+
+	public int tokenCount() {
+		return tokenCount;
+	}
+}
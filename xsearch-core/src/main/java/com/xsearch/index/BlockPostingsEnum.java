@@ -0,0 +1,352 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @Description: 读取PostingsWriter写入的块倒排，格式见PostingsWriter
+ *               <p>
+ *               打开时只读取跳表，文档按块解码到复用的int数组中，位置在第一次调用nextPosition时才解码。
+ *               跳表中每块的最大词频和最小长度编码通过blockMaxFreq、blockMinNorm提供给查询计算块内得分上界。
+ *               可以通过reset在同一份数据上复用，避免每个词都分配解码缓冲。
+ *               <p>
+ *               同一个词被一批查询多次遍历时，可以先创建Shared：跳表只读一次，每个块第一次被访问时解码，
+ *               之后基于Shared创建的遍历器直接使用解码好的块，不再重复读跳表和解码文档号、词频。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 4:18:52 PM
+ */
+public class BlockPostingsEnum extends PostingsEnum {
+	private static final int BLOCK_SIZE = PostingsWriter.BLOCK_SIZE;
+
+	private final ByteBuffer docData;
+	private final ByteBuffer posData;
+	private final Shared shared; // 不为null时块来自共享的解码结果
+
+	private int docFreq;
+	private long totalTermFreq;
+	private int numBlocks;
+	private int[] blockLastDocs = new int[8];
+	private int[] blockDocStarts = new int[8];
+	private int[] blockPosStarts = new int[8];
+	private int[] blockMaxFreqs = new int[8];
+	private int[] blockMinNorms = new int[8];
+	private int maxFreq;
+	private int minNorm;
+
+	// 当前块解码结果，共享时指向Shared中的数组
+	private int[] docs = new int[BLOCK_SIZE];
+	private int[] freqs = new int[BLOCK_SIZE];
+	private int block;
+	private int blockDocCount;
+	private int index;
+	private int doc;
+
+	// 位置读取状态：正在读取位置的文档在块内的下标，以及该文档剩余的位置数
+	private int posDocIndex;
+	private int posRemaining;
+	private int position;
+
+	public BlockPostingsEnum(ByteBuffer data) {
+		this.docData = data.duplicate();
+		this.posData = data.duplicate();
+		this.shared = null;
+	}
+
+	/**
+	 * @Description: 基于共享解码结果的遍历器，从头开始遍历，不能再reset
+	 * @param shared
+	 */
+	public BlockPostingsEnum(Shared shared) {
+		BlockPostingsEnum skip = shared.skip;
+		this.docData = null;
+		this.posData = shared.data.duplicate();
+		this.shared = shared;
+		this.docFreq = skip.docFreq;
+		this.totalTermFreq = skip.totalTermFreq;
+		this.numBlocks = skip.numBlocks;
+		// 跳表数组在reset之后只读，可以直接引用
+		this.blockLastDocs = skip.blockLastDocs;
+		this.blockPosStarts = skip.blockPosStarts;
+		this.blockMaxFreqs = skip.blockMaxFreqs;
+		this.blockMinNorms = skip.blockMinNorms;
+		this.maxFreq = skip.maxFreq;
+		this.minNorm = skip.minNorm;
+		this.block = -1;
+		this.index = -1;
+		this.doc = -1;
+	}
+
+	/**
+	 * @Description: 定位到offset处的词，重新开始遍历
+	 * @param offset
+	 * @return: BlockPostingsEnum
+	 */
+	public BlockPostingsEnum reset(long offset) {
+		if (shared != null) {
+			throw new IllegalStateException("Shared postings enum cannot be reset");
+		}
+		docData.position((int) offset);
+		docFreq = VByte.readVInt(docData);
+		totalTermFreq = VByte.readVLong(docData);
+		numBlocks = VByte.readVInt(docData);
+		if (numBlocks > blockLastDocs.length) {
+			int size = Math.max(numBlocks, blockLastDocs.length * 2);
+			blockLastDocs = new int[size];
+			blockDocStarts = new int[size];
+			blockPosStarts = new int[size];
+			blockMaxFreqs = new int[size];
+			blockMinNorms = new int[size];
+		}
+
+		int lastDoc = -1;
+		maxFreq = 0;
+		minNorm = 255;
+		int[] docBytes = blockDocStarts; // 先暂存字节数，读完跳表后再换算成起始位置
+		int[] posBytes = blockPosStarts;
+		for (int i = 0; i < numBlocks; i++) {
+			lastDoc += VByte.readVInt(docData);
+			blockLastDocs[i] = lastDoc;
+			docBytes[i] = VByte.readVInt(docData);
+			posBytes[i] = VByte.readVInt(docData);
+			blockMaxFreqs[i] = VByte.readVInt(docData);
+			blockMinNorms[i] = VByte.readVInt(docData);
+			maxFreq = Math.max(maxFreq, blockMaxFreqs[i]);
+			minNorm = Math.min(minNorm, blockMinNorms[i]);
+		}
+
+		int start = docData.position();
+		for (int i = 0; i < numBlocks; i++) {
+			int docLength = docBytes[i];
+			int posLength = posBytes[i];
+			blockDocStarts[i] = start;
+			blockPosStarts[i] = start + docLength;
+			start += docLength + posLength;
+		}
+
+		block = -1;
+		blockDocCount = 0;
+		index = -1;
+		doc = -1;
+		return this;
+	}
+
+	public int docFreq() {
+		return docFreq;
+	}
+
+	public long totalTermFreq() {
+		return totalTermFreq;
+	}
+
+	/**
+	 * @Description: 所有块中的最大词频
+	 * @return: int
+	 */
+	public int maxFreq() {
+		return maxFreq;
+	}
+
+	/**
+	 * @Description: 所有块中的最小长度编码
+	 * @return: int
+	 */
+	public int minNorm() {
+		return minNorm;
+	}
+
+	public int numBlocks() {
+		return numBlocks;
+	}
+
+	/**
+	 * @Description: 从块from开始查找包含target的块，即第一个最后文档号不小于target的块，不解码
+	 * @param target
+	 * @param from
+	 * @return: int 块下标，target超过最后一个文档时返回numBlocks
+	 */
+	public int findBlock(int target, int from) {
+		if (from >= numBlocks || blockLastDocs[numBlocks - 1] < target) {
+			return numBlocks;
+		}
+		int found = Arrays.binarySearch(blockLastDocs, from, numBlocks, target);
+		return found >= 0 ? found : -found - 1;
+	}
+
+	public int blockLastDoc(int block) {
+		return blockLastDocs[block];
+	}
+
+	public int blockMaxFreq(int block) {
+		return blockMaxFreqs[block];
+	}
+
+	public int blockMinNorm(int block) {
+		return blockMinNorms[block];
+	}
+
+	@Override
+	public int docID() {
+		return doc;
+	}
+
+	@Override
+	public int nextDoc() {
+		if (++index < blockDocCount) {
+			return doc = docs[index];
+		}
+		if (block + 1 >= numBlocks) {
+			index = blockDocCount;
+			return doc = NO_MORE_DOCS;
+		}
+
+		loadBlock(block + 1);
+		index = 0;
+		return doc = docs[0];
+	}
+
+	@Override
+	public int advance(int target) {
+		if (doc == NO_MORE_DOCS) {
+			return doc;
+		}
+		if (block < 0 || target > blockLastDocs[block]) {
+			// 通过跳表找到第一个最后文档号不小于target的块
+			int found = findBlock(target, block + 1);
+			if (found == numBlocks) {
+				block = numBlocks;
+				index = blockDocCount = 0;
+				return doc = NO_MORE_DOCS;
+			}
+			loadBlock(found);
+			index = -1;
+		}
+
+		while (++index < blockDocCount) {
+			if (docs[index] >= target) {
+				return doc = docs[index];
+			}
+		}
+		throw new IllegalStateException("Corrupt skip data: target " + target + " not found in block " + block);
+	}
+
+	/**
+	 * @Description: 解码一个块的文档号和词频
+	 * @param b
+	 * @return: void
+	 */
+	private void loadBlock(int b) {
+		block = b;
+		blockDocCount = b == numBlocks - 1 ? docFreq - b * BLOCK_SIZE : BLOCK_SIZE;
+		if (shared != null) {
+			Block decoded = shared.block(b);
+			docs = decoded.docs;
+			freqs = decoded.freqs;
+			posData.position(blockPosStarts[b]);
+			posDocIndex = -1;
+			posRemaining = 0;
+			return;
+		}
+		docData.position(blockDocStarts[b]);
+
+		int lastDoc = b == 0 ? -1 : blockLastDocs[b - 1];
+		for (int i = 0; i < blockDocCount; i++) {
+			int code = VByte.readVInt(docData);
+			lastDoc += code >>> 1;
+			docs[i] = lastDoc;
+			freqs[i] = (code & 1) != 0 ? 1 : VByte.readVInt(docData);
+		}
+
+		posData.position(blockPosStarts[b]);
+		posDocIndex = -1;
+		posRemaining = 0;
+	}
+
+	@Override
+	public int freq() {
+		return freqs[index];
+	}
+
+	@Override
+	public int nextPosition() {
+		if (posDocIndex != index) {
+			// 跳过前面文档未读的位置
+			for (int i = 0; i < posRemaining; i++) {
+				VByte.skipVInt(posData);
+			}
+			for (int i = posDocIndex + 1; i < index; i++) {
+				for (int j = freqs[i]; j > 0; j--) {
+					VByte.skipVInt(posData);
+				}
+			}
+			posDocIndex = index;
+			posRemaining = freqs[index];
+			position = 0;
+		}
+
+		posRemaining--;
+		position += VByte.readVInt(posData);
+		return position;
+	}
+
+	@Override
+	public long cost() {
+		return docFreq;
+	}
+
+	/**
+	 * @Description: 一个块解码后的文档号和词频，字段为final，创建后对其他线程可见
+	 */
+	private static final class Block {
+		final int[] docs;
+		final int[] freqs;
+
+		Block(int[] docs, int[] freqs) {
+			this.docs = docs;
+			this.freqs = freqs;
+		}
+	}
+
+	/**
+	 * @Description: 一个词在一个段中解码后的倒排，供多个遍历器共享，可以被多个线程同时使用。
+	 *               只保存被访问过的块，按得分剪枝时大部分块不会被解码
+	 */
+	public static final class Shared {
+		private final ByteBuffer data;
+		private final BlockPostingsEnum skip; // 持有跳表，并负责解码块，由自身的锁保护
+		private final Block[] blocks;
+
+		/**
+		 * @param data
+		 *            段的全部倒排数据
+		 * @param offset
+		 *            词的倒排在data中的偏移
+		 */
+		public Shared(ByteBuffer data, long offset) {
+			this.data = data;
+			this.skip = new BlockPostingsEnum(data).reset(offset);
+			this.blocks = new Block[skip.numBlocks];
+		}
+
+		public int docFreq() {
+			return skip.docFreq;
+		}
+
+		/**
+		 * @Description: 取解码好的块，第一次访问时解码。并发时同一个块可能被解码两次，结果相同
+		 */
+		Block block(int b) {
+			Block block = blocks[b];
+			if (block == null) {
+				synchronized (skip) {
+					skip.loadBlock(b);
+					block = new Block(Arrays.copyOf(skip.docs, skip.blockDocCount),
+							Arrays.copyOf(skip.freqs, skip.blockDocCount));
+				}
+				blocks[b] = block;
+			}
+			return block;
+		}
+	}
+}
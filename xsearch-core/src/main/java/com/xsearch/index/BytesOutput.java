@@ -0,0 +1,117 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @Description: 可增长的字节输出缓冲，用于在内存中编码倒排、词典和存储字段
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 10:30:08 AM
+ */
+public class BytesOutput {
+	private byte[] bytes;
+	private int size;
+
+	public BytesOutput() {
+		this(1024);
+	}
+
+	public BytesOutput(int initialCapacity) {
+		this.bytes = new byte[Math.max(16, initialCapacity)];
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length + (bytes.length >> 1)));
+		}
+	}
+
+	public void writeByte(byte b) {
+		ensureCapacity(1);
+		bytes[size++] = b;
+	}
+
+	public void writeBytes(byte[] b, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(b, offset, bytes, size, length);
+		size += length;
+	}
+
+	public void writeBytes(byte[] b) {
+		writeBytes(b, 0, b.length);
+	}
+
+	public void writeVInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[size++] = (byte) value;
+	}
+
+	public void writeVLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[size++] = (byte) value;
+	}
+
+	public void writeInt(int value) {
+		ensureCapacity(4);
+		bytes[size++] = (byte) (value >>> 24);
+		bytes[size++] = (byte) (value >>> 16);
+		bytes[size++] = (byte) (value >>> 8);
+		bytes[size++] = (byte) value;
+	}
+
+	public void writeLong(long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	/**
+	 * @Description: 写入 [变长长度][UTF-8字节]
+	 * @param value
+	 * @return: void
+	 */
+	public void writeString(String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		writeVInt(utf8.length);
+		writeBytes(utf8);
+	}
+
+	/**
+	 * @Description: 把已写入的数据追加到另一个输出
+	 * @param out
+	 * @return: void
+	 */
+	public void writeTo(BytesOutput out) {
+		out.writeBytes(bytes, 0, size);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void reset() {
+		size = 0;
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, size);
+	}
+
+	/**
+	 * @Description: 包装已写入的数据，不拷贝，之后继续写入会使返回的buffer失效
+	 * @return: ByteBuffer
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(bytes, 0, size).slice();
+	}
+}
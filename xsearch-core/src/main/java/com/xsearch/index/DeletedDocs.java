@@ -0,0 +1,83 @@
+package com.xsearch.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @Description: 段内被删除文档的位图，发布后不再修改
+ *               <p>
+ *               段文件不可变，删除和更新只在位图中标记，合并时被删除的文档才真正去掉。
+ *               文件格式为：[maxDoc int][删除数 int][位图 long * ((maxDoc + 63) / 64)]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 11, 2017 10:05:12 AM
+ */
+public final class DeletedDocs {
+	private final long[] bits;
+	private final int maxDoc;
+	private final int count;
+
+	DeletedDocs(long[] bits, int maxDoc, int count) {
+		this.bits = bits;
+		this.maxDoc = maxDoc;
+		this.count = count;
+	}
+
+	public boolean isDeleted(int doc) {
+		return (bits[doc >>> 6] & (1L << doc)) != 0;
+	}
+
+	/**
+	 * @Description: 被删除的文档数
+	 * @return: int
+	 */
+	public int count() {
+		return count;
+	}
+
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @Description: 位图的拷贝，用于在此基础上继续标记删除
+	 * @return: long[]
+	 */
+	long[] copyBits() {
+		return bits.clone();
+	}
+
+	static int numWords(int maxDoc) {
+		return (maxDoc + 63) >>> 6;
+	}
+
+	void write(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + bits.length * 8);
+		buffer.putInt(maxDoc).putInt(count);
+		buffer.asLongBuffer().put(bits);
+		buffer.rewind();
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(file, null)) {
+			out.write(buffer);
+			out.commit();
+		}
+	}
+
+	static DeletedDocs read(Path file) throws IOException {
+		ByteBuffer buffer = SegmentFiles.readFile(file);
+		int maxDoc = buffer.getInt();
+		int count = buffer.getInt();
+		if (maxDoc < 0 || buffer.remaining() != numWords(maxDoc) * 8) {
+			throw new IOException("Corrupt deleted docs file: " + file);
+		}
+		long[] bits = new long[numWords(maxDoc)];
+		buffer.asLongBuffer().get(bits);
+		return new DeletedDocs(bits, maxDoc, count);
+	}
+
+	static void delete(Path file) throws IOException {
+		Files.deleteIfExists(file);
+	}
+}
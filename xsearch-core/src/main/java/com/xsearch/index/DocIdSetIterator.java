@@ -0,0 +1,83 @@
+package com.xsearch.index;
+
+/**
+ * @Description: 按文档号递增顺序遍历一组文档
+ *               <p>
+ *               初始时docID()为-1，遍历结束后为NO_MORE_DOCS。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 11:02:41 AM
+ */
+public abstract class DocIdSetIterator {
+	public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	/**
+	 * @Description: 当前文档号
+	 * @return: int
+	 */
+	public abstract int docID();
+
+	/**
+	 * @Description: 前进到下一个文档
+	 * @return: int 下一个文档号，没有时返回NO_MORE_DOCS
+	 */
+	public abstract int nextDoc();
+
+	/**
+	 * @Description: 前进到第一个大于等于target的文档，target必须大于当前文档号
+	 * @param target
+	 * @return: int
+	 */
+	public abstract int advance(int target);
+
+	/**
+	 * @Description: 遍历代价的估计值，一般为文档数，用于决定多个子句的遍历顺序
+	 * @return: long
+	 */
+	public abstract long cost();
+
+	/**
+	 * @Description: 遍历[0, maxDoc)内的全部文档
+	 * @param maxDoc
+	 * @return: DocIdSetIterator
+	 */
+	public static DocIdSetIterator all(final int maxDoc) {
+		return new DocIdSetIterator() {
+			private int doc = -1;
+
+			@Override
+			public int docID() {
+				return doc;
+			}
+
+			@Override
+			public int nextDoc() {
+				return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+			}
+
+			@Override
+			public int advance(int target) {
+				return doc = target < maxDoc ? target : NO_MORE_DOCS;
+			}
+
+			@Override
+			public long cost() {
+				return maxDoc;
+			}
+		};
+	}
+
+	/**
+	 * @Description: 逐个前进直到target，供没有跳表的实现使用
+	 * @param target
+	 * @return: int
+	 */
+	protected final int slowAdvance(int target) {
+		int doc;
+		do {
+			doc = nextDoc();
+		} while (doc < target);
+		return doc;
+	}
+}
@@ -0,0 +1,366 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @Description: 按字段列式保存的文档值，用于排序、分面和聚合
+ *               <p>
+ *               每个文档每个字段只保存一个值，同名字段出现多次时取第一个。按文档号直接定位，查询时不需要读取存储字段，
+ *               段文件映射打开时数据在page cache中，扫描一列只是对ByteBuffer的连续读取，不在堆中生成对象。格式为：
+ *
+ *               <pre>
+ * [字段数 int]
+ * 每个字段：[字段名 string][类型 byte][数据相对于第一列的偏移 int]
+ * 各字段的列数据，按上面的顺序：
+ * NUMERIC：[最小值 long][最大值 long][位数 byte][有值文档数 int]([有值位图 long * ceil(maxDoc/64)])[值-最小值 packed * maxDoc]
+ * SORTED： [不同值个数 int][位数 byte][值的起始偏移 int * (个数+1)][UTF-8值][序号+1 packed * maxDoc]
+ * </pre>
+ *
+ *               NUMERIC只在有文档没有值时写有值位图。SORTED的不同值按UTF-8字节序排列，序号即排序位置，
+ *               同一段内可以直接比较序号，0表示文档没有值。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 10:40:26 AM
+ */
+public class DocValues {
+	static final byte NUMERIC = 0;
+	static final byte SORTED = 1;
+
+	private final Map<String, NumericDocValues> numerics;
+	private final Map<String, SortedDocValues> sorteds;
+
+	public DocValues(ByteBuffer data, int maxDoc) {
+		ByteBuffer buffer = data.duplicate();
+		int count = buffer.getInt();
+		String[] names = new String[count];
+		byte[] types = new byte[count];
+		int[] offsets = new int[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = StoredFields.readString(buffer);
+			types[i] = buffer.get();
+			offsets[i] = buffer.getInt();
+		}
+		int base = buffer.position();
+		Map<String, NumericDocValues> numerics = new HashMap<String, NumericDocValues>();
+		Map<String, SortedDocValues> sorteds = new HashMap<String, SortedDocValues>();
+		for (int i = 0; i < count; i++) {
+			if (types[i] == NUMERIC) {
+				numerics.put(names[i], new NumericDocValues(data, base + offsets[i], maxDoc));
+			} else if (types[i] == SORTED) {
+				sorteds.put(names[i], new SortedDocValues(data, base + offsets[i], maxDoc));
+			} else {
+				throw new IllegalStateException("Unknown doc values type " + types[i] + " for field " + names[i]);
+			}
+		}
+		this.numerics = Collections.unmodifiableMap(numerics);
+		this.sorteds = Collections.unmodifiableMap(sorteds);
+	}
+
+	/**
+	 * @Description: 数值列
+	 * @param field
+	 * @return: NumericDocValues 段中没有该字段时返回null
+	 */
+	public NumericDocValues numeric(String field) {
+		return numerics.get(field);
+	}
+
+	/**
+	 * @Description: 关键词序号列
+	 * @param field
+	 * @return: SortedDocValues 段中没有该字段时返回null
+	 */
+	public SortedDocValues sorted(String field) {
+		return sorteds.get(field);
+	}
+
+	public Map<String, NumericDocValues> numerics() {
+		return numerics;
+	}
+
+	public Map<String, SortedDocValues> sorteds() {
+		return sorteds;
+	}
+
+	/**
+	 * @Description: 一个数值字段，值减去最小值后按位压缩
+	 */
+	public static final class NumericDocValues {
+		private final long minValue;
+		private final long maxValue;
+		private final int docCount;
+		private final ByteBuffer data;
+		private final int docsWithFieldOffset; // 所有文档都有值时为-1
+		private final PackedInts.Reader values;
+
+		NumericDocValues(ByteBuffer data, int offset, int maxDoc) {
+			this.data = data;
+			this.minValue = data.getLong(offset);
+			this.maxValue = data.getLong(offset + 8);
+			int bitsPerValue = data.get(offset + 16);
+			this.docCount = data.getInt(offset + 17);
+			int pointer = offset + 21;
+			if (docCount < maxDoc) {
+				docsWithFieldOffset = pointer;
+				pointer += (int) PackedInts.byteCount(maxDoc, 1);
+			} else {
+				docsWithFieldOffset = -1;
+			}
+			this.values = new PackedInts.Reader(data, pointer, bitsPerValue);
+		}
+
+		/**
+		 * @Description: 文档的值，没有值的文档返回0
+		 * @param doc
+		 * @return: long
+		 */
+		public long get(int doc) {
+			return minValue + values.get(doc);
+		}
+
+		/**
+		 * @Description: 文档是否有值
+		 * @param doc
+		 * @return: boolean
+		 */
+		public boolean exists(int doc) {
+			return docsWithFieldOffset < 0
+					|| (data.getLong(docsWithFieldOffset + (doc >>> 6) * 8) & (1L << doc)) != 0;
+		}
+
+		public long minValue() {
+			return minValue;
+		}
+
+		public long maxValue() {
+			return maxValue;
+		}
+
+		/**
+		 * @Description: 有值的文档数
+		 * @return: int
+		 */
+		public int docCount() {
+			return docCount;
+		}
+
+		public int bitsPerValue() {
+			return values.bitsPerValue();
+		}
+	}
+
+	/**
+	 * @Description: 一个关键词字段，值的字典加每个文档的序号
+	 */
+	public static final class SortedDocValues {
+		private final ByteBuffer data;
+		private final int valueCount;
+		private final int offsetsStart;
+		private final int bytesStart;
+		private final PackedInts.Reader ords;
+
+		SortedDocValues(ByteBuffer data, int offset, int maxDoc) {
+			this.data = data;
+			this.valueCount = data.getInt(offset);
+			int bitsPerValue = data.get(offset + 4);
+			this.offsetsStart = offset + 5;
+			this.bytesStart = offsetsStart + (valueCount + 1) * 4;
+			this.ords = new PackedInts.Reader(data, bytesStart + data.getInt(offsetsStart + valueCount * 4),
+					bitsPerValue);
+		}
+
+		/**
+		 * @Description: 文档的值在本段字典中的序号，段之间的序号不能比较
+		 * @param doc
+		 * @return: int 没有值时返回-1
+		 */
+		public int ord(int doc) {
+			return (int) ords.get(doc) - 1;
+		}
+
+		/**
+		 * @Description: 本段中不同值的个数
+		 * @return: int
+		 */
+		public int valueCount() {
+			return valueCount;
+		}
+
+		/**
+		 * @Description: 序号对应的值的UTF-8字节，共享底层数据，不拷贝
+		 * @param ord
+		 * @return: ByteBuffer
+		 */
+		public ByteBuffer lookupBytes(int ord) {
+			int start = data.getInt(offsetsStart + ord * 4);
+			int end = data.getInt(offsetsStart + (ord + 1) * 4);
+			ByteBuffer bytes = data.duplicate();
+			bytes.limit(bytesStart + end);
+			bytes.position(bytesStart + start);
+			return bytes.slice();
+		}
+
+		public String lookupOrd(int ord) {
+			ByteBuffer bytes = lookupBytes(ord);
+			byte[] utf8 = new byte[bytes.remaining()];
+			bytes.get(utf8);
+			return new String(utf8, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @Description: 二分查找值的序号
+		 * @param value
+		 * @return: int 存在时为序号，否则为 -(插入位置)-1
+		 */
+		public int lookupTerm(String value) {
+			byte[] key = value.getBytes(StandardCharsets.UTF_8);
+			int low = 0;
+			int high = valueCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int c = compare(lookupBytes(mid), key);
+				if (c < 0) {
+					low = mid + 1;
+				} else if (c > 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		private static int compare(ByteBuffer a, byte[] b) {
+			int length = Math.min(a.remaining(), b.length);
+			for (int i = 0; i < length; i++) {
+				int c = (a.get(i) & 0xFF) - (b[i] & 0xFF);
+				if (c != 0) {
+					return c;
+				}
+			}
+			return a.remaining() - b.length;
+		}
+	}
+
+	/**
+	 * @Description: 在内存中编码各字段的列，最后按字段名顺序写出
+	 */
+	public static final class Writer {
+		private final int maxDoc;
+		private final TreeMap<String, BytesOutput> fields = new TreeMap<String, BytesOutput>();
+		private final Map<String, Byte> types = new HashMap<String, Byte>();
+
+		public Writer(int maxDoc) {
+			this.maxDoc = maxDoc;
+		}
+
+		/**
+		 * @Description: 添加一个数值列
+		 * @param field
+		 * @param values
+		 *            按文档号排列，长度不小于maxDoc
+		 * @param docsWithField
+		 *            有值的文档位图，长度不小于ceil(maxDoc/64)
+		 * @return: void
+		 */
+		public void addNumeric(String field, long[] values, long[] docsWithField) {
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			int docCount = 0;
+			for (int doc = 0; doc < maxDoc; doc++) {
+				if ((docsWithField[doc >>> 6] & (1L << doc)) != 0) {
+					min = Math.min(min, values[doc]);
+					max = Math.max(max, values[doc]);
+					docCount++;
+				}
+			}
+			if (docCount == 0) {
+				min = max = 0;
+			}
+
+			long[] deltas = new long[maxDoc];
+			for (int doc = 0; doc < maxDoc; doc++) {
+				// 没有值的文档按最小值编码，不增加位数
+				deltas[doc] = (docsWithField[doc >>> 6] & (1L << doc)) != 0 ? values[doc] - min : 0;
+			}
+			int bitsPerValue = PackedInts.bitsRequired(max - min);
+
+			BytesOutput out = new BytesOutput();
+			out.writeLong(min);
+			out.writeLong(max);
+			out.writeByte((byte) bitsPerValue);
+			out.writeInt(docCount);
+			if (docCount < maxDoc) {
+				for (int i = 0; i < (maxDoc + 63) >>> 6; i++) {
+					out.writeLong(docsWithField[i]);
+				}
+			}
+			PackedInts.write(out, deltas, maxDoc, bitsPerValue);
+			add(field, NUMERIC, out);
+		}
+
+		/**
+		 * @Description: 添加一个关键词列
+		 * @param field
+		 * @param values
+		 *            不重复的值的UTF-8字节，按字节序排列
+		 * @param valueCount
+		 * @param ords
+		 *            按文档号排列的值序号，-1表示没有值，长度不小于maxDoc
+		 * @return: void
+		 */
+		public void addSorted(String field, byte[][] values, int valueCount, int[] ords) {
+			BytesOutput out = new BytesOutput();
+			int bitsPerValue = PackedInts.bitsRequired(valueCount);
+			out.writeInt(valueCount);
+			out.writeByte((byte) bitsPerValue);
+			int offset = 0;
+			out.writeInt(offset);
+			for (int i = 0; i < valueCount; i++) {
+				offset += values[i].length;
+				out.writeInt(offset);
+			}
+			for (int i = 0; i < valueCount; i++) {
+				out.writeBytes(values[i]);
+			}
+			long[] packed = new long[maxDoc];
+			for (int doc = 0; doc < maxDoc; doc++) {
+				packed[doc] = ords[doc] + 1;
+			}
+			PackedInts.write(out, packed, maxDoc, bitsPerValue);
+			add(field, SORTED, out);
+		}
+
+		private void add(String field, byte type, BytesOutput data) {
+			if (fields.put(field, data) != null) {
+				throw new IllegalArgumentException("Duplicate doc values field: " + field);
+			}
+			types.put(field, type);
+		}
+
+		/**
+		 * @Description: 写入列存文件
+		 * @param out
+		 * @return: void
+		 */
+		public void write(BytesOutput out) {
+			out.writeInt(fields.size());
+			int offset = 0;
+			for (Map.Entry<String, BytesOutput> entry : fields.entrySet()) {
+				out.writeString(entry.getKey());
+				out.writeByte(types.get(entry.getKey()));
+				out.writeInt(offset);
+				offset += entry.getValue().size();
+			}
+			for (BytesOutput data : fields.values()) {
+				data.writeTo(out);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.xsearch.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @Description: 文档，由若干字段组成，同名字段可以出现多次
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 11:25:52 AM
+ */
+public class Document {
+	private final List<Field> fields = new ArrayList<Field>();
+
+	public Document add(Field field) {
+		fields.add(field);
+		return this;
+	}
+
+	public Document addText(String name, String value) {
+		return add(new Field(name, value, Field.Type.TEXT));
+	}
+
+	public Document addKeyword(String name, String value) {
+		return add(new Field(name, value, Field.Type.KEYWORD));
+	}
+
+	public Document addStored(String name, String value) {
+		return add(new Field(name, value, Field.Type.STORED));
+	}
+
+	public Document addNumeric(String name, long value) {
+		return add(new Field(name, Long.toString(value), Field.Type.NUMERIC));
+	}
+
+	public Document addSortedKeyword(String name, String value) {
+		return add(new Field(name, value, Field.Type.SORTED_KEYWORD));
+	}
+
+	public List<Field> getFields() {
+		return Collections.unmodifiableList(fields);
+	}
+
+	/**
+	 * @Description: 第一个名为name的字段的值
+	 * @param name
+	 * @return: String 没有该字段时返回null
+	 */
+	public String get(String name) {
+		for (Field field : fields) {
+			if (field.name().equals(name)) {
+				return field.value();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "Document" + fields;
+	}
+}
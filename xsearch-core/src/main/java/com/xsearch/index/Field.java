@@ -0,0 +1,63 @@
+package com.xsearch.index;
+
+/**
+ * @Description: 文档字段
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 11:20:36 AM
+ */
+public class Field {
+
+	/**
+	 * @Description: 字段类型，决定字段如何被索引，所有类型都会被存储
+	 */
+	public enum Type {
+		TEXT, // 分词后索引，保存位置
+		KEYWORD, // 整个值作为一个词索引，不分词，适合id、分类等过滤字段
+		STORED, // 只存储不索引
+		NUMERIC, // 值为long，不索引，写入列存，用于排序和区间分面
+		SORTED_KEYWORD // 与KEYWORD相同地索引，同时按值的字典序编号写入列存，用于排序和分面
+	}
+
+	private final String name;
+	private final String value;
+	private final Type type;
+
+	public Field(String name, String value, Type type) {
+		if (name == null || name.isEmpty() || name.indexOf(Term.FIELD_SEPARATOR) >= 0) {
+			throw new IllegalArgumentException("Invalid field name: " + name);
+		}
+		if (type == Type.NUMERIC) {
+			Long.parseLong(value); // 非法的数值抛出NumberFormatException
+		}
+		this.name = name;
+		this.value = value;
+		this.type = type;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public String value() {
+		return value;
+	}
+
+	public Type type() {
+		return type;
+	}
+
+	/**
+	 * @Description: 是否写入列存
+	 * @return: boolean
+	 */
+	public boolean hasDocValues() {
+		return type == Type.NUMERIC || type == Type.SORTED_KEYWORD;
+	}
+
+	@Override
+	public String toString() {
+		return name + "<" + type + ">:" + value;
+	}
+}
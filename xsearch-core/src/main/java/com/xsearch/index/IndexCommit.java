@@ -0,0 +1,121 @@
+package com.xsearch.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * @Description: 提交点，记录索引当前由哪些段组成以及各段删除位图的代数
+ *               <p>
+ *               每次提交写一个新的 segments_代数 文件，打开索引时读取代数最大的一个。
+ *               文件内容为：[代数 long][下一个段编号 long][日志代数 long][段数 int]，每个段为 [段名 string][删除位图代数 vlong]，
+ *               日志代数之前的预写日志都已包含在这些段中，打开时只重放不小于它的日志，
+ *               最后是前面内容的CRC32，校验失败的提交点视为损坏。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 12, 2017 10:15:40 AM
+ */
+final class IndexCommit {
+	static final String PREFIX = "segments_";
+
+	final long generation;
+	final long nextSegment;
+	final long walGeneration;
+	final String[] names;
+	final long[] delGens;
+
+	IndexCommit(long generation, long nextSegment, long walGeneration, String[] names, long[] delGens) {
+		this.generation = generation;
+		this.nextSegment = nextSegment;
+		this.walGeneration = walGeneration;
+		this.names = names;
+		this.delGens = delGens;
+	}
+
+	static Path file(Path dir, long generation) {
+		return dir.resolve(PREFIX + generation);
+	}
+
+	/**
+	 * @Description: 文件名对应的提交代数
+	 * @param fileName
+	 * @return: long 不是提交点文件时返回-1
+	 */
+	static long generation(String fileName) {
+		if (!fileName.startsWith(PREFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(fileName.substring(PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	void write(Path dir) throws IOException {
+		BytesOutput out = new BytesOutput();
+		out.writeLong(generation);
+		out.writeLong(nextSegment);
+		out.writeLong(walGeneration);
+		out.writeInt(names.length);
+		for (int i = 0; i < names.length; i++) {
+			out.writeString(names[i]);
+			out.writeVLong(delGens[i]);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(out.toByteArray());
+		out.writeLong(crc.getValue());
+
+		try (SegmentFiles.Output file = SegmentFiles.Output.create(file(dir, generation), null)) {
+			file.write(out);
+			file.commit();
+		}
+	}
+
+	/**
+	 * @Description: 读取代数最大的提交点
+	 * @param dir
+	 * @return: IndexCommit 没有提交点时返回null
+	 * @throws IOException
+	 */
+	static IndexCommit readLatest(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return null;
+		}
+		long latest = -1;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+			for (Path file : files) {
+				latest = Math.max(latest, generation(file.getFileName().toString()));
+			}
+		}
+		return latest < 0 ? null : read(file(dir, latest));
+	}
+
+	static IndexCommit read(Path file) throws IOException {
+		ByteBuffer buffer = SegmentFiles.readFile(file);
+		if (buffer.remaining() < 36) {
+			throw new IOException("Truncated commit file: " + file);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), buffer.arrayOffset(), buffer.remaining() - 8);
+		if (crc.getValue() != buffer.getLong(buffer.limit() - 8)) {
+			throw new IOException("Checksum mismatch in commit file: " + file);
+		}
+
+		long generation = buffer.getLong();
+		long nextSegment = buffer.getLong();
+		long walGeneration = buffer.getLong();
+		int count = buffer.getInt();
+		String[] names = new String[count];
+		long[] delGens = new long[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = StoredFields.readString(buffer);
+			delGens[i] = VByte.readVLong(buffer);
+		}
+		return new IndexCommit(generation, nextSegment, walGeneration, names, delGens);
+	}
+}
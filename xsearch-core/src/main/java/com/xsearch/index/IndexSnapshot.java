@@ -0,0 +1,96 @@
+package com.xsearch.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @Description: 索引在某一时刻的只读视图：一组段以及各段的删除位图
+ *               <p>
+ *               IndexWriter每次刷写或合并后发布一个新的快照，查询拿到快照后不受之后写入的影响，读取快照不需要加锁。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 11, 2017 10:40:35 AM
+ */
+public final class IndexSnapshot {
+	private final long generation;
+	private final Segment[] segments;
+	private final DeletedDocs[] deletedDocs;
+	private final int maxDoc;
+	private final int numDocs;
+
+	/**
+	 * @param generation
+	 *            快照的代数，每次发布递增
+	 * @param segments
+	 * @param deletedDocs
+	 *            与segments一一对应，没有删除的段为null
+	 */
+	public IndexSnapshot(long generation, Segment[] segments, DeletedDocs[] deletedDocs) {
+		if (segments.length != deletedDocs.length) {
+			throw new IllegalArgumentException("segments and deletedDocs differ in length");
+		}
+		this.generation = generation;
+		this.segments = segments;
+		this.deletedDocs = deletedDocs;
+		int maxDoc = 0;
+		int numDocs = 0;
+		for (int i = 0; i < segments.length; i++) {
+			maxDoc += segments[i].maxDoc();
+			numDocs += segments[i].maxDoc() - (deletedDocs[i] == null ? 0 : deletedDocs[i].count());
+		}
+		this.maxDoc = maxDoc;
+		this.numDocs = numDocs;
+	}
+
+	/**
+	 * @Description: 没有删除的一组段
+	 * @param segments
+	 * @return: IndexSnapshot
+	 */
+	public static IndexSnapshot of(List<Segment> segments) {
+		return new IndexSnapshot(0, segments.toArray(new Segment[segments.size()]), new DeletedDocs[segments.size()]);
+	}
+
+	public long generation() {
+		return generation;
+	}
+
+	public int size() {
+		return segments.length;
+	}
+
+	public Segment segment(int i) {
+		return segments[i];
+	}
+
+	/**
+	 * @Description: 第i个段的删除位图
+	 * @param i
+	 * @return: DeletedDocs 没有删除时为null
+	 */
+	public DeletedDocs deletedDocs(int i) {
+		return deletedDocs[i];
+	}
+
+	public List<Segment> segments() {
+		return Arrays.asList(segments);
+	}
+
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @Description: 未删除的文档数
+	 * @return: int
+	 */
+	public int numDocs() {
+		return numDocs;
+	}
+
+	@Override
+	public String toString() {
+		return "IndexSnapshot[generation=" + generation + ", segments=" + segments.length + ", numDocs=" + numDocs + "]";
+	}
+}
@@ -0,0 +1,743 @@
+package com.xsearch.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @Description: 索引写入：文档先进入内存写缓冲，达到大小或时间阈值后刷写成不可变的段，后台线程按大小分层合并小段
+ *               <p>
+ *               写入、删除和刷写在writer的锁内串行执行；每次刷写或合并完成后写一个新的提交点，
+ *               并发布新的IndexSnapshot，查询通过getSnapshot读取volatile引用，不加锁，也不会被刷写和合并阻塞。
+ *               删除对已有段只标记删除位图，对写缓冲中的文档记录删除时的文档数，刷写时只删除在此之前加入的文档，
+ *               因此updateDocument先删除旧文档再加入新文档，两者在同一个快照中生效。
+ *               合并在锁外进行，合并期间源段上新增的删除在提交合并时转移到新段。
+ *               文档的分析在锁外进行，锁内只把分析结果加入写缓冲，多个线程同时写入时分析并行；
+ *               addDocuments在配置的ForkJoinPool上并行分析一批文档。
+ *               <p>
+ *               开启预写日志时，每次修改在锁内追加日志记录，在锁外等待组提交落盘后返回，并发写入共享fsync。
+ *               刷写前切换日志文件，提交点记录已包含的日志代数，提交后删除旧日志；打开时重放提交点之后的日志并立即刷写。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 12, 2017 2:05:51 PM
+ */
+public class IndexWriter implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(IndexWriter.class);
+
+	// 日志记录类型
+	private static final byte OP_ADD = 1;
+	private static final byte OP_UPDATE = 2;
+	private static final byte OP_DELETE = 3;
+
+	private final Path dir;
+	private final IndexWriterConfig config;
+	private final TieredMergePolicy mergePolicy;
+	private final RateLimiter mergeRateLimiter;
+
+	// 以下状态由writer的锁保护
+	private final List<SegmentEntry> entries = new ArrayList<SegmentEntry>();
+	private SegmentBuilder buffer;
+	private final Map<Term, Integer> bufferDeletes = new HashMap<Term, Integer>();
+	private boolean changed; // 有未发布的删除或新段
+	private long lastFlushTime = System.currentTimeMillis();
+	private long generation;
+	private long nextSegment;
+	private long walGeneration; // 已包含在提交点中的日志代数
+	private boolean replaying; // 启动时重放日志中，刷新只写段
+	private boolean closed;
+
+	private final WriteAheadLog wal;
+
+	private volatile IndexSnapshot snapshot;
+	private final Flusher flusher;
+	private final Merger merger;
+
+	/**
+	 * @Description: 已发布段在writer中的状态
+	 */
+	private static class SegmentEntry {
+		final Segment segment;
+		long[] deletes; // writer私有的删除位图，发布时拷贝
+		int deleteCount;
+		long delGen; // 已写入文件的删除位图代数，0表示没有
+		DeletedDocs published;
+		boolean dirty;
+		boolean merging;
+
+		SegmentEntry(Segment segment) {
+			this.segment = segment;
+		}
+
+		boolean delete(int doc) {
+			if (deletes == null) {
+				deletes = new long[DeletedDocs.numWords(segment.maxDoc())];
+			}
+			long mask = 1L << doc;
+			if ((deletes[doc >>> 6] & mask) != 0) {
+				return false;
+			}
+			deletes[doc >>> 6] |= mask;
+			deleteCount++;
+			dirty = true;
+			return true;
+		}
+
+		/**
+		 * @Description: 删除文档号小于upTo的包含term的文档
+		 * @return: boolean 是否有新的删除
+		 */
+		boolean delete(Term term, int upTo) {
+			BlockPostingsEnum postings = segment.postings(term);
+			if (postings == null) {
+				return false;
+			}
+			boolean deleted = false;
+			int doc;
+			while ((doc = postings.nextDoc()) < upTo) {
+				deleted |= delete(doc);
+			}
+			return deleted;
+		}
+
+		boolean isDeleted(int doc) {
+			return deletes != null && (deletes[doc >>> 6] & (1L << doc)) != 0;
+		}
+
+		long liveSize() {
+			int maxDoc = segment.maxDoc();
+			return maxDoc == 0 ? 0 : segment.sizeInBytes() * (maxDoc - deleteCount) / maxDoc;
+		}
+	}
+
+	public IndexWriter(Path dir) throws IOException {
+		this(dir, new IndexWriterConfig());
+	}
+
+	public IndexWriter(Path dir, IndexWriterConfig config) throws IOException {
+		this.dir = dir;
+		this.config = config;
+		this.mergePolicy = new TieredMergePolicy(config.getSegmentsPerTier(), config.getFloorSegmentSize(),
+				config.getMaxMergedSegmentSize());
+		this.mergeRateLimiter = config.getMergeBytesPerSecond() > 0 ? new RateLimiter(config.getMergeBytesPerSecond())
+				: null;
+		this.buffer = new SegmentBuilder(config.getAnalyzer());
+
+		Files.createDirectories(dir);
+		IndexCommit commit = IndexCommit.readLatest(dir);
+		if (commit != null) {
+			generation = commit.generation;
+			nextSegment = commit.nextSegment;
+			walGeneration = commit.walGeneration;
+			for (int i = 0; i < commit.names.length; i++) {
+				SegmentEntry entry = new SegmentEntry(SegmentFiles.open(dir, commit.names[i]));
+				entry.delGen = commit.delGens[i];
+				if (entry.delGen > 0) {
+					entry.published = DeletedDocs.read(SegmentFiles.deletesFile(dir, commit.names[i], entry.delGen));
+					entry.deletes = entry.published.copyBits();
+					entry.deleteCount = entry.published.count();
+				}
+				entries.add(entry);
+			}
+			logger.info("Opened index " + dir + " at generation " + generation + " with " + entries.size() + " segments");
+		}
+		deleteUnreferencedFiles();
+		snapshot = newSnapshot();
+
+		if (config.isWalEnabled()) {
+			List<Long> logs = WriteAheadLog.list(dir);
+			long next = Math.max(walGeneration, logs.isEmpty() ? 0 : logs.get(logs.size() - 1) + 1);
+			wal = new WriteAheadLog(dir, next, config.getWalSyncWindow());
+			replay();
+		} else {
+			wal = null;
+		}
+
+		flusher = new Flusher();
+		merger = new Merger();
+		flusher.start();
+		merger.start();
+	}
+
+	/**
+	 * @Description: 加入文档，写缓冲达到ramBufferSize时在当前线程刷写；开启预写日志时返回前记录已落盘
+	 * @param document
+	 * @return: void
+	 * @throws IOException
+	 */
+	public void addDocument(Document document) throws IOException {
+		AnalyzedDocument analyzed = AnalyzedDocument.analyze(document, config.getAnalyzer());
+		long seq;
+		synchronized (this) {
+			ensureOpen();
+			seq = log(OP_ADD, null, document);
+			applyAdd(analyzed);
+		}
+		sync(seq);
+	}
+
+	/**
+	 * @Description: 批量加入文档，先在分析线程池中并行分析，再在一次加锁中依次加入，最后等待一次落盘
+	 * @param documents
+	 * @return: void
+	 * @throws IOException
+	 */
+	public void addDocuments(List<Document> documents) throws IOException {
+		AnalyzedDocument[] analyzed = AnalyzedDocument.analyzeAll(documents, config.getAnalyzer(),
+				config.getAnalysisPool());
+		long seq = 0;
+		synchronized (this) {
+			ensureOpen();
+			for (AnalyzedDocument document : analyzed) {
+				seq = log(OP_ADD, null, document.document());
+				applyAdd(document);
+			}
+		}
+		sync(seq);
+	}
+
+	/**
+	 * @Description: 用document替换所有包含id的文档
+	 * @param id
+	 *            一般是KEYWORD字段的词
+	 * @param document
+	 * @return: void
+	 * @throws IOException
+	 */
+	public void updateDocument(Term id, Document document) throws IOException {
+		AnalyzedDocument analyzed = AnalyzedDocument.analyze(document, config.getAnalyzer());
+		long seq;
+		synchronized (this) {
+			ensureOpen();
+			seq = log(OP_UPDATE, id, document);
+			applyDelete(id);
+			applyAdd(analyzed);
+		}
+		sync(seq);
+	}
+
+	/**
+	 * @Description: 删除所有包含id的文档，下次刷写后对查询可见
+	 * @param id
+	 * @return: void
+	 * @throws IOException
+	 */
+	public void deleteDocuments(Term id) throws IOException {
+		long seq;
+		synchronized (this) {
+			ensureOpen();
+			seq = log(OP_DELETE, id, null);
+			applyDelete(id);
+		}
+		sync(seq);
+	}
+
+	private void applyAdd(AnalyzedDocument document) throws IOException {
+		buffer.addDocument(document);
+		if (buffer.ramBytesUsed() >= config.getRamBufferSize()) {
+			if (replaying) {
+				// 重放中只写段，不切换和删除日志，也不写提交点：日志还没有读完，重放结束后一起提交
+				writeBuffer();
+			} else {
+				doFlush();
+			}
+		}
+	}
+
+	private void applyDelete(Term id) {
+		for (SegmentEntry entry : entries) {
+			changed |= entry.delete(id, entry.segment.maxDoc());
+		}
+		if (buffer.maxDoc() > 0) {
+			bufferDeletes.put(id, buffer.maxDoc());
+		}
+	}
+
+	/**
+	 * @Description: 追加一条日志记录，格式为 [类型 byte]，更新和删除后跟 [字段名 string][词 string]，加入和更新后跟文档
+	 * @return: long 记录序号，没有开启日志时为0
+	 */
+	private long log(byte op, Term id, Document document) throws IOException {
+		if (wal == null) {
+			return 0;
+		}
+		BytesOutput record = new BytesOutput();
+		record.writeByte(op);
+		if (id != null) {
+			record.writeString(id.field());
+			record.writeString(id.text());
+		}
+		if (document != null) {
+			StoredFields.writeDocument(record, document);
+		}
+		return wal.append(record);
+	}
+
+	private void sync(long seq) throws IOException {
+		if (wal != null) {
+			wal.sync(seq);
+		}
+	}
+
+	/**
+	 * @Description: 重放提交点之后的日志，然后刷写，使重放的内容进入新的提交点
+	 * @return: void
+	 * @throws IOException
+	 */
+	private synchronized void replay() throws IOException {
+		replaying = true;
+		long records;
+		try {
+			records = replayLogs();
+		} finally {
+			replaying = false;
+		}
+		if (records > 0) {
+			logger.info("Replayed " + records + " write-ahead log records in " + dir);
+			changed = true;
+		}
+		doFlush();
+	}
+
+	private long replayLogs() throws IOException {
+		return WriteAheadLog.replay(dir, walGeneration, new WriteAheadLog.RecordHandler() {
+			@Override
+			public void record(ByteBuffer payload) throws IOException {
+				byte op = payload.get();
+				switch (op) {
+				case OP_ADD:
+					applyAdd(AnalyzedDocument.analyze(StoredFields.readDocument(payload), config.getAnalyzer()));
+					break;
+				case OP_UPDATE:
+					Term id = new Term(StoredFields.readString(payload), StoredFields.readString(payload));
+					applyDelete(id);
+					applyAdd(AnalyzedDocument.analyze(StoredFields.readDocument(payload), config.getAnalyzer()));
+					break;
+				case OP_DELETE:
+					applyDelete(new Term(StoredFields.readString(payload), StoredFields.readString(payload)));
+					break;
+				default:
+					throw new IOException("Unknown write-ahead log record type " + op);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @Description: 把写缓冲刷写成新段，写入提交点并发布新的快照，返回后之前的写入和删除都已持久化并对查询可见
+	 * @return: void
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		ensureOpen();
+		doFlush();
+	}
+
+	private void doFlush() throws IOException {
+		writeBuffer();
+		lastFlushTime = System.currentTimeMillis();
+		if (changed) {
+			if (wal != null) {
+				// 日志切换在段写入之后，锁内不会有新记录，旧日志中的修改都已包含在本次提交中
+				walGeneration = wal.roll();
+			}
+			publish();
+			if (wal != null) {
+				wal.deleteBefore(walGeneration);
+			}
+			notifyAll(); // 唤醒合并线程
+		}
+	}
+
+	/**
+	 * @Description: 把写缓冲写成新段加入段列表，不写提交点，提交前段文件不被引用，崩溃后打开时清理
+	 * @return: void
+	 * @throws IOException
+	 */
+	private void writeBuffer() throws IOException {
+		if (buffer.maxDoc() > 0) {
+			String name = newSegmentName();
+			SegmentEntry entry = new SegmentEntry(SegmentFiles.write(buffer, dir, name));
+			for (Map.Entry<Term, Integer> delete : bufferDeletes.entrySet()) {
+				entry.delete(delete.getKey(), delete.getValue());
+			}
+			entries.add(entry);
+			buffer = new SegmentBuilder(config.getAnalyzer());
+			bufferDeletes.clear();
+			changed = true;
+		}
+	}
+
+	/**
+	 * @Description: 当前快照，不加锁
+	 * @return: IndexSnapshot
+	 */
+	public IndexSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public Path getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * @Description: 刷写写缓冲并停止后台线程，正在进行的合并被中断，已写入的部分在下次打开时清理
+	 * @return: void
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			try {
+				doFlush();
+			} finally {
+				closed = true;
+				notifyAll();
+				if (wal != null) {
+					wal.close();
+				}
+			}
+		}
+		flusher.interrupt();
+		merger.interrupt();
+		try {
+			flusher.join();
+			merger.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("IndexWriter is closed");
+		}
+	}
+
+	private String newSegmentName() {
+		return "_" + Long.toString(nextSegment++, Character.MAX_RADIX);
+	}
+
+	/**
+	 * @Description: 写出有变化的删除位图和新的提交点，然后发布快照并删除不再引用的文件
+	 * @return: void
+	 * @throws IOException
+	 */
+	private void publish() throws IOException {
+		long newGeneration = generation + 1;
+		List<Path> obsolete = new ArrayList<Path>();
+		List<SegmentEntry> dropped = new ArrayList<SegmentEntry>();
+		for (SegmentEntry entry : entries) {
+			if (entry.deleteCount == entry.segment.maxDoc() && !entry.merging) {
+				// 全部删除的段直接去掉
+				dropped.add(entry);
+				continue;
+			}
+			if (entry.dirty) {
+				DeletedDocs deletedDocs = new DeletedDocs(entry.deletes.clone(), entry.segment.maxDoc(), entry.deleteCount);
+				deletedDocs.write(SegmentFiles.deletesFile(dir, entry.segment.name(), newGeneration));
+				if (entry.delGen > 0) {
+					obsolete.add(SegmentFiles.deletesFile(dir, entry.segment.name(), entry.delGen));
+				}
+				entry.published = deletedDocs;
+				entry.delGen = newGeneration;
+				entry.dirty = false;
+			}
+		}
+		for (SegmentEntry entry : dropped) {
+			entries.remove(entry);
+			addSegmentFiles(entry, obsolete);
+		}
+
+		String[] names = new String[entries.size()];
+		long[] delGens = new long[entries.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = entries.get(i).segment.name();
+			delGens[i] = entries.get(i).delGen;
+		}
+		new IndexCommit(newGeneration, nextSegment, walGeneration, names, delGens).write(dir);
+		if (generation > 0) {
+			obsolete.add(IndexCommit.file(dir, generation));
+		}
+		generation = newGeneration;
+		changed = false;
+		snapshot = newSnapshot();
+
+		// 已打开的映射在文件删除后仍然可读，使用旧快照的查询不受影响
+		for (Path file : obsolete) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.warn("Failed to delete " + file, e);
+			}
+		}
+	}
+
+	private void addSegmentFiles(SegmentEntry entry, List<Path> files) {
+		for (Path file : SegmentFiles.files(dir, entry.segment.name())) {
+			files.add(file);
+		}
+		if (entry.delGen > 0) {
+			files.add(SegmentFiles.deletesFile(dir, entry.segment.name(), entry.delGen));
+		}
+	}
+
+	private IndexSnapshot newSnapshot() {
+		Segment[] segments = new Segment[entries.size()];
+		DeletedDocs[] deletedDocs = new DeletedDocs[entries.size()];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = entries.get(i).segment;
+			deletedDocs[i] = entries.get(i).published;
+		}
+		return new IndexSnapshot(generation, segments, deletedDocs);
+	}
+
+	/**
+	 * @Description: 删除上次异常退出留下的临时文件、未提交的段和旧的删除位图
+	 * @return: void
+	 * @throws IOException
+	 */
+	private void deleteUnreferencedFiles() throws IOException {
+		Set<String> referenced = new HashSet<String>();
+		for (SegmentEntry entry : entries) {
+			for (Path file : SegmentFiles.files(dir, entry.segment.name())) {
+				referenced.add(file.getFileName().toString());
+			}
+			if (entry.delGen > 0) {
+				referenced.add(SegmentFiles.deletesFile(dir, entry.segment.name(), entry.delGen).getFileName().toString());
+			}
+		}
+		if (generation > 0) {
+			referenced.add(IndexCommit.file(dir, generation).getFileName().toString());
+		}
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				if (!referenced.contains(name) && isIndexFile(name)) {
+					logger.info("Deleting unreferenced index file " + file);
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private static boolean isIndexFile(String name) {
+		return name.startsWith("_") || name.startsWith(IndexCommit.PREFIX);
+	}
+
+	/**
+	 * @Description: 定时刷写，使新写入在flushInterval内对查询可见
+	 */
+	private class Flusher extends Thread {
+
+		Flusher() {
+			super("IndexWriter Flusher");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					long wait;
+					synchronized (IndexWriter.this) {
+						if (closed) {
+							break;
+						}
+						wait = lastFlushTime + config.getFlushInterval() - System.currentTimeMillis();
+						if (wait <= 0) {
+							if (buffer.maxDoc() > 0 || changed) {
+								doFlush();
+							}
+							lastFlushTime = System.currentTimeMillis();
+							wait = config.getFlushInterval();
+						}
+					}
+					Thread.sleep(wait);
+				} catch (InterruptedException e) {
+					break;
+				} catch (IOException | RuntimeException e) {
+					logger.error("Error " + getName(), e);
+					try {
+						Thread.sleep(config.getFlushInterval());
+					} catch (InterruptedException ie) {
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @Description: 一次合并的源段
+	 */
+	private static class MergeTask {
+		final SegmentEntry[] sources;
+		final String name;
+
+		MergeTask(SegmentEntry[] sources, String name) {
+			this.sources = sources;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * @Description: 后台合并线程，刷写后被唤醒，按合并策略依次执行合并
+	 */
+	private class Merger extends Thread {
+
+		Merger() {
+			super("IndexWriter Merger");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				MergeTask task = null;
+				Segment[] segments;
+				DeletedDocs[] deletedDocs;
+				synchronized (IndexWriter.this) {
+					try {
+						while (!closed && (task = findMerge()) == null) {
+							IndexWriter.this.wait();
+						}
+					} catch (InterruptedException e) {
+						break;
+					}
+					if (closed) {
+						break;
+					}
+
+					// 以合并开始时writer中的删除为准，之后的删除在提交合并时转移
+					segments = new Segment[task.sources.length];
+					deletedDocs = new DeletedDocs[task.sources.length];
+					for (int i = 0; i < segments.length; i++) {
+						SegmentEntry entry = task.sources[i];
+						entry.merging = true;
+						segments[i] = entry.segment;
+						if (entry.deletes != null) {
+							deletedDocs[i] = new DeletedDocs(entry.deletes.clone(), entry.segment.maxDoc(), entry.deleteCount);
+						}
+					}
+				}
+
+				try {
+					long start = System.currentTimeMillis();
+					SegmentMerger segmentMerger = new SegmentMerger(segments, deletedDocs);
+					Segment merged = segmentMerger.merge(dir, task.name, mergeRateLimiter);
+					commitMerge(task, merged, segmentMerger);
+					logger.info("Merged " + segments.length + " segments into " + merged + " in "
+							+ (System.currentTimeMillis() - start) + "ms");
+				} catch (IOException | RuntimeException e) {
+					if (!closed) {
+						logger.error("Error merging into " + task.name, e);
+					}
+					abortMerge(task);
+					if (closed || Thread.currentThread().isInterrupted()) {
+						break;
+					}
+					// 等下一次刷写后再尝试，避免反复失败
+					synchronized (IndexWriter.this) {
+						try {
+							IndexWriter.this.wait();
+						} catch (InterruptedException ie) {
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private MergeTask findMerge() {
+		List<SegmentEntry> candidates = new ArrayList<SegmentEntry>();
+		for (SegmentEntry entry : entries) {
+			if (!entry.merging) {
+				candidates.add(entry);
+			}
+		}
+		long[] sizes = new long[candidates.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = candidates.get(i).liveSize();
+		}
+		int[] merge = mergePolicy.findMerge(sizes);
+		if (merge == null) {
+			return null;
+		}
+		SegmentEntry[] sources = new SegmentEntry[merge.length];
+		for (int i = 0; i < merge.length; i++) {
+			sources[i] = candidates.get(merge[i]);
+		}
+		return new MergeTask(sources, newSegmentName());
+	}
+
+	private synchronized void commitMerge(MergeTask task, Segment merged, SegmentMerger segmentMerger) throws IOException {
+		if (closed) {
+			throw new IOException("IndexWriter closed during merge");
+		}
+
+		SegmentEntry entry = new SegmentEntry(merged);
+		for (int i = 0; i < task.sources.length; i++) {
+			SegmentEntry source = task.sources[i];
+			int[] docMap = segmentMerger.docMap(i);
+			for (int doc = 0; doc < docMap.length; doc++) {
+				if (docMap[doc] >= 0 && source.isDeleted(doc)) {
+					entry.delete(docMap[doc]);
+				}
+			}
+		}
+
+		// 新段放在第一个源段的位置
+		int index = entries.indexOf(task.sources[0]);
+		List<Path> obsolete = new ArrayList<Path>();
+		for (SegmentEntry source : task.sources) {
+			entries.remove(source);
+			addSegmentFiles(source, obsolete);
+		}
+		if (merged.maxDoc() > 0) {
+			entries.add(index, entry);
+		} else {
+			addSegmentFiles(entry, obsolete);
+		}
+		changed = true;
+		publish();
+
+		for (Path file : obsolete) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				logger.warn("Failed to delete " + file, e);
+			}
+		}
+	}
+
+	private void abortMerge(MergeTask task) {
+		synchronized (this) {
+			for (SegmentEntry source : task.sources) {
+				source.merging = false;
+			}
+		}
+		try {
+			SegmentFiles.delete(dir, task.name);
+		} catch (IOException e) {
+			logger.warn("Failed to delete files of aborted merge " + task.name, e);
+		}
+	}
+}
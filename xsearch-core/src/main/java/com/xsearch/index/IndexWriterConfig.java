@@ -0,0 +1,147 @@
+package com.xsearch.index;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.xsearch.analysis.Analyzer;
+import com.xsearch.analysis.StandardAnalyzer;
+
+/**
+ * @Description: IndexWriter 配置，未设置的项使用缺省值
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 12, 2017 11:02:18 AM
+ */
+public class IndexWriterConfig {
+	public static final long DEFAULT_RAM_BUFFER_SIZE = 16 * 1024 * 1024L; // 写缓冲达到16MB时刷写
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000L; // 最多1秒后新写入对查询可见
+	public static final int DEFAULT_SEGMENTS_PER_TIER = 10;
+	public static final long DEFAULT_FLOOR_SEGMENT_SIZE = 2 * 1024 * 1024L; // 小于2MB的段都在最低一层
+	public static final long DEFAULT_MAX_MERGED_SEGMENT_SIZE = 1024 * 1024 * 1024L; // 段文件是整体映射的，不超过1GB
+	public static final long DEFAULT_MERGE_BYTES_PER_SECOND = 20 * 1024 * 1024L; // 合并写入限速20MB/s，0表示不限速
+	public static final long DEFAULT_WAL_SYNC_WINDOW = 2L; // 组提交窗口2ms
+
+	private long ramBufferSize = DEFAULT_RAM_BUFFER_SIZE;
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private int segmentsPerTier = DEFAULT_SEGMENTS_PER_TIER;
+	private long floorSegmentSize = DEFAULT_FLOOR_SEGMENT_SIZE;
+	private long maxMergedSegmentSize = DEFAULT_MAX_MERGED_SEGMENT_SIZE;
+	private long mergeBytesPerSecond = DEFAULT_MERGE_BYTES_PER_SECOND;
+	private boolean walEnabled = true;
+	private long walSyncWindow = DEFAULT_WAL_SYNC_WINDOW;
+	private Analyzer analyzer = new StandardAnalyzer();
+	private ForkJoinPool analysisPool = ForkJoinPool.commonPool();
+
+	public long getRamBufferSize() {
+		return ramBufferSize;
+	}
+
+	/**
+	 * @Description: 写缓冲占用内存达到该值时在写入线程中同步刷写成新段
+	 * @param ramBufferSize
+	 * @return: void
+	 */
+	public void setRamBufferSize(long ramBufferSize) {
+		this.ramBufferSize = ramBufferSize;
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * @Description: 后台定时刷写的间隔，决定新写入和删除多久之后对查询可见
+	 * @param flushInterval
+	 *            毫秒
+	 * @return: void
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	public int getSegmentsPerTier() {
+		return segmentsPerTier;
+	}
+
+	public void setSegmentsPerTier(int segmentsPerTier) {
+		this.segmentsPerTier = segmentsPerTier;
+	}
+
+	public long getFloorSegmentSize() {
+		return floorSegmentSize;
+	}
+
+	public void setFloorSegmentSize(long floorSegmentSize) {
+		this.floorSegmentSize = floorSegmentSize;
+	}
+
+	public long getMaxMergedSegmentSize() {
+		return maxMergedSegmentSize;
+	}
+
+	public void setMaxMergedSegmentSize(long maxMergedSegmentSize) {
+		this.maxMergedSegmentSize = maxMergedSegmentSize;
+	}
+
+	public long getMergeBytesPerSecond() {
+		return mergeBytesPerSecond;
+	}
+
+	public void setMergeBytesPerSecond(long mergeBytesPerSecond) {
+		this.mergeBytesPerSecond = mergeBytesPerSecond;
+	}
+
+	public boolean isWalEnabled() {
+		return walEnabled;
+	}
+
+	/**
+	 * @Description: 是否记录预写日志，关闭时只有刷写过的数据是持久的
+	 * @param walEnabled
+	 * @return: void
+	 */
+	public void setWalEnabled(boolean walEnabled) {
+		this.walEnabled = walEnabled;
+	}
+
+	public long getWalSyncWindow() {
+		return walSyncWindow;
+	}
+
+	/**
+	 * @Description: 组提交窗口，第一个等待落盘的写入到达后最多再等待这么久，窗口内的写入共享一次fsync；
+	 *               窗口越大fsync越少，单次写入的延迟越高
+	 * @param walSyncWindow
+	 *            毫秒，0表示不等待
+	 * @return: void
+	 */
+	public void setWalSyncWindow(long walSyncWindow) {
+		this.walSyncWindow = walSyncWindow;
+	}
+
+	public Analyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * @Description: 分析TEXT字段的分析器，查询解析需要使用相同的分析器；重放预写日志时也用它重新分析，打开已有索引时不应更换
+	 * @param analyzer
+	 * @return: void
+	 */
+	public void setAnalyzer(Analyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	public ForkJoinPool getAnalysisPool() {
+		return analysisPool;
+	}
+
+	/**
+	 * @Description: addDocuments批量写入时并行分析文档的线程池，缺省为公共池
+	 * @param analysisPool
+	 * @return: void
+	 */
+	public void setAnalysisPool(ForkJoinPool analysisPool) {
+		this.analysisPool = analysisPool;
+	}
+}
@@ -0,0 +1,166 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Description: 各字段的文档长度，用于BM25的长度归一化
+ *               <p>
+ *               每个文档每个字段的长度（词数）压缩为一个字节：小于64的长度精确保存，更大的长度每翻一倍分16档，
+ *               编码保持单调，0表示文档没有该字段。格式为：
+ * 
+ *               <pre>
+ * [字段数 int]
+ * 每个字段：[字段名 string][含该字段的文档数 int][该字段的总词数 long]
+ * 每个字段按上面的顺序：[长度编码 byte * maxDoc]
+ * </pre>
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 17, 2017 10:22:45 AM
+ */
+public class Norms {
+	private static final int EXACT_LIMIT = 64;
+	private static final int[] DECODE_TABLE = new int[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			DECODE_TABLE[i] = decode(i);
+		}
+	}
+
+	private final Map<String, FieldNorms> fields;
+
+	/**
+	 * @Description: 一个字段的长度和统计
+	 */
+	public static final class FieldNorms {
+		private final String field;
+		private final ByteBuffer data;
+		private final int offset;
+		private final int docCount;
+		private final long sumTotalTermFreq;
+
+		FieldNorms(String field, ByteBuffer data, int offset, int docCount, long sumTotalTermFreq) {
+			this.field = field;
+			this.data = data;
+			this.offset = offset;
+			this.docCount = docCount;
+			this.sumTotalTermFreq = sumTotalTermFreq;
+		}
+
+		public String field() {
+			return field;
+		}
+
+		/**
+		 * @Description: 文档的长度编码，0到255
+		 * @param doc
+		 * @return: int
+		 */
+		public int norm(int doc) {
+			return data.get(offset + doc) & 0xFF;
+		}
+
+		public int docCount() {
+			return docCount;
+		}
+
+		public long sumTotalTermFreq() {
+			return sumTotalTermFreq;
+		}
+	}
+
+	public Norms(ByteBuffer data) {
+		ByteBuffer buffer = data.duplicate();
+		int count = buffer.getInt();
+		String[] names = new String[count];
+		int[] docCounts = new int[count];
+		long[] sums = new long[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = StoredFields.readString(buffer);
+			docCounts[i] = buffer.getInt();
+			sums[i] = buffer.getLong();
+		}
+		int maxDoc = count == 0 ? 0 : buffer.remaining() / count;
+		Map<String, FieldNorms> fields = new HashMap<String, FieldNorms>();
+		for (int i = 0; i < count; i++) {
+			fields.put(names[i], new FieldNorms(names[i], data, buffer.position() + i * maxDoc, docCounts[i], sums[i]));
+		}
+		this.fields = Collections.unmodifiableMap(fields);
+	}
+
+	/**
+	 * @Description: 写入长度文件
+	 * @param out
+	 * @param names
+	 * @param docCounts
+	 * @param sumTotalTermFreqs
+	 * @param norms
+	 *            每个字段一个长度为maxDoc的数组
+	 * @param count
+	 *            字段数
+	 * @return: void
+	 */
+	public static void write(BytesOutput out, String[] names, int[] docCounts, long[] sumTotalTermFreqs, byte[][] norms,
+			int count) {
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeString(names[i]);
+			out.writeInt(docCounts[i]);
+			out.writeLong(sumTotalTermFreqs[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeBytes(norms[i]);
+		}
+	}
+
+	/**
+	 * @Description: 字段的长度
+	 * @param field
+	 * @return: FieldNorms 段中没有该字段时返回null
+	 */
+	public FieldNorms get(String field) {
+		return fields.get(field);
+	}
+
+	public Collection<FieldNorms> fields() {
+		return fields.values();
+	}
+
+	/**
+	 * @Description: 把长度编码为一个字节
+	 * @param length
+	 * @return: byte
+	 */
+	public static byte encode(int length) {
+		if (length < EXACT_LIMIT) {
+			return (byte) Math.max(0, length);
+		}
+		// length在 [64 << e, 128 << e) 内，取高5位中的后4位作为档位
+		int e = 31 - Integer.numberOfLeadingZeros(length) - 6;
+		int code = EXACT_LIMIT + e * 16 + ((length >>> (e + 2)) & 15);
+		return (byte) Math.min(255, code);
+	}
+
+	/**
+	 * @Description: 长度编码对应的长度，是该档的下界
+	 * @param code
+	 * @return: int
+	 */
+	public static int decodeLength(int code) {
+		return DECODE_TABLE[code & 0xFF];
+	}
+
+	private static int decode(int code) {
+		if (code < EXACT_LIMIT) {
+			return code;
+		}
+		int e = (code - EXACT_LIMIT) / 16;
+		int m = (code - EXACT_LIMIT) % 16;
+		return (16 + m) << (e + 2);
+	}
+}
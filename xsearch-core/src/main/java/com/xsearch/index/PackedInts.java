@@ -0,0 +1,111 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 定长位压缩的非负整数数组
+ *               <p>
+ *               n个值每个占bitsPerValue位，从低位开始依次填入long，格式为 [long * ceil(n * bitsPerValue / 64)]。
+ *               读取时按位置算出所在的一个或两个long，直接从ByteBuffer取，不解码整块，适合按文档号随机访问的列存。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 10:12:40 AM
+ */
+public final class PackedInts {
+
+	private PackedInts() {
+	}
+
+	/**
+	 * @Description: 保存0到maxValue（按无符号数）需要的位数，0只需要0位
+	 * @param maxValue
+	 * @return: int
+	 */
+	public static int bitsRequired(long maxValue) {
+		return 64 - Long.numberOfLeadingZeros(maxValue);
+	}
+
+	/**
+	 * @Description: 编码后的字节数
+	 * @param count
+	 * @param bitsPerValue
+	 * @return: long
+	 */
+	public static long byteCount(int count, int bitsPerValue) {
+		return ((long) count * bitsPerValue + 63 >>> 6) * 8;
+	}
+
+	/**
+	 * @Description: 编码values的前count个值，每个值的高位超出bitsPerValue的部分被丢弃
+	 * @param out
+	 * @param values
+	 * @param count
+	 * @param bitsPerValue
+	 *            0到64
+	 * @return: void
+	 */
+	public static void write(BytesOutput out, long[] values, int count, int bitsPerValue) {
+		if (bitsPerValue == 0) {
+			return;
+		}
+		long mask = bitsPerValue == 64 ? -1L : (1L << bitsPerValue) - 1;
+		long word = 0;
+		int used = 0; // word中已填入的位数
+		for (int i = 0; i < count; i++) {
+			long value = values[i] & mask;
+			word |= value << used;
+			used += bitsPerValue;
+			if (used >= 64) {
+				out.writeLong(word);
+				used -= 64;
+				// 值跨越两个long时，剩余的高位放到下一个long的低位
+				word = used == 0 ? 0 : value >>> (bitsPerValue - used);
+			}
+		}
+		if (used > 0) {
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * @Description: 从ByteBuffer中随机读取，不拷贝数据，可以被多个线程同时使用
+	 */
+	public static final class Reader {
+		private final ByteBuffer data;
+		private final int offset;
+		private final int bitsPerValue;
+		private final long mask;
+
+		/**
+		 * @param data
+		 * @param offset
+		 *            编码数据在data中的起始位置
+		 * @param bitsPerValue
+		 */
+		public Reader(ByteBuffer data, int offset, int bitsPerValue) {
+			this.data = data;
+			this.offset = offset;
+			this.bitsPerValue = bitsPerValue;
+			this.mask = bitsPerValue == 64 ? -1L : (1L << bitsPerValue) - 1;
+		}
+
+		public int bitsPerValue() {
+			return bitsPerValue;
+		}
+
+		public long get(int index) {
+			if (bitsPerValue == 0) {
+				return 0;
+			}
+			long bit = (long) index * bitsPerValue;
+			int word = offset + (int) (bit >>> 6) * 8;
+			int shift = (int) bit & 63;
+			long value = data.getLong(word) >>> shift;
+			if (shift + bitsPerValue > 64) {
+				value |= data.getLong(word + 8) << (64 - shift);
+			}
+			return value & mask;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.xsearch.index;
+
+/**
+ * @Description: 一个词的倒排遍历，除文档号外还提供词频和位置
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 11:10:26 AM
+ */
+public abstract class PostingsEnum extends DocIdSetIterator {
+
+	/**
+	 * @Description: 当前文档中的词频
+	 * @return: int
+	 */
+	public abstract int freq();
+
+	/**
+	 * @Description: 当前文档中的下一个位置，每个文档最多调用freq()次
+	 * @return: int
+	 */
+	public abstract int nextPosition();
+}
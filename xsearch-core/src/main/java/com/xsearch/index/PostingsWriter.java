@@ -0,0 +1,171 @@
+package com.xsearch.index;
+
+import java.util.Arrays;
+
+/**
+ * @Description: 倒排写入器，把一个词的文档、词频和位置编码为定长块
+ *               <p>
+ *               每个词的倒排格式为：
+ * 
+ *               <pre>
+ * [docFreq vint][totalTermFreq vlong][numBlocks vint]
+ * 跳表，每块一项：[块内最后文档号与上一块最后文档号之差 vint][文档字节数 vint][位置字节数 vint][块内最大词频 vint][块内最小长度编码 vint]
+ * 每块数据：[文档字节][位置字节]
+ * </pre>
+ * 
+ *               每块最多BLOCK_SIZE个文档，文档字节中每个文档为 [(文档号差值 << 1) | (词频==1) vint]，
+ *               词频不为1时后跟 [词频 vint]；位置字节中每个文档依次为词频个位置差值。
+ *               跳表让advance可以直接跳到目标所在的块，只解码这一块；块内最大词频和最小长度给出块内得分的上界，
+ *               查询时不解码就可以跳过不可能进入结果的块。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 3:05:49 PM
+ */
+public class PostingsWriter {
+	public static final int BLOCK_SIZE = 128;
+
+	private final BytesOutput out;
+
+	// 当前词已完成的块
+	private final BytesOutput blocks = new BytesOutput();
+	private int[] blockLastDocs = new int[8];
+	private int[] blockDocBytes = new int[8];
+	private int[] blockPosBytes = new int[8];
+	private int[] blockMaxFreqs = new int[8];
+	private int[] blockMinNorms = new int[8];
+	private int numBlocks;
+
+	// 当前块
+	private final BytesOutput docBytes = new BytesOutput();
+	private final BytesOutput posBytes = new BytesOutput();
+	private int blockDocCount;
+	private int blockMaxFreq;
+	private int blockMinNorm;
+
+	private int docFreq;
+	private long totalTermFreq;
+	private int lastDoc;
+	private int lastPosition;
+
+	public PostingsWriter(BytesOutput out) {
+		this.out = out;
+	}
+
+	public void startTerm() {
+		blocks.reset();
+		docBytes.reset();
+		posBytes.reset();
+		numBlocks = 0;
+		blockDocCount = 0;
+		blockMaxFreq = 0;
+		blockMinNorm = 255;
+		docFreq = 0;
+		totalTermFreq = 0;
+		lastDoc = -1;
+	}
+
+	/**
+	 * @Description: 开始一个文档，之后调用freq次addPosition
+	 * @param doc
+	 *            必须递增
+	 * @param freq
+	 * @param norm
+	 *            文档该字段的长度编码，见Norms
+	 * @return: void
+	 */
+	public void startDoc(int doc, int freq, int norm) {
+		if (doc <= lastDoc) {
+			throw new IllegalArgumentException("Docs out of order: " + doc + " <= " + lastDoc);
+		}
+
+		int delta = doc - lastDoc;
+		if (freq == 1) {
+			docBytes.writeVInt((delta << 1) | 1);
+		} else {
+			docBytes.writeVInt(delta << 1);
+			docBytes.writeVInt(freq);
+		}
+
+		blockMaxFreq = Math.max(blockMaxFreq, freq);
+		blockMinNorm = Math.min(blockMinNorm, norm);
+		lastDoc = doc;
+		lastPosition = 0;
+		docFreq++;
+		totalTermFreq += freq;
+		blockDocCount++;
+	}
+
+	public void addPosition(int position) {
+		posBytes.writeVInt(position - lastPosition);
+		lastPosition = position;
+	}
+
+	/**
+	 * @Description: 文档的位置写完，块满时结束当前块
+	 * @return: void
+	 */
+	public void finishDoc() {
+		if (blockDocCount == BLOCK_SIZE) {
+			finishBlock();
+		}
+	}
+
+	private void finishBlock() {
+		if (numBlocks == blockLastDocs.length) {
+			blockLastDocs = Arrays.copyOf(blockLastDocs, numBlocks * 2);
+			blockDocBytes = Arrays.copyOf(blockDocBytes, numBlocks * 2);
+			blockPosBytes = Arrays.copyOf(blockPosBytes, numBlocks * 2);
+			blockMaxFreqs = Arrays.copyOf(blockMaxFreqs, numBlocks * 2);
+			blockMinNorms = Arrays.copyOf(blockMinNorms, numBlocks * 2);
+		}
+		blockLastDocs[numBlocks] = lastDoc;
+		blockDocBytes[numBlocks] = docBytes.size();
+		blockPosBytes[numBlocks] = posBytes.size();
+		blockMaxFreqs[numBlocks] = blockMaxFreq;
+		blockMinNorms[numBlocks] = blockMinNorm;
+		numBlocks++;
+
+		docBytes.writeTo(blocks);
+		posBytes.writeTo(blocks);
+		docBytes.reset();
+		posBytes.reset();
+		blockDocCount = 0;
+		blockMaxFreq = 0;
+		blockMinNorm = 255;
+	}
+
+	/**
+	 * @Description: 结束当前词，把头部、跳表和块数据写到输出
+	 * @return: long 该词倒排在输出中的起始位置
+	 */
+	public long finishTerm() {
+		if (blockDocCount > 0) {
+			finishBlock();
+		}
+
+		long offset = out.size();
+		out.writeVInt(docFreq);
+		out.writeVLong(totalTermFreq);
+		out.writeVInt(numBlocks);
+		int previous = -1;
+		for (int i = 0; i < numBlocks; i++) {
+			out.writeVInt(blockLastDocs[i] - previous);
+			out.writeVInt(blockDocBytes[i]);
+			out.writeVInt(blockPosBytes[i]);
+			out.writeVInt(blockMaxFreqs[i]);
+			out.writeVInt(blockMinNorms[i]);
+			previous = blockLastDocs[i];
+		}
+		blocks.writeTo(out);
+		return offset;
+	}
+
+	public int getDocFreq() {
+		return docFreq;
+	}
+
+	public long getTotalTermFreq() {
+		return totalTermFreq;
+	}
+}
@@ -0,0 +1,47 @@
+package com.xsearch.index;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description: 限制写入速率，合并时用来避免大段合并占满磁盘带宽影响查询和刷写
+ *               <p>
+ *               每次写入后调用pause，按累计的字节数计算下一次允许写入的时间，提前写入的部分以sleep补偿。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 11, 2017 11:20:48 AM
+ */
+public class RateLimiter {
+	private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	private final double nanosPerByte;
+	private long nextNanos;
+
+	/**
+	 * @param bytesPerSecond
+	 *            必须大于0
+	 */
+	public RateLimiter(long bytesPerSecond) {
+		if (bytesPerSecond <= 0) {
+			throw new IllegalArgumentException("bytesPerSecond must be positive: " + bytesPerSecond);
+		}
+		this.nanosPerByte = TimeUnit.SECONDS.toNanos(1) / (double) bytesPerSecond;
+		this.nextNanos = System.nanoTime();
+	}
+
+	/**
+	 * @Description: 记录写入了bytes字节，超过速率时等待
+	 * @param bytes
+	 * @return: void
+	 * @throws InterruptedException
+	 */
+	public void pause(long bytes) throws InterruptedException {
+		long now = System.nanoTime();
+		// 空闲期间不积累额度，避免之后突发写入
+		nextNanos = Math.max(nextNanos, now) + (long) (bytes * nanosPerByte);
+		long wait = nextNanos - now;
+		if (wait >= MIN_PAUSE_NANOS) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Description: 不可变的索引段，由词典、倒排、存储字段、字段长度和列存五部分数据组成
+ *               <p>
+ *               五部分都是ByteBuffer，可以是SegmentBuilder在内存中构建的堆缓冲，也可以是SegmentFiles映射的文件，读取逻辑相同。
+ *               段内文档号从0开始，多个段组成一个索引时由搜索器加上各段的文档号基数。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 4:01:27 PM
+ */
+public class Segment {
+	private static final AtomicLong ID_GENERATOR = new AtomicLong();
+
+	private final long id = ID_GENERATOR.incrementAndGet();
+	private final String name;
+	private final TermDictionary terms;
+	private final ByteBuffer postings;
+	private final StoredFields storedFields;
+	private final Norms norms;
+	private final DocValues docValues;
+	private final long sizeInBytes;
+
+	public Segment(String name, ByteBuffer terms, ByteBuffer postings, ByteBuffer storedFields, ByteBuffer norms,
+			ByteBuffer docValues) {
+		this.name = name;
+		this.terms = new TermDictionary(terms);
+		this.postings = postings;
+		this.storedFields = new StoredFields(storedFields);
+		this.norms = new Norms(norms);
+		this.docValues = new DocValues(docValues, this.storedFields.maxDoc());
+		this.sizeInBytes = (long) terms.remaining() + postings.remaining() + storedFields.remaining() + norms.remaining()
+				+ docValues.remaining();
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * @Description: 进程内唯一的段编号，同名的段重新打开后编号不同，用作缓存的键，缓存不必持有段对象
+	 * @return: long
+	 */
+	public long id() {
+		return id;
+	}
+
+	public int maxDoc() {
+		return storedFields.maxDoc();
+	}
+
+	/**
+	 * @Description: 五部分数据的总字节数，用于合并时按大小分层
+	 * @return: long
+	 */
+	public long sizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public TermDictionary terms() {
+		return terms;
+	}
+
+	/**
+	 * @Description: 词的文档频率
+	 * @param term
+	 * @return: int 词不存在时返回0
+	 */
+	public int docFreq(Term term) {
+		int ord = terms.lookup(term.bytes());
+		return ord < 0 ? 0 : terms.docFreq(ord);
+	}
+
+	/**
+	 * @Description: 词的倒排
+	 * @param term
+	 * @return: BlockPostingsEnum 词不存在时返回null
+	 */
+	public BlockPostingsEnum postings(Term term) {
+		int ord = terms.lookup(term.bytes());
+		return ord < 0 ? null : postings(ord);
+	}
+
+	/**
+	 * @Description: 序号为ord的词的倒排
+	 * @param ord
+	 * @return: BlockPostingsEnum
+	 */
+	public BlockPostingsEnum postings(int ord) {
+		return new BlockPostingsEnum(postings).reset(terms.postingsOffset(ord));
+	}
+
+	/**
+	 * @Description: 全部倒排数据，配合postingsOffset复用BlockPostingsEnum
+	 * @return: ByteBuffer
+	 */
+	public ByteBuffer postingsData() {
+		return postings;
+	}
+
+	public StoredFields storedFields() {
+		return storedFields;
+	}
+
+	public Norms norms() {
+		return norms;
+	}
+
+	public DocValues docValues() {
+		return docValues;
+	}
+
+	public Document document(int docId) {
+		return storedFields.document(docId);
+	}
+
+	@Override
+	public String toString() {
+		return "Segment[" + name + ", maxDoc=" + maxDoc() + ", terms=" + terms.size() + "]";
+	}
+}
@@ -0,0 +1,455 @@
+package com.xsearch.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xsearch.analysis.Analyzer;
+import com.xsearch.analysis.CharArrayMap;
+import com.xsearch.analysis.StandardAnalyzer;
+
+/**
+ * @Description: 在内存中累积文档，构建一个段
+ *               <p>
+ *               每个词的倒排在累积阶段保存在一个可增长的int数组中，每个文档为 [文档号][词频][位置...]，
+ *               build时按词排序并编码为压缩块。同名字段多次出现时位置连续累加，中间留出间隔避免跨值的短语匹配。
+ *               每个字段的词表是以char[]查找的CharArrayMap，分析出的词直接用分析结果的字符查找，只有新词才复制一份键。
+ *               NUMERIC和SORTED_KEYWORD字段的值另外按文档号累积成列，同一文档同名字段只保留第一个值。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 4:40:05 PM
+ */
+public class SegmentBuilder {
+	private static final int POSITION_GAP = 100; // 同名字段多个值之间的位置间隔
+	private static final int TERM_OVERHEAD = 128; // 每个新词在HashMap、String和TermPostings上的估计开销
+
+	private static final Analyzer DEFAULT_ANALYZER = new StandardAnalyzer();
+
+	private final Analyzer analyzer;
+	private final Map<String, CharArrayMap<TermPostings>> postings = new HashMap<String, CharArrayMap<TermPostings>>();
+	private final Map<String, FieldLengths> fieldLengths = new HashMap<String, FieldLengths>();
+	private final Map<String, NumericColumn> numericColumns = new HashMap<String, NumericColumn>();
+	private final Map<String, SortedColumn> sortedColumns = new HashMap<String, SortedColumn>();
+	private final BytesOutput storedData = new BytesOutput();
+	private long[] storedOffsets = new long[64];
+	private int maxDoc;
+	private long termBytesUsed;
+	private long docValuesBytesUsed;
+	private int termCount;
+
+	public SegmentBuilder() {
+		this(DEFAULT_ANALYZER);
+	}
+
+	/**
+	 * @param analyzer
+	 *            addDocument(Document)分析TEXT字段使用的分析器，查询时需要使用相同的分析器
+	 */
+	public SegmentBuilder(Analyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	public Analyzer getAnalyzer() {
+		return analyzer;
+	}
+
+	/**
+	 * @Description: 一个词累积中的倒排
+	 */
+	private static class TermPostings {
+		private int[] data = new int[8];
+		private int size;
+		private int lastDoc = -1;
+		private int freqIndex;
+		private int docFreq;
+
+		/**
+		 * @return: int 数组增长的字节数
+		 */
+		int add(int doc, int position) {
+			int oldLength = data.length;
+			if (doc != lastDoc) {
+				ensureCapacity(3);
+				data[size++] = doc;
+				freqIndex = size;
+				data[size++] = 0;
+				lastDoc = doc;
+				docFreq++;
+			} else {
+				ensureCapacity(1);
+			}
+			data[freqIndex]++;
+			data[size++] = position;
+			return (data.length - oldLength) * 4;
+		}
+
+		private void ensureCapacity(int extra) {
+			if (size + extra > data.length) {
+				data = Arrays.copyOf(data, Math.max(size + extra, data.length * 2));
+			}
+		}
+	}
+
+	/**
+	 * @Description: 一个字段累积中的文档长度编码和统计
+	 */
+	private static class FieldLengths {
+		private byte[] norms = new byte[64];
+		private int docCount;
+		private long sumTotalTermFreq;
+
+		/**
+		 * @return: int 数组增长的字节数
+		 */
+		int set(int doc, int length) {
+			int oldLength = norms.length;
+			if (doc >= norms.length) {
+				norms = Arrays.copyOf(norms, Math.max(doc + 1, norms.length * 2));
+			}
+			norms[doc] = Norms.encode(length);
+			docCount++;
+			sumTotalTermFreq += length;
+			return norms.length - oldLength;
+		}
+	}
+
+	/**
+	 * @Description: 一个数值字段累积中的列，同一文档只保留第一个值
+	 */
+	private static class NumericColumn {
+		private long[] values = new long[64];
+		private long[] docsWithField = new long[1];
+
+		/**
+		 * @return: int 数组增长的字节数
+		 */
+		int set(int doc, long value) {
+			int oldBytes = values.length * 8 + docsWithField.length * 8;
+			if (doc >= values.length) {
+				values = Arrays.copyOf(values, Math.max(doc + 1, values.length * 2));
+				docsWithField = Arrays.copyOf(docsWithField, (values.length + 63) >>> 6);
+			}
+			if ((docsWithField[doc >>> 6] & (1L << doc)) == 0) {
+				values[doc] = value;
+				docsWithField[doc >>> 6] |= 1L << doc;
+			}
+			return values.length * 8 + docsWithField.length * 8 - oldBytes;
+		}
+	}
+
+	/**
+	 * @Description: 一个关键词字段累积中的列，值按出现顺序编号，build时再按字节序重新编号
+	 */
+	private static class SortedColumn {
+		private final Map<String, Integer> ids = new HashMap<String, Integer>();
+		private final List<String> values = new ArrayList<String>();
+		private int[] docIds = newIds(64, 0);
+
+		private static int[] newIds(int length, int from) {
+			int[] ids = new int[length];
+			Arrays.fill(ids, from, length, -1);
+			return ids;
+		}
+
+		/**
+		 * @return: int 增长的字节数
+		 */
+		int set(int doc, String value) {
+			int grown = 0;
+			if (doc >= docIds.length) {
+				int oldLength = docIds.length;
+				int[] grownIds = newIds(Math.max(doc + 1, oldLength * 2), oldLength);
+				System.arraycopy(docIds, 0, grownIds, 0, oldLength);
+				docIds = grownIds;
+				grown += (docIds.length - oldLength) * 4;
+			}
+			if (docIds[doc] < 0) {
+				Integer id = ids.get(value);
+				if (id == null) {
+					id = values.size();
+					ids.put(value, id);
+					values.add(value);
+					grown += TERM_OVERHEAD + value.length() * 2;
+				}
+				docIds[doc] = id;
+			}
+			return grown;
+		}
+	}
+
+	/**
+	 * @Description: 分析并添加文档
+	 * @param document
+	 * @return: int 文档号
+	 */
+	public int addDocument(Document document) {
+		return addDocument(AnalyzedDocument.analyze(document, analyzer));
+	}
+
+	/**
+	 * @Description: 添加已分析的文档
+	 * @param analyzed
+	 * @return: int 文档号
+	 */
+	public int addDocument(AnalyzedDocument analyzed) {
+		int docId = maxDoc;
+		Document document = analyzed.document();
+		List<Field> fields = document.getFields();
+		char[] chars = analyzed.chars();
+		Map<String, Integer> nextPositions = new HashMap<String, Integer>();
+		Map<String, Integer> lengths = new HashMap<String, Integer>();
+		for (int f = 0; f < fields.size(); f++) {
+			Field field = fields.get(f);
+			Integer start = nextPositions.get(field.name());
+			int position = start == null ? 0 : start + POSITION_GAP;
+			Integer length = lengths.get(field.name());
+			int tokens = length == null ? 0 : length;
+
+			switch (field.type()) {
+			case TEXT:
+				CharArrayMap<TermPostings> terms = terms(field.name());
+				int end = analyzed.fieldEnd(f);
+				position--;
+				for (int t = analyzed.fieldStart(f); t < end; t++) {
+					position += analyzed.positionIncrement(t);
+					addTerm(terms, field.name(), chars, analyzed.start(t), analyzed.length(t), docId, position);
+				}
+				nextPositions.put(field.name(), position + 1);
+				lengths.put(field.name(), tokens + end - analyzed.fieldStart(f));
+				break;
+			case KEYWORD:
+			case SORTED_KEYWORD:
+				char[] value = field.value().toCharArray();
+				addTerm(terms(field.name()), field.name(), value, 0, value.length, docId, position);
+				nextPositions.put(field.name(), position + 1);
+				lengths.put(field.name(), tokens + 1);
+				break;
+			default:
+				break;
+			}
+			if (field.hasDocValues()) {
+				addDocValue(field, docId);
+			}
+		}
+
+		for (Map.Entry<String, Integer> length : lengths.entrySet()) {
+			FieldLengths field = fieldLengths.get(length.getKey());
+			if (field == null) {
+				field = new FieldLengths();
+				fieldLengths.put(length.getKey(), field);
+			}
+			termBytesUsed += field.set(docId, length.getValue());
+		}
+
+		if (maxDoc + 1 >= storedOffsets.length) {
+			storedOffsets = Arrays.copyOf(storedOffsets, storedOffsets.length * 2);
+		}
+		StoredFields.writeDocument(storedData, document);
+		storedOffsets[maxDoc + 1] = storedData.size();
+		return maxDoc++;
+	}
+
+	private void addDocValue(Field field, int docId) {
+		if (field.type() == Field.Type.NUMERIC) {
+			NumericColumn column = numericColumns.get(field.name());
+			if (column == null) {
+				checkDocValuesType(field.name(), sortedColumns);
+				column = new NumericColumn();
+				numericColumns.put(field.name(), column);
+			}
+			docValuesBytesUsed += column.set(docId, Long.parseLong(field.value()));
+		} else {
+			SortedColumn column = sortedColumns.get(field.name());
+			if (column == null) {
+				checkDocValuesType(field.name(), numericColumns);
+				column = new SortedColumn();
+				sortedColumns.put(field.name(), column);
+			}
+			docValuesBytesUsed += column.set(docId, field.value());
+		}
+	}
+
+	private static void checkDocValuesType(String field, Map<String, ?> otherColumns) {
+		if (otherColumns.containsKey(field)) {
+			throw new IllegalArgumentException("Field " + field + " is indexed as both NUMERIC and SORTED_KEYWORD");
+		}
+	}
+
+	private CharArrayMap<TermPostings> terms(String field) {
+		CharArrayMap<TermPostings> terms = postings.get(field);
+		if (terms == null) {
+			terms = new CharArrayMap<TermPostings>();
+			postings.put(field, terms);
+		}
+		return terms;
+	}
+
+	private void addTerm(CharArrayMap<TermPostings> terms, String field, char[] chars, int offset, int length,
+			int docId, int position) {
+		TermPostings termPostings = terms.get(chars, offset, length);
+		if (termPostings == null) {
+			termPostings = new TermPostings();
+			terms.put(chars, offset, length, termPostings);
+			termBytesUsed += TERM_OVERHEAD + (field.length() + 1 + length) * 2;
+			termCount++;
+		}
+		termBytesUsed += termPostings.add(docId, position);
+	}
+
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @Description: 已累积数据占用内存的估计值，用于决定何时刷写
+	 * @return: long
+	 */
+	public long ramBytesUsed() {
+		return termBytesUsed + docValuesBytesUsed + storedData.size() + storedOffsets.length * 8L;
+	}
+
+	/**
+	 * @Description: 构建段，构建后builder不应再使用
+	 * @param name
+	 * @return: Segment
+	 */
+	public Segment build(String name) {
+		BytesOutput terms = new BytesOutput();
+		BytesOutput postingsOut = new BytesOutput();
+		BytesOutput stored = new BytesOutput();
+		BytesOutput norms = new BytesOutput();
+		BytesOutput docValues = new BytesOutput();
+		write(terms, postingsOut, stored, norms, docValues);
+		return new Segment(name, terms.toByteBuffer(), postingsOut.toByteBuffer(), stored.toByteBuffer(),
+				norms.toByteBuffer(), docValues.toByteBuffer());
+	}
+
+	/**
+	 * @Description: 编码词典、倒排、存储字段、字段长度和列存
+	 * @param termsOut
+	 * @param postingsOut
+	 * @param storedOut
+	 * @param normsOut
+	 * @param docValuesOut
+	 * @return: void
+	 */
+	public void write(BytesOutput termsOut, BytesOutput postingsOut, BytesOutput storedOut, BytesOutput normsOut,
+			BytesOutput docValuesOut) {
+		int size = termCount;
+		final byte[][] keys = new byte[size][];
+		TermPostings[] values = new TermPostings[size];
+		FieldLengths[] fields = new FieldLengths[size];
+		int i = 0;
+		for (Map.Entry<String, CharArrayMap<TermPostings>> entry : postings.entrySet()) {
+			String prefix = entry.getKey() + (char) Term.FIELD_SEPARATOR;
+			FieldLengths field = fieldLengths.get(entry.getKey());
+			CharArrayMap<TermPostings> terms = entry.getValue();
+			for (int slot = 0; slot < terms.capacity(); slot++) {
+				char[] term = terms.keyAt(slot);
+				if (term != null) {
+					keys[i] = (prefix + new String(term)).getBytes(StandardCharsets.UTF_8);
+					values[i] = terms.valueAt(slot);
+					fields[i] = field;
+					i++;
+				}
+			}
+		}
+
+		// 按key的字节序排序
+		Integer[] order = new Integer[size];
+		for (i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Term.compareBytes(keys[a], keys[b]);
+			}
+		});
+
+		byte[][] sortedKeys = new byte[size][];
+		long[] offsets = new long[size];
+		int[] docFreqs = new int[size];
+		PostingsWriter writer = new PostingsWriter(postingsOut);
+		for (i = 0; i < size; i++) {
+			TermPostings termPostings = values[order[i]];
+			byte[] norms = fields[order[i]].norms;
+			sortedKeys[i] = keys[order[i]];
+			writer.startTerm();
+			int[] data = termPostings.data;
+			int pointer = 0;
+			while (pointer < termPostings.size) {
+				int doc = data[pointer++];
+				int freq = data[pointer++];
+				writer.startDoc(doc, freq, norms[doc] & 0xFF);
+				for (int j = 0; j < freq; j++) {
+					writer.addPosition(data[pointer++]);
+				}
+				writer.finishDoc();
+			}
+			offsets[i] = writer.finishTerm();
+			docFreqs[i] = termPostings.docFreq;
+		}
+
+		TermDictionary.write(termsOut, sortedKeys, offsets, docFreqs, size);
+		StoredFields.write(storedOut, storedOffsets, maxDoc, storedData);
+
+		String[] names = fieldLengths.keySet().toArray(new String[fieldLengths.size()]);
+		Arrays.sort(names);
+		int[] docCounts = new int[names.length];
+		long[] sums = new long[names.length];
+		byte[][] norms = new byte[names.length][];
+		for (i = 0; i < names.length; i++) {
+			FieldLengths field = fieldLengths.get(names[i]);
+			docCounts[i] = field.docCount;
+			sums[i] = field.sumTotalTermFreq;
+			norms[i] = Arrays.copyOf(field.norms, maxDoc);
+		}
+		Norms.write(normsOut, names, docCounts, sums, norms, names.length);
+
+		DocValues.Writer docValues = new DocValues.Writer(maxDoc);
+		for (Map.Entry<String, NumericColumn> entry : numericColumns.entrySet()) {
+			NumericColumn column = entry.getValue();
+			docValues.addNumeric(entry.getKey(), Arrays.copyOf(column.values, maxDoc),
+					Arrays.copyOf(column.docsWithField, (maxDoc + 63) >>> 6));
+		}
+		for (Map.Entry<String, SortedColumn> entry : sortedColumns.entrySet()) {
+			writeSorted(docValues, entry.getKey(), entry.getValue());
+		}
+		docValues.write(docValuesOut);
+	}
+
+	private void writeSorted(DocValues.Writer docValues, String field, SortedColumn column) {
+		int count = column.values.size();
+		final byte[][] values = new byte[count][];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = column.values.get(i).getBytes(StandardCharsets.UTF_8);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Term.compareBytes(values[a], values[b]);
+			}
+		});
+
+		byte[][] sortedValues = new byte[count][];
+		int[] ordOfId = new int[count];
+		for (int ord = 0; ord < count; ord++) {
+			sortedValues[ord] = values[order[ord]];
+			ordOfId[order[ord]] = ord;
+		}
+		int[] ords = new int[maxDoc];
+		for (int doc = 0; doc < maxDoc; doc++) {
+			int id = doc < column.docIds.length ? column.docIds[doc] : -1;
+			ords[doc] = id < 0 ? -1 : ordOfId[id];
+		}
+		docValues.addSorted(field, sortedValues, count, ords);
+	}
+}
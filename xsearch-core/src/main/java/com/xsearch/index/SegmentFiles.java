@@ -0,0 +1,286 @@
+package com.xsearch.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @Description: 段文件的写入和映射
+ *               <p>
+ *               一个段由五个文件组成：词典(.tim)、倒排(.pst)、存储字段(.fdt)、字段长度(.nrm)和列存(.dv)，文件名为段名加扩展名。
+ *               每个文件以 [magic int][version int] 开头，后面是与内存中相同格式的数据，
+ *               打开时用FileChannel.map只读映射并跳过文件头，查询直接从page cache读取，不拷贝也不占用堆。
+ *               段写完后不再修改，先写到临时文件并fsync，再原子重命名并fsync所在目录，打开的段总是完整的。
+ *               单个文件使用一个映射，大小不能超过2GB，更大的索引应分成多个段。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 10, 2017 10:32:17 AM
+ */
+public final class SegmentFiles {
+	private static final Logger logger = LoggerFactory.getLogger(SegmentFiles.class);
+
+	public static final String TERMS_EXTENSION = ".tim";
+	public static final String POSTINGS_EXTENSION = ".pst";
+	public static final String STORED_EXTENSION = ".fdt";
+	public static final String NORMS_EXTENSION = ".nrm";
+	public static final String DOC_VALUES_EXTENSION = ".dv";
+	public static final String DELETES_EXTENSION = ".del";
+
+	static final int MAGIC = 0x58534547; // "XSEG"
+	static final int VERSION = 3;
+	static final int HEADER_SIZE = 8;
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private SegmentFiles() {
+	}
+
+	/**
+	 * @Description: 段的全部文件
+	 * @param dir
+	 * @param name
+	 * @return: Path[]
+	 */
+	public static Path[] files(Path dir, String name) {
+		return new Path[] { dir.resolve(name + TERMS_EXTENSION), dir.resolve(name + POSTINGS_EXTENSION),
+				dir.resolve(name + STORED_EXTENSION), dir.resolve(name + NORMS_EXTENSION),
+				dir.resolve(name + DOC_VALUES_EXTENSION) };
+	}
+
+	/**
+	 * @Description: 段的第delGen代删除位图文件
+	 * @param dir
+	 * @param name
+	 * @param delGen
+	 * @return: Path
+	 */
+	public static Path deletesFile(Path dir, String name, long delGen) {
+		return dir.resolve(name + "_" + delGen + DELETES_EXTENSION);
+	}
+
+	public static boolean exists(Path dir, String name) {
+		for (Path file : files(dir, name)) {
+			if (!Files.exists(file)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @Description: 把builder中的文档写成段文件并打开
+	 * @param builder
+	 * @param dir
+	 * @param name
+	 * @return: Segment
+	 * @throws IOException
+	 */
+	public static Segment write(SegmentBuilder builder, Path dir, String name) throws IOException {
+		BytesOutput terms = new BytesOutput();
+		BytesOutput postings = new BytesOutput();
+		BytesOutput stored = new BytesOutput();
+		BytesOutput norms = new BytesOutput();
+		BytesOutput docValues = new BytesOutput();
+		builder.write(terms, postings, stored, norms, docValues);
+
+		Files.createDirectories(dir);
+		Path[] files = files(dir, name);
+		writeFile(files[0], terms);
+		writeFile(files[1], postings);
+		writeFile(files[2], stored);
+		writeFile(files[3], norms);
+		writeFile(files[4], docValues);
+		return open(dir, name);
+	}
+
+	/**
+	 * @Description: 映射并打开段
+	 * @param dir
+	 * @param name
+	 * @return: Segment
+	 * @throws IOException
+	 *             文件不存在或格式不对
+	 */
+	public static Segment open(Path dir, String name) throws IOException {
+		Path[] files = files(dir, name);
+		return new Segment(name, map(files[0]), map(files[1]), map(files[2]), map(files[3]), map(files[4]));
+	}
+
+	/**
+	 * @Description: 删除段的全部文件，已打开的映射在被回收前仍然可读
+	 * @param dir
+	 * @param name
+	 * @return: void
+	 * @throws IOException
+	 */
+	public static void delete(Path dir, String name) throws IOException {
+		for (Path file : files(dir, name)) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static void writeFile(Path file, BytesOutput data) throws IOException {
+		try (Output out = Output.create(file, null)) {
+			out.write(data.toByteBuffer());
+			out.commit();
+		}
+	}
+
+	/**
+	 * @Description: 读取一个带文件头的小文件到堆中
+	 * @param file
+	 * @return: ByteBuffer 文件头之后的内容
+	 * @throws IOException
+	 */
+	static ByteBuffer readFile(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		checkHeader(buffer, file);
+		buffer.position(HEADER_SIZE);
+		return buffer.slice();
+	}
+
+	private static void checkHeader(ByteBuffer buffer, Path file) throws IOException {
+		if (buffer.limit() < HEADER_SIZE) {
+			throw new IOException("Truncated segment file: " + file);
+		}
+		int magic = buffer.getInt(0);
+		int version = buffer.getInt(4);
+		if (magic != MAGIC) {
+			throw new IOException("Not a segment file: " + file);
+		}
+		if (version != VERSION) {
+			throw new IOException("Unsupported segment version " + version + ": " + file);
+		}
+	}
+
+	/**
+	 * @Description: fsync目录，使目录中的重命名、创建和删除落盘。只fsync文件时断电后重命名仍可能丢失，
+	 *               包括提交点segments_N。有的平台不支持打开目录，忽略其异常
+	 * @param dir
+	 * @return: void
+	 */
+	static void syncDirectory(Path dir) {
+		try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			logger.debug("Ignoring directory sync exception for " + dir, e);
+		}
+	}
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Segment file larger than 2GB: " + file);
+			}
+
+			// 映射在channel关闭后仍然有效
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			checkHeader(buffer, file);
+			buffer.position(HEADER_SIZE);
+			return buffer.slice();
+		}
+	}
+
+	/**
+	 * @Description: 顺序写入一个索引文件：先写临时文件，commit时fsync并原子重命名，未commit就close时删除临时文件
+	 */
+	static final class Output implements Closeable {
+		private final Path file;
+		private final Path temp;
+		private final FileChannel channel;
+		private final RateLimiter limiter;
+		private long position;
+		private boolean committed;
+
+		private Output(Path file, RateLimiter limiter) throws IOException {
+			this.file = file;
+			this.temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+			this.limiter = limiter;
+			this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		/**
+		 * @Description: 创建文件并写入文件头
+		 * @param file
+		 * @param limiter
+		 *            为null时不限速
+		 * @return: Output
+		 * @throws IOException
+		 */
+		static Output create(Path file, RateLimiter limiter) throws IOException {
+			Output out = new Output(file, limiter);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).flip();
+				out.write(header);
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+			return out;
+		}
+
+		/**
+		 * @Description: 写入buffer剩余的全部内容
+		 * @param buffer
+		 * @return: void
+		 * @throws IOException
+		 */
+		void write(ByteBuffer buffer) throws IOException {
+			int length = buffer.remaining();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			position += length;
+			if (limiter != null) {
+				try {
+					limiter.pause(length);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while writing " + file);
+				}
+			}
+		}
+
+		void write(BytesOutput data) throws IOException {
+			write(data.toByteBuffer());
+		}
+
+		/**
+		 * @Description: 已写入的数据长度，不含文件头
+		 * @return: long
+		 */
+		long position() {
+			return position - HEADER_SIZE;
+		}
+
+		void commit() throws IOException {
+			channel.force(true);
+			channel.close();
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			committed = true;
+			syncDirectory(file.toAbsolutePath().getParent());
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!committed) {
+				channel.close();
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+}
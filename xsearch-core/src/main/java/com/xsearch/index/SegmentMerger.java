@@ -0,0 +1,407 @@
+package com.xsearch.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @Description: 把多个段合并成一个新段，去掉被删除的文档
+ *               <p>
+ *               新段的文档按源段的顺序依次排列，docMap记录源段文档号到新文档号的映射，被删除的文档映射为-1。
+ *               各源段的词典都是有序的，按词多路归并，同一个词的倒排按源段顺序重新编号后拼接。
+ *               字段长度按新文档号拼接，字段的总词数由合并后的倒排重新累加。
+ *               数值列按新文档号拼接；关键词列的字典取各源段中仍被存活文档引用的值重新排序，序号按新字典换算。
+ *               倒排和存储字段边合并边写文件，堆中只保留词典和一个词的倒排，写入可以通过RateLimiter限速。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 11, 2017 2:30:14 PM
+ */
+public class SegmentMerger {
+	private static final int FLUSH_BYTES = 1024 * 1024;
+
+	private final Segment[] segments;
+	private final DeletedDocs[] deletedDocs;
+	private final int[][] docMaps;
+	private final int maxDoc;
+
+	/**
+	 * @param segments
+	 * @param deletedDocs
+	 *            与segments一一对应，没有删除的段为null
+	 */
+	public SegmentMerger(Segment[] segments, DeletedDocs[] deletedDocs) {
+		this.segments = segments;
+		this.deletedDocs = deletedDocs;
+		this.docMaps = new int[segments.length][];
+		int doc = 0;
+		for (int i = 0; i < segments.length; i++) {
+			int[] docMap = new int[segments[i].maxDoc()];
+			for (int j = 0; j < docMap.length; j++) {
+				docMap[j] = deletedDocs[i] != null && deletedDocs[i].isDeleted(j) ? -1 : doc++;
+			}
+			docMaps[i] = docMap;
+		}
+		this.maxDoc = doc;
+	}
+
+	/**
+	 * @Description: 第i个源段的文档号映射
+	 * @param i
+	 * @return: int[]
+	 */
+	public int[] docMap(int i) {
+		return docMaps[i];
+	}
+
+	/**
+	 * @Description: 合并后的文档数
+	 * @return: int
+	 */
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @Description: 合并并写入段文件
+	 * @param dir
+	 * @param name
+	 * @param limiter
+	 *            为null时不限速
+	 * @return: Segment 映射打开的新段
+	 * @throws IOException
+	 */
+	public Segment merge(Path dir, String name, RateLimiter limiter) throws IOException {
+		Path[] files = SegmentFiles.files(dir, name);
+		mergeStoredFields(files[2], limiter);
+		Map<String, Long> sumTotalTermFreqs = mergeTerms(files[0], files[1], limiter);
+		mergeNorms(files[3], sumTotalTermFreqs, limiter);
+		mergeDocValues(files[4], limiter);
+		return SegmentFiles.open(dir, name);
+	}
+
+	private void mergeStoredFields(Path file, RateLimiter limiter) throws IOException {
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(file, limiter)) {
+			// 文档偏移在文档数据之前，先根据源段中的文档长度算出偏移
+			BytesOutput buffer = new BytesOutput(FLUSH_BYTES + 1024);
+			buffer.writeInt(maxDoc);
+			long offset = 0;
+			buffer.writeLong(offset);
+			for (int i = 0; i < segments.length; i++) {
+				StoredFields stored = segments[i].storedFields();
+				for (int j = 0; j < docMaps[i].length; j++) {
+					if (docMaps[i][j] >= 0) {
+						offset += stored.rawDocument(j).remaining();
+						buffer.writeLong(offset);
+						if (buffer.size() >= FLUSH_BYTES) {
+							out.write(buffer);
+							buffer.reset();
+						}
+					}
+				}
+			}
+			out.write(buffer);
+
+			for (int i = 0; i < segments.length; i++) {
+				StoredFields stored = segments[i].storedFields();
+				for (int j = 0; j < docMaps[i].length; j++) {
+					if (docMaps[i][j] >= 0) {
+						out.write(stored.rawDocument(j));
+					}
+				}
+			}
+			out.commit();
+		}
+	}
+
+	/**
+	 * @Description: 一个源段词典上的游标
+	 */
+	private static class TermCursor implements Comparable<TermCursor> {
+		final int segment;
+		final TermDictionary terms;
+		int ord;
+		byte[] key;
+
+		TermCursor(int segment, TermDictionary terms) {
+			this.segment = segment;
+			this.terms = terms;
+		}
+
+		boolean next() {
+			if (++ord >= terms.size()) {
+				return false;
+			}
+			key = terms.key(ord);
+			return true;
+		}
+
+		@Override
+		public int compareTo(TermCursor other) {
+			int c = Term.compareBytes(key, other.key);
+			return c != 0 ? c : Integer.compare(segment, other.segment);
+		}
+	}
+
+	/**
+	 * @return: Map<String, Long> 各字段合并后的总词数
+	 */
+	private Map<String, Long> mergeTerms(Path termsFile, Path postingsFile, RateLimiter limiter) throws IOException {
+		Map<String, Long> sumTotalTermFreqs = new HashMap<String, Long>();
+		String field = null;
+		Norms.FieldNorms[] norms = new Norms.FieldNorms[segments.length];
+		long sumTotalTermFreq = 0;
+
+		PriorityQueue<TermCursor> queue = new PriorityQueue<TermCursor>(Math.max(1, segments.length));
+		for (int i = 0; i < segments.length; i++) {
+			TermCursor cursor = new TermCursor(i, segments[i].terms());
+			cursor.ord = -1;
+			if (cursor.next()) {
+				queue.add(cursor);
+			}
+		}
+
+		byte[][] keys = new byte[64][];
+		long[] offsets = new long[64];
+		int[] docFreqs = new int[64];
+		int size = 0;
+
+		BlockPostingsEnum[] enums = new BlockPostingsEnum[segments.length];
+		TermCursor[] matches = new TermCursor[segments.length];
+		BytesOutput buffer = new BytesOutput(FLUSH_BYTES + 1024);
+		PostingsWriter writer = new PostingsWriter(buffer);
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(postingsFile, limiter)) {
+			while (!queue.isEmpty()) {
+				// 取出所有源段中与最小词相同的游标
+				int numMatches = 0;
+				byte[] key = queue.peek().key;
+				String keyField = Term.fromBytes(key).field();
+				if (!keyField.equals(field)) {
+					// 词典按字段排序，同一字段的词是连续的
+					if (field != null) {
+						sumTotalTermFreqs.put(field, sumTotalTermFreq);
+					}
+					field = keyField;
+					sumTotalTermFreq = 0;
+					for (int i = 0; i < segments.length; i++) {
+						norms[i] = segments[i].norms().get(field);
+					}
+				}
+				while (!queue.isEmpty() && Arrays.equals(queue.peek().key, key)) {
+					matches[numMatches++] = queue.poll();
+				}
+
+				writer.startTerm();
+				for (int m = 0; m < numMatches; m++) {
+					TermCursor cursor = matches[m];
+					if (enums[cursor.segment] == null) {
+						enums[cursor.segment] = new BlockPostingsEnum(segments[cursor.segment].postingsData());
+					}
+					BlockPostingsEnum postings = enums[cursor.segment].reset(cursor.terms.postingsOffset(cursor.ord));
+					appendPostings(writer, postings, docMaps[cursor.segment], norms[cursor.segment]);
+					if (cursor.next()) {
+						queue.add(cursor);
+					}
+				}
+
+				// 词的文档全部被删除时不再写入
+				if (writer.getDocFreq() > 0) {
+					if (size == keys.length) {
+						keys = Arrays.copyOf(keys, size * 2);
+						offsets = Arrays.copyOf(offsets, size * 2);
+						docFreqs = Arrays.copyOf(docFreqs, size * 2);
+					}
+					keys[size] = key;
+					docFreqs[size] = writer.getDocFreq();
+					sumTotalTermFreq += writer.getTotalTermFreq();
+					offsets[size] = out.position() + writer.finishTerm();
+					size++;
+					if (buffer.size() >= FLUSH_BYTES) {
+						out.write(buffer);
+						buffer.reset();
+					}
+				}
+			}
+			out.write(buffer);
+			out.commit();
+		}
+		if (field != null) {
+			sumTotalTermFreqs.put(field, sumTotalTermFreq);
+		}
+
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(termsFile, limiter)) {
+			BytesOutput terms = new BytesOutput();
+			TermDictionary.write(terms, keys, offsets, docFreqs, size);
+			out.write(terms);
+			out.commit();
+		}
+		return sumTotalTermFreqs;
+	}
+
+	private void mergeNorms(Path file, Map<String, Long> sumTotalTermFreqs, RateLimiter limiter) throws IOException {
+		Set<String> fields = new TreeSet<String>();
+		for (Segment segment : segments) {
+			for (Norms.FieldNorms norms : segment.norms().fields()) {
+				fields.add(norms.field());
+			}
+		}
+
+		int count = fields.size();
+		String[] names = fields.toArray(new String[count]);
+		int[] docCounts = new int[count];
+		long[] sums = new long[count];
+		byte[][] values = new byte[count][maxDoc];
+		for (int f = 0; f < count; f++) {
+			for (int i = 0; i < segments.length; i++) {
+				Norms.FieldNorms norms = segments[i].norms().get(names[f]);
+				if (norms == null) {
+					continue;
+				}
+				for (int j = 0; j < docMaps[i].length; j++) {
+					int norm = norms.norm(j);
+					if (docMaps[i][j] >= 0 && norm != 0) {
+						values[f][docMaps[i][j]] = (byte) norm;
+						docCounts[f]++;
+					}
+				}
+			}
+			Long sum = sumTotalTermFreqs.get(names[f]);
+			sums[f] = sum == null ? 0 : sum;
+		}
+
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(file, limiter)) {
+			BytesOutput data = new BytesOutput();
+			Norms.write(data, names, docCounts, sums, values, count);
+			out.write(data);
+			out.commit();
+		}
+	}
+
+	private void mergeDocValues(Path file, RateLimiter limiter) throws IOException {
+		Set<String> numericFields = new TreeSet<String>();
+		Set<String> sortedFields = new TreeSet<String>();
+		for (Segment segment : segments) {
+			numericFields.addAll(segment.docValues().numerics().keySet());
+			sortedFields.addAll(segment.docValues().sorteds().keySet());
+		}
+
+		DocValues.Writer writer = new DocValues.Writer(maxDoc);
+		for (String field : numericFields) {
+			long[] values = new long[maxDoc];
+			long[] docsWithField = new long[(maxDoc + 63) >>> 6];
+			for (int i = 0; i < segments.length; i++) {
+				DocValues.NumericDocValues column = segments[i].docValues().numeric(field);
+				if (column == null) {
+					continue;
+				}
+				for (int j = 0; j < docMaps[i].length; j++) {
+					int doc = docMaps[i][j];
+					if (doc >= 0 && column.exists(j)) {
+						values[doc] = column.get(j);
+						docsWithField[doc >>> 6] |= 1L << doc;
+					}
+				}
+			}
+			writer.addNumeric(field, values, docsWithField);
+		}
+		for (String field : sortedFields) {
+			mergeSorted(writer, field);
+		}
+
+		try (SegmentFiles.Output out = SegmentFiles.Output.create(file, limiter)) {
+			BytesOutput data = new BytesOutput();
+			writer.write(data);
+			out.write(data);
+			out.commit();
+		}
+	}
+
+	private void mergeSorted(DocValues.Writer writer, String field) {
+		// 只保留存活文档引用的值
+		DocValues.SortedDocValues[] columns = new DocValues.SortedDocValues[segments.length];
+		boolean[][] used = new boolean[segments.length][];
+		List<byte[]> values = new ArrayList<byte[]>();
+		for (int i = 0; i < segments.length; i++) {
+			columns[i] = segments[i].docValues().sorted(field);
+			if (columns[i] == null) {
+				continue;
+			}
+			used[i] = new boolean[columns[i].valueCount()];
+			for (int j = 0; j < docMaps[i].length; j++) {
+				int ord = columns[i].ord(j);
+				if (docMaps[i][j] >= 0 && ord >= 0 && !used[i][ord]) {
+					used[i][ord] = true;
+					values.add(bytes(columns[i].lookupBytes(ord)));
+				}
+			}
+		}
+
+		Comparator<byte[]> comparator = new Comparator<byte[]>() {
+			@Override
+			public int compare(byte[] a, byte[] b) {
+				return Term.compareBytes(a, b);
+			}
+		};
+		Collections.sort(values, comparator);
+		int count = 0;
+		for (int i = 0; i < values.size(); i++) {
+			if (count == 0 || !Arrays.equals(values.get(i), values.get(count - 1))) {
+				values.set(count++, values.get(i));
+			}
+		}
+		byte[][] sortedValues = values.subList(0, count).toArray(new byte[count][]);
+
+		int[] ords = new int[maxDoc];
+		Arrays.fill(ords, -1);
+		for (int i = 0; i < segments.length; i++) {
+			if (columns[i] == null) {
+				continue;
+			}
+			int[] ordMap = new int[used[i].length];
+			for (int ord = 0; ord < ordMap.length; ord++) {
+				ordMap[ord] = used[i][ord] ? Arrays.binarySearch(sortedValues, bytes(columns[i].lookupBytes(ord)),
+						comparator) : -1;
+			}
+			for (int j = 0; j < docMaps[i].length; j++) {
+				int ord = columns[i].ord(j);
+				if (docMaps[i][j] >= 0 && ord >= 0) {
+					ords[docMaps[i][j]] = ordMap[ord];
+				}
+			}
+		}
+		writer.addSorted(field, sortedValues, count, ords);
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static void appendPostings(PostingsWriter writer, BlockPostingsEnum postings, int[] docMap,
+			Norms.FieldNorms norms) {
+		int doc;
+		while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+			int newDoc = docMap[doc];
+			if (newDoc < 0) {
+				continue;
+			}
+			int freq = postings.freq();
+			writer.startDoc(newDoc, freq, norms == null ? 0 : norms.norm(doc));
+			for (int i = 0; i < freq; i++) {
+				writer.addPosition(postings.nextPosition());
+			}
+			writer.finishDoc();
+		}
+	}
+}
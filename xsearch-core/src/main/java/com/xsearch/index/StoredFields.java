@@ -0,0 +1,105 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Description: 存储字段，按文档号保存原始字段值
+ *               <p>
+ *               格式为：[文档数 int][文档起始偏移 long * (文档数+1)][文档数据]，
+ *               每个文档为 [字段数 vint]，每个字段为 [类型 byte][字段名长度 vint][字段名][值长度 vint][值]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 2:02:19 PM
+ */
+public class StoredFields {
+	private final ByteBuffer data;
+	private final int maxDoc;
+	private final int docsStart;
+
+	public StoredFields(ByteBuffer data) {
+		this.data = data.duplicate();
+		this.maxDoc = data.getInt(0);
+		this.docsStart = 4 + (maxDoc + 1) * 8;
+	}
+
+	/**
+	 * @Description: 编码一个文档并追加到out
+	 * @param out
+	 * @param document
+	 * @return: void
+	 */
+	public static void writeDocument(BytesOutput out, Document document) {
+		out.writeVInt(document.getFields().size());
+		for (Field field : document.getFields()) {
+			out.writeByte((byte) field.type().ordinal());
+			out.writeString(field.name());
+			out.writeString(field.value());
+		}
+	}
+
+	/**
+	 * @Description: 写入存储字段文件
+	 * @param out
+	 * @param docOffsets
+	 *            每个文档在docs中的起始偏移，长度为文档数+1
+	 * @param maxDoc
+	 * @param docs
+	 * @return: void
+	 */
+	public static void write(BytesOutput out, long[] docOffsets, int maxDoc, BytesOutput docs) {
+		out.writeInt(maxDoc);
+		for (int i = 0; i <= maxDoc; i++) {
+			out.writeLong(docOffsets[i]);
+		}
+		docs.writeTo(out);
+	}
+
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	/**
+	 * @Description: 文档的原始编码字节，返回的buffer共享底层数据，不拷贝
+	 * @param docId
+	 * @return: ByteBuffer
+	 */
+	public ByteBuffer rawDocument(int docId) {
+		long start = data.getLong(4 + docId * 8);
+		long end = data.getLong(4 + (docId + 1) * 8);
+		ByteBuffer raw = data.duplicate();
+		raw.limit(docsStart + (int) end);
+		raw.position(docsStart + (int) start);
+		return raw.slice();
+	}
+
+	public Document document(int docId) {
+		return readDocument(rawDocument(docId));
+	}
+
+	/**
+	 * @Description: 解码一个文档
+	 * @param raw
+	 * @return: Document
+	 */
+	public static Document readDocument(ByteBuffer raw) {
+		Field.Type[] types = Field.Type.values();
+		Document document = new Document();
+		int count = VByte.readVInt(raw);
+		for (int i = 0; i < count; i++) {
+			Field.Type type = types[raw.get()];
+			String name = readString(raw);
+			String value = readString(raw);
+			document.add(new Field(name, value, type));
+		}
+		return document;
+	}
+
+	static String readString(ByteBuffer buffer) {
+		int length = VByte.readVInt(buffer);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
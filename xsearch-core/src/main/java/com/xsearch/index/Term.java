@@ -0,0 +1,108 @@
+package com.xsearch.index;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Description: 词，由字段名和词文本组成
+ *               <p>
+ *               在词典中以 [字段名UTF-8][0x00][词文本UTF-8] 作为key按无符号字节序排序，同一字段的词相邻。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 2:20:17 PM
+ */
+public final class Term implements Comparable<Term> {
+	public static final byte FIELD_SEPARATOR = 0;
+
+	private final String field;
+	private final String text;
+
+	public Term(String field, String text) {
+		this.field = field;
+		this.text = text;
+	}
+
+	public String field() {
+		return field;
+	}
+
+	public String text() {
+		return text;
+	}
+
+	/**
+	 * @Description: 词典中的key
+	 * @return: byte[]
+	 */
+	public byte[] bytes() {
+		return toBytes(field, text);
+	}
+
+	public static byte[] toBytes(String field, String text) {
+		byte[] fieldBytes = field.getBytes(StandardCharsets.UTF_8);
+		byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+		byte[] key = new byte[fieldBytes.length + 1 + textBytes.length];
+		System.arraycopy(fieldBytes, 0, key, 0, fieldBytes.length);
+		key[fieldBytes.length] = FIELD_SEPARATOR;
+		System.arraycopy(textBytes, 0, key, fieldBytes.length + 1, textBytes.length);
+		return key;
+	}
+
+	/**
+	 * @Description: 从词典key还原词
+	 * @param key
+	 * @return: Term
+	 */
+	public static Term fromBytes(byte[] key) {
+		int separator = 0;
+		while (key[separator] != FIELD_SEPARATOR) {
+			separator++;
+		}
+		return new Term(new String(key, 0, separator, StandardCharsets.UTF_8), new String(key, separator + 1, key.length
+				- separator - 1, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @Description: 按无符号字节序比较两个key
+	 * @param a
+	 * @param b
+	 * @return: int
+	 */
+	public static int compareBytes(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	@Override
+	public int compareTo(Term other) {
+		return compareBytes(bytes(), other.bytes());
+	}
+
+	@Override
+	public int hashCode() {
+		return field.hashCode() * 31 + text.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Term)) {
+			return false;
+		}
+		Term other = (Term) obj;
+		return field.equals(other.field) && text.equals(other.text);
+	}
+
+	@Override
+	public String toString() {
+		return field + ":" + text;
+	}
+}
@@ -0,0 +1,131 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 有序词典，所有字段的词按key（见Term）的无符号字节序排列
+ *               <p>
+ *               格式为：
+ * 
+ *               <pre>
+ * [词数 int]
+ * [key起始偏移 int * (词数+1)]
+ * [倒排位置 long * 词数]
+ * [文档频率 int * 词数]
+ * [key字节]
+ * </pre>
+ * 
+ *               定长数组直接按下标访问，查找时在数据上二分，不需要把词典加载到堆上。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 6, 2017 10:08:14 AM
+ */
+public class TermDictionary {
+	private final ByteBuffer data;
+	private final int size;
+	private final int keyOffsetsStart;
+	private final int postingsOffsetsStart;
+	private final int docFreqsStart;
+	private final int keysStart;
+
+	public TermDictionary(ByteBuffer data) {
+		this.data = data.duplicate();
+		this.size = data.getInt(0);
+		this.keyOffsetsStart = 4;
+		this.postingsOffsetsStart = keyOffsetsStart + (size + 1) * 4;
+		this.docFreqsStart = postingsOffsetsStart + size * 8;
+		this.keysStart = docFreqsStart + size * 4;
+	}
+
+	/**
+	 * @Description: 按顺序写入词典，keys必须已经排好序
+	 * @param out
+	 * @param keys
+	 * @param postingsOffsets
+	 * @param docFreqs
+	 * @param size
+	 * @return: void
+	 */
+	public static void write(BytesOutput out, byte[][] keys, long[] postingsOffsets, int[] docFreqs, int size) {
+		out.writeInt(size);
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			out.writeInt(offset);
+			offset += keys[i].length;
+		}
+		out.writeInt(offset);
+		for (int i = 0; i < size; i++) {
+			out.writeLong(postingsOffsets[i]);
+		}
+		for (int i = 0; i < size; i++) {
+			out.writeInt(docFreqs[i]);
+		}
+		for (int i = 0; i < size; i++) {
+			out.writeBytes(keys[i]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @Description: 查找key的序号
+	 * @param key
+	 * @return: int 找到时返回序号，否则返回 (-(插入位置) - 1)
+	 */
+	public int lookup(byte[] key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(mid, key);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @Description: 比较序号为ord的key和给定key，不拷贝词典数据
+	 * @param ord
+	 * @param key
+	 * @return: int
+	 */
+	private int compare(int ord, byte[] key) {
+		int start = keysStart + data.getInt(keyOffsetsStart + ord * 4);
+		int end = keysStart + data.getInt(keyOffsetsStart + (ord + 1) * 4);
+		int length = Math.min(end - start, key.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (data.get(start + i) & 0xFF) - (key[i] & 0xFF);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return (end - start) - key.length;
+	}
+
+	public byte[] key(int ord) {
+		int start = keysStart + data.getInt(keyOffsetsStart + ord * 4);
+		int end = keysStart + data.getInt(keyOffsetsStart + (ord + 1) * 4);
+		byte[] key = new byte[end - start];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = data.get(start + i);
+		}
+		return key;
+	}
+
+	public long postingsOffset(int ord) {
+		return data.getLong(postingsOffsetsStart + ord * 8);
+	}
+
+	public int docFreq(int ord) {
+		return data.getInt(docFreqsStart + ord * 4);
+	}
+}
@@ -0,0 +1,81 @@
+package com.xsearch.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @Description: 按大小分层的合并策略
+ *               <p>
+ *               段的层级为 log(段大小 / floorSegmentSize) 以segmentsPerTier为底取整，小于floorSegmentSize的段都在第0层。
+ *               某一层的段数达到segmentsPerTier时，把这一层最小的segmentsPerTier个段合并成一个，合并结果大约落在上一层。
+ *               这样每个文档被重写的次数是段数的对数级，同时段的总数保持在 层数 * segmentsPerTier 以内。
+ *               大于maxMergedSegmentSize一半的段不再参与合并。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 11, 2017 4:12:36 PM
+ */
+public class TieredMergePolicy {
+	private final int segmentsPerTier;
+	private final long floorSegmentSize;
+	private final long maxMergedSegmentSize;
+
+	public TieredMergePolicy(int segmentsPerTier, long floorSegmentSize, long maxMergedSegmentSize) {
+		if (segmentsPerTier < 2) {
+			throw new IllegalArgumentException("segmentsPerTier must be at least 2: " + segmentsPerTier);
+		}
+		this.segmentsPerTier = segmentsPerTier;
+		this.floorSegmentSize = Math.max(1, floorSegmentSize);
+		this.maxMergedSegmentSize = maxMergedSegmentSize;
+	}
+
+	/**
+	 * @Description: 从候选段中选出一次合并
+	 * @param sizes
+	 *            未在合并中的段的大小，已扣除被删除文档的比例
+	 * @return: int[] 要合并的段在sizes中的下标，不需要合并时返回null
+	 */
+	public int[] findMerge(final long[] sizes) {
+		Integer[] order = new Integer[sizes.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(sizes[a], sizes[b]);
+			}
+		});
+
+		// 按大小升序扫描，同一层的段是连续的
+		int start = 0;
+		while (start < order.length) {
+			int tier = tier(sizes[order[start]]);
+			int end = start;
+			long total = 0;
+			while (end < order.length && tier(sizes[order[end]]) == tier && end - start < segmentsPerTier) {
+				total += sizes[order[end]];
+				end++;
+			}
+			if (end - start == segmentsPerTier && sizes[order[start]] <= maxMergedSegmentSize / 2
+					&& total <= maxMergedSegmentSize) {
+				int[] merge = new int[segmentsPerTier];
+				for (int i = 0; i < merge.length; i++) {
+					merge[i] = order[start + i];
+				}
+				Arrays.sort(merge);
+				return merge;
+			}
+			while (end < order.length && tier(sizes[order[end]]) == tier) {
+				end++;
+			}
+			start = end;
+		}
+		return null;
+	}
+
+	private int tier(long size) {
+		double ratio = Math.max(size, floorSegmentSize) / (double) floorSegmentSize;
+		return (int) (Math.log(ratio) / Math.log(segmentsPerTier));
+	}
+}
@@ -0,0 +1,87 @@
+package com.xsearch.index;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 变长整数编码，每个字节低7位存数据，最高位为1表示后面还有字节，低位组在前
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 5, 2017 10:12:33 AM
+ */
+public final class VByte {
+
+	private VByte() {
+	}
+
+	/**
+	 * @Description: 从buffer当前位置读取一个变长int，position随之前移
+	 * @param buffer
+	 * @return: int
+	 */
+	public static int readVInt(ByteBuffer buffer) {
+		byte b = buffer.get();
+		if (b >= 0) {
+			return b;
+		}
+		int value = b & 0x7F;
+		b = buffer.get();
+		value |= (b & 0x7F) << 7;
+		if (b >= 0) {
+			return value;
+		}
+		b = buffer.get();
+		value |= (b & 0x7F) << 14;
+		if (b >= 0) {
+			return value;
+		}
+		b = buffer.get();
+		value |= (b & 0x7F) << 21;
+		if (b >= 0) {
+			return value;
+		}
+		b = buffer.get();
+		return value | ((b & 0x0F) << 28);
+	}
+
+	/**
+	 * @Description: 从buffer当前位置读取一个变长long
+	 * @param buffer
+	 * @return: long
+	 */
+	public static long readVLong(ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed vlong");
+	}
+
+	/**
+	 * @Description: 跳过一个变长整数
+	 * @param buffer
+	 * @return: void
+	 */
+	public static void skipVInt(ByteBuffer buffer) {
+		while (buffer.get() < 0) {
+		}
+	}
+
+	/**
+	 * @Description: 变长编码后的字节数
+	 * @param value
+	 * @return: int
+	 */
+	public static int vIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+}
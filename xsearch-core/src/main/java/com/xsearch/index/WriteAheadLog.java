@@ -0,0 +1,402 @@
+package com.xsearch.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @Description: 索引修改的预写日志，支持组提交
+ *               <p>
+ *               日志由多个文件组成，文件名为 wal-代数.log，文件头为 [magic int][version int]，
+ *               每条记录为 [长度 int][CRC32 int][内容]。
+ *               append只把记录追加到内存缓冲并返回记录结束的序号，同步线程在syncWindow内收集多个写入者的记录，
+ *               一次写入文件并fsync，然后唤醒序号已落盘的写入者，多个并发写入共享一次fsync。
+ *               段刷写前调用roll切换到新文件，提交点写入后删除旧文件；启动时按代数顺序重放，遇到不完整或校验失败的记录即停止。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 14, 2017 10:08:26 AM
+ */
+public class WriteAheadLog implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+	static final String PREFIX = "wal-";
+	static final String SUFFIX = ".log";
+	private static final int MAGIC = 0x5857414C; // "XWAL"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/**
+	 * @Description: 重放时每条记录的回调
+	 */
+	public interface RecordHandler {
+		void record(ByteBuffer payload) throws IOException;
+	}
+
+	private final Path dir;
+	private final long syncWindow;
+	private final Object writeLock = new Object(); // 保护文件的写入、fsync和切换
+
+	// 以下状态由this的锁保护
+	private BytesOutput pending = new BytesOutput();
+	private BytesOutput spare = new BytesOutput();
+	private long appendedSeq; // 已追加的字节总数
+	private long syncedSeq; // 已落盘的字节总数
+	private long syncCount;
+	private IOException failure;
+	private boolean closed;
+
+	private FileChannel channel;
+	private long generation;
+	private final Syncer syncer;
+
+	/**
+	 * @param dir
+	 * @param generation
+	 *            新日志文件的代数，必须大于已有文件的代数
+	 * @param syncWindow
+	 *            组提交的等待窗口，毫秒，0表示有记录就立即写入
+	 * @throws IOException
+	 */
+	public WriteAheadLog(Path dir, long generation, long syncWindow) throws IOException {
+		this.dir = dir;
+		this.syncWindow = syncWindow;
+		this.generation = generation;
+		this.channel = create(file(dir, generation));
+		this.syncer = new Syncer();
+		syncer.start();
+	}
+
+	static Path file(Path dir, long generation) {
+		return dir.resolve(PREFIX + generation + SUFFIX);
+	}
+
+	/**
+	 * @Description: 文件名对应的日志代数
+	 * @param fileName
+	 * @return: long 不是日志文件时返回-1
+	 */
+	static long generation(String fileName) {
+		if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static FileChannel create(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		SegmentFiles.syncDirectory(file.toAbsolutePath().getParent());
+		return channel;
+	}
+
+	/**
+	 * @Description: 追加一条记录，返回后记录还未落盘，需要持久化时调用sync
+	 * @param payload
+	 * @return: long 记录的序号
+	 * @throws IOException
+	 *             日志已关闭或之前的写入失败
+	 */
+	public synchronized long append(BytesOutput payload) throws IOException {
+		ensureOpen();
+		CRC32 crc = new CRC32();
+		crc.update(payload.toByteBuffer());
+		pending.writeInt(payload.size());
+		pending.writeInt((int) crc.getValue());
+		payload.writeTo(pending);
+		appendedSeq += RECORD_HEADER_SIZE + payload.size();
+		notifyAll();
+		return appendedSeq;
+	}
+
+	/**
+	 * @Description: 等待序号seq之前的记录落盘
+	 * @param seq
+	 * @return: void
+	 * @throws IOException
+	 */
+	public synchronized void sync(long seq) throws IOException {
+		while (syncedSeq < seq) {
+			if (failure != null) {
+				throw new IOException("Write-ahead log failed", failure);
+			}
+			if (closed) {
+				throw new IOException("Write-ahead log closed");
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted waiting for write-ahead log sync");
+			}
+		}
+	}
+
+	/**
+	 * @Description: 把缓冲中的记录写入文件并fsync，然后切换到下一代文件
+	 * @return: long 新文件的代数，小于它的文件可以在提交点写入后删除
+	 * @throws IOException
+	 */
+	public long roll() throws IOException {
+		synchronized (writeLock) {
+			writeAndSync();
+			channel.close();
+			channel = create(file(dir, generation + 1));
+			generation++;
+			return generation;
+		}
+	}
+
+	/**
+	 * @Description: 删除代数小于generation的日志文件
+	 * @param generation
+	 * @return: void
+	 * @throws IOException
+	 */
+	public void deleteBefore(long generation) throws IOException {
+		for (long g : list(dir)) {
+			if (g < generation) {
+				Files.deleteIfExists(file(dir, g));
+			}
+		}
+		SegmentFiles.syncDirectory(dir);
+	}
+
+	/**
+	 * @Description: 把缓冲中的记录写入当前文件并fsync，调用者持有writeLock
+	 * @return: void
+	 * @throws IOException
+	 */
+	private void writeAndSync() throws IOException {
+		BytesOutput batch;
+		long seq;
+		synchronized (this) {
+			ensureOpen();
+			batch = pending;
+			seq = appendedSeq;
+			pending = spare;
+			spare = batch;
+		}
+
+		try {
+			if (batch.size() > 0) {
+				ByteBuffer buffer = batch.toByteBuffer();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				failure = e;
+				notifyAll();
+			}
+			throw e;
+		} finally {
+			batch.reset();
+		}
+
+		synchronized (this) {
+			if (seq > syncedSeq) {
+				syncedSeq = seq;
+				syncCount++;
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @Description: fsync的次数，与记录数之比反映组提交的效果
+	 * @return: long
+	 */
+	public synchronized long getSyncCount() {
+		return syncCount;
+	}
+
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (failure != null) {
+			throw new IOException("Write-ahead log failed", failure);
+		}
+		if (closed) {
+			throw new IOException("Write-ahead log closed");
+		}
+	}
+
+	/**
+	 * @Description: 写入剩余的记录并关闭文件
+	 * @return: void
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+			}
+			try {
+				if (failure == null) {
+					writeAndSync();
+				}
+			} finally {
+				synchronized (this) {
+					closed = true;
+					notifyAll();
+				}
+				syncer.interrupt();
+				channel.close();
+			}
+		}
+		try {
+			syncer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @Description: 组提交线程：有新记录时等待syncWindow收集更多记录，然后一次写入并fsync
+	 */
+	private class Syncer extends Thread {
+
+		Syncer() {
+			super("WriteAheadLog Syncer");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					synchronized (WriteAheadLog.this) {
+						while (!closed && failure == null && appendedSeq == syncedSeq) {
+							WriteAheadLog.this.wait();
+						}
+						if (closed || failure != null) {
+							break;
+						}
+					}
+					if (syncWindow > 0) {
+						Thread.sleep(syncWindow);
+					}
+					synchronized (writeLock) {
+						writeAndSync();
+					}
+				} catch (InterruptedException e) {
+					break;
+				} catch (IOException e) {
+					if (!closed) {
+						logger.error("Error " + getName(), e);
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @Description: 目录中全部日志文件的代数，升序
+	 * @param dir
+	 * @return: List<Long>
+	 * @throws IOException
+	 */
+	static List<Long> list(Path dir) throws IOException {
+		List<Long> generations = new ArrayList<Long>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+			for (Path file : files) {
+				long generation = generation(file.getFileName().toString());
+				if (generation >= 0) {
+					generations.add(generation);
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * @Description: 按代数顺序重放代数不小于fromGeneration的日志文件
+	 * @param dir
+	 * @param fromGeneration
+	 * @param handler
+	 * @return: long 重放的记录数
+	 * @throws IOException
+	 */
+	public static long replay(Path dir, long fromGeneration, RecordHandler handler) throws IOException {
+		long records = 0;
+		for (long generation : list(dir)) {
+			if (generation >= fromGeneration) {
+				records += replay(file(dir, generation), handler);
+			}
+		}
+		return records;
+	}
+
+	private static long replay(Path file, RecordHandler handler) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			logger.warn("Skipping write-ahead log with bad header: " + file);
+			return 0;
+		}
+
+		long records = 0;
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				logger.warn("Truncated record at " + start + " in " + file + ", ignoring the rest");
+				return records;
+			}
+			ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				logger.warn("Checksum mismatch at " + start + " in " + file + ", ignoring the rest");
+				return records;
+			}
+			handler.record(payload);
+			buffer.position(buffer.position() + length);
+			records++;
+		}
+		return records;
+	}
+}
@@ -0,0 +1,106 @@
+package com.xsearch.ipc;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @Description: 基于数组的有界多生产者多消费者队列
+ *               <p>
+ *               每个槽位带一个序号，生产者和消费者各自用CAS推进位置，入队出队都不加锁（Vyukov bounded MPMC queue）。
+ *               消费者阻塞等待使用信号量，信号量的许可数即已发布的元素个数。容量向上取整为2的幂，最小为2。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 22, 2017 2:40:51 PM
+ */
+public class ArrayCallQueue<E> implements CallQueue<E> {
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong enqueuePosition = new AtomicLong();
+	private final AtomicLong dequeuePosition = new AtomicLong();
+	private final Semaphore available = new Semaphore(0);
+
+	public ArrayCallQueue(int capacity) {
+		if (capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		}
+
+		// 只有一个槽位时入队后的序号和下一个入队位置相同，无法判断队列已满，所以至少2个槽位
+		int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = size - 1;
+		this.elements = new AtomicReferenceArray<E>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		while (true) {
+			long position = enqueuePosition.get();
+			int index = (int) (position & mask);
+			long diff = sequences.get(index) - position;
+			if (diff == 0) {
+				if (enqueuePosition.compareAndSet(position, position + 1)) {
+					elements.lazySet(index, e);
+					sequences.set(index, position + 1); // 发布元素
+					available.release();
+					return true;
+				}
+			} else if (diff < 0) {
+				return false; // 队列已满
+			}
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		available.acquire();
+		return dequeue();
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!available.tryAcquire(timeout, unit)) {
+			return null;
+		}
+		return dequeue();
+	}
+
+	/**
+	 * @Description: 已经拿到许可，队列中一定有一个属于当前消费者的元素
+	 * @return: E
+	 */
+	private E dequeue() {
+		while (true) {
+			long position = dequeuePosition.get();
+			int index = (int) (position & mask);
+			long diff = sequences.get(index) - (position + 1);
+			if (diff == 0 && dequeuePosition.compareAndSet(position, position + 1)) {
+				E e = elements.get(index);
+				elements.lazySet(index, null);
+				sequences.set(index, position + mask + 1); // 槽位留给下一轮的生产者
+				return e;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return available.availablePermits();
+	}
+
+	@Override
+	public int capacity() {
+		return mask + 1;
+	}
+}
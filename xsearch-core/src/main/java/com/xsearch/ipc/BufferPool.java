@@ -0,0 +1,112 @@
+package com.xsearch.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description: 直接内存缓冲池，按2的幂划分大小等级，避免每次读事件都分配新的ByteBuffer
+ *               <p>
+ *               每个Reader线程持有一个缓冲池，Reader线程申请请求帧缓冲，Handler线程在Call.setResponse中申请响应缓冲，
+ *               释放发生在Handler和Responder线程上，所以每个等级使用无锁队列保存空闲缓冲，申请和释放都可以并发。
+ *               超过最大等级的请求直接分配堆内存，不进入池。
+ * 
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 13, 2017 2:10:32 PM
+ */
+public class BufferPool {
+	private static final int MIN_SIZE_SHIFT = 10; // 最小等级1KB
+	private static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024; // 最大池化1MB
+	private static final int DEFAULT_MAX_POOLED_PER_CLASS = 64; // 每个等级最多缓存的空闲缓冲数量
+
+	private final int maxBufferSize;
+	private final int maxPooledPerClass;
+	private final Queue<ByteBuffer>[] freeBuffers;
+	private final AtomicInteger[] freeCounts;
+
+	public BufferPool() {
+		this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_POOLED_PER_CLASS);
+	}
+
+	@SuppressWarnings("unchecked")
+	public BufferPool(int maxBufferSize, int maxPooledPerClass) {
+		if (maxBufferSize < (1 << MIN_SIZE_SHIFT)) {
+			throw new IllegalArgumentException("maxBufferSize must be at least " + (1 << MIN_SIZE_SHIFT));
+		}
+
+		this.maxBufferSize = Integer.highestOneBit(maxBufferSize);
+		this.maxPooledPerClass = maxPooledPerClass;
+
+		int classes = sizeClass(this.maxBufferSize) + 1;
+		this.freeBuffers = (Queue<ByteBuffer>[]) new Queue<?>[classes];
+		this.freeCounts = new AtomicInteger[classes];
+		for (int i = 0; i < classes; i++) {
+			freeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+			freeCounts[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * @Description: 申请一个至少能容纳size字节的缓冲，返回时position为0，limit为size
+	 * @param size
+	 * @return: ByteBuffer
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size > maxBufferSize) {
+			return ByteBuffer.allocate(size);
+		}
+
+		int sizeClass = sizeClass(size);
+		ByteBuffer buffer = freeBuffers[sizeClass].poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SIZE_SHIFT));
+		} else {
+			freeCounts[sizeClass].decrementAndGet();
+		}
+
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * @Description: 归还缓冲，非池化的缓冲或者等级已满时直接丢弃
+	 * @param buffer
+	 * @return: void
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+
+		int capacity = buffer.capacity();
+		if (capacity > maxBufferSize || Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SIZE_SHIFT)) {
+			return;
+		}
+
+		int sizeClass = sizeClass(capacity);
+		if (freeCounts[sizeClass].incrementAndGet() > maxPooledPerClass) {
+			freeCounts[sizeClass].decrementAndGet();
+			return;
+		}
+		freeBuffers[sizeClass].offer(buffer);
+	}
+
+	public int getMaxBufferSize() {
+		return maxBufferSize;
+	}
+
+	/**
+	 * @Description: 计算size对应的等级，等级i的缓冲大小为 2^(i+10)
+	 * @param size
+	 * @return: int
+	 */
+	private static int sizeClass(int size) {
+		if (size <= (1 << MIN_SIZE_SHIFT)) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_SHIFT;
+	}
+}
@@ -0,0 +1,26 @@
+package com.xsearch.ipc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 服务端请求处理接口，由Handler线程调用
+ *               <p>
+ *               param来自Reader的缓冲池，process返回后会被归还，实现中不要持有param的引用；
+ *               返回的ByteBuffer从position到limit的内容作为响应数据发送给客户端。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 15, 2017 10:12:05 AM
+ */
+public interface CallProcessor {
+
+	/**
+	 * @Description: 处理一个请求
+	 * @param param
+	 * @return
+	 * @throws Exception
+	 *             处理失败时异常信息会以错误状态返回给客户端
+	 * @return: ByteBuffer
+	 */
+	ByteBuffer process(ByteBuffer param) throws Exception;
+}
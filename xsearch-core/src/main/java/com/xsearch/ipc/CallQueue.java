@@ -0,0 +1,50 @@
+package com.xsearch.ipc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description: 请求队列，Reader线程入队，Handler线程出队
+ *               <p>
+ *               入队只有非阻塞的offer，队列满时由调用方决定暂停读取还是拒绝请求，保证selector线程不会被阻塞。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 22, 2017 2:15:09 PM
+ */
+public interface CallQueue<E> {
+
+	/**
+	 * @Description: 非阻塞入队
+	 * @param e
+	 * @return: boolean 队列已满时返回false
+	 */
+	boolean offer(E e);
+
+	/**
+	 * @Description: 阻塞出队，直到有元素可用
+	 * @throws InterruptedException
+	 * @return: E
+	 */
+	E take() throws InterruptedException;
+
+	/**
+	 * @Description: 限时出队
+	 * @param timeout
+	 * @param unit
+	 * @throws InterruptedException
+	 * @return: E 超时返回null
+	 */
+	E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * @Description: 当前队列中的元素个数，并发时为近似值
+	 * @return: int
+	 */
+	int size();
+
+	/**
+	 * @Description: 队列容量
+	 * @return: int
+	 */
+	int capacity();
+}
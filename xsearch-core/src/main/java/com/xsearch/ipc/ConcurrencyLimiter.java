@@ -0,0 +1,151 @@
+package com.xsearch.ipc;
+
+import com.xsearch.rpc.RequestHeader;
+
+/**
+ * @Description: 自适应的并发上限，请求入队前按上限准入，超过上限的请求直接返回服务繁忙
+ *               <p>
+ *               队列只在满时才拒绝，而队列满之前排队时间早已超过客户端的超时，服务端做的是客户端已经放弃的工作。
+ *               并发上限按请求延迟的梯度调整：长期延迟为延迟的指数移动平均，代表没有排队时的延迟；
+ *               单个请求的延迟明显高于长期延迟时说明请求开始排队，按比例减小上限，延迟平稳时每次加上一个小的排队余量，慢慢增大上限。
+ *               请求在队列中过期或者被下游拒绝时按比例减小上限（AIMD中的乘性减）。
+ *               只有并发数达到上限的一半以上时才调整，负载很低时延迟不能反映上限是否合适。
+ *               <p>
+ *               优先级低的请求只能使用上限的一部分，过载时先被拒绝，高优先级的请求可以用满上限。
+ *               准入和释放是一对：tryAcquire成功的请求最后必须调用onSuccess、onDropped、onIgnore之一。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 4:35:18 PM
+ */
+public class ConcurrencyLimiter {
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+	public static final int DEFAULT_MIN_LIMIT = 4;
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+
+	private static final double RTT_TOLERANCE = 1.5; // 延迟超过长期延迟的1.5倍才开始减小上限
+	private static final double LONG_RTT_SMOOTHING = 0.01; // 长期延迟约为最近100个请求的平均
+	private static final double LIMIT_SMOOTHING = 0.2; // 每次只向新上限移动20%，避免抖动
+	private static final double BACKOFF_RATIO = 0.9; // 请求被丢弃时的乘性减
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	// 以下状态都由this保护
+	private double limit;
+	private double longRtt; // 纳秒，0表示还没有样本
+	private int inFlight;
+
+	public ConcurrencyLimiter() {
+		this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+	}
+
+	/**
+	 * @param initialLimit
+	 * @param minLimit
+	 *            上限不会减到小于它，至少为1
+	 * @param maxLimit
+	 */
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Invalid limits " + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+		}
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * @Description: 按优先级准入一个请求
+	 * @param priority
+	 *            RequestHeader.PRIORITY_LOW到PRIORITY_HIGH
+	 * @return: boolean 为false时请求应被拒绝
+	 */
+	public synchronized boolean tryAcquire(int priority) {
+		if (inFlight >= limitFor(priority)) {
+			return false;
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * @Description: 优先级可以使用的并发数，至少为1，避免上限很小时低优先级的请求永远无法执行
+	 */
+	private int limitFor(int priority) {
+		double share;
+		if (priority >= RequestHeader.PRIORITY_HIGH) {
+			share = 1.0;
+		} else if (priority == RequestHeader.PRIORITY_NORMAL) {
+			share = 0.9;
+		} else {
+			share = 0.5;
+		}
+		return Math.max(1, (int) (limit * share));
+	}
+
+	/**
+	 * @Description: 请求执行完成
+	 * @param rttNanos
+	 *            从入队到执行完成的时间，包含排队时间
+	 * @return: void
+	 */
+	public synchronized void onSuccess(long rttNanos) {
+		int current = inFlight--;
+		if (longRtt == 0) {
+			longRtt = rttNanos;
+			return;
+		}
+		longRtt += (rttNanos - longRtt) * LONG_RTT_SMOOTHING;
+		// 持续过载后长期延迟也被抬高，短期延迟回落到一半以下时让长期延迟较快地跟上
+		if (longRtt > 2.0 * rttNanos) {
+			longRtt *= 0.95;
+		}
+		if (current < limit / 2) {
+			return;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / Math.max(1, rttNanos)));
+		double target = limit * gradient + Math.sqrt(limit);
+		setLimit(limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING);
+	}
+
+	/**
+	 * @Description: 请求没有执行就被丢弃，例如在队列中过期或者被执行器拒绝，是过载的信号
+	 * @return: void
+	 */
+	public synchronized void onDropped() {
+		inFlight--;
+		setLimit(limit * BACKOFF_RATIO);
+	}
+
+	/**
+	 * @Description: 请求因为与负载无关的原因结束，例如连接关闭，不调整上限
+	 * @return: void
+	 */
+	public synchronized void onIgnore() {
+		inFlight--;
+	}
+
+	private void setLimit(double newLimit) {
+		limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+	}
+
+	/**
+	 * @Description: 当前的并发上限
+	 * @return: int
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ConcurrencyLimiter [limit=" + (int) limit + ", inFlight=" + inFlight + ", longRtt="
+				+ (long) longRtt / 1000 + "us]";
+	}
+}
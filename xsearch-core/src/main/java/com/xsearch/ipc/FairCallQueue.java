@@ -0,0 +1,144 @@
+package com.xsearch.ipc;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @Description: 按key公平调度的请求队列，key可以是连接或者租户
+ *               <p>
+ *               每个key有自己的子队列，出队时在有请求的key之间轮询，每次取一个，避免一个连接上大量管道化请求饿死其他连接。
+ *               单个key最多占用总容量的一部分，超过时offer返回false，只对这个key施加背压。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 22, 2017 4:08:33 PM
+ */
+public class FairCallQueue<E> implements CallQueue<E> {
+
+	/**
+	 * @Description: 从元素中提取公平调度的key
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 22, 2017 4:08:33 PM
+	 */
+	public interface KeyExtractor<E> {
+		Object keyOf(E e);
+	}
+
+	private final int capacity;
+	private final int capacityPerKey;
+	private final KeyExtractor<E> keyExtractor;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Map<Object, ArrayDeque<E>> queues = new HashMap<Object, ArrayDeque<E>>();
+	private final ArrayDeque<Object> activeKeys = new ArrayDeque<Object>(); // 轮询顺序
+	private int count;
+
+	public FairCallQueue(int capacity, KeyExtractor<E> keyExtractor) {
+		this(capacity, Math.max(1, capacity / 4), keyExtractor);
+	}
+
+	public FairCallQueue(int capacity, int capacityPerKey, KeyExtractor<E> keyExtractor) {
+		if (capacity <= 0 || capacityPerKey <= 0) {
+			throw new IllegalArgumentException("Invalid capacity " + capacity + "/" + capacityPerKey);
+		}
+		this.capacity = capacity;
+		this.capacityPerKey = Math.min(capacity, capacityPerKey);
+		this.keyExtractor = keyExtractor;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		Object key = keyExtractor.keyOf(e);
+		lock.lock();
+		try {
+			if (count >= capacity) {
+				return false;
+			}
+
+			ArrayDeque<E> queue = queues.get(key);
+			if (queue == null) {
+				queue = new ArrayDeque<E>();
+				queues.put(key, queue);
+				activeKeys.addLast(key);
+			} else if (queue.size() >= capacityPerKey) {
+				return false;
+			}
+
+			queue.addLast(e);
+			count++;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @Description: 取轮询到的key的队首元素，key还有元素时放回轮询队尾，调用方需要持有锁
+	 * @return: E
+	 */
+	private E dequeue() {
+		Object key = activeKeys.pollFirst();
+		ArrayDeque<E> queue = queues.get(key);
+		E e = queue.pollFirst();
+		if (queue.isEmpty()) {
+			queues.remove(key);
+		} else {
+			activeKeys.addLast(key);
+		}
+		count--;
+		return e;
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+}
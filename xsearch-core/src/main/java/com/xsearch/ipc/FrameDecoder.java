@@ -0,0 +1,122 @@
+package com.xsearch.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 长度前缀帧解码器，帧格式为 [4字节长度][数据]
+ *               <p>
+ *               一次读取中可能包含多个完整帧，也可能只有半个帧，解码器负责跨多次读取拼接帧，
+ *               每拼出一个完整帧就回调一次FrameHandler。帧缓冲从BufferPool中申请，由FrameHandler负责归还。
+ *               解码器本身不是线程安全的，每个连接持有一个。
+ * 
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 13, 2017 3:26:18 PM
+ */
+public class FrameDecoder {
+
+	/**
+	 * @Description: 完整帧回调
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 13, 2017 3:26:18 PM
+	 */
+	public interface FrameHandler {
+		/**
+		 * @Description: 处理一个完整帧，frame的position为0，limit为帧长度
+		 * @param frame
+		 * @throws IOException
+		 * @throws InterruptedException
+		 * @return: void
+		 */
+		void onFrame(ByteBuffer frame) throws IOException, InterruptedException;
+	}
+
+	private final BufferPool bufferPool;
+	private final int maxFrameSize;
+
+	private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4); // 长度跨读取时暂存
+	private ByteBuffer frameBuffer; // 正在拼接中的帧
+
+	public FrameDecoder(BufferPool bufferPool, int maxFrameSize) {
+		this.bufferPool = bufferPool;
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * @Description: 解码in中所有可读的数据，返回时in已经被读完
+	 * @param in
+	 * @param handler
+	 * @throws IOException
+	 *             帧长度非法
+	 * @throws InterruptedException
+	 * @return: void
+	 */
+	public void decode(ByteBuffer in, FrameHandler handler) throws IOException, InterruptedException {
+		while (in.hasRemaining()) {
+			if (frameBuffer == null) {
+				int length;
+				if (lengthBuffer.position() == 0 && in.remaining() >= 4) {
+					length = in.getInt();
+				} else {
+					copy(in, lengthBuffer);
+					if (lengthBuffer.hasRemaining()) {
+						return; // 长度还没有读全
+					}
+					lengthBuffer.flip();
+					length = lengthBuffer.getInt();
+					lengthBuffer.clear();
+				}
+
+				if (length < 0 || length > maxFrameSize) {
+					throw new IOException("Invalid frame length " + length + ", max frame size is " + maxFrameSize);
+				}
+				frameBuffer = bufferPool.acquire(length);
+			}
+
+			copy(in, frameBuffer);
+			if (!frameBuffer.hasRemaining()) {
+				ByteBuffer frame = frameBuffer;
+				frameBuffer = null;
+				frame.flip();
+				handler.onFrame(frame);
+			}
+		}
+	}
+
+	/**
+	 * @Description: 是否有未拼完的帧
+	 * @return: boolean
+	 */
+	public boolean hasPartialFrame() {
+		return frameBuffer != null || lengthBuffer.position() > 0;
+	}
+
+	/**
+	 * @Description: 连接关闭时归还未拼完的帧缓冲
+	 * @return: void
+	 */
+	public void release() {
+		if (frameBuffer != null) {
+			bufferPool.release(frameBuffer);
+			frameBuffer = null;
+		}
+		lengthBuffer.clear();
+	}
+
+	/**
+	 * @Description: 尽可能多地从src拷贝到dst，不产生新的ByteBuffer对象
+	 * @param src
+	 * @param dst
+	 * @return: void
+	 */
+	private static void copy(ByteBuffer src, ByteBuffer dst) {
+		int n = Math.min(src.remaining(), dst.remaining());
+		int limit = src.limit();
+		src.limit(src.position() + n);
+		dst.put(src);
+		src.limit(limit);
+	}
+}
@@ -0,0 +1,30 @@
+package com.xsearch.ipc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 响应数据由多段buffer组成的请求处理器，由Handler线程调用
+ *               <p>
+ *               XsearchServer只把响应帧头编码到缓冲池的buffer中，processGathering返回的各段buffer不再拷贝，
+ *               由Responder在帧头之后依次聚集写到socket。段文件映射的buffer是直接内存，写入时只有内核中的一次拷贝，
+ *               适合直接发送存储字段这类已经按帧格式编码好的大块数据。客户端收到的帧与CallProcessor的响应相同，数据为各段依次拼接。
+ *               <p>
+ *               返回的buffer在发送完成之前不能被修改，也不能引用param（param在响应发送之前就被归还）。
+ *               不经过XsearchServer调用时使用process，实现应返回与各段拼接相同的数据。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 8:05:41 PM
+ */
+public interface GatheringCallProcessor extends CallProcessor {
+
+	/**
+	 * @Description: 处理一个请求
+	 * @param param
+	 * @return
+	 * @throws Exception
+	 *             处理失败时异常信息会以错误状态返回给客户端
+	 * @return: ByteBuffer[] 各段从position到limit的内容依次作为响应数据
+	 */
+	ByteBuffer[] processGathering(ByteBuffer param) throws Exception;
+}
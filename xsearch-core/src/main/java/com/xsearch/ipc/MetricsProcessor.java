@@ -0,0 +1,132 @@
+package com.xsearch.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.xsearch.io.WritableUtils;
+import com.xsearch.metrics.MetricsRegistry;
+
+/**
+ * @Description: 导出指标快照的请求处理器，XsearchServer在METHOD_ID上自动挂载，导出服务所用注册表中的指标
+ *               <p>
+ *               web节点只运行客户端，本进程中没有ipc.{端口}.指标，通过这个方法向各分片拉取。
+ *               请求为名字前缀 [前缀 string]，响应为 [指标数 vint]，每个指标为 [名字 string][类型 byte][值]：
+ *               类型0为数值 [vlong]，类型1为直方图等键值对 [个数 vint]([键 string][vlong])，类型2为其他值的字符串 [string]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 6:02:35 PM
+ */
+public class MetricsProcessor implements CallProcessor {
+	public static final int METHOD_ID = XsearchServer.MAX_METHODS - 1; // 导出指标的方法id
+
+	private static final byte TYPE_LONG = 0;
+	private static final byte TYPE_MAP = 1;
+	private static final byte TYPE_STRING = 2;
+
+	private final MetricsRegistry registry;
+
+	public MetricsProcessor(MetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public ByteBuffer process(ByteBuffer param) throws Exception {
+		String prefix = param.hasRemaining() ? WritableUtils.readString(param) : "";
+		return encode(registry.snapshot(prefix));
+	}
+
+	public static ByteBuffer encodeRequest(String prefix) {
+		ByteBuffer buffer = ByteBuffer.allocate(WritableUtils.stringSize(prefix));
+		WritableUtils.writeString(buffer, prefix);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @Description: 编码指标快照，值为MetricsRegistry.snapshot中的类型
+	 * @param snapshot
+	 * @return: ByteBuffer
+	 */
+	public static ByteBuffer encode(Map<String, Object> snapshot) {
+		// 先算出长度，一次分配
+		int size = WritableUtils.vIntSize(snapshot.size());
+		for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+			size += WritableUtils.stringSize(entry.getKey()) + 1;
+			Object value = entry.getValue();
+			if (value instanceof Number) {
+				size += WritableUtils.vLongSize(((Number) value).longValue());
+			} else if (value instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) value;
+				size += WritableUtils.vIntSize(map.size());
+				for (Map.Entry<?, ?> field : map.entrySet()) {
+					size += WritableUtils.stringSize(String.valueOf(field.getKey()))
+							+ WritableUtils.vLongSize(((Number) field.getValue()).longValue());
+				}
+			} else {
+				size += WritableUtils.stringSize(String.valueOf(value));
+			}
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		WritableUtils.writeVInt(buffer, snapshot.size());
+		for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+			WritableUtils.writeString(buffer, entry.getKey());
+			Object value = entry.getValue();
+			if (value instanceof Number) {
+				buffer.put(TYPE_LONG);
+				WritableUtils.writeVLong(buffer, ((Number) value).longValue());
+			} else if (value instanceof Map) {
+				Map<?, ?> map = (Map<?, ?>) value;
+				buffer.put(TYPE_MAP);
+				WritableUtils.writeVInt(buffer, map.size());
+				for (Map.Entry<?, ?> field : map.entrySet()) {
+					WritableUtils.writeString(buffer, String.valueOf(field.getKey()));
+					WritableUtils.writeVLong(buffer, ((Number) field.getValue()).longValue());
+				}
+			} else {
+				buffer.put(TYPE_STRING);
+				WritableUtils.writeString(buffer, String.valueOf(value));
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @Description: 解码指标快照，按名字排序，直方图的键保持原来的顺序
+	 * @param buffer
+	 * @return: Map<String,Object>
+	 */
+	public static Map<String, Object> decode(ByteBuffer buffer) {
+		int count = WritableUtils.readVInt(buffer);
+		if (count < 0 || count > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid metrics count: " + count);
+		}
+		Map<String, Object> snapshot = new TreeMap<String, Object>();
+		for (int i = 0; i < count; i++) {
+			String name = WritableUtils.readString(buffer);
+			byte type = buffer.get();
+			if (type == TYPE_LONG) {
+				snapshot.put(name, WritableUtils.readVLong(buffer));
+			} else if (type == TYPE_MAP) {
+				int fields = WritableUtils.readVInt(buffer);
+				if (fields < 0 || fields > buffer.remaining()) {
+					throw new IllegalArgumentException("Invalid field count for " + name + ": " + fields);
+				}
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				for (int j = 0; j < fields; j++) {
+					map.put(WritableUtils.readString(buffer), WritableUtils.readVLong(buffer));
+				}
+				snapshot.put(name, map);
+			} else if (type == TYPE_STRING) {
+				snapshot.put(name, WritableUtils.readString(buffer));
+			} else {
+				throw new IllegalArgumentException("Unknown metric type " + type + " for " + name);
+			}
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,18 @@
+package com.xsearch.ipc;
+
+import java.io.IOException;
+
+/**
+ * @Description: 服务端处理请求失败时，客户端收到的异常，message为服务端返回的错误信息
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 17, 2017 2:41:19 PM
+ */
+public class RemoteException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public RemoteException(String message) {
+		super(message);
+	}
+}
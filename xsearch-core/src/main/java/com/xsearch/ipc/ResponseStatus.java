@@ -0,0 +1,20 @@
+package com.xsearch.ipc;
+
+import com.xsearch.rpc.ResponseHeader;
+
+/**
+ * @Description: 响应帧中的状态码，与ResponseHeader中的定义相同，响应帧格式见ResponseHeader
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 15, 2017 10:20:41 AM
+ */
+public final class ResponseStatus {
+	public static final byte SUCCESS = ResponseHeader.SUCCESS; // 成功，数据为处理结果
+	public static final byte ERROR = ResponseHeader.ERROR; // 处理失败，数据为UTF-8编码的错误信息
+	public static final byte BUSY = ResponseHeader.BUSY; // 请求队列已满或超过并发限制被拒绝，数据为UTF-8编码的错误信息
+	public static final byte EXPIRED = ResponseHeader.EXPIRED; // 出队时已经超过客户端的超时，没有执行
+
+	private ResponseStatus() {
+	}
+}
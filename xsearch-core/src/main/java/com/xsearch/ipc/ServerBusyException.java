@@ -0,0 +1,16 @@
+package com.xsearch.ipc;
+
+/**
+ * @Description: 服务端请求队列已满拒绝请求时，客户端收到的异常，可以稍后重试或者换一个节点
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 23, 2017 11:20:14 AM
+ */
+public class ServerBusyException extends RemoteException {
+	private static final long serialVersionUID = 1L;
+
+	public ServerBusyException(String message) {
+		super(message);
+	}
+}
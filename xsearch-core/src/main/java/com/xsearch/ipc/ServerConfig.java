@@ -0,0 +1,264 @@
+package com.xsearch.ipc;
+
+import java.util.concurrent.Executor;
+
+import com.xsearch.metrics.MetricsRegistry;
+
+/**
+ * @Description: XsearchServer 配置，未设置的项使用缺省值
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 20, 2017 10:05:47 AM
+ */
+public class ServerConfig {
+
+	/**
+	 * @Description: 请求队列类型
+	 */
+	public enum CallQueueType {
+		ARRAY, // 基于数组的无锁多生产者多消费者队列
+		FAIR // 在连接或租户之间轮询的公平队列
+	}
+
+	/**
+	 * @Description: 公平队列的调度粒度
+	 */
+	public enum FairnessKey {
+		CONNECTION, // 每个连接一个子队列
+		HOST // 每个客户端地址一个子队列，同一租户的多个连接共享
+	}
+
+	/**
+	 * @Description: 请求的执行方式
+	 */
+	public enum HandlerMode {
+		THREAD_POOL, // 固定数量的Handler线程从请求队列取请求执行
+		VIRTUAL_THREAD, // 每个请求一个虚拟线程，适合处理中阻塞在索引IO或者分片调用上的请求
+		EXECUTOR // 请求分发到外部提供的执行器
+	}
+
+	/**
+	 * @Description: 请求队列满时的处理策略，两种策略都不会阻塞Reader线程
+	 */
+	public enum OverloadPolicy {
+		PAUSE_READ, // 暂停该连接的读事件，队列有空位后恢复
+		REJECT // 直接返回服务繁忙响应
+	}
+
+	public static final int DEFAULT_BACKLOG = 128; // 指定客户连接请求队列的缺省长度
+	public static final int DEFAULT_ACCEPTOR_THREAD_NUM = 1; // 缺省监听线程数量
+	public static final int DEFAULT_READER_THREAD_NUM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2); // 缺省读线程数量
+	public static final int DEFAULT_HANDLER_THREAD_NUM = 2;
+	public static final int DEFAULT_CALL_QUEUE_SIZE = 1024;
+	public static final int DEFAULT_MAX_CONCURRENT_CALLS = 10000; // 分发模式下同时执行的最大请求数
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024; // 单个请求帧最大16MB
+	public static final int DEFAULT_MAX_CONNECTIONS = 10000; // 最大连接数，0表示不限制
+	public static final long DEFAULT_MAX_IDLE_TIME = 10 * 60 * 1000L; // 连接空闲超过10分钟关闭
+	public static final long DEFAULT_IDLE_SCAN_INTERVAL = 10 * 1000L; // 每10秒检查一次空闲连接
+	public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30 * 1000L; // 停止时最多等待30秒
+
+	private int backlog = DEFAULT_BACKLOG;
+	private int acceptorThreads = DEFAULT_ACCEPTOR_THREAD_NUM;
+	private int readerThreads = DEFAULT_READER_THREAD_NUM;
+	private HandlerMode handlerMode = HandlerMode.THREAD_POOL;
+	private int handlerThreads = DEFAULT_HANDLER_THREAD_NUM;
+	private Executor executor;
+	private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+	private ConcurrencyLimiter concurrencyLimiter;
+	private int callQueueSize = DEFAULT_CALL_QUEUE_SIZE;
+	private CallQueueType callQueueType = CallQueueType.ARRAY;
+	private FairnessKey fairnessKey = FairnessKey.CONNECTION;
+	private OverloadPolicy overloadPolicy = OverloadPolicy.PAUSE_READ;
+	private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+	private long idleScanInterval = DEFAULT_IDLE_SCAN_INTERVAL;
+	private long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+	private MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
+	public int getBacklog() {
+		return backlog;
+	}
+
+	public void setBacklog(int backlog) {
+		this.backlog = backlog;
+	}
+
+	public int getAcceptorThreads() {
+		return acceptorThreads;
+	}
+
+	/**
+	 * @Description: 监听线程数量，大于1时每个监听线程使用独立的selector接收连接；
+	 *               系统支持SO_REUSEPORT时每个监听线程还会绑定独立的监听socket，由内核分摊连接
+	 * @param acceptorThreads
+	 * @return: void
+	 */
+	public void setAcceptorThreads(int acceptorThreads) {
+		this.acceptorThreads = acceptorThreads;
+	}
+
+	public int getReaderThreads() {
+		return readerThreads;
+	}
+
+	public void setReaderThreads(int readerThreads) {
+		this.readerThreads = readerThreads;
+	}
+
+	public HandlerMode getHandlerMode() {
+		return handlerMode;
+	}
+
+	public void setHandlerMode(HandlerMode handlerMode) {
+		this.handlerMode = handlerMode;
+	}
+
+	public int getHandlerThreads() {
+		return handlerThreads;
+	}
+
+	public void setHandlerThreads(int handlerThreads) {
+		this.handlerThreads = handlerThreads;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @Description: EXECUTOR模式下执行请求的执行器，由调用方负责关闭
+	 * @param executor
+	 * @return: void
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	/**
+	 * @Description: VIRTUAL_THREAD和EXECUTOR模式下同时执行的最大请求数，THREAD_POOL模式下由handlerThreads决定
+	 * @param maxConcurrentCalls
+	 * @return: void
+	 */
+	public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * @Description: 请求入队前的自适应并发限制，为null时只在请求队列满时拒绝。限制器保存服务的负载状态，不能在多个服务之间共享
+	 * @param concurrencyLimiter
+	 * @return: void
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	public int getCallQueueSize() {
+		return callQueueSize;
+	}
+
+	public void setCallQueueSize(int callQueueSize) {
+		this.callQueueSize = callQueueSize;
+	}
+
+	public CallQueueType getCallQueueType() {
+		return callQueueType;
+	}
+
+	public void setCallQueueType(CallQueueType callQueueType) {
+		this.callQueueType = callQueueType;
+	}
+
+	public FairnessKey getFairnessKey() {
+		return fairnessKey;
+	}
+
+	public void setFairnessKey(FairnessKey fairnessKey) {
+		this.fairnessKey = fairnessKey;
+	}
+
+	public OverloadPolicy getOverloadPolicy() {
+		return overloadPolicy;
+	}
+
+	public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+		this.overloadPolicy = overloadPolicy;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @Description: 最大连接数，达到上限时淘汰最久没有通信的空闲连接，0表示不限制
+	 * @param maxConnections
+	 * @return: void
+	 */
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * @Description: 没有未完成请求的连接空闲超过该时间（毫秒）后关闭
+	 * @param maxIdleTime
+	 * @return: void
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	public long getIdleScanInterval() {
+		return idleScanInterval;
+	}
+
+	public void setIdleScanInterval(long idleScanInterval) {
+		this.idleScanInterval = idleScanInterval;
+	}
+
+	public long getShutdownTimeout() {
+		return shutdownTimeout;
+	}
+
+	/**
+	 * @Description: stop()等待请求处理完和响应发送完的最长时间（毫秒）
+	 * @param shutdownTimeout
+	 * @return: void
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+	public MetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	/**
+	 * @Description: 登记服务指标的注册表，缺省为进程内共享的MetricsRegistry.getDefault()
+	 * @param metricsRegistry
+	 * @return: void
+	 */
+	public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
+}
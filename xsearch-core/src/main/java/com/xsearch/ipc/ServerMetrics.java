@@ -0,0 +1,136 @@
+package com.xsearch.ipc;
+
+import com.xsearch.metrics.Counter;
+import com.xsearch.metrics.Gauge;
+import com.xsearch.metrics.Histogram;
+import com.xsearch.metrics.MetricsRegistry;
+
+/**
+ * @Description: XsearchServer 各处理阶段的指标，时间单位均为微秒
+ *               <p>
+ *               accept：接收连接到交给Reader；read：一次读事件的读取和拼帧；queue：请求入队到出队；
+ *               handle：处理器执行；write：响应进入发送队列到完整写出，包括等待socket可写的时间。
+ *               call.rejected为请求队列满或执行器拒绝的请求，call.shed为超过自适应并发上限的请求，call.expired为出队时已经超时而丢弃的请求。
+ *               计数和直方图在各线程上直接累加，不加锁；队列长度、连接数等在导出时由Gauge读取。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 4:48:20 PM
+ */
+public class ServerMetrics {
+	private final MetricsRegistry registry;
+	private final String prefix;
+
+	final Counter accepted;
+	final Counter connectionsRejected;
+	final Histogram acceptTime;
+
+	final Counter reads;
+	final Counter bytesIn;
+	final Histogram readTime;
+
+	final Counter callsReceived;
+	final Counter callsRejected;
+	final Counter callsShed;
+	final Counter callsExpired;
+	final Counter callsFailed;
+	final Histogram queueTime;
+	final Histogram handleTime;
+
+	final Counter bytesOut;
+	final Histogram writeTime;
+
+	/**
+	 * @param registry
+	 * @param prefix
+	 *            指标名的前缀，以点结尾
+	 */
+	public ServerMetrics(MetricsRegistry registry, String prefix) {
+		this.registry = registry;
+		this.prefix = prefix;
+		this.accepted = registry.register(prefix + "accept.count", new Counter());
+		this.connectionsRejected = registry.register(prefix + "accept.rejected", new Counter());
+		this.acceptTime = registry.register(prefix + "accept.time_us", new Histogram());
+		this.reads = registry.register(prefix + "read.count", new Counter());
+		this.bytesIn = registry.register(prefix + "read.bytes", new Counter());
+		this.readTime = registry.register(prefix + "read.time_us", new Histogram());
+		this.callsReceived = registry.register(prefix + "call.received", new Counter());
+		this.callsRejected = registry.register(prefix + "call.rejected", new Counter());
+		this.callsShed = registry.register(prefix + "call.shed", new Counter());
+		this.callsExpired = registry.register(prefix + "call.expired", new Counter());
+		this.callsFailed = registry.register(prefix + "call.failed", new Counter());
+		this.queueTime = registry.register(prefix + "call.queue_us", new Histogram());
+		this.handleTime = registry.register(prefix + "call.handle_us", new Histogram());
+		this.bytesOut = registry.register(prefix + "write.bytes", new Counter());
+		this.writeTime = registry.register(prefix + "write.time_us", new Histogram());
+	}
+
+	void registerGauge(String name, Gauge gauge) {
+		registry.register(prefix + name, gauge);
+	}
+
+	/**
+	 * @Description: 从注册表中移除本服务的全部指标
+	 * @return: void
+	 */
+	void unregister() {
+		registry.removeAll(prefix);
+	}
+
+	static long micros(long startNanos) {
+		return (System.nanoTime() - startNanos) / 1000;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public long getAccepted() {
+		return accepted.count();
+	}
+
+	public long getCallsReceived() {
+		return callsReceived.count();
+	}
+
+	public long getCallsRejected() {
+		return callsRejected.count();
+	}
+
+	public long getCallsShed() {
+		return callsShed.count();
+	}
+
+	public long getCallsExpired() {
+		return callsExpired.count();
+	}
+
+	public long getCallsFailed() {
+		return callsFailed.count();
+	}
+
+	public long getBytesIn() {
+		return bytesIn.count();
+	}
+
+	public long getBytesOut() {
+		return bytesOut.count();
+	}
+
+	public Histogram getQueueTime() {
+		return queueTime;
+	}
+
+	public Histogram getHandleTime() {
+		return handleTime;
+	}
+
+	public Histogram getWriteTime() {
+		return writeTime;
+	}
+
+	@Override
+	public String toString() {
+		return registry.snapshot(prefix).toString();
+	}
+}
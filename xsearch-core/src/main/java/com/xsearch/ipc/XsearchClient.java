@@ -1,12 +1,629 @@
 package com.xsearch.ipc;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xsearch.io.Writable;
+import com.xsearch.rpc.RequestHeader;
+import com.xsearch.rpc.ResponseHeader;
+
 /**
- * @Description: TODO
+ * @Description: Xsearch 客户端
+ *               <p>
+ *               对每个服务端地址维护一组长连接，调用时轮询选择连接。每个请求带上调用id，
+ *               同一连接上可以同时有多个未完成的调用（pipeline），响应按调用id匹配后完成对应的CompletableFuture。
+ *               请求帧和响应帧的格式见RequestHeader和ResponseHeader，参数可以是ByteBuffer，也可以是直接写入请求帧的Writable。
+ *               <p>
+ *               请求在调用线程上直接非阻塞写，发送缓冲满时交给IO线程在可写时继续发送；响应全部由IO线程读取。
+ *               <p>
+ *               调用的超时和优先级写入请求头，服务端丢弃出队时已经超时的请求，过载时先拒绝低优先级的请求。
  *
  * @author: wuming.zy
  * @version: v1.0
  * @since: Mar 9, 2017 5:54:15 PM
  */
-public class XsearchClient {
+public class XsearchClient implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(XsearchClient.class);
+
+	private static final int DEFAULT_CONNECTIONS_PER_ADDRESS = 2; // 每个地址的连接数
+	private static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024; // 单个响应帧最大16MB
+	private static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_GATHER_BUFFERS = 16;
+
+	private final int connectionsPerAddress;
+	private final Map<InetSocketAddress, ConnectionPool> pools = new ConcurrentHashMap<InetSocketAddress, ConnectionPool>();
+	private final AtomicInteger callIdCounter = new AtomicInteger();
+
+	private final BufferPool bufferPool = new BufferPool();
+	private final IoThread ioThread;
+	private final ScheduledThreadPoolExecutor timer; // 调用超时
+	private volatile boolean running = true;
+
+	public XsearchClient() throws IOException {
+		this(DEFAULT_CONNECTIONS_PER_ADDRESS);
+	}
+
+	public XsearchClient(int connectionsPerAddress) throws IOException {
+		if (connectionsPerAddress <= 0) {
+			throw new IllegalArgumentException("connectionsPerAddress must be positive: " + connectionsPerAddress);
+		}
+		this.connectionsPerAddress = connectionsPerAddress;
+		this.ioThread = new IoThread();
+		this.ioThread.start();
+		this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "XsearchClient Timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * @Description: 异步调用，param从position到limit的内容作为请求参数，调用返回时param已经被拷贝，可以复用
+	 * @param address
+	 * @param param
+	 * @return: CompletableFuture<ByteBuffer> 完成时的值为响应数据；服务端处理失败时以RemoteException异常完成
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, ByteBuffer param) {
+		return call(address, param, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @Description: 带超时的异步调用，超时后以TimeoutException异常完成并放弃该调用，之后到达的响应被丢弃
+	 * @param address
+	 * @param param
+	 * @param timeout
+	 *            小于等于0表示不超时
+	 * @param unit
+	 * @return: CompletableFuture<ByteBuffer>
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, ByteBuffer param, long timeout, TimeUnit unit) {
+		return call(address, RequestHeader.DEFAULT_METHOD, param, timeout, unit);
+	}
+
+	/**
+	 * @Description: 调用服务端的指定方法
+	 * @param address
+	 * @param methodId
+	 * @param param
+	 *            从position到limit的内容作为请求参数，调用返回时已经被拷贝
+	 * @param timeout
+	 *            小于等于0表示不超时
+	 * @param unit
+	 * @return: CompletableFuture<ByteBuffer>
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, int methodId, ByteBuffer param,
+			long timeout, TimeUnit unit) {
+		return call(address, methodId, param, timeout, unit, RequestHeader.PRIORITY_NORMAL);
+	}
+
+	/**
+	 * @Description: 以指定的优先级调用服务端的方法
+	 * @param address
+	 * @param methodId
+	 * @param param
+	 *            从position到limit的内容作为请求参数，调用返回时已经被拷贝
+	 * @param timeout
+	 *            小于等于0表示不超时
+	 * @param unit
+	 * @param priority
+	 *            RequestHeader.PRIORITY_LOW到PRIORITY_HIGH，服务端过载时先拒绝优先级低的请求
+	 * @return: CompletableFuture<ByteBuffer>
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, int methodId, final ByteBuffer param,
+			long timeout, TimeUnit unit, int priority) {
+		return call(address, methodId, param.remaining(), new FrameWriter() {
+			@Override
+			public void write(RequestHeader header, ByteBuffer frame) {
+				header.writeFrame(frame, param);
+			}
+		}, timeout, unit, priority);
+	}
+
+	/**
+	 * @Description: 调用服务端的指定方法，参数直接编码到请求帧中，不经过中间缓冲
+	 * @param address
+	 * @param methodId
+	 * @param param
+	 * @param timeout
+	 *            小于等于0表示不超时
+	 * @param unit
+	 * @return: CompletableFuture<ByteBuffer>
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, int methodId, Writable param,
+			long timeout, TimeUnit unit) {
+		return call(address, methodId, param, timeout, unit, RequestHeader.PRIORITY_NORMAL);
+	}
+
+	/**
+	 * @Description: 以指定的优先级调用服务端的方法，参数直接编码到请求帧中
+	 * @param address
+	 * @param methodId
+	 * @param param
+	 * @param timeout
+	 *            小于等于0表示不超时
+	 * @param unit
+	 * @param priority
+	 *            RequestHeader.PRIORITY_LOW到PRIORITY_HIGH
+	 * @return: CompletableFuture<ByteBuffer>
+	 */
+	public CompletableFuture<ByteBuffer> call(InetSocketAddress address, int methodId, final Writable param,
+			long timeout, TimeUnit unit, int priority) {
+		return call(address, methodId, param.serializedSize(), new FrameWriter() {
+			@Override
+			public void write(RequestHeader header, ByteBuffer frame) {
+				header.writeFrame(frame, param);
+			}
+		}, timeout, unit, priority);
+	}
+
+	/**
+	 * @Description: 把请求头和参数写入请求帧
+	 */
+	private interface FrameWriter {
+		void write(RequestHeader header, ByteBuffer frame);
+	}
+
+	private CompletableFuture<ByteBuffer> call(InetSocketAddress address, int methodId, int paramLength,
+			FrameWriter writer, final long timeout, final TimeUnit unit, int priority) {
+		if (priority < RequestHeader.PRIORITY_LOW || priority > RequestHeader.PRIORITY_HIGH) {
+			throw new IllegalArgumentException("Invalid priority " + priority);
+		}
+		final CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+		if (!running) {
+			future.completeExceptionally(new IOException("XsearchClient closed"));
+			return future;
+		}
+
+		final Connection connection;
+		try {
+			connection = getConnection(address);
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		final int id = callIdCounter.incrementAndGet() & Integer.MAX_VALUE; // 非负，vint编码不超过5字节
+		RequestHeader header = new RequestHeader(id, methodId, 0, timeoutMillis(timeout, unit), priority);
+		ByteBuffer frame = bufferPool.acquire(4 + header.serializedSize() + paramLength);
+		writer.write(header, frame);
+		frame.flip();
+
+		// 先登记再发送，避免响应先于登记到达
+		connection.pendingCalls.put(id, future);
+		connection.send(frame);
+
+		if (timeout > 0 && !future.isDone()) {
+			final ScheduledFuture<?> timeoutTask;
+			try {
+				timeoutTask = timer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (connection.pendingCalls.remove(id, future)) {
+							future.completeExceptionally(new TimeoutException("Call " + id + " to " + connection.address
+									+ " timed out after " + timeout + " " + unit));
+						}
+					}
+				}, timeout, unit);
+			} catch (RejectedExecutionException e) {
+				// 客户端正在关闭，未完成的调用会随连接关闭以异常完成
+				return future;
+			}
+			future.whenComplete(new BiConsumer<ByteBuffer, Throwable>() {
+				@Override
+				public void accept(ByteBuffer value, Throwable e) {
+					timeoutTask.cancel(false);
+				}
+			});
+		}
+		return future;
+	}
+
+	/**
+	 * @Description: 请求头中的超时毫秒数，不足1毫秒的超时按1毫秒发送，0表示不限
+	 */
+	private static int timeoutMillis(long timeout, TimeUnit unit) {
+		if (timeout <= 0) {
+			return 0;
+		}
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, unit.toMillis(timeout)));
+	}
+
+	/**
+	 * @Description: 轮询选择地址对应的一个连接，连接不存在或已断开时重新建立
+	 * @param address
+	 * @throws IOException
+	 * @return: Connection
+	 */
+	private Connection getConnection(InetSocketAddress address) throws IOException {
+		ConnectionPool pool = pools.get(address);
+		if (pool == null) {
+			ConnectionPool newPool = new ConnectionPool(address);
+			pool = pools.putIfAbsent(address, newPool);
+			if (pool == null) {
+				pool = newPool;
+			}
+		}
+		return pool.next();
+	}
+
+	/**
+	 * @Description: 关闭客户端，所有未完成的调用以异常完成
+	 * @return: void
+	 */
+	@Override
+	public void close() {
+		running = false;
+		ioThread.selector.wakeup();
+		timer.shutdownNow();
+		for (ConnectionPool pool : pools.values()) {
+			pool.close();
+		}
+		pools.clear();
+	}
+
+	/**
+	 * @Description: 同一个服务端地址的连接池
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 17, 2017 3:05:52 PM
+	 */
+	private class ConnectionPool {
+		private final InetSocketAddress address;
+		private final Connection[] connections;
+		private final AtomicInteger nextIndex = new AtomicInteger();
+
+		public ConnectionPool(InetSocketAddress address) {
+			this.address = address;
+			this.connections = new Connection[connectionsPerAddress];
+		}
+
+		public Connection next() throws IOException {
+			int index = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+			Connection connection = connections[index];
+			if (connection != null && !connection.closed) {
+				return connection;
+			}
+
+			synchronized (this) {
+				connection = connections[index];
+				if (connection == null || connection.closed) {
+					connection = new Connection(address);
+					connections[index] = connection;
+				}
+				return connection;
+			}
+		}
+
+		public synchronized void close() {
+			for (int i = 0; i < connections.length; i++) {
+				if (connections[i] != null) {
+					connections[i].close(new IOException("XsearchClient closed"));
+					connections[i] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @Description: 客户端到服务端的一个长连接
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 17, 2017 3:12:26 PM
+	 */
+	private class Connection implements FrameDecoder.FrameHandler {
+		private final InetSocketAddress address;
+		private final SocketChannel channel;
+		private final FrameDecoder decoder; // 只在IO线程上使用
+		private volatile SelectionKey key;
+		private volatile boolean closed;
+
+		// 未完成的调用
+		private final Map<Integer, CompletableFuture<ByteBuffer>> pendingCalls = new ConcurrentHashMap<Integer, CompletableFuture<ByteBuffer>>();
+
+		// 待发送的请求，以及聚集写时复用的数组，均由writeQueue的锁保护
+		private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>();
+		private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+
+		public Connection(InetSocketAddress address) throws IOException {
+			this.address = address;
+			this.channel = SocketChannel.open();
+			try {
+				channel.socket().setTcpNoDelay(true);
+				channel.socket().setKeepAlive(true);
+				channel.connect(address); // 阻塞连接，连接建立后切换为非阻塞
+				channel.configureBlocking(false);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+
+			this.decoder = new FrameDecoder(bufferPool, DEFAULT_MAX_FRAME_SIZE);
+			ioThread.register(this);
+		}
+
+		@Override
+		public String toString() {
+			return "Connection to " + address;
+		}
+
+		/**
+		 * @Description: 发送请求帧，写队列为空时直接在调用线程上写，写不完再由IO线程继续
+		 * @param frame
+		 * @return: void
+		 */
+		public void send(ByteBuffer frame) {
+			synchronized (writeQueue) {
+				if (closed) {
+					bufferPool.release(frame);
+					failPendingCalls(new IOException(this + " closed"));
+					return;
+				}
+
+				writeQueue.addLast(frame);
+				if (writeQueue.size() == 1 && !flush()) {
+					ioThread.setInterest(this, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				}
+			}
+		}
+
+		/**
+		 * @Description: 聚集写发送队列中的请求，调用方需要持有writeQueue的锁
+		 * @return: boolean 队列是否已经发送完
+		 */
+		private boolean flush() {
+			try {
+				while (!writeQueue.isEmpty()) {
+					int count = 0;
+					for (ByteBuffer buffer : writeQueue) {
+						writeBuffers[count++] = buffer;
+						if (count == writeBuffers.length) {
+							break;
+						}
+					}
+
+					channel.write(writeBuffers, 0, count);
+					boolean socketFull = writeBuffers[count - 1].hasRemaining();
+					for (int i = 0; i < count; i++) {
+						writeBuffers[i] = null;
+					}
+
+					while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+						bufferPool.release(writeQueue.pollFirst());
+					}
+
+					if (socketFull) {
+						return false;
+					}
+				}
+				return true;
+			} catch (IOException e) {
+				logger.warn("Error writing to " + this, e);
+				close(e);
+				return true;
+			}
+		}
+
+		/**
+		 * @Description: IO线程上处理可写事件
+		 * @return: void
+		 */
+		private void doWrite() {
+			synchronized (writeQueue) {
+				if (flush() && !closed) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			}
+		}
+
+		/**
+		 * @Description: IO线程上处理可读事件
+		 * @param readBuffer
+		 * @return: void
+		 */
+		private void doRead(ByteBuffer readBuffer) {
+			try {
+				readBuffer.clear();
+				int count = channel.read(readBuffer);
+				if (count < 0) {
+					close(new IOException(this + " closed by server"));
+					return;
+				}
+
+				readBuffer.flip();
+				decoder.decode(readBuffer, this);
+			} catch (IOException e) {
+				close(e);
+			} catch (InterruptedException e) {
+				close(new IOException(e));
+			}
+		}
+
+		@Override
+		public void onFrame(ByteBuffer frame) throws IOException {
+			try {
+				ResponseHeader header = new ResponseHeader();
+				try {
+					header.readFields(frame);
+				} catch (RuntimeException e) {
+					throw new IOException("Malformed response header from " + address + ": " + e);
+				}
+				int id = header.getCallId();
+				byte status = header.getStatus();
+				ByteBuffer value = ByteBuffer.allocate(frame.remaining());
+				value.put(frame);
+				value.flip();
+
+				CompletableFuture<ByteBuffer> future = pendingCalls.remove(id);
+				if (future == null) {
+					// 调用已经超时
+					logger.debug("Unknown call id " + id + " from " + address);
+					return;
+				}
+
+				if (status == ResponseStatus.SUCCESS) {
+					future.complete(value);
+				} else if (status == ResponseStatus.BUSY) {
+					future.completeExceptionally(new ServerBusyException(StandardCharsets.UTF_8.decode(value).toString()));
+				} else if (status == ResponseStatus.EXPIRED) {
+					// 服务端从收到请求开始计时，通常客户端先超时，只有时间差内到达的响应会走到这里
+					future.completeExceptionally(new TimeoutException(StandardCharsets.UTF_8.decode(value).toString()));
+				} else {
+					future.completeExceptionally(new RemoteException(StandardCharsets.UTF_8.decode(value).toString()));
+				}
+			} finally {
+				bufferPool.release(frame);
+			}
+		}
+
+		/**
+		 * @Description: 关闭连接，未完成的调用以cause异常完成
+		 * @param cause
+		 * @return: void
+		 */
+		public void close(IOException cause) {
+			synchronized (writeQueue) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+
+				try {
+					channel.close();
+				} catch (IOException e) {
+					logger.debug("Ignoring channel close exception", e);
+				}
+				while (!writeQueue.isEmpty()) {
+					bufferPool.release(writeQueue.pollFirst());
+				}
+			}
+			failPendingCalls(cause);
+		}
+
+		private void failPendingCalls(IOException cause) {
+			Iterator<CompletableFuture<ByteBuffer>> iterator = pendingCalls.values().iterator();
+			while (iterator.hasNext()) {
+				CompletableFuture<ByteBuffer> future = iterator.next();
+				iterator.remove();
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+
+	/**
+	 * @Description: 客户端IO线程，负责读取所有连接上的响应以及发送缓冲满后的剩余请求
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 17, 2017 3:40:08 PM
+	 */
+	private class IoThread extends Thread {
+		private final Selector selector;
+		private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(DEFAULT_READ_BUFFER_SIZE);
+
+		// 其他线程提交的注册和修改关注事件的任务，在IO线程上执行，避免和select互相阻塞
+		private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+
+		public IoThread() throws IOException {
+			super("XsearchClient IO");
+			this.selector = Selector.open();
+			this.setDaemon(true);
+		}
+
+		public void register(final Connection connection) {
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+					} catch (IOException e) {
+						connection.close(e);
+					}
+				}
+			});
+		}
+
+		public void setInterest(final Connection connection, final int ops) {
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					SelectionKey key = connection.key;
+					if (key != null && key.isValid()) {
+						key.interestOps(ops);
+					}
+				}
+			});
+		}
+
+		private void submit(Runnable task) {
+			pendingTasks.offer(task);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			logger.info("Starting " + getName());
+			while (running) {
+				try {
+					Runnable task;
+					while ((task = pendingTasks.poll()) != null) {
+						task.run();
+					}
+
+					selector.select();
+					Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+					while (iterator.hasNext()) {
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						Connection connection = (Connection) key.attachment();
+						if (key.isValid() && key.isWritable()) {
+							connection.doWrite();
+						}
+						if (key.isValid() && key.isReadable()) {
+							connection.doRead(readBuffer);
+						}
+					}
+				} catch (IOException e) {
+					logger.error("Error " + getName(), e);
+				} catch (RuntimeException e) {
+					logger.error("Error " + getName(), e);
+				}
+			}
 
+			try {
+				selector.close();
+			} catch (IOException e) {
+				logger.debug("Ignoring selector close exception", e);
+			}
+		}
+	}
 }
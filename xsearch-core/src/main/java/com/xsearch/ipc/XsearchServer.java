@@ -4,20 +4,40 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketOption;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.xsearch.metrics.Gauge;
+import com.xsearch.rpc.RequestHeader;
+import com.xsearch.rpc.ResponseHeader;
+
 /**
  * @Description: Xsearch Server reactor design
+ *               <p>
+ *               响应一般编码到缓冲池的buffer中发送；GatheringCallProcessor的响应只编码帧头，数据段直接聚集写到socket。
  * 
  * @author: wuming.zy
  * @version: v1.0
@@ -26,16 +46,214 @@ import org.slf4j.LoggerFactory;
 public class XsearchServer {
 	private static final Logger logger = LoggerFactory.getLogger(XsearchServer.class);
 
-	private static final int DEFAULT_CALL_QUEUE_SIZE = 10;
-	private static final int DEFAULT_HANDLER_THREAD_NUM = 2;
+	private static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024; // Reader每次读取的缓冲大小
+	private static final int MAX_GATHER_BUFFERS = 64; // 一次聚集写最多合并的buffer数
+	public static final int MAX_METHODS = 256; // 方法id的上限
+
+	private final ServerConfig config;
+
+	private Listener[] listeners; // 监听连接线程
+	private Reader[] readers; // 读线程，所有监听线程共享
+	private final AtomicInteger readerIndex = new AtomicInteger();
+	private Responder responder; // 响应发送线程
+	private Handler[] handlers; // 处理线程，THREAD_POOL模式
+	private Dispatcher dispatcher; // 分发线程，VIRTUAL_THREAD和EXECUTOR模式
+	private CallQueue<Call> callQueue; // queued calls
+	private final AtomicInteger pausedConnectionCount = new AtomicInteger(); // 因队列满暂停读取的连接数
+	private final AtomicInteger inFlightCalls = new AtomicInteger(); // 已入队但还没有处理完的请求数
+	private ConnectionManager connectionManager; // 连接管理线程，清理空闲连接
+	private ExecutorService ownedExecutor; // 服务自己创建的执行器，停止时关闭
+	private final ServerMetrics metrics; // 各处理阶段的计数和延迟
+	private final ConcurrencyLimiter limiter; // 入队前的自适应并发限制，可以为null
+
+	// 当前线程正在执行的请求，处理器据此获取请求的截止时间
+	private static final ThreadLocal<Call> currentCall = new ThreadLocal<Call>();
 
-	private Listener listener; // 监听连接线程
-	private Handler[] handlers; // 处理线程
-	private BlockingQueue<Call> callQueue; // queued calls
+	private volatile boolean running = true;
+
+	// 按方法id索引的请求处理逻辑，修改时整体替换数组；缺省方法原样返回请求数据
+	private volatile CallProcessor[] processors = { new CallProcessor() {
+		@Override
+		public ByteBuffer process(ByteBuffer param) {
+			return param;
+		}
+	} };
 
 	public XsearchServer(String hostname, int port) throws IOException {
-		this.listener = new Listener(hostname, port);
-		this.callQueue = new LinkedBlockingQueue<Call>(DEFAULT_CALL_QUEUE_SIZE);
+		this(hostname, port, new ServerConfig());
+	}
+
+	public XsearchServer(String hostname, int port, ServerConfig config) throws IOException {
+		this.config = config;
+		this.callQueue = createCallQueue();
+		this.limiter = config.getConcurrencyLimiter();
+
+		this.readers = new Reader[config.getReaderThreads()];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Reader("Reader #" + (i + 1) + " for port " + port);
+		}
+
+		// 第一个监听线程绑定地址，其余的监听线程复用端口或者共享同一个监听socket
+		InetSocketAddress address = new InetSocketAddress(hostname, port);
+		this.listeners = new Listener[Math.max(1, config.getAcceptorThreads())];
+		listeners[0] = new Listener(1, openServerChannel(address, listeners.length > 1));
+		for (int i = 1; i < listeners.length; i++) {
+			ServerSocketChannel channel = listeners[0].channel;
+			if (reusePortOption(channel) != null) {
+				channel = openServerChannel(getListenerAddress(), true);
+			}
+			listeners[i] = new Listener(i + 1, channel);
+		}
+
+		this.responder = new Responder();
+		this.connectionManager = new ConnectionManager();
+		this.metrics = createMetrics();
+		// 每个服务都可以被远程拉取指标，web节点通过它导出各分片的ipc指标
+		setProcessor(MetricsProcessor.METHOD_ID, new MetricsProcessor(config.getMetricsRegistry()));
+	}
+
+	/**
+	 * @Description: 在配置的注册表上登记本服务的指标，名字以 ipc.{端口}. 开头
+	 * @return: ServerMetrics
+	 */
+	private ServerMetrics createMetrics() {
+		ServerMetrics metrics = new ServerMetrics(config.getMetricsRegistry(), "ipc." + getListenerAddress().getPort() + ".");
+		metrics.registerGauge("call.queue_depth", new Gauge() {
+			@Override
+			public long value() {
+				return callQueue.size();
+			}
+		});
+		metrics.registerGauge("call.in_flight", new Gauge() {
+			@Override
+			public long value() {
+				return inFlightCalls.get();
+			}
+		});
+		metrics.registerGauge("connection.open", new Gauge() {
+			@Override
+			public long value() {
+				return connectionManager.size();
+			}
+		});
+		metrics.registerGauge("connection.paused", new Gauge() {
+			@Override
+			public long value() {
+				return pausedConnectionCount.get();
+			}
+		});
+		if (limiter != null) {
+			metrics.registerGauge("call.concurrency_limit", new Gauge() {
+				@Override
+				public long value() {
+					return limiter.getLimit();
+				}
+			});
+		}
+		return metrics;
+	}
+
+	/**
+	 * @Description: 按配置创建请求队列
+	 * @return: CallQueue<Call>
+	 */
+	private CallQueue<Call> createCallQueue() {
+		if (config.getCallQueueType() == ServerConfig.CallQueueType.FAIR) {
+			final boolean byHost = config.getFairnessKey() == ServerConfig.FairnessKey.HOST;
+			return new FairCallQueue<Call>(config.getCallQueueSize(), new FairCallQueue.KeyExtractor<Call>() {
+				@Override
+				public Object keyOf(Call call) {
+					return byHost ? call.connection.remoteAddress : call.connection;
+				}
+			});
+		}
+		return new ArrayCallQueue<Call>(config.getCallQueueSize());
+	}
+
+	/**
+	 * @Description: 打开监听socket，设置为非阻塞模式，并且绑定地址
+	 * @param address
+	 * @param reusePort
+	 *            是否尝试开启SO_REUSEPORT
+	 * @throws IOException
+	 * @return: ServerSocketChannel
+	 */
+	private ServerSocketChannel openServerChannel(InetSocketAddress address, boolean reusePort) throws IOException {
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.configureBlocking(false);
+			SocketOption<Boolean> reusePortOption = reusePort ? reusePortOption(channel) : null;
+			if (reusePortOption != null) {
+				channel.setOption(reusePortOption, true);
+			}
+			channel.socket().bind(address, config.getBacklog());
+			return channel;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @Description: 按名字查找SO_REUSEPORT选项，JDK或者操作系统不支持时返回null
+	 * @param channel
+	 * @return: SocketOption<Boolean>
+	 */
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> reusePortOption(ServerSocketChannel channel) {
+		for (SocketOption<?> option : channel.supportedOptions()) {
+			if ("SO_REUSEPORT".equals(option.name())) {
+				return (SocketOption<Boolean>) option;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @Description: 设置缺省方法的处理器
+	 * @param processor
+	 * @return: void
+	 */
+	public void setProcessor(CallProcessor processor) {
+		setProcessor(RequestHeader.DEFAULT_METHOD, processor);
+	}
+
+	/**
+	 * @Description: 设置方法的处理器，请求头中的方法id没有对应的处理器时返回错误
+	 * @param methodId
+	 *            [0, MAX_METHODS)
+	 * @param processor
+	 *            为null时移除
+	 * @return: void
+	 */
+	public synchronized void setProcessor(int methodId, CallProcessor processor) {
+		if (methodId < 0 || methodId >= MAX_METHODS) {
+			throw new IllegalArgumentException("methodId out of range [0, " + MAX_METHODS + "): " + methodId);
+		}
+		CallProcessor[] copy = Arrays.copyOf(processors, Math.max(processors.length, methodId + 1));
+		copy[methodId] = processor;
+		processors = copy;
+	}
+
+	/**
+	 * @Description: 实际监听的地址，端口为0时可以通过它获取系统分配的端口
+	 * @return: InetSocketAddress
+	 */
+	public InetSocketAddress getListenerAddress() {
+		return (InetSocketAddress) listeners[0].channel.socket().getLocalSocketAddress();
+	}
+
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @Description: 当前线程正在执行的请求距离客户端超时还剩的时间，处理器可以据此提前结束，返回部分结果
+	 * @return: long 纳秒，已经超时时小于等于0；不在Handler线程中或者请求没有超时时为Long.MAX_VALUE
+	 */
+	public static long getRemainingNanos() {
+		Call call = currentCall.get();
+		return call == null ? Long.MAX_VALUE : call.remainingNanos(System.nanoTime());
 	}
 
 	/**
@@ -43,79 +261,385 @@ public class XsearchServer {
 	 * @return: void
 	 */
 	public void start() {
-		listener.start();
-		handlers = new Handler[DEFAULT_HANDLER_THREAD_NUM];
+		connectionManager.start();
+		responder.start();
+		for (Reader reader : readers) {
+			reader.start();
+		}
+		for (Listener listener : listeners) {
+			listener.start();
+		}
+
+		switch (config.getHandlerMode()) {
+		case VIRTUAL_THREAD:
+			ownedExecutor = newVirtualThreadExecutor();
+			dispatcher = new Dispatcher(ownedExecutor);
+			dispatcher.start();
+			break;
+		case EXECUTOR:
+			if (config.getExecutor() == null) {
+				throw new IllegalStateException("HandlerMode.EXECUTOR requires ServerConfig.setExecutor");
+			}
+			dispatcher = new Dispatcher(config.getExecutor());
+			dispatcher.start();
+			break;
+		default:
+			handlers = new Handler[config.getHandlerThreads()];
+			for (int i = 0; i < handlers.length; i++) {
+				handlers[i] = new Handler("Hander #" + (i + 1));
+				handlers[i].start();
+			}
+		}
+	}
+
+	/**
+	 * @Description: 每个请求一个虚拟线程的执行器。虚拟线程需要JDK 21，低版本JDK上退化为按需创建的守护线程池
+	 * @return: ExecutorService
+	 */
+	private ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Virtual threads are not supported by this JVM, falling back to a cached thread pool");
+			ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Call Handler #" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			return executor;
+		}
+	}
 
-		for (int i = 0; i < DEFAULT_HANDLER_THREAD_NUM; i++) {
-			handlers[i] = new Handler("Hander #" + (i + 1));
-			handlers[i].start();
+	/**
+	 * @Description: 请求出队后的通知，请求队列腾出了空位，唤醒有暂停连接的Reader
+	 * @return: void
+	 */
+	private void onCallDequeued() {
+		if (pausedConnectionCount.get() > 0) {
+			for (Reader reader : readers) {
+				reader.wakeupIfPaused();
+			}
 		}
 	}
 
 	/**
-	 * @Description: 服务停止
+	 * @Description: 执行一个请求并发送响应，在Handler线程或者执行器的线程上调用
+	 * @param call
+	 * @return: void
+	 */
+	private void handleCall(Call call) {
+		ByteBuffer value = null;
+		ByteBuffer[] values = null;
+		byte status = ResponseStatus.SUCCESS;
+		long start = System.nanoTime();
+		try {
+			CallProcessor[] current = processors;
+			CallProcessor processor = call.methodId < current.length ? current[call.methodId] : null;
+			if (processor == null) {
+				throw new IllegalArgumentException("Unknown method id " + call.methodId);
+			}
+			currentCall.set(call);
+			if (processor instanceof GatheringCallProcessor) {
+				values = ((GatheringCallProcessor) processor).processGathering(call.param);
+			} else {
+				value = processor.process(call.param);
+			}
+		} catch (Throwable e) {
+			logger.warn(Thread.currentThread().getName() + ", call " + call + " error", e);
+			status = ResponseStatus.ERROR;
+			value = ByteBuffer.wrap(String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+			values = null;
+			metrics.callsFailed.inc();
+		} finally {
+			currentCall.remove();
+		}
+		metrics.handleTime.record(ServerMetrics.micros(start));
+		if (call.limited) {
+			if (status == ResponseStatus.ERROR) {
+				// 失败的请求耗时不代表正常的排队和处理时间，不参与限制的调整
+				limiter.onIgnore();
+			} else {
+				limiter.onSuccess(System.nanoTime() - call.enqueueNanos);
+			}
+		}
+
+		// 响应在归还请求缓冲之前编码，处理结果可以直接引用请求缓冲；多段的响应不拷贝，见GatheringCallProcessor
+		if (values != null) {
+			call.setResponse(status, values);
+		} else {
+			call.setResponse(status, value);
+		}
+		call.release();
+		responder.doRespond(call);
+	}
+
+	/**
+	 * @Description: 不执行请求，直接返回错误响应
+	 * @param call
+	 * @param status
+	 * @param message
+	 * @return: void
+	 */
+	private void respondUnprocessed(Call call, byte status, String message) {
+		call.setResponse(status, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+		call.release();
+		responder.doRespond(call);
+	}
+
+	/**
+	 * @Description: 请求没有执行就被丢弃，通知并发限制器
+	 * @param call
+	 * @return: void
+	 */
+	private void onCallDropped(Call call) {
+		if (call.limited) {
+			call.limited = false;
+			limiter.onDropped();
+		}
+	}
+
+	/**
+	 * @Description: 出队时检查请求是否已经超过客户端的超时，超时的请求不再执行，客户端已经放弃等待
+	 * @param call
+	 * @return: boolean 请求已经被丢弃
+	 */
+	private boolean dropIfExpired(Call call) {
+		long now = System.nanoTime();
+		if (call.remainingNanos(now) > 0) {
+			return false;
+		}
+		metrics.callsExpired.inc();
+		onCallDropped(call);
+		respondUnprocessed(call, ResponseStatus.EXPIRED, "Call expired after waiting " + (now - call.enqueueNanos)
+				/ 1000000 + "ms in queue, client timeout " + call.timeout + "ms");
+		return true;
+	}
+
+	/**
+	 * @Description: 服务停止，在配置的超时时间内优雅关闭
 	 * @return: void
 	 */
 	public void stop() {
+		stop(config.getShutdownTimeout());
+	}
+
+	/**
+	 * @Description: 服务停止。先停止接收新连接和读取新请求，再等待队列中和执行中的请求处理完、
+	 *               响应发送完，最后关闭处理线程、selector和所有连接。超时后未完成的请求直接丢弃
+	 * @param timeoutMillis
+	 * @return: void
+	 */
+	public synchronized void stop(long timeoutMillis) {
+		if (!running) {
+			return;
+		}
+		running = false;
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		logger.info("Stopping XsearchServer on " + getListenerAddress() + ", " + inFlightCalls.get() + " calls in flight");
+
+		// 停止接收新连接和读取新请求
+		for (Listener listener : listeners) {
+			listener.shutdown();
+		}
+		for (Reader reader : readers) {
+			reader.shutdown();
+		}
+
+		// 等待已经入队的请求处理完，再等待响应发送完
+		while (inFlightCalls.get() > 0 && System.currentTimeMillis() < deadline) {
+			sleepQuietly(10);
+		}
+		while (connectionManager.hasPendingResponses() && System.currentTimeMillis() < deadline) {
+			sleepQuietly(10);
+		}
+		if (inFlightCalls.get() > 0) {
+			logger.warn("Stop timed out after " + timeoutMillis + "ms, dropping " + inFlightCalls.get() + " calls");
+		}
 
+		if (handlers != null) {
+			for (Handler handler : handlers) {
+				handler.interrupt();
+			}
+		}
+		if (dispatcher != null) {
+			dispatcher.interrupt();
+		}
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdownNow();
+		}
+		responder.shutdown();
+		connectionManager.shutdown();
+		metrics.unregister();
+		logger.info("XsearchServer stopped");
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	private static void sleepQuietly(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 
 	/**
-	 * @Description: 在reactor模式中用作监听客户端连接请求，相当于Reactor功能，只处理accept事件
+	 * @Description: 连接管理线程，定期关闭空闲超时的连接，连接数达到上限时淘汰最久没有通信的空闲连接
 	 * 
 	 * @author: wuming.zy
 	 * @version: v1.0
-	 * @since: Jun 7, 2016 4:35:26 PM
+	 * @since: Mar 29, 2017 10:36:52 AM
 	 */
-	private class Listener extends Thread {
-		private static final int DEFAULT_BACKLOG = 128; // 指定客户连接请求队列的缺省长度
-		private static final int DEFAULT_READER_THREAD_NUM = 1; // 缺省读线程数量
+	private class ConnectionManager extends Thread {
+		private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+		private final AtomicInteger count = new AtomicInteger();
 
-		private Selector acceptSelector;
-		private InetSocketAddress address;
-		private ServerSocketChannel channel;
+		public ConnectionManager() {
+			super("XsearchServer Connection Manager");
+			this.setDaemon(true);
+		}
 
-		// 所有的读线程，直接用于监听客户端请求，开启线程池来运行这些线程
-		private Reader[] readers;
-		private int currentReaderIndex;
+		@Override
+		public void run() {
+			logger.info("Starting " + getName());
+			while (running) {
+				try {
+					Thread.sleep(config.getIdleScanInterval());
+					closeIdle();
+				} catch (InterruptedException e) {
+					break;
+				} catch (RuntimeException e) {
+					logger.error("Error " + getName(), e);
+				}
+			}
+		}
 
-		public Listener(String hostname, int port) throws IOException {
-			address = new InetSocketAddress(hostname, port);
+		/**
+		 * @Description: 登记新连接，连接数达到上限时先淘汰一个空闲连接，没有可淘汰的连接时拒绝。
+		 *               多个Acceptor可能同时登记，先用CAS占住名额再加入集合，连接数不会超过上限
+		 * @param connection
+		 * @return: boolean 是否登记成功
+		 */
+		public boolean add(Connection connection) {
+			int maxConnections = config.getMaxConnections();
+			while (true) {
+				int current = count.get();
+				if (maxConnections > 0 && current >= maxConnections) {
+					// 淘汰的连接在close中释放名额，之后重新竞争
+					if (!evictLeastRecentlyUsed()) {
+						return false;
+					}
+				} else if (count.compareAndSet(current, current + 1)) {
+					break;
+				}
+			}
+			connections.add(connection);
+			return true;
+		}
 
-			// 监听TCP连接，设置为非阻塞模式，并且绑定地址
-			channel = ServerSocketChannel.open();
-			channel.configureBlocking(false);
-			channel.socket().bind(address, DEFAULT_BACKLOG);
+		public void remove(Connection connection) {
+			if (connections.remove(connection)) {
+				count.decrementAndGet();
+			}
+		}
 
-			readers = new Reader[DEFAULT_READER_THREAD_NUM];
-			for (int i = 0; i < DEFAULT_READER_THREAD_NUM; i++) {
-				readers[i] = new Reader("Reader #" + (i + 1) + " for port " + port);
-				readers[i].start();
+		/**
+		 * @Description: 淘汰最久没有通信并且没有未完成请求的连接
+		 * @return: boolean 是否淘汰了连接
+		 */
+		private boolean evictLeastRecentlyUsed() {
+			Connection lru = null;
+			for (Connection connection : connections) {
+				if (connection.rpcCount.get() == 0 && (lru == null || connection.lastContactTime < lru.lastContactTime)) {
+					lru = connection;
+				}
+			}
+			if (lru == null) {
+				return false;
 			}
 
+			logger.info("Connection limit " + config.getMaxConnections() + " reached, evicting " + lru);
+			lru.close();
+			return true;
+		}
+
+		/**
+		 * @Description: 关闭空闲超时并且没有未完成请求的连接
+		 * @return: void
+		 */
+		private void closeIdle() {
+			long threshold = System.currentTimeMillis() - config.getMaxIdleTime();
+			for (Connection connection : connections) {
+				if (connection.rpcCount.get() == 0 && connection.lastContactTime < threshold) {
+					logger.debug("Closing idle connection " + connection);
+					connection.close();
+				}
+			}
+		}
+
+		public boolean hasPendingResponses() {
+			for (Connection connection : connections) {
+				synchronized (connection.responseQueue) {
+					if (!connection.responseQueue.isEmpty()) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		public int size() {
+			return count.get();
+		}
+
+		public void shutdown() {
+			interrupt();
+			for (Connection connection : connections) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * @Description: 在reactor模式中用作监听客户端连接请求，相当于Reactor功能，只处理accept事件
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Jun 7, 2016 4:35:26 PM
+	 */
+	private class Listener extends Thread {
+		private Selector acceptSelector;
+		private ServerSocketChannel channel;
+
+		public Listener(int index, ServerSocketChannel channel) throws IOException {
+			this.channel = channel;
+
 			// 向selector注册监听ServerSocketChannel的特定事件，当前事件用于监听连接请求
 			acceptSelector = Selector.open();
 			channel.register(acceptSelector, SelectionKey.OP_ACCEPT);
 
 			// 设置线程名称并且将监听线程设置为守护线程
-			this.setName("XsearchServer Listen On " + port);
+			int port = channel.socket().getLocalPort();
+			this.setName(index == 1 ? "XsearchServer Listen On " + port : "XsearchServer Listen #" + index + " On " + port);
 			this.setDaemon(true);
 		}
-		
-		public String getThreadName() {
-			return Thread.currentThread().getName();
-		}
 
 		@Override
 		public void run() {
-			logger.info("Starting " + getThreadName());
-			while (true) {
-				SelectionKey key = null;
+			logger.info("Starting " + getName());
+			while (running) {
 				try {
 					acceptSelector.select();
 					Iterator<SelectionKey> iterator = acceptSelector.selectedKeys().iterator();
 					while (iterator.hasNext()) {
-						key = iterator.next();
+						SelectionKey key = iterator.next();
 						iterator.remove();
 						if (key.isValid() && key.isAcceptable()) {
 							doAccept(key);
@@ -123,18 +647,29 @@ public class XsearchServer {
 					}
 				} catch (IOException e) {
 					logger.error("Error " + getName(), e);
-					closeConnection(key);
 				} catch (InterruptedException e) {
 					logger.error("Error " + getName(), e);
-					closeConnection(key);
-				} finally {
-					//closeConnection(key);
 				}
 			}
+
+			// 停止接收连接，共享的监听socket由第一个监听线程关闭
+			try {
+				acceptSelector.close();
+				if (this == listeners[0] || channel != listeners[0].channel) {
+					channel.close();
+				}
+			} catch (IOException e) {
+				logger.debug("Ignoring close exception", e);
+			}
+		}
+
+		public void shutdown() {
+			acceptSelector.wakeup();
+			joinQuietly(this);
 		}
 
 		/**
-		 * @Description: 接收新客户端连接请求
+		 * @Description: 接收新客户端连接请求。多个监听线程共享同一个监听socket时，accept可能被其他线程抢先而返回null
 		 * @param key
 		 * @throws InterruptedException
 		 * @throws IOException
@@ -144,51 +679,60 @@ public class XsearchServer {
 			ServerSocketChannel server = (ServerSocketChannel) key.channel();
 			SocketChannel channel = null;
 			while ((channel = server.accept()) != null) {
-				channel.configureBlocking(false);
-				channel.socket().setTcpNoDelay(true);
-				channel.socket().setKeepAlive(true);
-
-				//channel.register(acceptSelector, SelectionKey.OP_READ, "Connection");
-				channel.register(acceptSelector, SelectionKey.OP_READ);
+				long start = System.nanoTime();
+				try {
+					channel.configureBlocking(false);
+					channel.socket().setTcpNoDelay(true);
+					channel.socket().setKeepAlive(true);
+				} catch (IOException e) {
+					logger.warn("Error configuring accepted channel " + channel, e);
+					channel.close();
+					continue;
+				}
 
+				// 读事件只登记在Reader的selector上
 				Reader reader = getReader();
-				triggerReader(key, reader, channel);
+				triggerReader(reader, channel);
+				metrics.acceptTime.record(ServerMetrics.micros(start));
 			}
 		}
 
 		/**
-		 * @Description: 采用轮询策略选择一个Reader线程处理新连接，线程安全保证同一时刻进来的连接请求选用不同的reader
-		 * @return: Reader
-		 */
-		private synchronized Reader getReader() {
-			currentReaderIndex = (currentReaderIndex + 1) % readers.length;
-			return readers[currentReaderIndex];
-		}
-
-		/**
-		 * @Description: 创建连接对象，并将其附加到key上，然后将其放在reader中待处理的连接队列里
-		 * @param key
+		 * @Description: 创建连接对象，然后将其放在reader中待处理的连接队列里
 		 * @param reader
 		 * @param channel
 		 * @throws InterruptedException
 		 * @return: void
 		 */
-		private void triggerReader(SelectionKey key, Reader reader, SocketChannel channel) throws InterruptedException {
-			Connection connection = new Connection(channel, System.currentTimeMillis());
-			key.attach(connection);
+		private void triggerReader(Reader reader, SocketChannel channel) throws InterruptedException {
+			Connection connection = new Connection(channel, reader, System.currentTimeMillis());
+			if (!connectionManager.add(connection)) {
+				logger.warn("Connection limit " + config.getMaxConnections() + " reached, rejecting " + connection);
+				connection.close();
+				metrics.connectionsRejected.inc();
+				return;
+			}
 			reader.addConnection(connection);
+			metrics.accepted.inc();
 		}
 
-		/**
-		 * @Description: 关闭连接
-		 * @param key
-		 * @return: void
-		 */
-		private void closeConnection(SelectionKey key) {
-			Connection connection = (Connection) key.attachment();
-			connection.close();
+	}
+
+	private static void joinQuietly(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
+	}
 
+	/**
+	 * @Description: 采用轮询策略选择一个Reader线程处理新连接，使用原子计数器，多个监听线程并发调用也无需加锁
+	 * @return: Reader
+	 */
+	private Reader getReader() {
+		int index = (readerIndex.getAndIncrement() & Integer.MAX_VALUE) % readers.length;
+		return readers[index];
 	}
 
 	/**
@@ -203,22 +747,36 @@ public class XsearchServer {
 		private Selector readSelector;
 		private final BlockingQueue<Connection> pendingConnections;
 
+		// 该Reader上所有连接共享的读缓冲，以及拼帧用的直接内存池
+		private final BufferPool bufferPool;
+		private final ByteBuffer readBuffer;
+
+		// 因请求队列满暂停读取的连接，只在Reader线程上访问
+		private final ArrayDeque<Connection> pausedConnections = new ArrayDeque<Connection>();
+		private volatile int pausedCount;
+
 		public Reader(String name) throws IOException {
 			super(name); // 线程名字
 			this.readSelector = Selector.open();
 			this.pendingConnections = new LinkedBlockingQueue<Connection>(100);
+			this.bufferPool = new BufferPool();
+			this.readBuffer = ByteBuffer.allocateDirect(DEFAULT_READ_BUFFER_SIZE);
 		}
 
 		@Override
 		public void run() {
 			logger.info("Starting " + getName());
-			while (true) {
+			while (running) {
 				try {
 					// 在读之前为目前池中的所有的连接登记读事件，因为在doAccept中没有直接登记，也避免了readSelector饥饿死掉
 					int size = pendingConnections.size();
 					for (int i = size; i > 0; i--) {
 						Connection connection = pendingConnections.take();
-						connection.channel.register(readSelector, SelectionKey.OP_READ, connection);
+						connection.readKey = connection.channel.register(readSelector, SelectionKey.OP_READ, connection);
+					}
+
+					if (!pausedConnections.isEmpty()) {
+						resumePausedConnections();
 					}
 
 					int readyChannels = readSelector.select();
@@ -240,6 +798,26 @@ public class XsearchServer {
 					logger.error("Error " + getName(), e);
 				}
 			}
+
+			// 停止读取后，积压的请求不会再被处理，回复BUSY，客户端不用等到连接关闭
+			for (Connection connection : pausedConnections) {
+				if (connection.channel.isOpen()) {
+					connection.rejectPausedCalls();
+				} else {
+					connection.releasePausedCalls();
+				}
+			}
+			pausedConnections.clear();
+			try {
+				readSelector.close();
+			} catch (IOException e) {
+				logger.debug("Ignoring selector close exception", e);
+			}
+		}
+
+		public void shutdown() {
+			readSelector.wakeup();
+			joinQuietly(this);
 		}
 
 		/**
@@ -256,9 +834,10 @@ public class XsearchServer {
 			// 使用该连接进行读数据，更新一下最后通信时间
 			connection.setLastContactTime(System.currentTimeMillis());
 
+			long start = System.nanoTime();
 			int count = -1;
 			try {
-				count = connection.readAndProcess();
+				count = connection.readAndProcess(readBuffer);
 			} catch (IOException e) {
 				logger.error("Error " + getName(), e);
 				count = -1;
@@ -266,14 +845,63 @@ public class XsearchServer {
 				logger.error("Error " + getName(), e);
 				count = -1;
 			} finally {
-				if (count < 0) { // 读取失败，关闭连接
+				if (count < 0) { // 读取失败，关闭连接，未拼完的帧缓冲在close中归还
 					connection.close();
 				}
 			}
 
 			// 读取处理完成，更新一下最后通信时间
 			connection.setLastContactTime(System.currentTimeMillis());
-			System.out.println(connection.getLastContactTime());
+			if (count > 0) {
+				metrics.reads.inc();
+				metrics.bytesIn.add(count);
+				metrics.readTime.record(ServerMetrics.micros(start));
+			}
+		}
+
+		/**
+		 * @Description: 暂停连接的读事件，直到它积压的请求全部进入请求队列
+		 * @param connection
+		 * @return: void
+		 */
+		private void pause(Connection connection) {
+			connection.paused = true;
+			connection.readKey.interestOps(0);
+			pausedConnections.addLast(connection);
+			pausedCount = pausedConnections.size();
+			pausedConnectionCount.incrementAndGet();
+		}
+
+		/**
+		 * @Description: 把暂停连接积压的请求放入请求队列，全部放入后恢复读事件
+		 * @return: void
+		 */
+		private void resumePausedConnections() {
+			int size = pausedConnections.size();
+			for (int i = 0; i < size; i++) {
+				Connection connection = pausedConnections.pollFirst();
+				if (!connection.channel.isOpen()) {
+					connection.releasePausedCalls();
+				} else if (connection.drainPausedCalls()) {
+					connection.paused = false;
+					connection.readKey.interestOps(SelectionKey.OP_READ);
+				} else {
+					pausedConnections.addLast(connection);
+					continue;
+				}
+				pausedConnectionCount.decrementAndGet();
+			}
+			pausedCount = pausedConnections.size();
+		}
+
+		/**
+		 * @Description: 有暂停的连接时唤醒readSelector，由Handler在请求队列腾出空位后调用
+		 * @return: void
+		 */
+		public void wakeupIfPaused() {
+			if (pausedCount > 0) {
+				readSelector.wakeup();
+			}
 		}
 
 		/**
@@ -288,6 +916,180 @@ public class XsearchServer {
 		}
 	}
 
+	/**
+	 * @Description: 发送响应。Handler线程先在自己的线程上尝试非阻塞写，socket发送缓冲满时再把连接注册到
+	 *               writeSelector上，由Responder线程在可写时继续发送，避免慢客户端阻塞Handler线程。
+	 *               同一连接上排队的多个响应通过聚集写一次发出，减少系统调用。
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 15, 2017 11:03:37 AM
+	 */
+	private class Responder extends Thread {
+		private final Selector writeSelector;
+		private int pending; // 正在向writeSelector注册的连接数
+		private volatile boolean stopped;
+
+		public Responder() throws IOException {
+			super("XsearchServer Responder");
+			this.writeSelector = Selector.open();
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			logger.info("Starting " + getName());
+			while (!stopped) {
+				try {
+					waitPending(); // 等待注册完成，否则select会和register互相阻塞
+					writeSelector.select();
+					Iterator<SelectionKey> iterator = writeSelector.selectedKeys().iterator();
+					while (iterator.hasNext()) {
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						if (key.isValid() && key.isWritable()) {
+							doAsyncWrite(key);
+						}
+					}
+				} catch (IOException e) {
+					logger.error("Error " + getName(), e);
+				} catch (InterruptedException e) {
+					logger.error("Error " + getName(), e);
+				}
+			}
+
+			try {
+				writeSelector.close();
+			} catch (IOException e) {
+				logger.debug("Ignoring selector close exception", e);
+			}
+		}
+
+		public void shutdown() {
+			stopped = true;
+			writeSelector.wakeup();
+			joinQuietly(this);
+		}
+
+		/**
+		 * @Description: 连接可写，继续发送排队中的响应，发送完后取消写事件
+		 * @param key
+		 * @return: void
+		 */
+		private void doAsyncWrite(SelectionKey key) {
+			Connection connection = (Connection) key.attachment();
+			if (connection == null) {
+				return;
+			}
+
+			synchronized (connection.responseQueue) {
+				if (processResponse(connection, false)) {
+					if (key.isValid()) {
+						key.interestOps(0);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @Description: 尽可能多地发送连接上排队的响应，调用方需要持有responseQueue的锁
+		 * @param connection
+		 * @param inHandler
+		 *            是否在Handler线程上调用
+		 * @return: boolean 队列是否已经发送完
+		 */
+		private boolean processResponse(Connection connection, boolean inHandler) {
+			ArrayDeque<Call> responseQueue = connection.responseQueue;
+			try {
+				while (!responseQueue.isEmpty()) {
+					ByteBuffer[] buffers = connection.writeBuffers;
+					int count = 0;
+					for (Call call : responseQueue) {
+						count = call.addResponseBuffers(buffers, count);
+						if (count == buffers.length) {
+							break;
+						}
+					}
+
+					connection.channel.write(buffers, 0, count);
+					boolean socketFull = buffers[count - 1].hasRemaining();
+					for (int i = 0; i < count; i++) {
+						buffers[i] = null;
+					}
+
+					// 移除已经完整发送的响应
+					while (!responseQueue.isEmpty() && responseQueue.peekFirst().isResponseSent()) {
+						Call call = responseQueue.pollFirst();
+						metrics.bytesOut.add(call.responseLength);
+						metrics.writeTime.record(ServerMetrics.micros(call.respondNanos));
+						call.releaseResponse();
+					}
+
+					if (socketFull) {
+						break; // socket发送缓冲已满
+					}
+				}
+
+				if (responseQueue.isEmpty()) {
+					connection.setLastContactTime(System.currentTimeMillis());
+					return true;
+				}
+
+				if (inHandler) {
+					// 剩余数据交给Responder线程在可写时发送
+					incPending();
+					try {
+						writeSelector.wakeup();
+						connection.channel.register(writeSelector, SelectionKey.OP_WRITE, connection);
+					} finally {
+						decPending();
+					}
+				}
+				return false;
+			} catch (IOException e) {
+				logger.warn("Error writing response to " + connection, e);
+				connection.close();
+				return true;
+			}
+		}
+
+		/**
+		 * @Description: 把处理完的调用放入连接的响应队列，队列原来为空时直接在当前线程上发送
+		 * @param call
+		 * @return: void
+		 */
+		public void doRespond(Call call) {
+			Connection connection = call.connection;
+			synchronized (connection.responseQueue) {
+				if (!connection.channel.isOpen()) {
+					call.releaseResponse();
+					return;
+				}
+
+				call.respondNanos = System.nanoTime();
+				connection.responseQueue.addLast(call);
+				if (connection.responseQueue.size() == 1) {
+					processResponse(connection, true);
+				}
+			}
+		}
+
+		private synchronized void incPending() {
+			pending++;
+		}
+
+		private synchronized void decPending() {
+			pending--;
+			notify();
+		}
+
+		private synchronized void waitPending() throws InterruptedException {
+			while (pending > 0) {
+				wait();
+			}
+		}
+	}
+
 	/**
 	 * @Description: 连接对象，记录服务端和客户端的连接
 	 * 
@@ -295,25 +1097,42 @@ public class XsearchServer {
 	 * @version: v1.0
 	 * @since: Jun 8, 2016 4:40:59 PM
 	 */
-	private class Connection {
+	private class Connection implements FrameDecoder.FrameHandler {
 		// 通信的channel及对应的socket
 		private SocketChannel channel;
 		private Socket socket;
 
-		// 最后通信时间
-		private long lastContactTime;
+		// 负责该连接读事件的Reader
+		private Reader reader;
+
+		// 最后通信时间，以及已经读取但还没有发送响应的请求数，连接管理线程据此判断连接是否空闲
+		private volatile long lastContactTime;
+		private final AtomicInteger rpcCount = new AtomicInteger();
 
 		// 远端的地址和端口号
 		private String remoteAddress;
 		private int remotePort;
 		private InetAddress address;
 
-		// 读取到的数据和数据长度
-		private ByteBuffer dataLengthBuffer;
-		private ByteBuffer dataBuffer;
+		// 请求帧解码器，负责跨多次读取拼接帧
+		private FrameDecoder decoder;
+		// 解码器缓冲的归还状态，由decoderLock保护。连接可能在Reader读取时被其他线程关闭，此时由Reader在读取结束后归还
+		private final Object decoderLock = new Object();
+		private boolean decoding;
+		private boolean decoderReleased;
+
+		// Reader上的读事件key，以及请求队列满时积压的请求，只在Reader线程上访问
+		private SelectionKey readKey;
+		private final ArrayDeque<Call> pausedCalls = new ArrayDeque<Call>();
+		private boolean paused;
 
-		public Connection(SocketChannel channel, long lastContactTime) {
+		// 待发送的响应队列，以及聚集写时复用的数组，均由responseQueue的锁保护
+		private final ArrayDeque<Call> responseQueue = new ArrayDeque<Call>();
+		private final ByteBuffer[] writeBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+
+		public Connection(SocketChannel channel, Reader reader, long lastContactTime) {
 			this.channel = channel;
+			this.reader = reader;
 			this.lastContactTime = lastContactTime;
 			this.socket = channel.socket();
 			this.address = socket.getInetAddress();
@@ -324,7 +1143,7 @@ public class XsearchServer {
 			}
 
 			this.remotePort = socket.getPort();
-			this.dataLengthBuffer = ByteBuffer.allocate(4);
+			this.decoder = new FrameDecoder(reader.bufferPool, config.getMaxFrameSize());
 		}
 
 		@Override
@@ -333,59 +1152,182 @@ public class XsearchServer {
 		}
 
 		/**
-		 * @Description: 实际读取数据，并进行处理
+		 * @Description: 实际读取数据，并进行处理。读缓冲由Reader共享，数据在返回前全部交给解码器，
+		 *               一次读取可以产生零个或多个完整请求
+		 * @param readBuffer
 		 * @throws IOException
 		 *             , InterruptedException
 		 * @return: int
 		 */
-		public int readAndProcess() throws IOException, InterruptedException {
-			
-			dataBuffer = ByteBuffer.allocate(100);
-			int count = channel.read(dataBuffer);
-			
-			/*
-			dataBuffer.flip();
-			byte[] bytes = new byte[dataBuffer.remaining()]; // create a byte array the length of the number of bytes written to the buffer
-			dataBuffer.get(bytes); // read the bytes that were written
-			System.out.println(new String(bytes));
-			*/
-			
-			System.out.println(new String(dataBuffer.array(), 0, dataBuffer.position()));
-			
-			return count;
-			
-			/*int count = channel.read(dataLengthBuffer); // 文件中的数据写入到buffer中
-			if (count < 0 || dataLengthBuffer.remaining() > 0) {
+		public int readAndProcess(ByteBuffer readBuffer) throws IOException, InterruptedException {
+			synchronized (decoderLock) {
+				if (decoderReleased) {
+					return -1;
+				}
+				decoding = true;
+			}
+			try {
+				readBuffer.clear();
+				int count = channel.read(readBuffer);
+				if (count <= 0) {
+					return count;
+				}
+
+				readBuffer.flip();
+				decoder.decode(readBuffer, this);
 				return count;
+			} finally {
+				synchronized (decoderLock) {
+					decoding = false;
+					if (!channel.isOpen()) {
+						releaseDecoder();
+					}
+				}
 			}
+		}
 
-			if (dataBuffer == null) {
-				dataLengthBuffer.flip();
-				int dataLength = dataLengthBuffer.getInt();
-				dataBuffer = ByteBuffer.allocate(dataLength);
+		/**
+		 * @Description: 归还未拼完的帧缓冲，只归还一次，调用方需要持有decoderLock
+		 * @return: void
+		 */
+		private void releaseDecoder() {
+			if (!decoderReleased) {
+				decoderReleased = true;
+				decoder.release();
 			}
+		}
 
-			count = channel.read(dataBuffer);
-			if (dataBuffer.remaining() == 0) { // 数据成功读取完成
-				dataBuffer.flip();
-				System.out.println(dataBuffer.toString());
-				process(dataBuffer.array());
+		@Override
+		public void onFrame(ByteBuffer frame) throws IOException, InterruptedException {
+			process(frame);
+		}
+
+		/**
+		 * @Description: 处理请求，帧以RequestHeader开头，剩余部分为请求参数
+		 * @param data
+		 * @throws IOException
+		 * @throws InterruptedException
+		 * @return: void
+		 */
+		private void process(ByteBuffer data) throws IOException, InterruptedException {
+			RequestHeader header = new RequestHeader();
+			try {
+				header.readFields(data);
+			} catch (RuntimeException e) { // 头部不完整或不合法
+				releaseBuffer(data);
+				throw new IOException("Malformed request header from " + this + ": " + e);
 			}
 
-			return count;*/
+			Call call = new Call(header, this, data);
+			rpcCount.incrementAndGet();
+			metrics.callsReceived.inc();
+			if (limiter != null) {
+				if (!limiter.tryAcquire(call.priority)) {
+					metrics.callsShed.inc();
+					respondUnprocessed(call, ResponseStatus.BUSY, "Server busy, concurrency limit " + limiter.getLimit()
+							+ " reached");
+					return;
+				}
+				call.limited = true;
+			}
+			if (pausedCalls.isEmpty() && callQueue.offer(call)) {
+				inFlightCalls.incrementAndGet();
+			} else {
+				overloaded(call);
+			}
 		}
 
 		/**
-		 * @Description: 处理请求
+		 * @Description: 请求队列已满，按配置暂停读取或者直接拒绝，不阻塞Reader线程
+		 * @param call
+		 * @return: void
+		 */
+		private void overloaded(Call call) {
+			if (config.getOverloadPolicy() == ServerConfig.OverloadPolicy.REJECT) {
+				metrics.callsRejected.inc();
+				onCallDropped(call);
+				respondUnprocessed(call, ResponseStatus.BUSY, "Server busy, call queue is full: " + callQueue.capacity());
+				return;
+			}
+
+			// 本次读取中后续解码出的请求同样积压，保证同一连接上请求的顺序
+			pausedCalls.addLast(call);
+			if (!paused) {
+				reader.pause(this);
+			}
+		}
+
+		/**
+		 * @Description: 把积压的请求放入请求队列
+		 * @return: boolean 是否已经全部放入
+		 */
+		private boolean drainPausedCalls() {
+			while (!pausedCalls.isEmpty()) {
+				if (!callQueue.offer(pausedCalls.peekFirst())) {
+					return false;
+				}
+				pausedCalls.pollFirst();
+				inFlightCalls.incrementAndGet();
+			}
+			return true;
+		}
+
+		/**
+		 * @Description: 服务停止时回复积压的请求，响应在stop等待响应发送完期间发出
+		 * @return: void
+		 */
+		private void rejectPausedCalls() {
+			while (!pausedCalls.isEmpty()) {
+				Call call = pausedCalls.pollFirst();
+				if (call.limited) {
+					limiter.onIgnore();
+				}
+				respondUnprocessed(call, ResponseStatus.BUSY, "Server stopping, call was not read into the call queue");
+			}
+		}
+
+		/**
+		 * @Description: 连接关闭后归还积压请求的缓冲
 		 * @return: void
-		 * @throws InterruptedException
 		 */
-		private void process(byte[] data) throws InterruptedException {
-			Call call = new Call(1, 1, this);
-			callQueue.put(call);
+		private void releasePausedCalls() {
+			while (!pausedCalls.isEmpty()) {
+				Call call = pausedCalls.pollFirst();
+				if (call.limited) {
+					limiter.onIgnore();
+				}
+				call.release();
+				rpcCount.decrementAndGet();
+			}
 		}
 
-		public synchronized void close() {
+		/**
+		 * @Description: 归还请求帧缓冲到所属Reader的缓冲池
+		 * @param buffer
+		 * @return: void
+		 */
+		public void releaseBuffer(ByteBuffer buffer) {
+			reader.bufferPool.release(buffer);
+		}
+
+		public void close() {
+			closeChannel();
+			connectionManager.remove(this);
+			synchronized (decoderLock) {
+				if (!decoding) {
+					releaseDecoder();
+				}
+			}
+
+			// 不在连接锁内获取响应队列锁，Responder持有队列锁时也会关闭连接
+			synchronized (responseQueue) {
+				while (!responseQueue.isEmpty()) {
+					responseQueue.pollFirst().releaseResponse();
+				}
+			}
+		}
+
+		private synchronized void closeChannel() {
 			if (!channel.isOpen()) {
 				return;
 			}
@@ -439,14 +1381,99 @@ public class XsearchServer {
 			while (true) {
 				try {
 					Call call = callQueue.take();
-					System.out.println(call.toString());
+					onCallDequeued();
+					metrics.queueTime.record(ServerMetrics.micros(call.enqueueNanos));
+					try {
+						if (!dropIfExpired(call)) {
+							handleCall(call);
+						}
+					} finally {
+						inFlightCalls.decrementAndGet();
+					}
 				} catch (InterruptedException e) {
+					if (!running) {
+						break; // 服务停止
+					}
 					logger.error("Error " + getName(), e);
 				}
 			}
 		}
 	}
 
+	/**
+	 * @Description: 从call队列取出请求，分发给执行器，每个请求在独立的任务中执行。
+	 *               同时执行的请求数受maxConcurrentCalls限制，达到上限时停止出队，由请求队列施加背压
+	 * 
+	 * @author: wuming.zy
+	 * @version: v1.0
+	 * @since: Mar 27, 2017 3:42:18 PM
+	 */
+	private class Dispatcher extends Thread {
+		private final Executor executor;
+		private final Semaphore permits;
+
+		public Dispatcher(Executor executor) {
+			super("XsearchServer Dispatcher");
+			this.executor = executor;
+			this.permits = new Semaphore(config.getMaxConcurrentCalls());
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			logger.info("Starting " + getName() + " with " + config.getHandlerMode());
+
+			while (true) {
+				try {
+					permits.acquire();
+					Call call;
+					try {
+						call = callQueue.take();
+					} catch (InterruptedException e) {
+						permits.release();
+						throw e;
+					}
+					onCallDequeued();
+					metrics.queueTime.record(ServerMetrics.micros(call.enqueueNanos));
+					if (dropIfExpired(call)) {
+						inFlightCalls.decrementAndGet();
+						permits.release();
+						continue;
+					}
+					dispatch(call);
+				} catch (InterruptedException e) {
+					if (!running) {
+						break; // 服务停止
+					}
+					logger.error("Error " + getName(), e);
+				}
+			}
+		}
+
+		private void dispatch(final Call call) {
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							handleCall(call);
+						} finally {
+							inFlightCalls.decrementAndGet();
+							permits.release();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				inFlightCalls.decrementAndGet();
+				permits.release();
+				metrics.callsRejected.inc();
+				onCallDropped(call);
+				respondUnprocessed(call, ResponseStatus.BUSY, "Server busy, handler executor rejected call: "
+						+ e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * @Description: 实际调用参数类
 	 * 
@@ -456,21 +1483,166 @@ public class XsearchServer {
 	 */
 	private class Call {
 		private final int id; // 客户调用id
+		private final int methodId; // 方法id
 		private final int retryCount; // 重试次数
+		private final int timeout; // 客户端的超时毫秒数，0表示不限
+		private final int priority; // 过载时的准入优先级
 		private final Connection connection; // 客户端连接
-		
-		//private Writable param;
-		
+		private ByteBuffer param; // 请求参数，来自Reader的缓冲池
+		private ByteBuffer response; // 编码好的响应帧，来自Reader的缓冲池；多段响应时只有帧头
+		private ByteBuffer[] responseValues; // 多段响应在帧头之后直接发送的数据，不来自缓冲池
+		private long responseLength; // 响应帧的总字节数
+		private final long enqueueNanos = System.nanoTime(); // 解码完成的时间，请求从此开始排队
+		private long respondNanos; // 进入响应队列的时间，由responseQueue的锁保护
+		private boolean limited; // 是否占用了并发限制器的名额，只在持有请求的线程上访问
 
-		public Call(int id, int retryCount, Connection connection) {
-			this.id = id;
-			this.retryCount = retryCount;
+		public Call(RequestHeader header, Connection connection, ByteBuffer param) {
+			this.id = header.getCallId();
+			this.methodId = header.getMethodId();
+			this.retryCount = header.getRetryCount();
+			this.timeout = header.getTimeout();
+			this.priority = header.getPriority();
 			this.connection = connection;
+			this.param = param;
+		}
+
+		/**
+		 * @Description: 距离超时还剩的时间，从服务端收到请求开始计时，不含网络传输时间
+		 * @param now
+		 *            System.nanoTime()
+		 * @return: long 纳秒，没有超时时为Long.MAX_VALUE
+		 */
+		public long remainingNanos(long now) {
+			if (timeout == 0) {
+				return Long.MAX_VALUE;
+			}
+			return timeout * 1000000L - (now - enqueueNanos);
+		}
+
+		/**
+		 * @Description: 编码响应帧 [4字节长度][ResponseHeader][数据]
+		 * @param status
+		 * @param value
+		 * @return: void
+		 */
+		public void setResponse(byte status, ByteBuffer value) {
+			int valueLength = value == null ? 0 : value.remaining();
+			ResponseHeader header = new ResponseHeader(id, status);
+			int headerLength = header.serializedSize();
+			ByteBuffer buffer = connection.reader.bufferPool.acquire(4 + headerLength + valueLength);
+			buffer.putInt(headerLength + valueLength);
+			header.write(buffer);
+			if (value != null) {
+				buffer.put(value);
+			}
+			buffer.flip();
+			this.response = buffer;
+			this.responseLength = buffer.limit();
+		}
+
+		/**
+		 * @Description: 编码多段响应的帧头，数据不拷贝，发送时跟在帧头之后
+		 * @param status
+		 * @param values
+		 * @return: void
+		 */
+		public void setResponse(byte status, ByteBuffer[] values) {
+			int count = 0;
+			long valueLength = 0;
+			for (ByteBuffer value : values) {
+				if (value.hasRemaining()) {
+					count++;
+					valueLength += value.remaining();
+				}
+			}
+			ResponseHeader header = new ResponseHeader(id, status);
+			int headerLength = header.serializedSize();
+			if (4 + headerLength + valueLength > Integer.MAX_VALUE) {
+				logger.warn("Response of " + valueLength + " bytes too large for call " + this);
+				setResponse(ResponseStatus.ERROR,
+						ByteBuffer.wrap(("Response too large: " + valueLength).getBytes(StandardCharsets.UTF_8)));
+				return;
+			}
+			// 跳过空的buffer，保证最后一段发送完时整个响应发送完
+			ByteBuffer[] nonEmpty = new ByteBuffer[count];
+			count = 0;
+			for (ByteBuffer value : values) {
+				if (value.hasRemaining()) {
+					nonEmpty[count++] = value.duplicate();
+				}
+			}
+			ByteBuffer buffer = connection.reader.bufferPool.acquire(4 + headerLength);
+			buffer.putInt((int) (headerLength + valueLength));
+			header.write(buffer);
+			buffer.flip();
+			this.response = buffer;
+			this.responseValues = nonEmpty;
+			this.responseLength = 4 + headerLength + valueLength;
+		}
+
+		/**
+		 * @Description: 把响应中还没有发送的buffer依次放入buffers
+		 * @param buffers
+		 * @param count
+		 *            buffers中已有的个数
+		 * @return: int 放入后的个数，不超过buffers的长度
+		 */
+		private int addResponseBuffers(ByteBuffer[] buffers, int count) {
+			if (response.hasRemaining() && count < buffers.length) {
+				buffers[count++] = response;
+			}
+			if (responseValues != null) {
+				for (ByteBuffer value : responseValues) {
+					if (count == buffers.length) {
+						break;
+					}
+					if (value.hasRemaining()) {
+						buffers[count++] = value;
+					}
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * @Description: 响应是否已经完整发送，各段按顺序发送，最后一段发送完即全部发送完
+		 * @return: boolean
+		 */
+		private boolean isResponseSent() {
+			if (responseValues != null && responseValues.length > 0) {
+				return !responseValues[responseValues.length - 1].hasRemaining();
+			}
+			return !response.hasRemaining();
+		}
+
+		/**
+		 * @Description: 响应发送完成或连接关闭后归还响应缓冲
+		 * @return: void
+		 */
+		public void releaseResponse() {
+			if (response != null) {
+				connection.releaseBuffer(response);
+				response = null;
+				responseValues = null;
+				connection.rpcCount.decrementAndGet();
+			}
+		}
+
+		/**
+		 * @Description: 请求处理完成后归还参数缓冲
+		 * @return: void
+		 */
+		public void release() {
+			if (param != null) {
+				connection.releaseBuffer(param);
+				param = null;
+			}
 		}
 
 		@Override
 		public String toString() {
-			return "Call [id=" + id + ", retryCount=" + retryCount + ", connection=" + connection + "]";
+			return "Call [id=" + id + ", methodId=" + methodId + ", retryCount=" + retryCount + ", timeout=" + timeout
+					+ ", priority=" + priority + ", connection=" + connection + "]";
 			//return param.toString() + " from " + connection.toString();
 		}
 	}
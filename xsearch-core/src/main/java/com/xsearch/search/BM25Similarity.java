@@ -0,0 +1,105 @@
+package com.xsearch.search;
+
+import com.xsearch.index.Norms;
+
+/**
+ * @Description: BM25打分
+ *               <p>
+ *               score = idf * (k1 + 1) * tf / (tf + k1 * (1 - b + b * dl / avgdl))，idf = ln(1 + (N - df + 0.5) / (df + 0.5))。
+ *               文档长度dl取自Norms的一字节编码，一个字段只有256种取值，查询开始时按字段预先算好分母中与长度有关的部分，
+ *               打分时只做一次查表和一次除法，不分配对象。
+ *               得分随tf单调递增、随dl单调递减，因此(块内最大tf, 块内最小长度)给出的是块内得分的上界。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 17, 2017 3:10:26 PM
+ */
+public class BM25Similarity {
+	public static final float DEFAULT_K1 = 1.2f;
+	public static final float DEFAULT_B = 0.75f;
+
+	private final float k1;
+	private final float b;
+
+	public BM25Similarity() {
+		this(DEFAULT_K1, DEFAULT_B);
+	}
+
+	public BM25Similarity(float k1, float b) {
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	public float idf(long docFreq, long docCount) {
+		return (float) Math.log(1 + (docCount - docFreq + 0.5D) / (docFreq + 0.5D));
+	}
+
+	/**
+	 * @Description: 一个字段的长度归一化表，同一字段的所有词共享
+	 * @param docCount
+	 *            含该字段的文档数
+	 * @param sumTotalTermFreq
+	 *            该字段的总词数
+	 * @return: float[] 下标为长度编码
+	 */
+	public float[] lengthCache(long docCount, long sumTotalTermFreq) {
+		float avgLength = docCount == 0 ? 1 : (float) ((double) sumTotalTermFreq / docCount);
+		float[] cache = new float[256];
+		for (int i = 0; i < cache.length; i++) {
+			cache[i] = k1 * (1 - b + b * Norms.decodeLength(i) / avgLength);
+		}
+		return cache;
+	}
+
+	/**
+	 * @Description: 一个词的打分器
+	 * @param docFreq
+	 * @param docCount
+	 * @param lengthCache
+	 * @return: SimScorer
+	 */
+	public SimScorer scorer(long docFreq, long docCount, float[] lengthCache) {
+		return scorer(idf(docFreq, docCount), lengthCache);
+	}
+
+	/**
+	 * @Description: 按给定idf打分，短语查询的idf为各词idf之和
+	 * @param idf
+	 * @param lengthCache
+	 * @return: SimScorer
+	 */
+	public SimScorer scorer(float idf, float[] lengthCache) {
+		return new SimScorer(idf * (k1 + 1), lengthCache);
+	}
+
+	/**
+	 * @Description: 一个词的打分器
+	 */
+	public static final class SimScorer {
+		private final float weight;
+		private final float[] lengthCache;
+
+		SimScorer(float weight, float[] lengthCache) {
+			this.weight = weight;
+			this.lengthCache = lengthCache;
+		}
+
+		/**
+		 * @param freq
+		 * @param norm
+		 *            长度编码
+		 * @return: float
+		 */
+		public float score(int freq, int norm) {
+			return weight * freq / (freq + lengthCache[norm]);
+		}
+
+		/**
+		 * @Description: 任意词频和长度下得分的上界
+		 * @return: float
+		 */
+		public float maxScore() {
+			return weight;
+		}
+	}
+}
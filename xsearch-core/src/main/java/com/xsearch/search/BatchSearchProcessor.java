@@ -0,0 +1,44 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.ipc.CallProcessor;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: 批量查询的请求处理器，请求为BatchSearchRequest的编码，响应为各查询TopDocs的编码
+ *               <p>
+ *               与SearchProcessor使用同一个搜索器，挂在XsearchServer的METHOD_ID方法上，与单个查询的帧共用一个端口。
+ *               一批查询共享词典查找和倒排解码，见IndexSearcher.search(List)，所有查询共用客户端的截止时间。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 6:45:02 PM
+ */
+public class BatchSearchProcessor implements CallProcessor {
+	public static final int METHOD_ID = 1; // 批量查询的方法id
+
+	private final SearchProcessor processor;
+
+	public BatchSearchProcessor(SearchProcessor processor) {
+		this.processor = processor;
+	}
+
+	/**
+	 * @Description: 在server上同时挂单个查询和批量查询的处理器
+	 * @param server
+	 * @param processor
+	 * @return: void
+	 */
+	public static void register(XsearchServer server, SearchProcessor processor) {
+		server.setProcessor(processor);
+		server.setProcessor(METHOD_ID, new BatchSearchProcessor(processor));
+	}
+
+	@Override
+	public ByteBuffer process(ByteBuffer param) throws Exception {
+		BatchSearchRequest batch = BatchSearchRequest.decode(param);
+		TopDocs[] results = processor.getSearcher().search(batch.getRequests(), XsearchServer.getRemainingNanos());
+		return BatchSearchRequest.encodeResults(results);
+	}
+}
@@ -0,0 +1,95 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.xsearch.index.BytesOutput;
+
+/**
+ * @Description: 批量查询请求：一个请求帧中带多个SearchRequest，服务端一起执行，所有结果在一个响应帧中返回
+ *               <p>
+ *               请求编码为：[查询数 int][SearchRequest]...，响应编码为：[结果数 int][TopDocs]...，结果与查询一一对应。
+ *               SearchRequest和TopDocs的编码都是自描述长度的，依次解码即可。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 6:32:17 PM
+ */
+public class BatchSearchRequest {
+	public static final int MAX_REQUESTS = 1024; // 一批中的查询数上限
+
+	private final List<SearchRequest> requests;
+
+	public BatchSearchRequest(List<SearchRequest> requests) {
+		if (requests.isEmpty() || requests.size() > MAX_REQUESTS) {
+			throw new IllegalArgumentException("Batch size must be in [1, " + MAX_REQUESTS + "]: " + requests.size());
+		}
+		this.requests = Collections.unmodifiableList(new ArrayList<SearchRequest>(requests));
+	}
+
+	public List<SearchRequest> getRequests() {
+		return requests;
+	}
+
+	public int size() {
+		return requests.size();
+	}
+
+	public ByteBuffer encode() {
+		BytesOutput out = new BytesOutput(64 * requests.size());
+		out.writeInt(requests.size());
+		for (SearchRequest request : requests) {
+			writeBuffer(out, request.encode());
+		}
+		return out.toByteBuffer();
+	}
+
+	public static BatchSearchRequest decode(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count <= 0 || count > MAX_REQUESTS) {
+			throw new IllegalArgumentException("Invalid batch size: " + count);
+		}
+		List<SearchRequest> requests = new ArrayList<SearchRequest>(count);
+		for (int i = 0; i < count; i++) {
+			requests.add(SearchRequest.decode(buffer));
+		}
+		return new BatchSearchRequest(requests);
+	}
+
+	/**
+	 * @Description: 编码一批查询的结果
+	 * @param results
+	 * @return: ByteBuffer
+	 */
+	public static ByteBuffer encodeResults(TopDocs[] results) {
+		BytesOutput out = new BytesOutput(64 * results.length);
+		out.writeInt(results.length);
+		for (TopDocs result : results) {
+			writeBuffer(out, result.encode());
+		}
+		return out.toByteBuffer();
+	}
+
+	public static TopDocs[] decodeResults(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0 || count > MAX_REQUESTS) {
+			throw new IllegalArgumentException("Invalid batch size: " + count);
+		}
+		TopDocs[] results = new TopDocs[count];
+		for (int i = 0; i < count; i++) {
+			results[i] = TopDocs.decode(buffer);
+		}
+		return results;
+	}
+
+	private static void writeBuffer(BytesOutput out, ByteBuffer buffer) {
+		out.writeBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+	}
+
+	@Override
+	public String toString() {
+		return "BatchSearchRequest" + requests;
+	}
+}
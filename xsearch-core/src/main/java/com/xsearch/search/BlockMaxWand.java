@@ -0,0 +1,153 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DeletedDocs;
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: 析取查询的Block-Max WAND执行
+ *               <p>
+ *               子句按当前文档号排序，依次累加各子句的全局上界，累加值第一次超过收集器门槛的子句为枢轴，
+ *               排在枢轴之前的文档只可能匹配上界之和不够的子句，可以直接跳到枢轴文档。
+ *               到达枢轴文档后再用各子句在该文档所在块的上界求和，仍然不超过门槛时整块跳过，跳到最早结束的块之后；
+ *               只有通过两层检查的文档才完整打分。打分的文档数是命中数的下界。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 18, 2017 10:12:40 AM
+ */
+public final class BlockMaxWand {
+	// 浮点求和顺序不同带来的误差，上界乘以该系数后才与门槛比较
+	private static final double BOUND_SLACK = 1 + 1e-5;
+
+	private BlockMaxWand() {
+	}
+
+	/**
+	 * @Description: 在一个段上执行
+	 * @param scorers
+	 *            子句打分器，会被重新排序
+	 * @param deleted
+	 *            段的删除位图，可以为null
+	 * @param docBase
+	 *            段的文档号基数
+	 * @param minDoc
+	 *            只执行段内文档号 [minDoc, maxDoc) 的区间
+	 * @param maxDoc
+	 * @param collector
+	 * @return: int 打分的文档数
+	 */
+	public static int search(Scorer[] scorers, DeletedDocs deleted, int docBase, int minDoc, int maxDoc,
+			TopKCollector collector) {
+		return search(scorers, deleted, docBase, minDoc, maxDoc, collector, Deadline.NONE);
+	}
+
+	/**
+	 * @Description: 带截止时间执行，枢轴文档每前进Deadline.CHECK_INTERVAL个文档号检查一次，到达后停止
+	 * @return: int 打分的文档数
+	 */
+	static int search(Scorer[] scorers, DeletedDocs deleted, int docBase, int minDoc, int maxDoc,
+			TopKCollector collector, Deadline deadline) {
+		int n = scorers.length;
+		int nextCheck = deadline.nextCheck(minDoc);
+		// 按子句原来的顺序累加得分，保证同一文档的得分与执行方式无关
+		Scorer[] clauses = scorers.clone();
+		for (Scorer scorer : scorers) {
+			scorer.advance(minDoc);
+		}
+
+		int scored = 0;
+		while (true) {
+			sortByDoc(scorers, n);
+			float threshold = collector.minCompetitiveScore();
+
+			// 找枢轴
+			double upperBound = 0;
+			int pivot = -1;
+			for (int i = 0; i < n; i++) {
+				if (scorers[i].docID() == DocIdSetIterator.NO_MORE_DOCS) {
+					break;
+				}
+				upperBound += scorers[i].maxScore();
+				if (upperBound * BOUND_SLACK > threshold) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0) {
+				return scored;
+			}
+			int pivotDoc = scorers[pivot].docID();
+			if (pivotDoc >= maxDoc) {
+				return scored;
+			}
+			if (pivotDoc >= nextCheck) {
+				if (deadline.check()) {
+					return scored;
+				}
+				nextCheck = deadline.nextCheck(pivotDoc);
+			}
+			while (pivot + 1 < n && scorers[pivot + 1].docID() == pivotDoc) {
+				pivot++;
+			}
+
+			// 块上界检查
+			double blockBound = 0;
+			int blockEnd = DocIdSetIterator.NO_MORE_DOCS;
+			for (int i = 0; i <= pivot; i++) {
+				blockEnd = Math.min(blockEnd, scorers[i].advanceShallow(pivotDoc));
+				blockBound += scorers[i].blockMaxScore();
+			}
+			if (blockBound * BOUND_SLACK <= threshold) {
+				// [pivotDoc, next)内每个子句都还在同一块中，得分不超过blockBound
+				int next = blockEnd == DocIdSetIterator.NO_MORE_DOCS ? blockEnd : blockEnd + 1;
+				if (pivot + 1 < n) {
+					next = Math.min(next, scorers[pivot + 1].docID());
+				}
+				for (int i = 0; i <= pivot; i++) {
+					if (scorers[i].docID() < next) {
+						scorers[i].advance(next);
+					}
+				}
+				continue;
+			}
+
+			if (scorers[0].docID() == pivotDoc) {
+				// 枢轴之前的子句都已在枢轴文档上
+				if (deleted == null || !deleted.isDeleted(pivotDoc)) {
+					float score = 0;
+					for (Scorer clause : clauses) {
+						if (clause.docID() == pivotDoc) {
+							score += clause.score();
+						}
+					}
+					collector.collect(docBase + pivotDoc, score);
+					scored++;
+				}
+				for (int i = 0; i <= pivot; i++) {
+					scorers[i].nextDoc();
+				}
+			} else {
+				// 枢轴之前的文档不可能进入结果
+				for (int i = 0; i < pivot; i++) {
+					if (scorers[i].docID() < pivotDoc) {
+						scorers[i].advance(pivotDoc);
+					}
+				}
+			}
+		}
+	}
+
+	private static void sortByDoc(Scorer[] scorers, int n) {
+		// 子句数很少，并且每轮只有少数子句移动，插入排序
+		for (int i = 1; i < n; i++) {
+			Scorer scorer = scorers[i];
+			int doc = scorer.docID();
+			int j = i - 1;
+			while (j >= 0 && scorers[j].docID() > doc) {
+				scorers[j + 1] = scorers[j];
+				j--;
+			}
+			scorers[j + 1] = scorer;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 布尔查询的子句
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 3:48:02 PM
+ */
+public final class BooleanClause {
+
+	/**
+	 * @Description: 子句的出现方式
+	 */
+	public enum Occur {
+		MUST("+"), // 必须匹配，参与打分
+		SHOULD(""), // 可以匹配，匹配时参与打分；没有MUST和FILTER子句时至少匹配一个
+		MUST_NOT("-"), // 不能匹配，不打分，结果缓存
+		FILTER("#"); // 必须匹配，不打分，结果缓存
+
+		private final String prefix;
+
+		Occur(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public String prefix() {
+			return prefix;
+		}
+	}
+
+	private final Query query;
+	private final Occur occur;
+
+	public BooleanClause(Query query, Occur occur) {
+		this.query = query;
+		this.occur = occur;
+	}
+
+	public Query getQuery() {
+		return query;
+	}
+
+	public Occur getOccur() {
+		return occur;
+	}
+
+	/**
+	 * @Description: 子句是否只过滤不打分
+	 * @return: boolean
+	 */
+	public boolean isFilter() {
+		return occur == Occur.FILTER || occur == Occur.MUST_NOT;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof BooleanClause)) {
+			return false;
+		}
+		BooleanClause other = (BooleanClause) obj;
+		return occur == other.occur && query.equals(other.query);
+	}
+
+	@Override
+	public int hashCode() {
+		return query.hashCode() * 31 + occur.ordinal();
+	}
+
+	@Override
+	public String toString() {
+		return occur.prefix() + (query instanceof BooleanQuery ? "(" + query + ")" : query.toString());
+	}
+}
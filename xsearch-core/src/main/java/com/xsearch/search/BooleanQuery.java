@@ -0,0 +1,240 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.xsearch.index.BytesOutput;
+import com.xsearch.index.DeletedDocs;
+import com.xsearch.index.DocIdSetIterator;
+import com.xsearch.index.Segment;
+import com.xsearch.index.VByte;
+
+/**
+ * @Description: 子句的布尔组合
+ *               <p>
+ *               MUST和FILTER子句组成合取，从文档数最少的子句开始advance；SHOULD子句在有必须子句时只加分，否则组成析取；
+ *               MUST_NOT子句从结果中排除。FILTER和MUST_NOT子句不打分，每个段上的结果保存在搜索器的FilterCache中。
+ *               只有MUST_NOT子句时匹配全部未被排除的文档，得分为0。
+ *               只有SHOULD子句的顶层查询用BlockMaxWand执行，命中数为下界。
+ *               编码格式为：[子句数 vint]，每个子句为 [出现方式 byte][查询]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 4:02:33 PM
+ */
+public class BooleanQuery extends Query {
+	public static final int MAX_CLAUSES = 1024;
+
+	private static final Comparator<BooleanClause> CLAUSE_ORDER = new Comparator<BooleanClause>() {
+		@Override
+		public int compare(BooleanClause a, BooleanClause b) {
+			int c = a.getOccur().compareTo(b.getOccur());
+			return c != 0 ? c : a.getQuery().toString().compareTo(b.getQuery().toString());
+		}
+	};
+
+	private final List<BooleanClause> clauses;
+
+	public BooleanQuery(List<BooleanClause> clauses) {
+		if (clauses.size() > MAX_CLAUSES) {
+			throw new IllegalArgumentException("Too many clauses: " + clauses.size() + " > " + MAX_CLAUSES);
+		}
+		this.clauses = Collections.unmodifiableList(new ArrayList<BooleanClause>(clauses));
+	}
+
+	public List<BooleanClause> clauses() {
+		return clauses;
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+		return new BooleanWeight(searcher, needsScores);
+	}
+
+	/**
+	 * @Description: 子句递归规范化后按（出现方式，子句文本）排序，重复的FILTER和MUST_NOT子句只保留一个；
+	 *               MUST和SHOULD子句重复时得分累加，保留
+	 */
+	@Override
+	public Query normalize() {
+		List<BooleanClause> normalized = new ArrayList<BooleanClause>(clauses.size());
+		for (BooleanClause clause : clauses) {
+			BooleanClause c = new BooleanClause(clause.getQuery().normalize(), clause.getOccur());
+			if (!c.isFilter() || !normalized.contains(c)) {
+				normalized.add(c);
+			}
+		}
+		Collections.sort(normalized, CLAUSE_ORDER);
+		BooleanQuery query = new BooleanQuery(normalized);
+		return query.equals(this) ? this : query;
+	}
+
+	@Override
+	void write(BytesOutput out) {
+		out.writeByte(BOOLEAN);
+		out.writeVInt(clauses.size());
+		for (BooleanClause clause : clauses) {
+			out.writeByte((byte) clause.getOccur().ordinal());
+			clause.getQuery().write(out);
+		}
+	}
+
+	static BooleanQuery read(ByteBuffer buffer, int depth) {
+		int count = VByte.readVInt(buffer);
+		if (count < 0 || count > MAX_CLAUSES) {
+			throw new IllegalArgumentException("Invalid clause count: " + count);
+		}
+		BooleanClause.Occur[] occurs = BooleanClause.Occur.values();
+		List<BooleanClause> clauses = new ArrayList<BooleanClause>(count);
+		for (int i = 0; i < count; i++) {
+			int occur = buffer.get();
+			if (occur < 0 || occur >= occurs.length) {
+				throw new IllegalArgumentException("Invalid occur: " + occur);
+			}
+			clauses.add(new BooleanClause(Query.read(buffer, depth + 1), occurs[occur]));
+		}
+		return new BooleanQuery(clauses);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof BooleanQuery && clauses.equals(((BooleanQuery) obj).clauses);
+	}
+
+	@Override
+	public int hashCode() {
+		return BOOLEAN * 31 + clauses.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < clauses.size(); i++) {
+			builder.append(i == 0 ? "" : " ").append(clauses.get(i));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @Description: 布尔查询的执行计划
+	 */
+	private class BooleanWeight extends Weight {
+		private final FilterCache filterCache;
+		private final Weight[] weights;
+		private final boolean needsScores;
+		private final boolean hasPositive; // 是否有MUST_NOT以外的子句
+		private final boolean pureDisjunction;
+
+		BooleanWeight(IndexSearcher searcher, boolean needsScores) {
+			this.filterCache = searcher.getFilterCache();
+			this.needsScores = needsScores;
+			this.weights = new Weight[clauses.size()];
+			boolean hasPositive = false;
+			boolean allShould = !clauses.isEmpty();
+			for (int i = 0; i < weights.length; i++) {
+				BooleanClause clause = clauses.get(i);
+				weights[i] = clause.getQuery().createWeight(searcher, needsScores && !clause.isFilter());
+				hasPositive |= clause.getOccur() != BooleanClause.Occur.MUST_NOT;
+				allShould &= clause.getOccur() == BooleanClause.Occur.SHOULD;
+			}
+			this.hasPositive = hasPositive;
+			this.pureDisjunction = needsScores && allShould;
+		}
+
+		@Override
+		public Scorer scorer(Segment segment) {
+			List<Scorer> required = new ArrayList<Scorer>();
+			List<Scorer> optional = new ArrayList<Scorer>();
+			List<Scorer> excluded = new ArrayList<Scorer>();
+			for (int i = 0; i < weights.length; i++) {
+				BooleanClause clause = clauses.get(i);
+				switch (clause.getOccur()) {
+				case MUST: {
+					Scorer scorer = weights[i].scorer(segment);
+					if (scorer == null) {
+						return null;
+					}
+					required.add(scorer);
+					break;
+				}
+				case FILTER: {
+					RoaringDocSet bits = filterCache.get(segment, clause.getQuery(), weights[i]);
+					if (bits.cardinality() == 0) {
+						return null;
+					}
+					required.add(new ConstantScorer(bits.iterator(), 0));
+					break;
+				}
+				case SHOULD: {
+					Scorer scorer = weights[i].scorer(segment);
+					if (scorer != null) {
+						optional.add(scorer);
+					}
+					break;
+				}
+				case MUST_NOT: {
+					RoaringDocSet bits = filterCache.get(segment, clause.getQuery(), weights[i]);
+					if (bits.cardinality() > 0) {
+						excluded.add(new ConstantScorer(bits.iterator(), 0));
+					}
+					break;
+				}
+				}
+			}
+
+			if (required.isEmpty() && optional.isEmpty()) {
+				if (hasPositive || excluded.isEmpty()) {
+					return null;
+				}
+				required.add(new ConstantScorer(DocIdSetIterator.all(segment.maxDoc()), 0));
+			}
+
+			Scorer scorer;
+			if (required.isEmpty()) {
+				scorer = disjunction(optional);
+			} else {
+				scorer = required.size() == 1 ? required.get(0)
+						: new ConjunctionScorer(required.toArray(new Scorer[required.size()]));
+				if (needsScores && !optional.isEmpty()) {
+					scorer = new ReqOptScorer(scorer, disjunction(optional));
+				}
+			}
+			if (!excluded.isEmpty()) {
+				scorer = new ReqExclScorer(scorer, disjunction(excluded));
+			}
+			return scorer;
+		}
+
+		private Scorer disjunction(List<Scorer> scorers) {
+			return scorers.size() == 1 ? scorers.get(0) : new DisjunctionScorer(scorers.toArray(new Scorer[scorers.size()]));
+		}
+
+		@Override
+		int search(Segment segment, DeletedDocs deleted, int docBase, int minDoc, int maxDoc, TopKCollector collector,
+				Deadline deadline) {
+			if (!pureDisjunction) {
+				return super.search(segment, deleted, docBase, minDoc, maxDoc, collector, deadline);
+			}
+			List<Scorer> scorers = new ArrayList<Scorer>(weights.length);
+			for (Weight weight : weights) {
+				Scorer scorer = weight.scorer(segment);
+				if (scorer != null) {
+					scorers.add(scorer);
+				}
+			}
+			if (scorers.isEmpty()) {
+				return 0;
+			}
+			return BlockMaxWand.search(scorers.toArray(new Scorer[scorers.size()]), deleted, docBase, minDoc, maxDoc,
+					collector, deadline);
+		}
+
+		@Override
+		public boolean isTotalHitsExact() {
+			return !pureDisjunction;
+		}
+	}
+}
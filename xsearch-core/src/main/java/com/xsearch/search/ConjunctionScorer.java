@@ -0,0 +1,103 @@
+package com.xsearch.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @Description: 合取打分器，匹配所有子句都匹配的文档
+ *               <p>
+ *               子句按cost升序排列，由文档数最少的子句领跑，其余子句依次advance到领跑的文档，
+ *               某个子句越过该文档时领跑子句直接advance到它的位置，不逐个合并文档列表。
+ *               得分按子句原来的顺序累加，与执行顺序无关。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 2:05:44 PM
+ */
+class ConjunctionScorer extends Scorer {
+	private final Scorer[] scorers; // 原来的顺序
+	private final Scorer[] iterators; // 按cost升序
+	private final Scorer lead;
+
+	ConjunctionScorer(Scorer[] scorers) {
+		this.scorers = scorers;
+		this.iterators = scorers.clone();
+		Arrays.sort(iterators, new Comparator<Scorer>() {
+			@Override
+			public int compare(Scorer a, Scorer b) {
+				return Long.compare(a.cost(), b.cost());
+			}
+		});
+		this.lead = iterators[0];
+	}
+
+	@Override
+	public int docID() {
+		return lead.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return doNext(lead.nextDoc());
+	}
+
+	@Override
+	public int advance(int target) {
+		return doNext(lead.advance(target));
+	}
+
+	private int doNext(int doc) {
+		outer: while (doc != NO_MORE_DOCS) {
+			for (int i = 1; i < iterators.length; i++) {
+				int other = iterators[i].docID() < doc ? iterators[i].advance(doc) : iterators[i].docID();
+				if (other > doc) {
+					doc = lead.advance(other);
+					continue outer;
+				}
+			}
+			return doc;
+		}
+		return doc;
+	}
+
+	@Override
+	public long cost() {
+		return lead.cost();
+	}
+
+	@Override
+	public float score() {
+		float score = 0;
+		for (Scorer scorer : scorers) {
+			score += scorer.score();
+		}
+		return score;
+	}
+
+	@Override
+	public float maxScore() {
+		float maxScore = 0;
+		for (Scorer scorer : scorers) {
+			maxScore += scorer.maxScore();
+		}
+		return maxScore;
+	}
+
+	@Override
+	public int advanceShallow(int target) {
+		int end = NO_MORE_DOCS;
+		for (Scorer scorer : scorers) {
+			end = Math.min(end, scorer.advanceShallow(target));
+		}
+		return end;
+	}
+
+	@Override
+	public float blockMaxScore() {
+		float maxScore = 0;
+		for (Scorer scorer : scorers) {
+			maxScore += scorer.blockMaxScore();
+		}
+		return maxScore;
+	}
+}
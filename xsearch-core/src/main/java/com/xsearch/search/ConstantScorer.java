@@ -0,0 +1,50 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: 所有文档得分相同的打分器，用于过滤子句和全部文档查询
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 10:42:18 AM
+ */
+public class ConstantScorer extends Scorer {
+	private final DocIdSetIterator iterator;
+	private final float score;
+
+	public ConstantScorer(DocIdSetIterator iterator, float score) {
+		this.iterator = iterator;
+		this.score = score;
+	}
+
+	@Override
+	public int docID() {
+		return iterator.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return iterator.nextDoc();
+	}
+
+	@Override
+	public int advance(int target) {
+		return iterator.advance(target);
+	}
+
+	@Override
+	public long cost() {
+		return iterator.cost();
+	}
+
+	@Override
+	public float score() {
+		return score;
+	}
+
+	@Override
+	public float maxScore() {
+		return score;
+	}
+}
@@ -0,0 +1,52 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 查询的截止时间，同一个查询的并行任务共享，任何一个任务发现到达截止时间后其他任务也不再继续
+ *               <p>
+ *               段上的执行在一趟遍历中每隔CHECK_INTERVAL个文档号检查一次，到达后停止，不为检查重建打分器。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 3:42:18 PM
+ */
+final class Deadline {
+	static final Deadline NONE = new Deadline(0, Long.MAX_VALUE);
+
+	static final int CHECK_INTERVAL = 65536; // 每遍历这么多文档号检查一次截止时间
+
+	private final long startNanos;
+	private final long timeoutNanos;
+	volatile boolean reached; // 是否有文档因为到达截止时间而没有遍历
+
+	private Deadline(long startNanos, long timeoutNanos) {
+		this.startNanos = startNanos;
+		this.timeoutNanos = timeoutNanos;
+	}
+
+	static Deadline after(long timeoutNanos) {
+		return timeoutNanos == Long.MAX_VALUE ? NONE : new Deadline(System.nanoTime(), timeoutNanos);
+	}
+
+	/**
+	 * @Description: 在还有文档要遍历时调用，到达截止时间时记录下来
+	 * @return: boolean 是否已经到达截止时间
+	 */
+	boolean check() {
+		if (!reached && this != NONE && System.nanoTime() - startNanos >= timeoutNanos) {
+			reached = true;
+		}
+		return reached;
+	}
+
+	/**
+	 * @Description: 从文档号doc开始遍历时，下一次检查的文档号，没有截止时间时不检查
+	 * @param doc
+	 * @return: int
+	 */
+	int nextCheck(int doc) {
+		if (this == NONE || doc > Integer.MAX_VALUE - CHECK_INTERVAL) {
+			return Integer.MAX_VALUE;
+		}
+		return doc + CHECK_INTERVAL;
+	}
+}
@@ -0,0 +1,95 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 析取打分器，匹配任意子句匹配的文档，得分为匹配子句的得分之和
+ *               <p>
+ *               用于嵌套在其他子句中的析取和排除子句，顶层的析取由BlockMaxWand执行。
+ *               子句数很少，每次取所有子句当前文档号的最小值，不维护堆。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 2:20:13 PM
+ */
+class DisjunctionScorer extends Scorer {
+	private final Scorer[] scorers;
+	private int doc = -1;
+
+	DisjunctionScorer(Scorer[] scorers) {
+		this.scorers = scorers;
+	}
+
+	@Override
+	public int docID() {
+		return doc;
+	}
+
+	@Override
+	public int nextDoc() {
+		if (doc == NO_MORE_DOCS) {
+			return doc;
+		}
+		int min = NO_MORE_DOCS;
+		for (Scorer scorer : scorers) {
+			int d = scorer.docID() == doc ? scorer.nextDoc() : scorer.docID();
+			min = Math.min(min, d);
+		}
+		return doc = min;
+	}
+
+	@Override
+	public int advance(int target) {
+		int min = NO_MORE_DOCS;
+		for (Scorer scorer : scorers) {
+			int d = scorer.docID() < target ? scorer.advance(target) : scorer.docID();
+			min = Math.min(min, d);
+		}
+		return doc = min;
+	}
+
+	@Override
+	public long cost() {
+		long cost = 0;
+		for (Scorer scorer : scorers) {
+			cost += scorer.cost();
+		}
+		return cost;
+	}
+
+	@Override
+	public float score() {
+		float score = 0;
+		for (Scorer scorer : scorers) {
+			if (scorer.docID() == doc) {
+				score += scorer.score();
+			}
+		}
+		return score;
+	}
+
+	@Override
+	public float maxScore() {
+		float maxScore = 0;
+		for (Scorer scorer : scorers) {
+			maxScore += scorer.maxScore();
+		}
+		return maxScore;
+	}
+
+	@Override
+	public int advanceShallow(int target) {
+		int end = NO_MORE_DOCS;
+		for (Scorer scorer : scorers) {
+			end = Math.min(end, scorer.advanceShallow(target));
+		}
+		return end;
+	}
+
+	@Override
+	public float blockMaxScore() {
+		float maxScore = 0;
+		for (Scorer scorer : scorers) {
+			maxScore += scorer.blockMaxScore();
+		}
+		return maxScore;
+	}
+}
@@ -0,0 +1,35 @@
+package com.xsearch.search;
+
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 按块收集匹配文档，不打分
+ *               <p>
+ *               搜索器把一个段中匹配且未删除的文档号攒成一块再交给collect，排序和分面在块内用基本类型的循环读取列存，
+ *               不为每个文档调用虚方法，也不读取存储字段。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 2:10:35 PM
+ */
+public abstract class DocBlockCollector {
+
+	/**
+	 * @Description: 开始收集一个段，之后collect的文档号都属于这个段
+	 * @param segment
+	 * @param docBase
+	 *            段的文档号基数
+	 * @return: void
+	 */
+	public abstract void setSegment(Segment segment, int docBase);
+
+	/**
+	 * @Description: 收集一块文档
+	 * @param docs
+	 *            段内文档号，递增
+	 * @param count
+	 *            docs中有效的个数
+	 * @return: void
+	 */
+	public abstract void collect(int[] docs, int count);
+}
@@ -0,0 +1,71 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.ipc.GatheringCallProcessor;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: 取存储字段的请求处理器，请求和响应的编码见FetchRequest
+ *               <p>
+ *               取一页结果的文档是每次查询中数据量最大的一步。文档的原始编码直接是段文件中的切片，
+ *               段文件映射打开时是映射内存，作为多段响应交给XsearchServer聚集写到socket，服务端不解码文档，也不拷贝到响应缓冲。
+ *               与SearchProcessor使用同一个搜索器，客户端用同一个连接先查询再取文档，快照在两次请求之间变化时文档号可能失效，
+ *               需要一致性的调用方应基于固定的IndexSearcher创建SearchProcessor。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 8:31:54 PM
+ */
+public class DocumentFetchProcessor implements GatheringCallProcessor {
+	public static final int METHOD_ID = 2; // 取存储字段的方法id
+
+	private final SearchProcessor processor;
+
+	public DocumentFetchProcessor(SearchProcessor processor) {
+		this.processor = processor;
+	}
+
+	/**
+	 * @Description: 在server上挂取存储字段的处理器
+	 * @param server
+	 * @param processor
+	 * @return: void
+	 */
+	public static void register(XsearchServer server, SearchProcessor processor) {
+		server.setProcessor(METHOD_ID, new DocumentFetchProcessor(processor));
+	}
+
+	@Override
+	public ByteBuffer[] processGathering(ByteBuffer param) throws Exception {
+		FetchRequest request = FetchRequest.decode(param);
+		IndexSearcher searcher = processor.getSearcher();
+		int[] docs = request.getDocs();
+		ByteBuffer[] raw = new ByteBuffer[docs.length];
+		for (int i = 0; i < docs.length; i++) {
+			raw[i] = searcher.rawDocument(docs[i]);
+		}
+		ByteBuffer[] values = new ByteBuffer[docs.length + 1];
+		values[0] = FetchRequest.encodeLengths(raw);
+		System.arraycopy(raw, 0, values, 1, raw.length);
+		return values;
+	}
+
+	/**
+	 * @Description: 不经过XsearchServer时把各段拼接成一个buffer
+	 */
+	@Override
+	public ByteBuffer process(ByteBuffer param) throws Exception {
+		ByteBuffer[] values = processGathering(param);
+		int length = 0;
+		for (ByteBuffer value : values) {
+			length += value.remaining();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		for (ByteBuffer value : values) {
+			buffer.put(value);
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,59 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 一个字段的分面统计，每项为一个值或一个区间及其匹配文档数
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 3:20:51 PM
+ */
+public class FacetResult {
+	private final String field;
+	private final String[] labels;
+	private final int[] counts;
+
+	public FacetResult(String field, String[] labels, int[] counts) {
+		this.field = field;
+		this.labels = labels;
+		this.counts = counts;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public int size() {
+		return labels.length;
+	}
+
+	public String label(int i) {
+		return labels[i];
+	}
+
+	public int count(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * @Description: 某一项的文档数
+	 * @param label
+	 * @return: int 没有该项时返回0
+	 */
+	public int count(String label) {
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i].equals(label)) {
+				return counts[i];
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("FacetResult[").append(field).append(": ");
+		for (int i = 0; i < labels.length; i++) {
+			builder.append(i == 0 ? "" : ", ").append(labels[i]).append('=').append(counts[i]);
+		}
+		return builder.append(']').toString();
+	}
+}
@@ -0,0 +1,131 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.index.Document;
+import com.xsearch.index.StoredFields;
+
+/**
+ * @Description: 取存储字段的请求：按全局文档号取一页结果的文档
+ *               <p>
+ *               请求编码为：[文档数 int][文档号 int]...。响应编码为：[文档数 int][各文档的字节数 int]...[各文档的原始编码]...，
+ *               文档的原始编码即段文件中存储字段的格式（见StoredFields），服务端直接从段文件发送，不解码也不重新编码，
+ *               只有前面的长度表需要编码，见DocumentFetchProcessor。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 8:20:36 PM
+ */
+public class FetchRequest {
+	public static final int MAX_DOCS = 10000; // 一次最多取的文档数
+
+	private final int[] docs;
+
+	public FetchRequest(int... docs) {
+		if (docs.length == 0 || docs.length > MAX_DOCS) {
+			throw new IllegalArgumentException("Doc count must be in [1, " + MAX_DOCS + "]: " + docs.length);
+		}
+		this.docs = docs.clone();
+	}
+
+	/**
+	 * @Description: 取一页结果中的文档，单机查询的结果不带分片号
+	 * @param topDocs
+	 * @return: FetchRequest
+	 */
+	public static FetchRequest of(TopDocs topDocs) {
+		int[] docs = new int[topDocs.size()];
+		for (int i = 0; i < docs.length; i++) {
+			docs[i] = topDocs.doc(i);
+		}
+		return new FetchRequest(docs);
+	}
+
+	public int[] getDocs() {
+		return docs;
+	}
+
+	public ByteBuffer encode() {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + docs.length * 4);
+		buffer.putInt(docs.length);
+		for (int doc : docs) {
+			buffer.putInt(doc);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	public static FetchRequest decode(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count <= 0 || count > MAX_DOCS || count > buffer.remaining() / 4) {
+			throw new IllegalArgumentException("Invalid doc count: " + count);
+		}
+		int[] docs = new int[count];
+		for (int i = 0; i < count; i++) {
+			docs[i] = buffer.getInt();
+		}
+		return new FetchRequest(docs);
+	}
+
+	/**
+	 * @Description: 编码响应数据的长度表，后面依次跟随raw中的各个文档
+	 * @param raw
+	 *            各文档的原始编码
+	 * @return: ByteBuffer
+	 */
+	public static ByteBuffer encodeLengths(ByteBuffer[] raw) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + raw.length * 4);
+		buffer.putInt(raw.length);
+		for (ByteBuffer document : raw) {
+			buffer.putInt(document.remaining());
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @Description: 切分响应中各文档的原始编码，返回的buffer共享响应数据，不拷贝
+	 * @param buffer
+	 * @return: ByteBuffer[]
+	 */
+	public static ByteBuffer[] decodeRaw(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0 || count > MAX_DOCS || count > buffer.remaining() / 4) {
+			throw new IllegalArgumentException("Invalid doc count: " + count);
+		}
+		int[] lengths = new int[count];
+		for (int i = 0; i < count; i++) {
+			lengths[i] = buffer.getInt();
+		}
+		ByteBuffer[] raw = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			if (lengths[i] < 0 || lengths[i] > buffer.remaining()) {
+				throw new IllegalArgumentException("Invalid document length: " + lengths[i]);
+			}
+			ByteBuffer document = buffer.duplicate();
+			document.limit(buffer.position() + lengths[i]);
+			raw[i] = document.slice();
+			buffer.position(buffer.position() + lengths[i]);
+		}
+		return raw;
+	}
+
+	/**
+	 * @Description: 解码响应中的文档
+	 * @param buffer
+	 * @return: Document[] 与请求的文档号一一对应
+	 */
+	public static Document[] decodeDocuments(ByteBuffer buffer) {
+		ByteBuffer[] raw = decodeRaw(buffer);
+		Document[] documents = new Document[raw.length];
+		for (int i = 0; i < raw.length; i++) {
+			documents[i] = StoredFields.readDocument(raw[i]);
+		}
+		return documents;
+	}
+
+	@Override
+	public String toString() {
+		return "FetchRequest[docs=" + docs.length + "]";
+	}
+}
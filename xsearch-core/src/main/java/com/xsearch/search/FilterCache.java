@@ -0,0 +1,132 @@
+package com.xsearch.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.xsearch.index.DocIdSetIterator;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 不打分的过滤子句在每个段上的匹配结果缓存
+ *               <p>
+ *               段是不可变的，过滤结果在段的生命周期内一直有效，删除由查询执行时的删除位图处理，不影响缓存。
+ *               键为（段编号，过滤查询），值为压缩的RoaringDocSet，所有段共用一个按字节数限制的W-TinyLFU缓存：
+ *               只用过一次的过滤留在窗口区很快淘汰，常用的过滤留在主区；被合并掉的段不再被访问，其条目随之淘汰。
+ *               未命中时在锁外生成集合，多个线程同时未命中同一个过滤时可能重复生成，结果相同。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 3:20:46 PM
+ */
+public class FilterCache {
+	public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024; // 默认32MB
+
+	private final TinyLfuCache<FilterKey, RoaringDocSet> cache;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	public FilterCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            缓存的文档集合总字节数上限
+	 */
+	public FilterCache(long maxBytes) {
+		this.cache = new TinyLfuCache<FilterKey, RoaringDocSet>(maxBytes,
+				new TinyLfuCache.Weigher<FilterKey, RoaringDocSet>() {
+					@Override
+					public long weigh(FilterKey key, RoaringDocSet value) {
+						return 64 + value.ramBytesUsed(); // 键和节点按固定64字节计
+					}
+				});
+	}
+
+	/**
+	 * @Description: 过滤在段上匹配的文档
+	 * @param segment
+	 * @param filter
+	 *            缓存的键
+	 * @param weight
+	 *            filter不打分的执行计划，未命中时用来生成集合
+	 * @return: RoaringDocSet
+	 */
+	public RoaringDocSet get(Segment segment, Query filter, Weight weight) {
+		FilterKey key = new FilterKey(segment.id(), filter);
+		RoaringDocSet docs = cache.get(key);
+		if (docs != null) {
+			hitCount.incrementAndGet();
+			return docs;
+		}
+
+		missCount.incrementAndGet();
+		Scorer scorer = weight.scorer(segment);
+		docs = RoaringDocSet.of(scorer == null ? DocIdSetIterator.all(0) : scorer);
+		cache.put(key, docs);
+		return docs;
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * @Description: 缓存的文档集合数
+	 * @return: int
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @Description: 缓存的文档集合总字节数
+	 * @return: long
+	 */
+	public long ramBytesUsed() {
+		return cache.weight();
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "FilterCache[size=" + size() + ", bytes=" + ramBytesUsed() + ", hits=" + hitCount + ", misses="
+				+ missCount + "]";
+	}
+
+	private static final class FilterKey {
+		private final long segmentId;
+		private final Query filter;
+		private final int hashCode;
+
+		FilterKey(long segmentId, Query filter) {
+			this.segmentId = segmentId;
+			this.filter = filter;
+			this.hashCode = 31 * Long.hashCode(segmentId) + filter.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FilterKey)) {
+				return false;
+			}
+			FilterKey other = (FilterKey) obj;
+			return segmentId == other.segmentId && filter.equals(other.filter);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
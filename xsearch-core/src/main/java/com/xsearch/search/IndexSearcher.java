@@ -0,0 +1,650 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.xsearch.index.DeletedDocs;
+import com.xsearch.index.DocIdSetIterator;
+import com.xsearch.index.Document;
+import com.xsearch.index.IndexSnapshot;
+import com.xsearch.index.Norms;
+import com.xsearch.index.Segment;
+import com.xsearch.index.Term;
+
+/**
+ * @Description: 在一组段上执行查询
+ *               <p>
+ *               搜索器基于一个不可变的IndexSnapshot，可以被多个Handler线程同时使用，每次查询各自创建倒排遍历器。
+ *               全局文档号为段的文档号基数加段内文档号，基数按段的顺序依次累加maxDoc。
+ *               查询为Query树，得分为BM25，词的统计（文档频率、平均长度）取整个快照的值，保证同一文档在不同段中得分一致。
+ *               按字段排序和分面不打分，匹配文档按块交给DocBlockCollector，由收集器读取段的列存。
+ *               <p>
+ *               设置了ForkJoinPool时，按得分的查询把段切成分片并行执行：大段按文档号区间切开，小段合并到一个分片，
+ *               每个分片至少sliceSize个文档。一个查询最多同时占用maxParallelism个任务，任务从共享的分片序号中领取分片，
+ *               每个分片用自己的TopKCollector（收集器要求文档号递增，而一个任务领到的分片不一定按文档号排列），
+ *               调用线程执行第一个任务，结束后把所有分片的结果按得分合并。
+ *               任务数有上限，少数重查询不能占满线程池，其余查询的任务由其他空闲线程窃取执行。
+ *               <p>
+ *               按得分的查询可以带超时：段上的遍历每隔Deadline.CHECK_INTERVAL个文档号检查一次截止时间，
+ *               到达后停止遍历，不再领取新的段和分片，返回已经遍历过的文档中的topN，结果标记为timedOut。超时的结果不放入结果缓存。
+ *               <p>
+ *               一批查询一起执行时，先为所有查询建Weight，再依次执行。建Weight期间词的查找结果（TermStates）在批内缓存，
+ *               同一个词只在各段词典中查找一次，被多个查询用到的词共享解码后的倒排块。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 11:05:46 AM
+ */
+public class IndexSearcher {
+	private static final int BLOCK_SIZE = 256; // 按块收集时每块的文档数
+
+	public static final int DEFAULT_MAX_PARALLELISM = 4;
+	public static final int DEFAULT_SLICE_SIZE = 100000;
+
+	private final IndexSnapshot snapshot;
+	private final Segment[] segments;
+	private final DeletedDocs[] deletedDocs;
+	private final int[] docBases;
+	private final int maxDoc;
+	private final BM25Similarity similarity = new BM25Similarity();
+	private final FilterCache filterCache;
+	private final QueryResultCache resultCache;
+	private final ConcurrentMap<String, FieldStats> fieldStats;
+	private final Map<Term, TermStates> batchTerms; // 批量查询的词缓存，只在批量查询的临时搜索器上不为null
+	private volatile ForkJoinPool executor;
+	private volatile int maxParallelism = DEFAULT_MAX_PARALLELISM;
+	private volatile int sliceSize = DEFAULT_SLICE_SIZE;
+
+	public IndexSearcher(List<Segment> segments) {
+		this(IndexSnapshot.of(segments));
+	}
+
+	public IndexSearcher(IndexSnapshot snapshot) {
+		this(snapshot, new FilterCache());
+	}
+
+	/**
+	 * @param snapshot
+	 * @param filterCache
+	 *            过滤缓存按段保存，基于同一个writer的新旧快照的搜索器可以共享，未变化的段不用重新生成
+	 */
+	public IndexSearcher(IndexSnapshot snapshot, FilterCache filterCache) {
+		this(snapshot, filterCache, null);
+	}
+
+	/**
+	 * @param snapshot
+	 * @param filterCache
+	 * @param resultCache
+	 *            查询结果缓存，按快照代数区分，只能在基于同一个writer的搜索器之间共享；为null时不缓存结果
+	 */
+	public IndexSearcher(IndexSnapshot snapshot, FilterCache filterCache, QueryResultCache resultCache) {
+		this.snapshot = snapshot;
+		this.filterCache = filterCache;
+		this.resultCache = resultCache;
+		this.segments = new Segment[snapshot.size()];
+		this.deletedDocs = new DeletedDocs[snapshot.size()];
+		this.docBases = new int[snapshot.size()];
+		int base = 0;
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = snapshot.segment(i);
+			deletedDocs[i] = snapshot.deletedDocs(i);
+			docBases[i] = base;
+			base += segments[i].maxDoc();
+		}
+		this.maxDoc = base;
+		this.fieldStats = new ConcurrentHashMap<String, FieldStats>();
+		this.batchTerms = null;
+	}
+
+	/**
+	 * @Description: 执行一批查询的临时搜索器，与searcher共享快照、缓存和统计，只在调用线程上建Weight
+	 * @param searcher
+	 * @param batchTerms
+	 */
+	private IndexSearcher(IndexSearcher searcher, Map<Term, TermStates> batchTerms) {
+		this.snapshot = searcher.snapshot;
+		this.filterCache = searcher.filterCache;
+		this.resultCache = searcher.resultCache;
+		this.segments = searcher.segments;
+		this.deletedDocs = searcher.deletedDocs;
+		this.docBases = searcher.docBases;
+		this.maxDoc = searcher.maxDoc;
+		this.fieldStats = searcher.fieldStats;
+		this.batchTerms = batchTerms;
+		this.executor = searcher.executor;
+		this.maxParallelism = searcher.maxParallelism;
+		this.sliceSize = searcher.sliceSize;
+	}
+
+	public int maxDoc() {
+		return maxDoc;
+	}
+
+	public IndexSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public List<Segment> getSegments() {
+		return Arrays.asList(segments);
+	}
+
+	public FilterCache getFilterCache() {
+		return filterCache;
+	}
+
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public ForkJoinPool getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @Description: 并行执行查询的线程池，多个搜索器应共享同一个池；为null时在调用线程中顺序执行
+	 * @param executor
+	 * @return: void
+	 */
+	public void setExecutor(ForkJoinPool executor) {
+		this.executor = executor;
+	}
+
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+
+	/**
+	 * @Description: 一个查询最多同时执行的任务数（含调用线程），为1时不并行
+	 * @param maxParallelism
+	 * @return: void
+	 */
+	public void setMaxParallelism(int maxParallelism) {
+		if (maxParallelism <= 0) {
+			throw new IllegalArgumentException("maxParallelism must be positive: " + maxParallelism);
+		}
+		this.maxParallelism = maxParallelism;
+	}
+
+	public int getSliceSize() {
+		return sliceSize;
+	}
+
+	/**
+	 * @Description: 每个分片的最少文档数，太小时任务调度的开销超过并行的收益
+	 * @param sliceSize
+	 * @return: void
+	 */
+	public void setSliceSize(int sliceSize) {
+		if (sliceSize <= 0) {
+			throw new IllegalArgumentException("sliceSize must be positive: " + sliceSize);
+		}
+		this.sliceSize = sliceSize;
+	}
+
+	/**
+	 * @Description: 执行查询
+	 * @param request
+	 * @return: TopDocs
+	 */
+	public TopDocs search(SearchRequest request) {
+		return search(request, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @Description: 带超时执行查询，到达截止时间时返回部分结果
+	 * @param request
+	 * @param timeoutNanos
+	 *            从现在开始的超时纳秒数，小于等于0时不遍历任何文档，Long.MAX_VALUE表示不限
+	 * @return: TopDocs 超时时isTimedOut为true
+	 */
+	public TopDocs search(SearchRequest request, long timeoutNanos) {
+		Deadline deadline = Deadline.after(timeoutNanos);
+		if (request.getAfter() != null) {
+			return execute(request.getQuery(), request.getTopN(), request.getAfter(), deadline);
+		}
+		return search(request.getQuery(), request.getTopN(), deadline);
+	}
+
+	/**
+	 * @Description: 执行查询，按BM25得分取topN，有结果缓存时先按规范化的查询查找
+	 * @param query
+	 * @param topN
+	 * @return: TopDocs
+	 */
+	public TopDocs search(Query query, int topN) {
+		return search(query, topN, Deadline.NONE);
+	}
+
+	private TopDocs search(Query query, int topN, Deadline deadline) {
+		if (resultCache == null) {
+			return execute(query, topN, null, deadline);
+		}
+		Query normalized = query.normalize();
+		TopDocs hits = resultCache.get(normalized, topN, snapshot.generation());
+		if (hits == null) {
+			hits = execute(normalized, topN, null, deadline);
+			if (!hits.isTimedOut()) {
+				resultCache.put(normalized, topN, snapshot.generation(), hits);
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @Description: 取排在after之后的topN个文档，用于逐页遍历结果；totalHits仍为整个查询的命中数。不使用结果缓存
+	 * @param after
+	 *            上一页的最后一个文档
+	 * @param query
+	 * @param topN
+	 * @return: TopDocs
+	 */
+	public TopDocs searchAfter(ScoreDoc after, Query query, int topN) {
+		return execute(query, topN, after, Deadline.NONE);
+	}
+
+	/**
+	 * @Description: 一起执行一批查询，结果与逐个执行相同
+	 * @param requests
+	 * @return: TopDocs[] 与requests一一对应
+	 */
+	public TopDocs[] search(List<SearchRequest> requests) {
+		return search(requests, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @Description: 带超时一起执行一批查询，所有查询共用一个截止时间，到达后剩下的查询返回空的部分结果
+	 * @param requests
+	 * @param timeoutNanos
+	 *            Long.MAX_VALUE表示不限
+	 * @return: TopDocs[]
+	 */
+	public TopDocs[] search(List<SearchRequest> requests, long timeoutNanos) {
+		Deadline deadline = Deadline.after(timeoutNanos);
+		IndexSearcher batch = new IndexSearcher(this, new HashMap<Term, TermStates>());
+		int n = requests.size();
+		TopDocs[] results = new TopDocs[n];
+		Query[] queries = new Query[n];
+		Weight[] weights = new Weight[n];
+		long generation = snapshot.generation();
+		for (int i = 0; i < n; i++) {
+			SearchRequest request = requests.get(i);
+			Query query = request.getQuery();
+			boolean cacheable = resultCache != null && request.getAfter() == null;
+			if (cacheable) {
+				query = query.normalize();
+				results[i] = resultCache.get(query, request.getTopN(), generation);
+			}
+			if (results[i] == null) {
+				queries[i] = cacheable ? query : null;
+				weights[i] = query.createWeight(batch, true);
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (weights[i] == null) {
+				continue;
+			}
+			SearchRequest request = requests.get(i);
+			results[i] = batch.execute(weights[i], request.getTopN(), request.getAfter(), deadline);
+			if (queries[i] != null && !results[i].isTimedOut()) {
+				resultCache.put(queries[i], request.getTopN(), generation, results[i]);
+			}
+		}
+		return results;
+	}
+
+	private TopDocs execute(Query query, int topN, ScoreDoc after, Deadline deadline) {
+		return execute(query.createWeight(this, true), topN, after, deadline);
+	}
+
+	private TopDocs execute(Weight weight, int topN, ScoreDoc after, Deadline deadline) {
+		ForkJoinPool pool = executor;
+		int parallelism = maxParallelism;
+		if (pool != null && parallelism > 1) {
+			int[][][] slices = slices(sliceSize);
+			if (slices.length > 1) {
+				return executeParallel(weight, topN, after, deadline, pool, slices,
+						Math.min(parallelism, slices.length));
+			}
+		}
+
+		TopKCollector collector = new TopKCollector(topN, after);
+		int totalHits = 0;
+		for (int i = 0; i < segments.length && !deadline.check(); i++) {
+			totalHits += search(weight, i, 0, segments[i].maxDoc(), collector, deadline);
+		}
+		return collector.topDocs(totalHits, weight.isTotalHitsExact(), deadline.reached);
+	}
+
+	/**
+	 * @Description: 在第i个段的 [minDoc, maxDoc) 上执行，到达截止时间后不再继续
+	 * @return: int 命中数
+	 */
+	private int search(Weight weight, int i, int minDoc, int maxDoc, TopKCollector collector, Deadline deadline) {
+		return weight.search(segments[i], deletedDocs[i], docBases[i], minDoc, maxDoc, collector, deadline);
+	}
+
+	private TopDocs executeParallel(Weight weight, int topN, ScoreDoc after, Deadline deadline, ForkJoinPool pool,
+			int[][][] slices, int parallelism) {
+		AtomicInteger nextSlice = new AtomicInteger();
+		SliceTask[] tasks = new SliceTask[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			tasks[i] = new SliceTask(weight, topN, after, deadline, slices, nextSlice);
+		}
+		for (int i = 1; i < parallelism; i++) {
+			pool.execute(tasks[i]);
+		}
+		tasks[0].invoke();
+
+		// 线程池忙时还没开始的任务不再等待，它们的分片已经被其他任务领走
+		List<TopDocs> hits = new ArrayList<TopDocs>(slices.length);
+		for (int i = 0; i < parallelism; i++) {
+			if (!tasks[i].started.compareAndSet(false, true)) {
+				hits.addAll(tasks[i].join());
+			}
+		}
+		return mergeSlices(topN, hits.toArray(new TopDocs[hits.size()]), weight.isTotalHitsExact(), deadline.reached);
+	}
+
+	/**
+	 * @Description: 把段切成分片，每个分片为若干 [段序号, minDoc, maxDoc]
+	 * @param sliceSize
+	 * @return: int[][][]
+	 */
+	private int[][][] slices(int sliceSize) {
+		List<int[][]> slices = new ArrayList<int[][]>();
+		List<int[]> group = new ArrayList<int[]>();
+		int groupDocs = 0;
+		for (int i = 0; i < segments.length; i++) {
+			int docs = segments[i].maxDoc();
+			if (docs >= 2 * sliceSize) {
+				int parts = docs / sliceSize;
+				for (int p = 0; p < parts; p++) {
+					int min = (int) ((long) docs * p / parts);
+					int max = (int) ((long) docs * (p + 1) / parts);
+					slices.add(new int[][] { { i, min, max } });
+				}
+			} else if (docs > 0) {
+				group.add(new int[] { i, 0, docs });
+				groupDocs += docs;
+				if (groupDocs >= sliceSize) {
+					slices.add(group.toArray(new int[group.size()][]));
+					group.clear();
+					groupDocs = 0;
+				}
+			}
+		}
+		if (!group.isEmpty()) {
+			slices.add(group.toArray(new int[group.size()][]));
+		}
+		return slices.toArray(new int[slices.size()][][]);
+	}
+
+	/**
+	 * @Description: 合并各分片的结果，得分相同时文档号小的在前，与顺序执行的结果一致
+	 */
+	private static TopDocs mergeSlices(int topN, TopDocs[] hits, boolean exact, boolean timedOut) {
+		int totalHits = 0;
+		int count = 0;
+		for (TopDocs h : hits) {
+			totalHits += h.getTotalHits();
+			count += h.size();
+		}
+		int size = Math.min(topN, count);
+		int[] docs = new int[size];
+		float[] scores = new float[size];
+		int[] positions = new int[hits.length];
+		for (int n = 0; n < size; n++) {
+			int best = -1;
+			for (int i = 0; i < hits.length; i++) {
+				int p = positions[i];
+				if (p < hits[i].size() && (best < 0 || hits[i].score(p) > hits[best].score(positions[best])
+						|| (hits[i].score(p) == hits[best].score(positions[best])
+								&& hits[i].doc(p) < hits[best].doc(positions[best])))) {
+					best = i;
+				}
+			}
+			docs[n] = hits[best].doc(positions[best]);
+			scores[n] = hits[best].score(positions[best]);
+			positions[best]++;
+		}
+		return new TopDocs(totalHits, exact && !timedOut, null, docs, scores, 0, timedOut);
+	}
+
+	/**
+	 * @Description: 一个并行任务，不断领取下一个分片直到分片用完，返回每个分片的结果
+	 */
+	private final class SliceTask extends RecursiveTask<List<TopDocs>> {
+		private static final long serialVersionUID = 1L;
+
+		private final Weight weight;
+		private final int topN;
+		private final ScoreDoc after;
+		private final Deadline deadline;
+		private final int[][][] slices;
+		private final AtomicInteger nextSlice;
+		final AtomicBoolean started = new AtomicBoolean();
+
+		SliceTask(Weight weight, int topN, ScoreDoc after, Deadline deadline, int[][][] slices,
+				AtomicInteger nextSlice) {
+			this.weight = weight;
+			this.topN = topN;
+			this.after = after;
+			this.deadline = deadline;
+			this.slices = slices;
+			this.nextSlice = nextSlice;
+		}
+
+		@Override
+		protected List<TopDocs> compute() {
+			if (!started.compareAndSet(false, true)) {
+				return null; // 调用线程已经放弃等待
+			}
+			List<TopDocs> hits = new ArrayList<TopDocs>();
+			for (int s = nextSlice.getAndIncrement(); s < slices.length && !deadline.check(); s = nextSlice
+					.getAndIncrement()) {
+				TopKCollector collector = new TopKCollector(topN, after);
+				int totalHits = 0;
+				for (int[] leaf : slices[s]) {
+					totalHits += search(weight, leaf[0], leaf[1], leaf[2], collector, deadline);
+				}
+				hits.add(collector.topDocs(totalHits, weight.isTotalHitsExact()));
+			}
+			return hits;
+		}
+	}
+
+	/**
+	 * @Description: 执行查询，按列存字段排序取topN
+	 * @param query
+	 * @param topN
+	 * @param sort
+	 * @return: TopFieldDocs
+	 */
+	public TopFieldDocs search(Query query, int topN, SortField sort) {
+		TopFieldCollector collector = new TopFieldCollector(sort, topN);
+		search(query, collector);
+		return collector.topDocs();
+	}
+
+	/**
+	 * @Description: 按SORTED_KEYWORD字段统计匹配文档中各值的文档数
+	 * @param query
+	 * @param field
+	 * @param topN
+	 *            返回文档数最多的topN个值
+	 * @return: FacetResult
+	 */
+	public FacetResult termsFacet(Query query, String field, int topN) {
+		TermsFacetCollector collector = new TermsFacetCollector(field);
+		search(query, collector);
+		return collector.result(topN);
+	}
+
+	/**
+	 * @Description: 按NUMERIC字段统计匹配文档落入各区间的文档数
+	 * @param query
+	 * @param field
+	 * @param ranges
+	 * @return: FacetResult
+	 */
+	public FacetResult rangeFacet(Query query, String field, RangeFacetCollector.Range... ranges) {
+		RangeFacetCollector collector = new RangeFacetCollector(field, ranges);
+		search(query, collector);
+		return collector.result();
+	}
+
+	/**
+	 * @Description: 不打分执行查询，匹配且未删除的文档按块交给collector
+	 * @param query
+	 * @param collector
+	 * @return: int 命中数
+	 */
+	public int search(Query query, DocBlockCollector collector) {
+		Weight weight = query.createWeight(this, false);
+		int[] block = new int[BLOCK_SIZE];
+		int totalHits = 0;
+		for (int i = 0; i < segments.length; i++) {
+			Scorer scorer = weight.scorer(segments[i]);
+			if (scorer == null) {
+				continue;
+			}
+			DeletedDocs deleted = deletedDocs[i];
+			collector.setSegment(segments[i], docBases[i]);
+			int count = 0;
+			for (int doc = scorer.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.nextDoc()) {
+				if (deleted == null || !deleted.isDeleted(doc)) {
+					block[count++] = doc;
+					if (count == BLOCK_SIZE) {
+						collector.collect(block, count);
+						totalHits += count;
+						count = 0;
+					}
+				}
+			}
+			if (count > 0) {
+				collector.collect(block, count);
+				totalHits += count;
+			}
+		}
+		return totalHits;
+	}
+
+	/**
+	 * @Description: 词在整个快照上的idf
+	 * @param term
+	 * @return: float
+	 */
+	public float idf(Term term) {
+		return idf(termStates(term));
+	}
+
+	public float idf(TermStates states) {
+		return similarity.idf(states.docFreq(), fieldStats(states.getTerm().field()).docCount);
+	}
+
+	/**
+	 * @Description: 在各段词典中查找词，批量查询中同一个词只查找一次，第二次用到时开始共享倒排的解码结果
+	 * @param term
+	 * @return: TermStates
+	 */
+	public TermStates termStates(Term term) {
+		if (batchTerms == null) {
+			return new TermStates(term, segments);
+		}
+		TermStates states = batchTerms.get(term);
+		if (states == null) {
+			states = new TermStates(term, segments);
+			batchTerms.put(term, states);
+		} else {
+			states.share();
+		}
+		return states;
+	}
+
+	/**
+	 * @Description: 字段上按给定idf打分的打分器，同一字段共享长度归一化表
+	 * @param field
+	 * @param idf
+	 * @return: BM25Similarity.SimScorer
+	 */
+	public BM25Similarity.SimScorer simScorer(String field, float idf) {
+		return similarity.scorer(idf, fieldStats(field).lengthCache);
+	}
+
+	private FieldStats fieldStats(String field) {
+		FieldStats stats = fieldStats.get(field);
+		if (stats == null) {
+			long docCount = 0;
+			long sumTotalTermFreq = 0;
+			for (Segment segment : segments) {
+				Norms.FieldNorms norms = segment.norms().get(field);
+				if (norms != null) {
+					docCount += norms.docCount();
+					sumTotalTermFreq += norms.sumTotalTermFreq();
+				}
+			}
+			stats = new FieldStats(docCount, similarity.lengthCache(docCount, sumTotalTermFreq));
+			FieldStats existing = fieldStats.putIfAbsent(field, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * @Description: 字段在整个快照上的统计，快照不变，计算一次后缓存
+	 */
+	private static final class FieldStats {
+		final long docCount;
+		final float[] lengthCache;
+
+		FieldStats(long docCount, float[] lengthCache) {
+			this.docCount = docCount;
+			this.lengthCache = lengthCache;
+		}
+	}
+
+	/**
+	 * @Description: 按全局文档号读取存储字段
+	 * @param doc
+	 * @return: Document
+	 */
+	public Document document(int doc) {
+		int i = segmentIndex(doc);
+		return segments[i].document(doc - docBases[i]);
+	}
+
+	/**
+	 * @Description: 按全局文档号取存储字段的原始编码，段文件映射打开时是映射的切片，不拷贝也不解码
+	 * @param doc
+	 * @return: ByteBuffer 格式见StoredFields，可以用StoredFields.readDocument解码
+	 */
+	public ByteBuffer rawDocument(int doc) {
+		int i = segmentIndex(doc);
+		return segments[i].storedFields().rawDocument(doc - docBases[i]);
+	}
+
+	private int segmentIndex(int doc) {
+		if (doc < 0 || doc >= maxDoc) {
+			throw new IllegalArgumentException("doc " + doc + " out of range [0, " + maxDoc + ")");
+		}
+		int i = segments.length - 1;
+		while (docBases[i] > doc) {
+			i--;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,45 @@
+package com.xsearch.search;
+
+import com.xsearch.index.BytesOutput;
+import com.xsearch.index.DocIdSetIterator;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 匹配全部文档，得分为常数1
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 11:02:14 AM
+ */
+public class MatchAllDocsQuery extends Query {
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, final boolean needsScores) {
+		return new Weight() {
+			@Override
+			public Scorer scorer(Segment segment) {
+				return new ConstantScorer(DocIdSetIterator.all(segment.maxDoc()), needsScores ? 1 : 0);
+			}
+		};
+	}
+
+	@Override
+	void write(BytesOutput out) {
+		out.writeByte(MATCH_ALL);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof MatchAllDocsQuery;
+	}
+
+	@Override
+	public int hashCode() {
+		return MATCH_ALL;
+	}
+
+	@Override
+	public String toString() {
+		return "*";
+	}
+}
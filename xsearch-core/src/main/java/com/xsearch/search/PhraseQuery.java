@@ -0,0 +1,126 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.BytesOutput;
+import com.xsearch.index.Segment;
+import com.xsearch.index.Term;
+import com.xsearch.index.VByte;
+
+/**
+ * @Description: 在同一字段中按顺序连续出现的一组词
+ *               <p>
+ *               词频为短语在文档中出现的次数，idf为各词idf之和，按BM25打分。
+ *               编码格式为：[字段名][词数 vint][词]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 11:15:36 AM
+ */
+public class PhraseQuery extends Query {
+	private final String field;
+	private final List<String> terms;
+
+	public PhraseQuery(String field, String... terms) {
+		this(field, Arrays.asList(terms));
+	}
+
+	public PhraseQuery(String field, List<String> terms) {
+		if (terms.isEmpty()) {
+			throw new IllegalArgumentException("Phrase must contain at least one term");
+		}
+		this.field = field;
+		this.terms = Collections.unmodifiableList(new ArrayList<String>(terms));
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public List<String> getTerms() {
+		return terms;
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+		final TermStates[] states = new TermStates[terms.size()];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = searcher.termStates(new Term(field, terms.get(i)));
+		}
+		BM25Similarity.SimScorer sim = null;
+		if (needsScores) {
+			float idf = 0;
+			for (TermStates state : states) {
+				idf += searcher.idf(state);
+			}
+			sim = searcher.simScorer(field, idf);
+		}
+
+		final BM25Similarity.SimScorer phraseSim = sim;
+		return new Weight() {
+			@Override
+			public Scorer scorer(Segment segment) {
+				BlockPostingsEnum[] postings = new BlockPostingsEnum[terms.size()];
+				for (int i = 0; i < postings.length; i++) {
+					// 同一个词在短语中出现多次时各自使用独立的遍历器
+					postings[i] = states[i].postings(segment);
+					if (postings[i] == null) {
+						return null;
+					}
+				}
+				return new PhraseScorer(postings, segment.norms().get(field), phraseSim);
+			}
+		};
+	}
+
+	@Override
+	void write(BytesOutput out) {
+		out.writeByte(PHRASE);
+		out.writeString(field);
+		out.writeVInt(terms.size());
+		for (String text : terms) {
+			out.writeString(text);
+		}
+	}
+
+	static PhraseQuery read(ByteBuffer buffer) {
+		String field = readString(buffer);
+		int count = VByte.readVInt(buffer);
+		if (count <= 0 || count > BooleanQuery.MAX_CLAUSES) {
+			throw new IllegalArgumentException("Invalid phrase length: " + count);
+		}
+		List<String> terms = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			terms.add(readString(buffer));
+		}
+		return new PhraseQuery(field, terms);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PhraseQuery)) {
+			return false;
+		}
+		PhraseQuery other = (PhraseQuery) obj;
+		return field.equals(other.field) && terms.equals(other.terms);
+	}
+
+	@Override
+	public int hashCode() {
+		return field.hashCode() * 31 + terms.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(field).append(":\"");
+		for (int i = 0; i < terms.size(); i++) {
+			builder.append(i == 0 ? "" : " ").append(terms.get(i));
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -0,0 +1,153 @@
+package com.xsearch.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.Norms;
+
+/**
+ * @Description: 短语查询的打分器
+ *               <p>
+ *               先像合取查询一样从文档数最少的词开始advance找到包含全部词的文档，再读出各词的位置检查是否相邻。
+ *               第i个词的位置减去i后，短语的每次出现对应所有词共有的一个值，位置在文档内递增，按有序数组求交集计数。
+ *               位置数组在文档之间复用。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 11:40:09 AM
+ */
+class PhraseScorer extends Scorer {
+	private final BlockPostingsEnum[] postings; // 按短语中的顺序
+	private final BlockPostingsEnum[] iterators; // 按文档数升序
+	private final BlockPostingsEnum lead;
+	private final Norms.FieldNorms norms;
+	private final BM25Similarity.SimScorer sim;
+	private final int[][] positions;
+	private final int[] counts;
+	private final int[] upto;
+	private int freq;
+
+	/**
+	 * @param postings
+	 * @param norms
+	 *            为null时按长度编码0打分
+	 * @param sim
+	 *            为null时不打分，得分为0
+	 */
+	PhraseScorer(BlockPostingsEnum[] postings, Norms.FieldNorms norms, BM25Similarity.SimScorer sim) {
+		this.postings = postings;
+		this.norms = norms;
+		this.sim = sim;
+		this.iterators = postings.clone();
+		Arrays.sort(iterators, new Comparator<BlockPostingsEnum>() {
+			@Override
+			public int compare(BlockPostingsEnum a, BlockPostingsEnum b) {
+				return Long.compare(a.cost(), b.cost());
+			}
+		});
+		this.lead = iterators[0];
+		this.positions = new int[postings.length][8];
+		this.counts = new int[postings.length];
+		this.upto = new int[postings.length];
+	}
+
+	@Override
+	public int docID() {
+		return lead.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return doNext(lead.nextDoc());
+	}
+
+	@Override
+	public int advance(int target) {
+		return doNext(lead.advance(target));
+	}
+
+	private int doNext(int doc) {
+		while (doc != NO_MORE_DOCS) {
+			int next = doc;
+			for (int i = 1; i < iterators.length; i++) {
+				int other = iterators[i].docID() < doc ? iterators[i].advance(doc) : iterators[i].docID();
+				if (other > doc) {
+					next = other;
+					break;
+				}
+			}
+			if (next > doc) {
+				doc = lead.advance(next);
+			} else if ((freq = phraseFreq()) > 0) {
+				return doc;
+			} else {
+				doc = lead.nextDoc();
+			}
+		}
+		return doc;
+	}
+
+	/**
+	 * @Description: 当前文档中短语出现的次数，所有遍历器都已在当前文档上
+	 * @return: int
+	 */
+	private int phraseFreq() {
+		for (int i = 0; i < postings.length; i++) {
+			int n = postings[i].freq();
+			if (positions[i].length < n) {
+				positions[i] = new int[Math.max(n, positions[i].length * 2)];
+			}
+			int[] p = positions[i];
+			for (int j = 0; j < n; j++) {
+				p[j] = postings[i].nextPosition() - i;
+			}
+			counts[i] = n;
+			upto[i] = 0;
+		}
+
+		int freq = 0;
+		int[] first = positions[0];
+		outer: for (int j = 0; j < counts[0]; j++) {
+			int start = first[j];
+			for (int i = 1; i < postings.length; i++) {
+				int[] p = positions[i];
+				int k = upto[i];
+				while (k < counts[i] && p[k] < start) {
+					k++;
+				}
+				upto[i] = k;
+				if (k == counts[i]) {
+					break outer;
+				}
+				if (p[k] != start) {
+					continue outer;
+				}
+			}
+			freq++;
+		}
+		return freq;
+	}
+
+	@Override
+	public long cost() {
+		return lead.cost();
+	}
+
+	public int freq() {
+		return freq;
+	}
+
+	@Override
+	public float score() {
+		if (sim == null) {
+			return 0;
+		}
+		return sim.score(freq, norms == null ? 0 : norms.norm(lead.docID()));
+	}
+
+	@Override
+	public float maxScore() {
+		return sim == null ? 0 : sim.maxScore();
+	}
+}
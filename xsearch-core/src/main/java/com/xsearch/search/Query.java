@@ -0,0 +1,102 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.xsearch.index.BytesOutput;
+import com.xsearch.index.VByte;
+
+/**
+ * @Description: 查询树的节点
+ *               <p>
+ *               查询是不可变的值对象，实现equals和hashCode，可以作为过滤缓存的键。
+ *               执行时先由createWeight按整个快照的统计生成Weight，再由Weight为每个段创建Scorer。
+ *               编码格式为 [类型 byte][内容]，内容由各子类定义，字符串为 [长度 vint][UTF-8字节]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 10:16:05 AM
+ */
+public abstract class Query {
+	static final byte TERM = 1;
+	static final byte BOOLEAN = 2;
+	static final byte PHRASE = 3;
+	static final byte MATCH_ALL = 4;
+
+	// 解码时允许的最大嵌套层数，防止请求帧构造过深的查询耗尽Handler线程的栈
+	static final int MAX_DEPTH = 32;
+
+	/**
+	 * @Description: 生成查询的执行计划
+	 * @param searcher
+	 * @param needsScores
+	 *            为false时只需要匹配的文档，得分都为0
+	 * @return: Weight
+	 */
+	public abstract Weight createWeight(IndexSearcher searcher, boolean needsScores);
+
+	/**
+	 * @Description: 规范化为语义相同的标准形式，用作查询结果缓存的键，书写顺序不同的等价查询规范化后相等
+	 * @return: Query 已是标准形式时返回自身
+	 */
+	public Query normalize() {
+		return this;
+	}
+
+	abstract void write(BytesOutput out);
+
+	public ByteBuffer encode() {
+		BytesOutput out = new BytesOutput(64);
+		write(out);
+		return out.toByteBuffer();
+	}
+
+	/**
+	 * @Description: 从buffer的当前位置解码一个查询
+	 * @param buffer
+	 * @return: Query
+	 * @throws IllegalArgumentException
+	 *             编码不合法
+	 */
+	public static Query decode(ByteBuffer buffer) {
+		return read(buffer, 0);
+	}
+
+	static Query read(ByteBuffer buffer, int depth) {
+		if (depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("Query nested deeper than " + MAX_DEPTH);
+		}
+		byte type = buffer.get();
+		switch (type) {
+		case TERM:
+			return TermQuery.read(buffer);
+		case BOOLEAN:
+			return BooleanQuery.read(buffer, depth);
+		case PHRASE:
+			return PhraseQuery.read(buffer);
+		case MATCH_ALL:
+			return new MatchAllDocsQuery();
+		default:
+			throw new IllegalArgumentException("Invalid query type: " + type);
+		}
+	}
+
+	static String readString(ByteBuffer buffer) {
+		int length = VByte.readVInt(buffer);
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public abstract boolean equals(Object obj);
+
+	@Override
+	public abstract int hashCode();
+
+	@Override
+	public abstract String toString();
+}
@@ -0,0 +1,192 @@
+package com.xsearch.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.xsearch.analysis.Analyzer;
+import com.xsearch.analysis.StandardAnalyzer;
+
+/**
+ * @Description: 把查询文本解析为查询树
+ *               <p>
+ *               语法为空白分隔的子句，每个子句可以有前缀 +（MUST）、-（MUST_NOT）、#（FILTER），没有前缀时按缺省运算符为MUST或SHOULD；
+ *               子句为 [字段名:]值，值可以是单词、双引号括起的短语或者括号括起的子查询，* 匹配全部文档。
+ *               文本字段的值用与索引相同的Analyzer分析：单词分出多个词时每个词各成一个子句，短语分出多个词时为PhraseQuery；
+ *               关键词字段的值不分词，原样作为一个词。同一层中相同的子句只保留一个。
+ *               解析结果总是BooleanQuery，只有SHOULD子句时按析取剪枝执行。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 21, 2017 10:10:52 AM
+ */
+public class QueryParser {
+	private static final Analyzer DEFAULT_ANALYZER = new StandardAnalyzer();
+
+	private final String defaultField;
+	private final SearchRequest.Operator defaultOperator;
+	private Set<String> keywordFields = Collections.emptySet();
+	private Analyzer analyzer = DEFAULT_ANALYZER;
+
+	private String text;
+	private int pos;
+
+	public QueryParser(String defaultField) {
+		this(defaultField, SearchRequest.Operator.AND);
+	}
+
+	public QueryParser(String defaultField, SearchRequest.Operator defaultOperator) {
+		this.defaultField = defaultField;
+		this.defaultOperator = defaultOperator;
+	}
+
+	/**
+	 * @Description: 按KEYWORD类型索引的字段，这些字段的值不分词
+	 * @param fields
+	 * @return: void
+	 */
+	public void setKeywordFields(Set<String> fields) {
+		this.keywordFields = new HashSet<String>(fields);
+	}
+
+	/**
+	 * @Description: 分析文本字段的值使用的分析器，需要与建索引时相同，缺省为StandardAnalyzer
+	 * @param analyzer
+	 * @return: void
+	 */
+	public void setAnalyzer(Analyzer analyzer) {
+		this.analyzer = analyzer;
+	}
+
+	/**
+	 * @Description: 解析查询文本，解析器不是线程安全的
+	 * @param text
+	 * @return: Query
+	 * @throws IllegalArgumentException
+	 *             括号或引号不匹配
+	 */
+	public Query parse(String text) {
+		this.text = text;
+		this.pos = 0;
+		BooleanQuery query = parseClauses(defaultField);
+		if (pos < text.length()) {
+			throw error("Unexpected ')'");
+		}
+		return query;
+	}
+
+	private BooleanQuery parseClauses(String field) {
+		List<BooleanClause> clauses = new ArrayList<BooleanClause>();
+		while (true) {
+			skipWhitespace();
+			if (pos == text.length() || text.charAt(pos) == ')') {
+				break;
+			}
+
+			BooleanClause.Occur occur = defaultOperator == SearchRequest.Operator.AND ? BooleanClause.Occur.MUST
+					: BooleanClause.Occur.SHOULD;
+			char c = text.charAt(pos);
+			if (c == '+' || c == '-' || c == '#') {
+				occur = c == '+' ? BooleanClause.Occur.MUST
+						: c == '-' ? BooleanClause.Occur.MUST_NOT : BooleanClause.Occur.FILTER;
+				pos++;
+			}
+
+			for (Query query : parseClause(field)) {
+				BooleanClause clause = new BooleanClause(query, occur);
+				if (!clauses.contains(clause)) {
+					clauses.add(clause);
+				}
+			}
+		}
+		return new BooleanQuery(clauses);
+	}
+
+	/**
+	 * @Description: 解析一个子句的值
+	 * @param field
+	 * @return: List<Query> 单词分出多个词时有多个，值为空时没有
+	 */
+	private List<Query> parseClause(String field) {
+		if (pos == text.length()) {
+			return Collections.emptyList();
+		}
+		char c = text.charAt(pos);
+		if (c == '(') {
+			int start = pos++;
+			BooleanQuery group = parseClauses(field);
+			if (pos == text.length()) {
+				pos = start;
+				throw error("Unclosed '('");
+			}
+			pos++;
+			return group.clauses().isEmpty() ? Collections.<Query> emptyList() : Collections.<Query> singletonList(group);
+		}
+		if (c == '"') {
+			int start = pos++;
+			int end = text.indexOf('"', pos);
+			if (end < 0) {
+				pos = start;
+				throw error("Unclosed '\"'");
+			}
+			String phrase = text.substring(pos, end);
+			pos = end + 1;
+			return phraseQuery(field, phrase);
+		}
+
+		int start = pos;
+		while (pos < text.length() && !isDelimiter(text.charAt(pos))) {
+			if (text.charAt(pos) == ':' && pos > start && pos + 1 < text.length()
+					&& !Character.isWhitespace(text.charAt(pos + 1))) {
+				String name = text.substring(start, pos);
+				pos++;
+				return parseClause(name);
+			}
+			pos++;
+		}
+		String word = text.substring(start, pos);
+		if (word.equals("*")) {
+			return Collections.<Query> singletonList(new MatchAllDocsQuery());
+		}
+		if (keywordFields.contains(field)) {
+			return Collections.<Query> singletonList(new TermQuery(field, word));
+		}
+		List<Query> queries = new ArrayList<Query>();
+		for (String term : tokenize(word)) {
+			queries.add(new TermQuery(field, term));
+		}
+		return queries;
+	}
+
+	private List<Query> phraseQuery(String field, String phrase) {
+		if (keywordFields.contains(field)) {
+			return Collections.<Query> singletonList(new TermQuery(field, phrase));
+		}
+		List<String> terms = tokenize(phrase);
+		if (terms.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Query query = terms.size() == 1 ? new TermQuery(field, terms.get(0)) : new PhraseQuery(field, terms);
+		return Collections.singletonList(query);
+	}
+
+	private List<String> tokenize(String value) {
+		return analyzer.terms(value);
+	}
+
+	private static boolean isDelimiter(char c) {
+		return Character.isWhitespace(c) || c == '(' || c == ')' || c == '"';
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + pos + " in query: " + text);
+	}
+}
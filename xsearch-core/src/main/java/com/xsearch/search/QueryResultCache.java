@@ -0,0 +1,157 @@
+package com.xsearch.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Description: 查询结果缓存
+ *               <p>
+ *               键为（规范化的查询，topN，快照代数），值为TopDocs。快照不可变，同一代数上同一查询的结果不变；
+ *               writer每次发布新快照代数加一，旧代数的条目不再命中。看到更新的代数时清空缓存，
+ *               避免旧代数中访问频率高的条目占着主区，新代数的条目进不去。
+ *               键的hashCode不含代数，访问频率跨代数累计，刷新后热门查询的第一次结果就能进入主区。
+ *               代数只在同一个writer的快照之间可比，共享一个缓存的搜索器必须基于同一个writer。
+ *               topN超过maxTopN的深分页查询不缓存。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 25, 2017 4:36:52 PM
+ */
+public class QueryResultCache {
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024; // 默认16MB
+	public static final int DEFAULT_MAX_TOP_N = 1000;
+
+	private final TinyLfuCache<ResultKey, TopDocs> cache;
+	private final int maxTopN;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private volatile long generation = -1; // 看到的最新快照代数
+
+	public QueryResultCache() {
+		this(DEFAULT_MAX_BYTES, DEFAULT_MAX_TOP_N);
+	}
+
+	/**
+	 * @param maxBytes
+	 *            缓存的结果总字节数上限
+	 * @param maxTopN
+	 *            缓存的最大topN
+	 */
+	public QueryResultCache(long maxBytes, int maxTopN) {
+		this.maxTopN = maxTopN;
+		this.cache = new TinyLfuCache<ResultKey, TopDocs>(maxBytes, new TinyLfuCache.Weigher<ResultKey, TopDocs>() {
+			@Override
+			public long weigh(ResultKey key, TopDocs value) {
+				return 96 + key.query.toString().length() * 2L + value.size() * 12L;
+			}
+		});
+	}
+
+	public int getMaxTopN() {
+		return maxTopN;
+	}
+
+	/**
+	 * @Description: 查找缓存的结果
+	 * @param query
+	 *            已规范化的查询
+	 * @param topN
+	 * @param generation
+	 *            快照代数
+	 * @return: TopDocs 未命中或不缓存时返回null
+	 */
+	public TopDocs get(Query query, int topN, long generation) {
+		if (topN > maxTopN || !advance(generation)) {
+			return null;
+		}
+		TopDocs hits = cache.get(new ResultKey(query, topN, generation));
+		if (hits == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return hits;
+	}
+
+	public void put(Query query, int topN, long generation, TopDocs hits) {
+		if (topN > maxTopN || !advance(generation)) {
+			return;
+		}
+		cache.put(new ResultKey(query, topN, generation), hits);
+	}
+
+	/**
+	 * @Description: 记录最新代数，代数增大时清空旧结果
+	 * @param generation
+	 * @return: boolean generation比已见过的最新代数旧时返回false，旧快照上的查询不读写缓存
+	 */
+	private boolean advance(long generation) {
+		long current = this.generation;
+		if (generation == current) {
+			return true;
+		}
+		if (generation < current) {
+			return false;
+		}
+		synchronized (this) {
+			if (generation > this.generation) {
+				this.generation = generation;
+				cache.clear();
+			}
+			return generation == this.generation;
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public long ramBytesUsed() {
+		return cache.weight();
+	}
+
+	public void clear() {
+		cache.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "QueryResultCache[generation=" + generation + ", size=" + size() + ", bytes=" + ramBytesUsed()
+				+ ", hits=" + hitCount + ", misses=" + missCount + "]";
+	}
+
+	private static final class ResultKey {
+		private final Query query;
+		private final int topN;
+		private final long generation;
+		private final int hashCode;
+
+		ResultKey(Query query, int topN, long generation) {
+			this.query = query;
+			this.topN = topN;
+			this.generation = generation;
+			this.hashCode = 31 * query.hashCode() + topN;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ResultKey)) {
+				return false;
+			}
+			ResultKey other = (ResultKey) obj;
+			return generation == other.generation && topN == other.topN && query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
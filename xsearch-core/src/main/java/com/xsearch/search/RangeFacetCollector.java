@@ -0,0 +1,114 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DocValues;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 按NUMERIC字段的值落入的区间统计匹配文档数，区间可以重叠，一个文档计入所有包含它的区间
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 3:45:09 PM
+ */
+public class RangeFacetCollector extends DocBlockCollector {
+
+	/**
+	 * @Description: 左闭右开的区间 [min, max)
+	 */
+	public static final class Range {
+		private final String label;
+		private final long min;
+		private final long max;
+
+		public Range(String label, long min, long max) {
+			this.label = label;
+			this.min = min;
+			this.max = max;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public long getMin() {
+			return min;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return label + "[" + min + ", " + max + ")";
+		}
+	}
+
+	private final String field;
+	private final Range[] ranges;
+	private final long[] mins;
+	private final long[] maxs;
+	private final int[] counts;
+	private DocValues.NumericDocValues numerics;
+	private long[] values = new long[0];
+
+	public RangeFacetCollector(String field, Range... ranges) {
+		this.field = field;
+		this.ranges = ranges.clone();
+		this.mins = new long[ranges.length];
+		this.maxs = new long[ranges.length];
+		for (int i = 0; i < ranges.length; i++) {
+			mins[i] = ranges[i].min;
+			maxs[i] = ranges[i].max;
+		}
+		this.counts = new int[ranges.length];
+	}
+
+	@Override
+	public void setSegment(Segment segment, int docBase) {
+		numerics = segment.docValues().numeric(field);
+	}
+
+	@Override
+	public void collect(int[] docs, int count) {
+		if (numerics == null) {
+			return;
+		}
+		// 先把一块文档的值解码到数组，再逐个区间计数
+		if (values.length < count) {
+			values = new long[count];
+		}
+		long[] values = this.values;
+		DocValues.NumericDocValues numerics = this.numerics;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			int doc = docs[i];
+			if (numerics.exists(doc)) {
+				values[n++] = numerics.get(doc);
+			}
+		}
+		for (int r = 0; r < mins.length; r++) {
+			long min = mins[r];
+			long max = maxs[r];
+			int matched = 0;
+			for (int i = 0; i < n; i++) {
+				if (values[i] >= min && values[i] < max) {
+					matched++;
+				}
+			}
+			counts[r] += matched;
+		}
+	}
+
+	/**
+	 * @Description: 按构造时的区间顺序输出
+	 * @return: FacetResult
+	 */
+	public FacetResult result() {
+		String[] labels = new String[ranges.length];
+		for (int i = 0; i < ranges.length; i++) {
+			labels[i] = ranges[i].label;
+		}
+		return new FacetResult(field, labels, counts.clone());
+	}
+}
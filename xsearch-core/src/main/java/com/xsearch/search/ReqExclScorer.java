@@ -0,0 +1,71 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: 匹配required但不匹配excluded的文档，排除子句不参与打分
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 2:31:50 PM
+ */
+class ReqExclScorer extends Scorer {
+	private final Scorer required;
+	private final DocIdSetIterator excluded;
+
+	ReqExclScorer(Scorer required, DocIdSetIterator excluded) {
+		this.required = required;
+		this.excluded = excluded;
+	}
+
+	@Override
+	public int docID() {
+		return required.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return toNonExcluded(required.nextDoc());
+	}
+
+	@Override
+	public int advance(int target) {
+		return toNonExcluded(required.advance(target));
+	}
+
+	private int toNonExcluded(int doc) {
+		while (doc != NO_MORE_DOCS) {
+			int excludedDoc = excluded.docID() < doc ? excluded.advance(doc) : excluded.docID();
+			if (excludedDoc != doc) {
+				return doc;
+			}
+			doc = required.nextDoc();
+		}
+		return doc;
+	}
+
+	@Override
+	public long cost() {
+		return required.cost();
+	}
+
+	@Override
+	public float score() {
+		return required.score();
+	}
+
+	@Override
+	public float maxScore() {
+		return required.maxScore();
+	}
+
+	@Override
+	public int advanceShallow(int target) {
+		return required.advanceShallow(target);
+	}
+
+	@Override
+	public float blockMaxScore() {
+		return required.blockMaxScore();
+	}
+}
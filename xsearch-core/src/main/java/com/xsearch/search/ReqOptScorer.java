@@ -0,0 +1,60 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 匹配由required决定，optional同时匹配时加上它的得分
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 2:40:27 PM
+ */
+class ReqOptScorer extends Scorer {
+	private final Scorer required;
+	private final Scorer optional;
+
+	ReqOptScorer(Scorer required, Scorer optional) {
+		this.required = required;
+		this.optional = optional;
+	}
+
+	@Override
+	public int docID() {
+		return required.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return required.nextDoc();
+	}
+
+	@Override
+	public int advance(int target) {
+		return required.advance(target);
+	}
+
+	@Override
+	public long cost() {
+		return required.cost();
+	}
+
+	@Override
+	public float score() {
+		int doc = required.docID();
+		int optionalDoc = optional.docID() < doc ? optional.advance(doc) : optional.docID();
+		return optionalDoc == doc ? required.score() + optional.score() : required.score();
+	}
+
+	@Override
+	public float maxScore() {
+		return required.maxScore() + optional.maxScore();
+	}
+
+	@Override
+	public int advanceShallow(int target) {
+		return Math.min(required.advanceShallow(target), optional.advanceShallow(target));
+	}
+
+	@Override
+	public float blockMaxScore() {
+		return required.blockMaxScore() + optional.blockMaxScore();
+	}
+}
@@ -0,0 +1,380 @@
+package com.xsearch.search;
+
+import java.util.Arrays;
+
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: 压缩的文档号集合，过滤缓存的值
+ *               <p>
+ *               按Roaring Bitmap的方式把文档号按高16位分块，每块按内容选择最小的容器：
+ *               不超过4096个文档的块为有序数组（每个文档2字节），连续区间少的块为区间列表（每个区间4字节），其余为8KB位图。
+ *               稀疏的过滤只占数组大小，连续分配文档号的关键词过滤通常只有几个区间，都比按maxDoc分配的定长位图小得多。
+ *               创建后不可变，可以被多个查询同时遍历。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 25, 2017 2:40:18 PM
+ */
+public final class RoaringDocSet {
+	private static final int ARRAY_MAX_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1024;
+	private static final int BITMAP_BYTES = BITMAP_WORDS * 8;
+
+	private final char[] keys; // 每块文档号的高16位
+	private final Container[] containers;
+	private final int cardinality;
+	private final long ramBytesUsed;
+
+	private RoaringDocSet(char[] keys, Container[] containers, int cardinality) {
+		this.keys = keys;
+		this.containers = containers;
+		this.cardinality = cardinality;
+		long bytes = 32 + keys.length * 2L + containers.length * 8L;
+		for (Container container : containers) {
+			bytes += container.ramBytesUsed();
+		}
+		this.ramBytesUsed = bytes;
+	}
+
+	/**
+	 * @Description: 遍历iterator的全部文档生成集合
+	 * @param iterator
+	 *            尚未开始遍历
+	 * @return: RoaringDocSet
+	 */
+	public static RoaringDocSet of(DocIdSetIterator iterator) {
+		char[] keys = new char[4];
+		Container[] containers = new Container[4];
+		int count = 0;
+		int cardinality = 0;
+
+		// 当前块先写入位图，块结束时再选择容器
+		long[] bitmap = new long[BITMAP_WORDS];
+		int key = -1;
+		int blockCardinality = 0;
+		int runs = 0;
+		int last = -2;
+		for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+			int high = doc >>> 16;
+			if (high != key) {
+				if (blockCardinality > 0) {
+					if (count == keys.length) {
+						keys = Arrays.copyOf(keys, count * 2);
+						containers = Arrays.copyOf(containers, count * 2);
+					}
+					keys[count] = (char) key;
+					containers[count++] = Container.of(bitmap, blockCardinality, runs);
+					Arrays.fill(bitmap, 0L);
+				}
+				key = high;
+				blockCardinality = 0;
+				runs = 0;
+				last = -2;
+			}
+			int low = doc & 0xFFFF;
+			bitmap[low >>> 6] |= 1L << low;
+			if (low != last + 1) {
+				runs++;
+			}
+			last = low;
+			blockCardinality++;
+			cardinality++;
+		}
+		if (blockCardinality > 0) {
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, count + 1);
+				containers = Arrays.copyOf(containers, count + 1);
+			}
+			keys[count] = (char) key;
+			containers[count++] = Container.of(bitmap, blockCardinality, runs);
+		}
+		return new RoaringDocSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinality);
+	}
+
+	public int cardinality() {
+		return cardinality;
+	}
+
+	public boolean contains(int doc) {
+		int i = Arrays.binarySearch(keys, (char) (doc >>> 16));
+		return i >= 0 && containers[i].contains(doc & 0xFFFF);
+	}
+
+	/**
+	 * @Description: 占用内存的估计值，用于缓存按字节数淘汰
+	 * @return: long
+	 */
+	public long ramBytesUsed() {
+		return ramBytesUsed;
+	}
+
+	public DocIdSetIterator iterator() {
+		return new DocIdSetIterator() {
+			private int block = -1;
+			private int base;
+			private ContainerIterator current;
+			private int doc = -1;
+
+			@Override
+			public int docID() {
+				return doc;
+			}
+
+			@Override
+			public int nextDoc() {
+				return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+			}
+
+			@Override
+			public int advance(int target) {
+				int high = target >>> 16;
+				int low = target & 0xFFFF;
+				if (block < 0 || keys[block] != high) {
+					// 跳到第一个高位不小于target的块
+					int b = Math.max(block, 0);
+					while (b < keys.length && keys[b] < high) {
+						b++;
+					}
+					if (b == keys.length) {
+						block = b;
+						return doc = NO_MORE_DOCS;
+					}
+					if (keys[b] > high) {
+						low = 0;
+					}
+					enter(b);
+				}
+				while (true) {
+					int value = current.advance(low);
+					if (value >= 0) {
+						return doc = base | value;
+					}
+					if (block + 1 == keys.length) {
+						block = keys.length;
+						return doc = NO_MORE_DOCS;
+					}
+					enter(block + 1);
+					low = 0;
+				}
+			}
+
+			private void enter(int b) {
+				block = b;
+				base = keys[b] << 16;
+				current = containers[b].iterator();
+			}
+
+			@Override
+			public long cost() {
+				return cardinality;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "RoaringDocSet[cardinality=" + cardinality + ", blocks=" + keys.length + ", bytes=" + ramBytesUsed + "]";
+	}
+
+	/**
+	 * @Description: 一个块内的低16位集合
+	 */
+	abstract static class Container {
+
+		/**
+		 * @Description: 按块内的文档数和区间数选择最小的容器
+		 */
+		static Container of(long[] bitmap, int cardinality, int runs) {
+			int arrayBytes = cardinality * 2;
+			int runBytes = runs * 4;
+			if (runBytes < Math.min(arrayBytes, BITMAP_BYTES)) {
+				return RunContainer.of(bitmap, runs);
+			}
+			if (cardinality <= ARRAY_MAX_SIZE) {
+				return ArrayContainer.of(bitmap, cardinality);
+			}
+			return new BitmapContainer(bitmap.clone());
+		}
+
+		abstract boolean contains(int low);
+
+		abstract long ramBytesUsed();
+
+		abstract ContainerIterator iterator();
+	}
+
+	/**
+	 * @Description: 块内遍历
+	 */
+	interface ContainerIterator {
+
+		/**
+		 * @param low
+		 *            不小于上一次返回的值
+		 * @return: int 第一个不小于low的值，没有时返回-1
+		 */
+		int advance(int low);
+	}
+
+	static final class ArrayContainer extends Container {
+		private final char[] values;
+
+		private ArrayContainer(char[] values) {
+			this.values = values;
+		}
+
+		static ArrayContainer of(long[] bitmap, int cardinality) {
+			char[] values = new char[cardinality];
+			int n = 0;
+			for (int i = 0; i < bitmap.length; i++) {
+				long word = bitmap[i];
+				while (word != 0) {
+					values[n++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values);
+		}
+
+		@Override
+		boolean contains(int low) {
+			return Arrays.binarySearch(values, (char) low) >= 0;
+		}
+
+		@Override
+		long ramBytesUsed() {
+			return 32 + values.length * 2L;
+		}
+
+		@Override
+		ContainerIterator iterator() {
+			return new ContainerIterator() {
+				private int index;
+
+				@Override
+				public int advance(int low) {
+					// 先倍增步长再二分，连续nextDoc时只比较一两次
+					int step = 1;
+					int hi = index;
+					while (hi < values.length && values[hi] < low) {
+						index = hi + 1;
+						hi += step;
+						step <<= 1;
+					}
+					hi = Math.min(hi, values.length);
+					while (index < hi) {
+						int mid = (index + hi) >>> 1;
+						if (values[mid] < low) {
+							index = mid + 1;
+						} else {
+							hi = mid;
+						}
+					}
+					return index < values.length ? values[index] : -1;
+				}
+			};
+		}
+	}
+
+	static final class BitmapContainer extends Container {
+		private final long[] words;
+
+		BitmapContainer(long[] words) {
+			this.words = words;
+		}
+
+		@Override
+		boolean contains(int low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		long ramBytesUsed() {
+			return 16 + BITMAP_BYTES;
+		}
+
+		@Override
+		ContainerIterator iterator() {
+			return new ContainerIterator() {
+				@Override
+				public int advance(int low) {
+					if (low >= BITMAP_WORDS << 6) {
+						return -1;
+					}
+					int i = low >>> 6;
+					long word = words[i] >>> low; // 移位数按64取模
+					if (word != 0) {
+						return low + Long.numberOfTrailingZeros(word);
+					}
+					while (++i < BITMAP_WORDS) {
+						if (words[i] != 0) {
+							return (i << 6) + Long.numberOfTrailingZeros(words[i]);
+						}
+					}
+					return -1;
+				}
+			};
+		}
+	}
+
+	static final class RunContainer extends Container {
+		private final char[] starts;
+		private final char[] ends; // 包含
+
+		private RunContainer(char[] starts, char[] ends) {
+			this.starts = starts;
+			this.ends = ends;
+		}
+
+		static RunContainer of(long[] bitmap, int runs) {
+			char[] starts = new char[runs];
+			char[] ends = new char[runs];
+			int n = -1;
+			int last = -2;
+			for (int i = 0; i < bitmap.length; i++) {
+				long word = bitmap[i];
+				while (word != 0) {
+					int value = (i << 6) + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					if (value != last + 1) {
+						starts[++n] = (char) value;
+					}
+					ends[n] = (char) value;
+					last = value;
+				}
+			}
+			return new RunContainer(starts, ends);
+		}
+
+		@Override
+		boolean contains(int low) {
+			int i = Arrays.binarySearch(starts, (char) low);
+			if (i >= 0) {
+				return true;
+			}
+			i = -i - 2; // 最后一个起点小于low的区间
+			return i >= 0 && ends[i] >= low;
+		}
+
+		@Override
+		long ramBytesUsed() {
+			return 48 + starts.length * 4L;
+		}
+
+		@Override
+		ContainerIterator iterator() {
+			return new ContainerIterator() {
+				private int run;
+
+				@Override
+				public int advance(int low) {
+					while (run < starts.length && ends[run] < low) {
+						run++;
+					}
+					return run < starts.length ? Math.max(low, starts[run]) : -1;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 结果中一个文档的位置，用作search-after分页的游标
+ *               <p>
+ *               结果按得分降序、分片号升序、文档号升序排列，下一页从游标之后开始，不需要重新收集前面所有页的结果。
+ *               单机结果的分片号为-1。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 4:20:15 PM
+ */
+public final class ScoreDoc {
+	private final float score;
+	private final int doc;
+	private final int shard;
+
+	public ScoreDoc(float score, int doc) {
+		this(score, doc, -1);
+	}
+
+	public ScoreDoc(float score, int doc, int shard) {
+		this.score = score;
+		this.doc = doc;
+		this.shard = shard;
+	}
+
+	public float getScore() {
+		return score;
+	}
+
+	public int getDoc() {
+		return doc;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	/**
+	 * @Description: 同一分片内，(score, doc)是否排在游标之后
+	 * @param score
+	 * @param doc
+	 * @return: boolean
+	 */
+	public boolean isBefore(float score, int doc) {
+		return score < this.score || (score == this.score && doc > this.doc);
+	}
+
+	/**
+	 * @Description: 把合并结果的游标转换为分片内的游标。得分相同时分片号小的在前，
+	 *               分片号小于游标的分片中同分的文档都已经返回，大于游标的分片中同分的文档都还没有返回
+	 * @param shard
+	 * @return: ScoreDoc
+	 */
+	public ScoreDoc forShard(int shard) {
+		if (shard < this.shard) {
+			return new ScoreDoc(score, Integer.MAX_VALUE);
+		}
+		if (shard > this.shard) {
+			return new ScoreDoc(score, -1);
+		}
+		return new ScoreDoc(score, doc);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ScoreDoc)) {
+			return false;
+		}
+		ScoreDoc other = (ScoreDoc) obj;
+		return Float.floatToIntBits(score) == Float.floatToIntBits(other.score) && doc == other.doc
+				&& shard == other.shard;
+	}
+
+	@Override
+	public int hashCode() {
+		return (Float.floatToIntBits(score) * 31 + doc) * 31 + shard;
+	}
+
+	@Override
+	public String toString() {
+		return "ScoreDoc[score=" + score + ", doc=" + doc + (shard < 0 ? "" : ", shard=" + shard) + "]";
+	}
+}
@@ -0,0 +1,45 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: 按文档号顺序遍历匹配的文档并打分
+ *               <p>
+ *               除了逐个文档的得分，还提供得分的上界：maxScore是所有文档的上界，
+ *               advanceShallow和blockMaxScore给出一段文档号范围内的上界，用于WAND跳过不可能进入结果的范围。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 17, 2017 3:42:10 PM
+ */
+public abstract class Scorer extends DocIdSetIterator {
+
+	/**
+	 * @Description: 当前文档的得分
+	 * @return: float
+	 */
+	public abstract float score();
+
+	/**
+	 * @Description: 所有文档得分的上界
+	 * @return: float
+	 */
+	public abstract float maxScore();
+
+	/**
+	 * @Description: 定位到包含target的范围，不移动当前文档
+	 * @param target
+	 * @return: int 范围内的最后一个文档号，之后调用blockMaxScore得到范围内的上界
+	 */
+	public int advanceShallow(int target) {
+		return NO_MORE_DOCS;
+	}
+
+	/**
+	 * @Description: 最近一次advanceShallow定位的范围内得分的上界
+	 * @return: float
+	 */
+	public float blockMaxScore() {
+		return maxScore();
+	}
+}
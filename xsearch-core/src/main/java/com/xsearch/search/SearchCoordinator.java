@@ -0,0 +1,284 @@
+package com.xsearch.search;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xsearch.ipc.CallProcessor;
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: 分片查询的协调器
+ *               <p>
+ *               索引按文档切分到多个分片，每个分片是一个以SearchProcessor处理请求的XsearchServer。
+ *               协调器用XsearchClient把同一个SearchRequest并行发给所有分片，每个分片取topN，再合并为全局topN。
+ *               每个分片的调用有独立的超时，超时或失败的分片不阻塞其他分片，允许部分结果时返回已到达分片的合并结果，
+ *               结果中failedShards记录缺失的分片数。
+ *               协调器本身也是CallProcessor，可以挂在一个XsearchServer上，客户端请求协调节点与请求单个节点的帧格式相同。
+ *               各分片按本分片的词统计打分，分片间文档分布相近时得分可以直接比较。
+ *               翻页时请求带上合并结果中上一页最后一个文档作为游标，协调器为每个分片换算出分片内的游标。
+ *               挂在XsearchServer上时，分片调用的超时不超过客户端请求剩余的时间，分片据此提前结束查询。
+ *               一批查询时每个分片只发一个BatchSearchRequest帧，分片一起执行这批查询，再按查询分别合并。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 24, 2017 10:35:12 AM
+ */
+public class SearchCoordinator implements CallProcessor {
+	private static final Logger logger = LoggerFactory.getLogger(SearchCoordinator.class);
+
+	public static final long DEFAULT_SHARD_TIMEOUT = 1000L; // 每个分片最多等待1秒
+
+	private final XsearchClient client;
+	private final List<InetSocketAddress> shards;
+	private volatile long shardTimeout = DEFAULT_SHARD_TIMEOUT;
+	private volatile boolean allowPartialResults = true;
+
+	/**
+	 * @param client
+	 *            由调用方负责关闭
+	 * @param shards
+	 *            分片地址，下标为分片号
+	 */
+	public SearchCoordinator(XsearchClient client, List<InetSocketAddress> shards) {
+		if (shards.isEmpty()) {
+			throw new IllegalArgumentException("No shards");
+		}
+		this.client = client;
+		this.shards = new ArrayList<InetSocketAddress>(shards);
+	}
+
+	public List<InetSocketAddress> getShards() {
+		return shards;
+	}
+
+	public long getShardTimeout() {
+		return shardTimeout;
+	}
+
+	/**
+	 * @Description: 每个分片调用的超时（毫秒），所有分片同时发出，也是整个查询的最长等待时间
+	 * @param shardTimeout
+	 * @return: void
+	 */
+	public void setShardTimeout(long shardTimeout) {
+		this.shardTimeout = shardTimeout;
+	}
+
+	public boolean isAllowPartialResults() {
+		return allowPartialResults;
+	}
+
+	/**
+	 * @Description: 为false时任何一个分片失败整个查询失败；为true时只有所有分片都失败才失败
+	 * @param allowPartialResults
+	 * @return: void
+	 */
+	public void setAllowPartialResults(boolean allowPartialResults) {
+		this.allowPartialResults = allowPartialResults;
+	}
+
+	/**
+	 * @Description: 异步执行分片查询
+	 * @param request
+	 * @return: CompletableFuture<TopDocs> 没有足够的分片返回结果时以ShardFailureException异常完成
+	 */
+	public CompletableFuture<TopDocs> search(SearchRequest request) {
+		return search(request, shardTimeout);
+	}
+
+	/**
+	 * @Description: 异步执行分片查询，使用本次查询的超时
+	 * @param request
+	 *            游标为合并结果中的位置，需要带分片号
+	 * @param timeout
+	 *            每个分片调用的超时（毫秒）
+	 * @return: CompletableFuture<TopDocs>
+	 */
+	public CompletableFuture<TopDocs> search(final SearchRequest request, long timeout) {
+		ScoreDoc after = request.getAfter();
+		ByteBuffer param = after == null ? request.encode() : null;
+		final int n = shards.size();
+		final TopDocs[] shardHits = new TopDocs[n];
+		final Throwable[] failures = new Throwable[n];
+		CompletableFuture<?>[] calls = new CompletableFuture<?>[n];
+		for (int i = 0; i < n; i++) {
+			final int shard = i;
+			ByteBuffer shardParam = after == null ? param : request.withAfter(after.forShard(i)).encode();
+			calls[i] = client.call(shards.get(i), shardParam, timeout, TimeUnit.MILLISECONDS)
+					.handle(new BiFunction<ByteBuffer, Throwable, Void>() {
+						@Override
+						public Void apply(ByteBuffer value, Throwable e) {
+							// 每个分片只写自己的下标，allOf完成时对合并线程可见
+							if (e != null) {
+								failures[shard] = e;
+							} else {
+								try {
+									shardHits[shard] = TopDocs.decode(value);
+								} catch (RuntimeException decodeError) {
+									failures[shard] = decodeError;
+								}
+							}
+							return null;
+						}
+					});
+		}
+
+		return CompletableFuture.allOf(calls).thenApply(new Function<Void, TopDocs>() {
+			@Override
+			public TopDocs apply(Void ignored) {
+				int failed = 0;
+				Throwable cause = null;
+				for (int i = 0; i < n; i++) {
+					if (failures[i] != null) {
+						failed++;
+						cause = failures[i];
+						logger.warn("Shard " + i + " " + shards.get(i) + " failed for " + request + ": " + failures[i]);
+					}
+				}
+				if (failed == n || (failed > 0 && !allowPartialResults)) {
+					throw new ShardFailureException(failed + " of " + n + " shards failed", cause);
+				}
+				return TopDocs.merge(request.getTopN(), shardHits);
+			}
+		});
+	}
+
+	/**
+	 * @Description: 异步执行一批分片查询，每个分片一个批量请求帧，分片须挂有BatchSearchProcessor
+	 * @param requests
+	 * @param timeout
+	 *            每个分片调用的超时（毫秒）
+	 * @return: CompletableFuture<TopDocs[]> 与requests一一对应，分片失败的处理与单个查询相同
+	 */
+	public CompletableFuture<TopDocs[]> search(final List<SearchRequest> requests, long timeout) {
+		final int n = shards.size();
+		final TopDocs[][] shardHits = new TopDocs[n][];
+		final Throwable[] failures = new Throwable[n];
+		CompletableFuture<?>[] calls = new CompletableFuture<?>[n];
+		for (int i = 0; i < n; i++) {
+			final int shard = i;
+			List<SearchRequest> shardRequests = new ArrayList<SearchRequest>(requests.size());
+			for (SearchRequest request : requests) {
+				ScoreDoc after = request.getAfter();
+				shardRequests.add(after == null ? request : request.withAfter(after.forShard(i)));
+			}
+			ByteBuffer param = new BatchSearchRequest(shardRequests).encode();
+			calls[i] = client.call(shards.get(i), BatchSearchProcessor.METHOD_ID, param, timeout, TimeUnit.MILLISECONDS)
+					.handle(new BiFunction<ByteBuffer, Throwable, Void>() {
+						@Override
+						public Void apply(ByteBuffer value, Throwable e) {
+							if (e != null) {
+								failures[shard] = e;
+							} else {
+								try {
+									TopDocs[] hits = BatchSearchRequest.decodeResults(value);
+									if (hits.length != requests.size()) {
+										throw new IllegalStateException("Expected " + requests.size() + " results, got "
+												+ hits.length);
+									}
+									shardHits[shard] = hits;
+								} catch (RuntimeException decodeError) {
+									failures[shard] = decodeError;
+								}
+							}
+							return null;
+						}
+					});
+		}
+
+		return CompletableFuture.allOf(calls).thenApply(new Function<Void, TopDocs[]>() {
+			@Override
+			public TopDocs[] apply(Void ignored) {
+				int failed = 0;
+				Throwable cause = null;
+				for (int i = 0; i < n; i++) {
+					if (failures[i] != null) {
+						failed++;
+						cause = failures[i];
+						logger.warn("Shard " + i + " " + shards.get(i) + " failed for batch of " + requests.size()
+								+ ": " + failures[i]);
+					}
+				}
+				if (failed == n || (failed > 0 && !allowPartialResults)) {
+					throw new ShardFailureException(failed + " of " + n + " shards failed", cause);
+				}
+				TopDocs[] merged = new TopDocs[requests.size()];
+				TopDocs[] hits = new TopDocs[n];
+				for (int q = 0; q < merged.length; q++) {
+					for (int i = 0; i < n; i++) {
+						hits[i] = shardHits[i] == null ? null : shardHits[i][q];
+					}
+					merged[q] = TopDocs.merge(requests.get(q).getTopN(), hits);
+				}
+				return merged;
+			}
+		});
+	}
+
+	/**
+	 * @Description: 批量查询的处理器，与协调器一起挂在XsearchServer的BatchSearchProcessor.METHOD_ID上
+	 * @return: CallProcessor
+	 */
+	public CallProcessor batchProcessor() {
+		return new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				BatchSearchRequest batch = BatchSearchRequest.decode(param);
+				try {
+					return BatchSearchRequest.encodeResults(search(batch.getRequests(), callTimeout()).get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ShardFailureException) {
+						throw (ShardFailureException) e.getCause();
+					}
+					throw e;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @Description: 分片调用的超时不超过客户端请求剩余的时间
+	 */
+	private long callTimeout() {
+		long remaining = TimeUnit.NANOSECONDS.toMillis(XsearchServer.getRemainingNanos());
+		return Math.max(1, Math.min(shardTimeout, remaining));
+	}
+
+	/**
+	 * @Description: 在Handler线程中同步等待分片结果，Handler线程在等待期间被占用，分片多或超时长时宜用VIRTUAL_THREAD模式
+	 */
+	@Override
+	public ByteBuffer process(ByteBuffer param) throws Exception {
+		SearchRequest request = SearchRequest.decode(param);
+		try {
+			return search(request, callTimeout()).get().encode();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ShardFailureException) {
+				throw (ShardFailureException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @Description: 没有足够的分片返回结果
+	 */
+	public static class ShardFailureException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public ShardFailureException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+}
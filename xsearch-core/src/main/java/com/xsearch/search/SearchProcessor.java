@@ -0,0 +1,68 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.index.IndexSnapshot;
+import com.xsearch.index.IndexWriter;
+import com.xsearch.ipc.CallProcessor;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: 在Handler线程中执行查询的请求处理器，请求为SearchRequest的编码（其中包含查询树），响应为TopDocs的编码
+ *               <p>
+ *               搜索器可以在运行中替换，已开始的查询继续使用旧的搜索器。
+ *               基于IndexWriter创建时，每次查询使用writer当前发布的快照，快照变化后重新创建搜索器，新旧搜索器共享过滤缓存和查询结果缓存，
+ *               结果缓存按快照代数区分，新快照发布后旧结果不再命中。
+ *               请求带超时时查询在客户端的截止时间前结束，返回已经遍历过的文档中的topN。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 2:15:09 PM
+ */
+public class SearchProcessor implements CallProcessor {
+	private volatile IndexSearcher searcher;
+	private final IndexWriter writer;
+	private final FilterCache filterCache;
+	private final QueryResultCache resultCache;
+
+	public SearchProcessor(IndexSearcher searcher) {
+		this.searcher = searcher;
+		this.writer = null;
+		this.filterCache = searcher.getFilterCache();
+		this.resultCache = searcher.getResultCache();
+	}
+
+	public SearchProcessor(IndexWriter writer) {
+		this.writer = writer;
+		this.filterCache = new FilterCache();
+		this.resultCache = new QueryResultCache();
+		this.searcher = new IndexSearcher(writer.getSnapshot(), filterCache, resultCache);
+	}
+
+	public IndexSearcher getSearcher() {
+		IndexSearcher current = searcher;
+		if (writer != null) {
+			IndexSnapshot snapshot = writer.getSnapshot();
+			if (current.getSnapshot() != snapshot) {
+				IndexSearcher previous = current;
+				current = new IndexSearcher(snapshot, filterCache, resultCache);
+				// 并行设置沿用到新快照的搜索器
+				current.setExecutor(previous.getExecutor());
+				current.setMaxParallelism(previous.getMaxParallelism());
+				current.setSliceSize(previous.getSliceSize());
+				searcher = current;
+			}
+		}
+		return current;
+	}
+
+	public void setSearcher(IndexSearcher searcher) {
+		this.searcher = searcher;
+	}
+
+	@Override
+	public ByteBuffer process(ByteBuffer param) throws Exception {
+		SearchRequest request = SearchRequest.decode(param);
+		return getSearcher().search(request, XsearchServer.getRemainingNanos()).encode();
+	}
+}
@@ -0,0 +1,113 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.index.BytesOutput;
+
+/**
+ * @Description: 查询请求：执行查询树query，返回得分最高的topN个文档；带游标after时返回排在游标之后的topN个文档
+ *               <p>
+ *               编码格式为：[topN int][有游标 byte]([得分 float][文档号 int][分片号 int])[查询]，查询的编码见Query。
+ *               也可以由查询文本创建，文本在客户端按QueryParser解析，请求帧中只有查询树。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 10:20:33 AM
+ */
+public class SearchRequest {
+
+	/**
+	 * @Description: 查询文本中没有前缀的子句之间的关系
+	 */
+	public enum Operator {
+		AND, // 包含全部词
+		OR // 包含任意词，按得分剪枝执行
+	}
+
+	private final Query query;
+	private final int topN;
+	private final ScoreDoc after;
+
+	public SearchRequest(String field, String query, int topN) {
+		this(field, query, topN, Operator.AND);
+	}
+
+	/**
+	 * @param field
+	 *            缺省字段
+	 * @param query
+	 *            查询文本，语法见QueryParser
+	 * @param topN
+	 * @param operator
+	 */
+	public SearchRequest(String field, String query, int topN, Operator operator) {
+		this(new QueryParser(field, operator).parse(query), topN);
+	}
+
+	public SearchRequest(Query query, int topN) {
+		this(query, topN, null);
+	}
+
+	/**
+	 * @param query
+	 * @param topN
+	 * @param after
+	 *            上一页的最后一个文档，为null时取第一页
+	 */
+	public SearchRequest(Query query, int topN, ScoreDoc after) {
+		if (topN <= 0) {
+			throw new IllegalArgumentException("topN must be positive: " + topN);
+		}
+		this.query = query;
+		this.topN = topN;
+		this.after = after;
+	}
+
+	public Query getQuery() {
+		return query;
+	}
+
+	public int getTopN() {
+		return topN;
+	}
+
+	public ScoreDoc getAfter() {
+		return after;
+	}
+
+	/**
+	 * @Description: 相同查询的另一页
+	 * @param after
+	 * @return: SearchRequest
+	 */
+	public SearchRequest withAfter(ScoreDoc after) {
+		return new SearchRequest(query, topN, after);
+	}
+
+	public ByteBuffer encode() {
+		BytesOutput out = new BytesOutput(64);
+		out.writeInt(topN);
+		out.writeByte((byte) (after == null ? 0 : 1));
+		if (after != null) {
+			out.writeInt(Float.floatToIntBits(after.getScore()));
+			out.writeInt(after.getDoc());
+			out.writeInt(after.getShard());
+		}
+		query.write(out);
+		return out.toByteBuffer();
+	}
+
+	public static SearchRequest decode(ByteBuffer buffer) {
+		int topN = buffer.getInt();
+		ScoreDoc after = null;
+		if (buffer.get() != 0) {
+			after = new ScoreDoc(buffer.getFloat(), buffer.getInt(), buffer.getInt());
+		}
+		return new SearchRequest(Query.decode(buffer), topN, after);
+	}
+
+	@Override
+	public String toString() {
+		return "SearchRequest[" + query + ", topN=" + topN + (after == null ? "" : ", after=" + after) + "]";
+	}
+}
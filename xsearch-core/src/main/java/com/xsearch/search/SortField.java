@@ -0,0 +1,55 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 按列存字段排序
+ *               <p>
+ *               LONG按NUMERIC字段的值排序，STRING按SORTED_KEYWORD字段值的UTF-8字节序排序。
+ *               没有值的文档排在最后，值相同时文档号小的在前。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 2:18:02 PM
+ */
+public class SortField {
+
+	public enum Type {
+		LONG, STRING
+	}
+
+	private final String field;
+	private final Type type;
+	private final boolean reverse;
+
+	public SortField(String field, Type type) {
+		this(field, type, false);
+	}
+
+	/**
+	 * @param field
+	 * @param type
+	 * @param reverse
+	 *            为true时降序
+	 */
+	public SortField(String field, Type type, boolean reverse) {
+		this.field = field;
+		this.type = type;
+		this.reverse = reverse;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public boolean isReverse() {
+		return reverse;
+	}
+
+	@Override
+	public String toString() {
+		return field + "<" + type + ">" + (reverse ? " desc" : "");
+	}
+}
@@ -0,0 +1,80 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.BytesOutput;
+import com.xsearch.index.Segment;
+import com.xsearch.index.Term;
+
+/**
+ * @Description: 包含一个词的文档
+ *               <p>
+ *               编码格式为：[字段名][词]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 10:50:27 AM
+ */
+public class TermQuery extends Query {
+	private final Term term;
+
+	public TermQuery(Term term) {
+		this.term = term;
+	}
+
+	public TermQuery(String field, String text) {
+		this(new Term(field, text));
+	}
+
+	public Term getTerm() {
+		return term;
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, boolean needsScores) {
+		final TermStates states = searcher.termStates(term);
+		final BM25Similarity.SimScorer sim = needsScores
+				? searcher.simScorer(term.field(), searcher.idf(states)) : null;
+		return new Weight() {
+			@Override
+			public Scorer scorer(Segment segment) {
+				BlockPostingsEnum postings = states.postings(segment);
+				if (postings == null) {
+					return null;
+				}
+				if (sim == null) {
+					return new ConstantScorer(postings, 0);
+				}
+				return new TermScorer(postings, segment.norms().get(term.field()), sim);
+			}
+		};
+	}
+
+	@Override
+	void write(BytesOutput out) {
+		out.writeByte(TERM);
+		out.writeString(term.field());
+		out.writeString(term.text());
+	}
+
+	static TermQuery read(ByteBuffer buffer) {
+		String field = readString(buffer);
+		return new TermQuery(field, readString(buffer));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TermQuery && term.equals(((TermQuery) obj).term);
+	}
+
+	@Override
+	public int hashCode() {
+		return term.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return term.toString();
+	}
+}
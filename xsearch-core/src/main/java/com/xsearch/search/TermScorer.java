@@ -0,0 +1,80 @@
+package com.xsearch.search;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.Norms;
+
+/**
+ * @Description: 单个词的打分器，块内得分上界取自跳表中的块内最大词频和最小长度
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 17, 2017 4:05:33 PM
+ */
+public class TermScorer extends Scorer {
+	private final BlockPostingsEnum postings;
+	private final Norms.FieldNorms norms;
+	private final BM25Similarity.SimScorer sim;
+	private final float maxScore;
+	private int shallowBlock;
+
+	/**
+	 * @param postings
+	 * @param norms
+	 *            为null时按长度编码0打分
+	 * @param sim
+	 */
+	public TermScorer(BlockPostingsEnum postings, Norms.FieldNorms norms, BM25Similarity.SimScorer sim) {
+		this.postings = postings;
+		this.norms = norms;
+		this.sim = sim;
+		this.maxScore = sim.score(postings.maxFreq(), postings.minNorm());
+	}
+
+	@Override
+	public int docID() {
+		return postings.docID();
+	}
+
+	@Override
+	public int nextDoc() {
+		return postings.nextDoc();
+	}
+
+	@Override
+	public int advance(int target) {
+		return postings.advance(target);
+	}
+
+	@Override
+	public long cost() {
+		return postings.cost();
+	}
+
+	public int freq() {
+		return postings.freq();
+	}
+
+	@Override
+	public float score() {
+		return sim.score(postings.freq(), norms == null ? 0 : norms.norm(postings.docID()));
+	}
+
+	@Override
+	public float maxScore() {
+		return maxScore;
+	}
+
+	@Override
+	public int advanceShallow(int target) {
+		shallowBlock = postings.findBlock(target, 0);
+		return shallowBlock == postings.numBlocks() ? NO_MORE_DOCS : postings.blockLastDoc(shallowBlock);
+	}
+
+	@Override
+	public float blockMaxScore() {
+		if (shallowBlock == postings.numBlocks()) {
+			return 0;
+		}
+		return sim.score(postings.blockMaxFreq(shallowBlock), postings.blockMinNorm(shallowBlock));
+	}
+}
@@ -0,0 +1,98 @@
+package com.xsearch.search;
+
+import com.xsearch.index.BlockPostingsEnum;
+import com.xsearch.index.Segment;
+import com.xsearch.index.Term;
+
+/**
+ * @Description: 一个词在快照各段中的字典序号，以及整个快照上的文档频率
+ *               <p>
+ *               每个段只在词典中查找一次，建Weight时计算idf和之后每个段创建打分器都使用这里的序号。
+ *               批量查询中同一个词被多个查询用到时，调用share后各段的倒排只读一次跳表、每个块只解码一次，见BlockPostingsEnum.Shared。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 6:10:25 PM
+ */
+public final class TermStates {
+	private final Term term;
+	private final Segment[] segments;
+	private final int[] ords; // 词不存在的段为-1
+	private final long docFreq;
+	private volatile BlockPostingsEnum.Shared[] shared;
+
+	TermStates(Term term, Segment[] segments) {
+		this.term = term;
+		this.segments = segments;
+		this.ords = new int[segments.length];
+		long docFreq = 0;
+		for (int i = 0; i < segments.length; i++) {
+			int ord = segments[i].terms().lookup(term.bytes());
+			ords[i] = ord;
+			if (ord >= 0) {
+				docFreq += segments[i].terms().docFreq(ord);
+			}
+		}
+		this.docFreq = docFreq;
+	}
+
+	public Term getTerm() {
+		return term;
+	}
+
+	/**
+	 * @Description: 词在整个快照上的文档频率，包含已删除的文档
+	 * @return: long
+	 */
+	public long docFreq() {
+		return docFreq;
+	}
+
+	/**
+	 * @Description: 之后创建的遍历器共享各段解码后的倒排
+	 * @return: void
+	 */
+	synchronized void share() {
+		if (shared != null) {
+			return;
+		}
+		BlockPostingsEnum.Shared[] states = new BlockPostingsEnum.Shared[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			if (ords[i] >= 0) {
+				states[i] = new BlockPostingsEnum.Shared(segments[i].postingsData(),
+						segments[i].terms().postingsOffset(ords[i]));
+			}
+		}
+		shared = states;
+	}
+
+	/**
+	 * @Description: 词在段上的倒排遍历器，每次调用返回一个新的遍历器
+	 * @param segment
+	 *            快照中的段
+	 * @return: BlockPostingsEnum 词不在段中时返回null
+	 */
+	public BlockPostingsEnum postings(Segment segment) {
+		int i = indexOf(segment);
+		if (i < 0) {
+			return segment.postings(term);
+		}
+		if (ords[i] < 0) {
+			return null;
+		}
+		BlockPostingsEnum.Shared[] states = shared;
+		return states != null ? new BlockPostingsEnum(states[i]) : segment.postings(ords[i]);
+	}
+
+	/**
+	 * @Description: 段在快照中的下标，段数不多，按引用顺序查找
+	 */
+	private int indexOf(Segment segment) {
+		for (int i = 0; i < segments.length; i++) {
+			if (segments[i] == segment) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
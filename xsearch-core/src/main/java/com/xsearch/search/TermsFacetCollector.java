@@ -0,0 +1,106 @@
+package com.xsearch.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xsearch.index.DocValues;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 按SORTED_KEYWORD字段的值统计匹配文档数
+ *               <p>
+ *               段内按值序号在int数组上计数，一个段结束时只对计数不为0的序号查字典，按值累加到全局结果。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 3:28:16 PM
+ */
+public class TermsFacetCollector extends DocBlockCollector {
+	private final String field;
+	private final Map<String, int[]> totals = new HashMap<String, int[]>();
+	private DocValues.SortedDocValues sorted;
+	private int[] counts; // 下标为序号+1，0为没有值的文档
+	private int missing;
+
+	public TermsFacetCollector(String field) {
+		this.field = field;
+	}
+
+	@Override
+	public void setSegment(Segment segment, int docBase) {
+		finishSegment();
+		sorted = segment.docValues().sorted(field);
+		if (sorted != null) {
+			counts = new int[sorted.valueCount() + 1];
+		}
+	}
+
+	@Override
+	public void collect(int[] docs, int count) {
+		if (sorted == null) {
+			missing += count;
+			return;
+		}
+		int[] counts = this.counts;
+		for (int i = 0; i < count; i++) {
+			counts[sorted.ord(docs[i]) + 1]++;
+		}
+	}
+
+	private void finishSegment() {
+		if (sorted != null) {
+			missing += counts[0];
+			for (int ord = 0; ord < counts.length - 1; ord++) {
+				if (counts[ord + 1] > 0) {
+					String value = sorted.lookupOrd(ord);
+					int[] total = totals.get(value);
+					if (total == null) {
+						totals.put(value, new int[] { counts[ord + 1] });
+					} else {
+						total[0] += counts[ord + 1];
+					}
+				}
+			}
+		}
+		sorted = null;
+		counts = null;
+	}
+
+	/**
+	 * @Description: 匹配文档中没有该字段的文档数
+	 * @return: int
+	 */
+	public int getMissing() {
+		finishSegment();
+		return missing;
+	}
+
+	/**
+	 * @Description: 文档数最多的topN个值，文档数相同时按值排序，之后收集器不应再使用
+	 * @param topN
+	 * @return: FacetResult
+	 */
+	public FacetResult result(int topN) {
+		finishSegment();
+		List<Map.Entry<String, int[]>> entries = new ArrayList<Map.Entry<String, int[]>>(totals.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>() {
+			@Override
+			public int compare(Map.Entry<String, int[]> a, Map.Entry<String, int[]> b) {
+				int c = Integer.compare(b.getValue()[0], a.getValue()[0]);
+				return c != 0 ? c : TopFieldCollector.compareUtf8(a.getKey(), b.getKey());
+			}
+		});
+		int size = Math.min(topN, entries.size());
+		String[] labels = new String[size];
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			labels[i] = entries.get(i).getKey();
+			values[i] = entries.get(i).getValue()[0];
+		}
+		return new FacetResult(field, labels, values);
+	}
+}
@@ -0,0 +1,340 @@
+package com.xsearch.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Description: 按字节数限制大小的W-TinyLFU缓存
+ *               <p>
+ *               新条目先进入占总容量1%的窗口LRU，窗口溢出时最久未用的条目作为候选进入主区；
+ *               主区为分段LRU：试用区（20%）和保护区（80%），试用区的条目再次命中后升入保护区，保护区溢出时降回试用区。
+ *               主区放不下候选时，用计数草图估计候选和试用区最久未用条目（受害者）的访问频率，频率高的留下。
+ *               一次性的扫描型访问（只出现一次的查询）因此进不了主区，不会冲掉热门条目。
+ *               草图为4位计数的Count-Min Sketch，累计访问数达到条目数的10倍时所有计数减半，使频率随时间衰减。
+ *               <p>
+ *               所有操作在一个锁内完成，条目的值需要在锁外计算好再put。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 25, 2017 10:20:37 AM
+ */
+public class TinyLfuCache<K, V> {
+
+	/**
+	 * @Description: 条目的字节数估计
+	 */
+	public interface Weigher<K, V> {
+		long weigh(K key, V value);
+	}
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	private final long maxWeight;
+	private final long windowMaxWeight;
+	private final long protectedMaxWeight;
+	private final Weigher<K, V> weigher;
+	private final Map<K, Node<K, V>> map = new HashMap<K, Node<K, V>>();
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	// 三个LRU队列，head为最久未用
+	private final Node<K, V> window = Node.sentinel();
+	private final Node<K, V> probation = Node.sentinel();
+	private final Node<K, V> protectedQueue = Node.sentinel();
+	private long windowWeight;
+	private long protectedWeight;
+	private long weight;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public TinyLfuCache(long maxWeight, Weigher<K, V> weigher) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+		}
+		this.maxWeight = maxWeight;
+		this.windowMaxWeight = Math.max(1, maxWeight / 100);
+		this.protectedMaxWeight = (long) ((maxWeight - windowMaxWeight) * 0.8);
+		this.weigher = weigher;
+	}
+
+	/**
+	 * @Description: 查找条目，无论是否命中都计入访问频率
+	 * @param key
+	 * @return: V 不存在时返回null
+	 */
+	public synchronized V get(K key) {
+		sketch.increment(key.hashCode());
+		Node<K, V> node = map.get(key);
+		if (node == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		onHit(node);
+		return node.value;
+	}
+
+	/**
+	 * @Description: 加入或替换条目，超过总容量的条目不缓存
+	 * @param key
+	 * @param value
+	 * @return: void
+	 */
+	public synchronized void put(K key, V value) {
+		long w = weigher.weigh(key, value);
+		Node<K, V> node = map.get(key);
+		if (node != null) {
+			unlink(node);
+			map.remove(key);
+		}
+		if (w > maxWeight) {
+			return;
+		}
+
+		node = new Node<K, V>(key, value, w);
+		map.put(key, node);
+		sketch.ensureCapacity(map.size());
+		node.queue = WINDOW;
+		link(window, node);
+		windowWeight += w;
+		weight += w;
+		evict();
+	}
+
+	public synchronized void remove(K key) {
+		Node<K, V> node = map.remove(key);
+		if (node != null) {
+			unlink(node);
+		}
+	}
+
+	public synchronized void clear() {
+		map.clear();
+		window.prev = window.next = window;
+		probation.prev = probation.next = probation;
+		protectedQueue.prev = protectedQueue.next = protectedQueue;
+		windowWeight = protectedWeight = weight = 0;
+	}
+
+	private void onHit(Node<K, V> node) {
+		switch (node.queue) {
+		case WINDOW:
+			moveToTail(window, node);
+			break;
+		case PROBATION:
+			// 升入保护区，保护区溢出时最久未用的降回试用区
+			remove(node, false);
+			node.queue = PROTECTED;
+			link(protectedQueue, node);
+			protectedWeight += node.weight;
+			while (protectedWeight > protectedMaxWeight && protectedQueue.next != node) {
+				Node<K, V> demoted = protectedQueue.next;
+				remove(demoted, false);
+				demoted.queue = PROBATION;
+				link(probation, demoted);
+			}
+			break;
+		default:
+			moveToTail(protectedQueue, node);
+			break;
+		}
+	}
+
+	/**
+	 * @Description: 窗口溢出或总大小超限时，窗口中最久未用的条目作为候选与主区的受害者比较频率，直到都不超限
+	 */
+	private void evict() {
+		while (windowWeight > windowMaxWeight || (weight > maxWeight && window.next != window)) {
+			Node<K, V> candidate = window.next;
+			remove(candidate, false);
+			candidate.queue = PROBATION;
+			link(probation, candidate);
+
+			while (weight > maxWeight) {
+				Node<K, V> victim = probation.next != candidate ? probation.next
+						: protectedQueue.next != protectedQueue ? protectedQueue.next : null;
+				if (victim == null) {
+					evict(candidate);
+					break;
+				}
+				if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+					evict(victim);
+				} else {
+					evict(candidate);
+					break;
+				}
+			}
+		}
+	}
+
+	private void evict(Node<K, V> node) {
+		map.remove(node.key);
+		unlink(node);
+		evictionCount++;
+	}
+
+	private void unlink(Node<K, V> node) {
+		remove(node, true);
+	}
+
+	/**
+	 * @Description: 从所在队列中摘除
+	 * @param node
+	 * @param dropWeight
+	 *            是否同时从缓存总大小中扣除
+	 */
+	private void remove(Node<K, V> node, boolean dropWeight) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = node.next = null;
+		if (node.queue == WINDOW) {
+			windowWeight -= node.weight;
+		} else if (node.queue == PROTECTED) {
+			protectedWeight -= node.weight;
+		}
+		if (dropWeight) {
+			weight -= node.weight;
+		}
+	}
+
+	private static <K, V> void link(Node<K, V> queue, Node<K, V> node) {
+		node.prev = queue.prev;
+		node.next = queue;
+		queue.prev.next = node;
+		queue.prev = node;
+	}
+
+	private static <K, V> void moveToTail(Node<K, V> queue, Node<K, V> node) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		link(queue, node);
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	/**
+	 * @Description: 当前缓存的总字节数
+	 * @return: long
+	 */
+	public synchronized long weight() {
+		return weight;
+	}
+
+	public long maxWeight() {
+		return maxWeight;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "TinyLfuCache[size=" + map.size() + ", weight=" + weight + "/" + maxWeight + ", hits=" + hitCount
+				+ ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	/**
+	 * @Description: 双向链表节点，队列的哨兵节点没有键值
+	 */
+	private static final class Node<K, V> {
+		final K key;
+		final V value;
+		final long weight;
+		int queue;
+		Node<K, V> prev;
+		Node<K, V> next;
+
+		Node(K key, V value, long weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+
+		static <K, V> Node<K, V> sentinel() {
+			Node<K, V> node = new Node<K, V>(null, null, 0);
+			node.prev = node.next = node;
+			return node;
+		}
+	}
+
+	/**
+	 * @Description: 4位计数的Count-Min Sketch，每个long保存16个计数，每个键在4行中各对应一个计数，频率取最小值
+	 */
+	static final class FrequencySketch {
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private long[] table = new long[16];
+		private int sampleSize = 160;
+		private int additions;
+
+		/**
+		 * @Description: 按条目数扩大计数表，扩大时丢弃已有的计数
+		 * @param entries
+		 * @return: void
+		 */
+		void ensureCapacity(int entries) {
+			if (entries <= table.length) {
+				return;
+			}
+			int width = Integer.highestOneBit(Math.max(16, entries * 2 - 1));
+			table = new long[width];
+			sampleSize = 10 * width;
+			additions = 0;
+		}
+
+		void increment(int hashCode) {
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				long h = hash(hashCode, i);
+				int index = (int) (h >>> 32) & (table.length - 1);
+				int shift = (int) (h & 15) << 2;
+				if (((table[index] >>> shift) & 0xF) != 0xF) {
+					table[index] += 1L << shift;
+					added = true;
+				}
+			}
+			if (added && ++additions >= sampleSize) {
+				reset();
+			}
+		}
+
+		int frequency(int hashCode) {
+			int frequency = 15;
+			for (int i = 0; i < 4; i++) {
+				long h = hash(hashCode, i);
+				int index = (int) (h >>> 32) & (table.length - 1);
+				int shift = (int) (h & 15) << 2;
+				frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 0xF));
+			}
+			return frequency;
+		}
+
+		private static long hash(int hashCode, int i) {
+			long h = (hashCode + SEEDS[i]) * SEEDS[(i + 1) & 3];
+			return h ^ (h >>> 29);
+		}
+
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions >>>= 1;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.xsearch.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Description: 查询结果：命中总数以及按得分降序排列的文档号和得分
+ *               <p>
+ *               WAND等剪枝执行不会访问所有命中的文档，此时totalHits是命中数的下界，totalHitsExact为false。
+ *               分片查询合并后的结果中每个文档还带有分片号，failedShards为没有返回结果的分片数，大于0时结果不完整。
+ *               查询到达请求的截止时间时提前结束，timedOut为true，结果是已经遍历过的文档中的topN，totalHits是下界。
+ *               编码格式为：[totalHits int][标志 byte][文档个数 int]，标志的第0位为totalHitsExact，第1位表示带分片号，第2位为timedOut；
+ *               每个文档为 [分片号 int（带分片号时）][文档号 int][得分 float]，带分片号时最后是 [failedShards int]。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 10:31:18 AM
+ */
+public class TopDocs {
+	private static final byte FLAG_EXACT = 1;
+	private static final byte FLAG_SHARDS = 2;
+	private static final byte FLAG_TIMED_OUT = 4;
+
+	private final int totalHits;
+	private final boolean totalHitsExact;
+	private final int[] shards;
+	private final int[] docs;
+	private final float[] scores;
+	private final int failedShards;
+	private final boolean timedOut;
+
+	public TopDocs(int totalHits, int[] docs, float[] scores) {
+		this(totalHits, true, docs, scores);
+	}
+
+	public TopDocs(int totalHits, boolean totalHitsExact, int[] docs, float[] scores) {
+		this(totalHits, totalHitsExact, null, docs, scores, 0);
+	}
+
+	/**
+	 * @param totalHits
+	 * @param totalHitsExact
+	 * @param shards
+	 *            每个文档所在的分片号，单机结果为null
+	 * @param docs
+	 * @param scores
+	 * @param failedShards
+	 */
+	public TopDocs(int totalHits, boolean totalHitsExact, int[] shards, int[] docs, float[] scores, int failedShards) {
+		this(totalHits, totalHitsExact, shards, docs, scores, failedShards, false);
+	}
+
+	/**
+	 * @param totalHits
+	 * @param totalHitsExact
+	 * @param shards
+	 *            每个文档所在的分片号，单机结果为null
+	 * @param docs
+	 * @param scores
+	 * @param failedShards
+	 * @param timedOut
+	 *            是否因为到达截止时间而没有遍历完
+	 */
+	public TopDocs(int totalHits, boolean totalHitsExact, int[] shards, int[] docs, float[] scores, int failedShards,
+			boolean timedOut) {
+		if (docs.length != scores.length || (shards != null && shards.length != docs.length)) {
+			throw new IllegalArgumentException("docs, shards and scores differ in length");
+		}
+		this.totalHits = totalHits;
+		this.totalHitsExact = totalHitsExact;
+		this.shards = shards;
+		this.docs = docs;
+		this.scores = scores;
+		this.failedShards = failedShards;
+		this.timedOut = timedOut;
+	}
+
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * @Description: totalHits是否为精确值，为false时是下界
+	 * @return: boolean
+	 */
+	public boolean isTotalHitsExact() {
+		return totalHitsExact;
+	}
+
+	public int size() {
+		return docs.length;
+	}
+
+	public int doc(int i) {
+		return docs[i];
+	}
+
+	public float score(int i) {
+		return scores[i];
+	}
+
+	/**
+	 * @Description: 第i个文档的位置，最后一个文档的位置作为取下一页的游标
+	 * @param i
+	 * @return: ScoreDoc
+	 */
+	public ScoreDoc scoreDoc(int i) {
+		return new ScoreDoc(scores[i], docs[i], shard(i));
+	}
+
+	/**
+	 * @Description: 第i个文档所在的分片号，单机结果为-1
+	 * @param i
+	 * @return: int
+	 */
+	public int shard(int i) {
+		return shards == null ? -1 : shards[i];
+	}
+
+	/**
+	 * @Description: 没有返回结果的分片数
+	 * @return: int
+	 */
+	public int getFailedShards() {
+		return failedShards;
+	}
+
+	/**
+	 * @Description: 是否有分片或者段因为到达截止时间而没有遍历完
+	 * @return: boolean
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * @Description: 是否有分片没有返回结果，或者查询超时只遍历了部分文档
+	 * @return: boolean
+	 */
+	public boolean isPartial() {
+		return failedShards > 0 || timedOut;
+	}
+
+	/**
+	 * @Description: 合并各分片的结果，按得分降序取topN，得分相同时分片号小的优先，同一分片内保持原来的顺序
+	 * @param topN
+	 * @param shardHits
+	 *            下标为分片号，没有返回结果的分片为null
+	 * @return: TopDocs
+	 */
+	public static TopDocs merge(int topN, TopDocs[] shardHits) {
+		long totalHits = 0;
+		boolean totalHitsExact = true;
+		int failedShards = 0;
+		boolean timedOut = false;
+		int available = 0;
+		for (TopDocs hits : shardHits) {
+			if (hits == null) {
+				failedShards++;
+				totalHitsExact = false;
+				continue;
+			}
+			totalHits += hits.totalHits;
+			totalHitsExact &= hits.totalHitsExact;
+			timedOut |= hits.timedOut;
+			available += hits.docs.length;
+		}
+
+		// 各分片的结果已经有序，每次取各分片当前位置中最好的一个，分片数不多，不维护堆
+		int size = Math.min(topN, available);
+		int[] shards = new int[size];
+		int[] docs = new int[size];
+		float[] scores = new float[size];
+		int[] upto = new int[shardHits.length];
+		for (int i = 0; i < size; i++) {
+			int best = -1;
+			for (int s = 0; s < shardHits.length; s++) {
+				TopDocs hits = shardHits[s];
+				if (hits != null && upto[s] < hits.docs.length
+						&& (best < 0 || hits.scores[upto[s]] > shardHits[best].scores[upto[best]])) {
+					best = s;
+				}
+			}
+			shards[i] = best;
+			docs[i] = shardHits[best].docs[upto[best]];
+			scores[i] = shardHits[best].scores[upto[best]];
+			upto[best]++;
+		}
+		return new TopDocs((int) Math.min(Integer.MAX_VALUE, totalHits), totalHitsExact, shards, docs, scores,
+				failedShards, timedOut);
+	}
+
+	public ByteBuffer encode() {
+		int docSize = shards == null ? 8 : 12;
+		ByteBuffer buffer = ByteBuffer.allocate(9 + docs.length * docSize + (shards == null ? 0 : 4));
+		buffer.putInt(totalHits);
+		buffer.put((byte) ((totalHitsExact ? FLAG_EXACT : 0) | (shards == null ? 0 : FLAG_SHARDS)
+				| (timedOut ? FLAG_TIMED_OUT : 0)));
+		buffer.putInt(docs.length);
+		for (int i = 0; i < docs.length; i++) {
+			if (shards != null) {
+				buffer.putInt(shards[i]);
+			}
+			buffer.putInt(docs[i]);
+			buffer.putFloat(scores[i]);
+		}
+		if (shards != null) {
+			buffer.putInt(failedShards);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	public static TopDocs decode(ByteBuffer buffer) {
+		int totalHits = buffer.getInt();
+		byte flags = buffer.get();
+		boolean sharded = (flags & FLAG_SHARDS) != 0;
+		int docSize = sharded ? 12 : 8;
+		int size = buffer.getInt();
+		if (size < 0 || size > buffer.remaining() / docSize) {
+			throw new IllegalArgumentException("Invalid result size: " + size);
+		}
+		int[] shards = sharded ? new int[size] : null;
+		int[] docs = new int[size];
+		float[] scores = new float[size];
+		for (int i = 0; i < size; i++) {
+			if (sharded) {
+				shards[i] = buffer.getInt();
+			}
+			docs[i] = buffer.getInt();
+			scores[i] = buffer.getFloat();
+		}
+		int failedShards = sharded ? buffer.getInt() : 0;
+		return new TopDocs(totalHits, (flags & FLAG_EXACT) != 0, shards, docs, scores, failedShards,
+				(flags & FLAG_TIMED_OUT) != 0);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("TopDocs[totalHits=").append(totalHitsExact ? "" : ">=").append(totalHits);
+		if (failedShards > 0) {
+			sb.append(", failedShards=").append(failedShards);
+		}
+		if (timedOut) {
+			sb.append(", timedOut");
+		}
+		for (int i = 0; i < docs.length; i++) {
+			sb.append(", ");
+			if (shards != null) {
+				sb.append(shards[i]).append('/');
+			}
+			sb.append(docs[i]).append(':').append(scores[i]);
+		}
+		return sb.append(']').toString();
+	}
+}
@@ -0,0 +1,228 @@
+package com.xsearch.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.xsearch.index.DocValues;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 按列存字段取前K个文档
+ *               <p>
+ *               每个段内用排序键（数值或本段的值序号）在两个定长数组实现的堆中比较，收集过程只读列存，不分配对象。
+ *               没有值的文档的键为最大值（倒序时为最小值），因而排在最后。
+ *               段的序号不能跨段比较，一个段收集完后把堆中的文档连同排序值转出，最后按值合并所有段的候选，
+ *               需要查字典的只有每段不超过K个文档。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 2:40:13 PM
+ */
+public class TopFieldCollector extends DocBlockCollector {
+	private final SortField sort;
+	private final int k;
+	private final boolean reverse;
+	private final long missingKey;
+
+	// 当前段的堆，堆顶是最差的文档
+	private final long[] keys;
+	private final int[] docs;
+	private int size;
+
+	private int docBase;
+	private DocValues.NumericDocValues numerics;
+	private DocValues.SortedDocValues sorted;
+
+	// 已结束的段转出的候选
+	private int[] candidateDocs = new int[16];
+	private long[] candidateKeys = new long[16];
+	private Object[] candidateValues = new Object[16];
+	private int candidates;
+	private int totalHits;
+
+	public TopFieldCollector(SortField sort, int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		this.sort = sort;
+		this.k = k;
+		this.reverse = sort.isReverse();
+		this.missingKey = reverse ? Long.MIN_VALUE : Long.MAX_VALUE;
+		this.keys = new long[k];
+		this.docs = new int[k];
+	}
+
+	@Override
+	public void setSegment(Segment segment, int docBase) {
+		finishSegment();
+		this.docBase = docBase;
+		if (sort.getType() == SortField.Type.LONG) {
+			numerics = segment.docValues().numeric(sort.getField());
+		} else {
+			sorted = segment.docValues().sorted(sort.getField());
+		}
+	}
+
+	@Override
+	public void collect(int[] docs, int count) {
+		totalHits += count;
+		if (numerics != null) {
+			for (int i = 0; i < count; i++) {
+				int doc = docs[i];
+				add(numerics.exists(doc) ? numerics.get(doc) : missingKey, doc);
+			}
+		} else if (sorted != null) {
+			for (int i = 0; i < count; i++) {
+				int doc = docs[i];
+				int ord = sorted.ord(doc);
+				add(ord < 0 ? missingKey : ord, doc);
+			}
+		} else {
+			// 段中没有该字段，所有文档都没有值
+			for (int i = 0; i < count; i++) {
+				add(missingKey, docs[i]);
+			}
+		}
+	}
+
+	private void add(long key, int doc) {
+		if (size < k) {
+			// 上浮
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!worse(key, doc, keys[parent], docs[parent])) {
+					break;
+				}
+				keys[i] = keys[parent];
+				docs[i] = docs[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			docs[i] = doc;
+		} else if (reverse ? key > keys[0] : key < keys[0]) {
+			// 文档号递增，键相同的新文档不会更好
+			replaceTop(key, doc);
+		}
+	}
+
+	private void replaceTop(long key, int doc) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && worse(keys[child + 1], docs[child + 1], keys[child], docs[child])) {
+				child++;
+			}
+			if (!worse(keys[child], docs[child], key, doc)) {
+				break;
+			}
+			keys[i] = keys[child];
+			docs[i] = docs[child];
+			i = child;
+		}
+		keys[i] = key;
+		docs[i] = doc;
+	}
+
+	private boolean worse(long key1, int doc1, long key2, int doc2) {
+		if (key1 != key2) {
+			return reverse ? key1 < key2 : key1 > key2;
+		}
+		return doc1 > doc2;
+	}
+
+	/**
+	 * @Description: 把当前段堆中的文档转为候选，序号换成值
+	 */
+	private void finishSegment() {
+		if (size > 0) {
+			if (candidates + size > candidateDocs.length) {
+				int length = Math.max(candidates + size, candidateDocs.length * 2);
+				candidateDocs = Arrays.copyOf(candidateDocs, length);
+				candidateKeys = Arrays.copyOf(candidateKeys, length);
+				candidateValues = Arrays.copyOf(candidateValues, length);
+			}
+			for (int i = 0; i < size; i++) {
+				int doc = docs[i];
+				candidateDocs[candidates] = docBase + doc;
+				candidateKeys[candidates] = keys[i];
+				if (numerics != null && numerics.exists(doc)) {
+					candidateValues[candidates] = numerics.get(doc);
+				} else if (sorted != null && keys[i] != missingKey) {
+					candidateValues[candidates] = sorted.lookupOrd((int) keys[i]);
+				}
+				candidates++;
+			}
+		}
+		size = 0;
+		numerics = null;
+		sorted = null;
+	}
+
+	/**
+	 * @Description: 按排序输出结果，之后收集器不应再使用
+	 * @return: TopFieldDocs
+	 */
+	public TopFieldDocs topDocs() {
+		finishSegment();
+		Integer[] order = new Integer[candidates];
+		for (int i = 0; i < candidates; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int c = compareValues(a, b);
+				return c != 0 ? c : Integer.compare(candidateDocs[a], candidateDocs[b]);
+			}
+		});
+
+		int count = Math.min(k, candidates);
+		int[] sortedDocs = new int[count];
+		Object[] values = new Object[count];
+		for (int i = 0; i < count; i++) {
+			sortedDocs[i] = candidateDocs[order[i]];
+			values[i] = candidateValues[order[i]];
+		}
+		return new TopFieldDocs(totalHits, sort, sortedDocs, values);
+	}
+
+	private int compareValues(int a, int b) {
+		if (sort.getType() == SortField.Type.LONG) {
+			// 数值的键就是值，没有值时与段内一致按missingKey比较
+			int c = Long.compare(candidateKeys[a], candidateKeys[b]);
+			return reverse ? -c : c;
+		}
+		String v1 = (String) candidateValues[a];
+		String v2 = (String) candidateValues[b];
+		if (v1 == null || v2 == null) {
+			return v1 == v2 ? 0 : v1 == null ? 1 : -1;
+		}
+		int c = compareUtf8(v1, v2);
+		return reverse ? -c : c;
+	}
+
+	/**
+	 * @Description: 按UTF-8字节序比较，与段内字典的顺序一致
+	 */
+	static int compareUtf8(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		for (int i = 0; i < length; i++) {
+			char c1 = a.charAt(i);
+			char c2 = b.charAt(i);
+			if (c1 != c2) {
+				// 代理对的UTF-8编码大于所有其他BMP字符，把代理区移到最后
+				boolean s1 = Character.isSurrogate(c1);
+				boolean s2 = Character.isSurrogate(c2);
+				if (s1 != s2) {
+					return s1 ? 1 : -1;
+				}
+				return c1 - c2;
+			}
+		}
+		return a.length() - b.length();
+	}
+}
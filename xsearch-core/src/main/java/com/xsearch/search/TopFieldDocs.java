@@ -0,0 +1,50 @@
+package com.xsearch.search;
+
+import java.util.Arrays;
+
+/**
+ * @Description: 按字段排序的查询结果，values为每个文档的排序值（Long或String），没有值时为null
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 2:25:47 PM
+ */
+public class TopFieldDocs {
+	private final int totalHits;
+	private final SortField sort;
+	private final int[] docs;
+	private final Object[] values;
+
+	public TopFieldDocs(int totalHits, SortField sort, int[] docs, Object[] values) {
+		this.totalHits = totalHits;
+		this.sort = sort;
+		this.docs = docs;
+		this.values = values;
+	}
+
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	public SortField getSort() {
+		return sort;
+	}
+
+	public int size() {
+		return docs.length;
+	}
+
+	public int doc(int i) {
+		return docs[i];
+	}
+
+	public Object value(int i) {
+		return values[i];
+	}
+
+	@Override
+	public String toString() {
+		return "TopFieldDocs[totalHits=" + totalHits + ", sort=" + sort + ", docs=" + Arrays.toString(docs)
+				+ ", values=" + Arrays.toString(values) + "]";
+	}
+}
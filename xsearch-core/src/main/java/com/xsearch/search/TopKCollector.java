@@ -0,0 +1,143 @@
+package com.xsearch.search;
+
+/**
+ * @Description: 收集得分最高的K个文档
+ *               <p>
+ *               用两个定长数组实现小顶堆，堆顶是当前最差的结果，收集过程中不分配对象。
+ *               得分相同时文档号小的优先，由于文档按文档号递增收集，与堆顶得分相同的新文档直接丢弃。
+ *               堆满后minCompetitiveScore给出进入结果需要超过的得分，供WAND剪枝。
+ *               带search-after游标时只收集排在游标之后的文档，剪枝只用得分下界，不受游标影响。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 17, 2017 4:30:52 PM
+ */
+public class TopKCollector {
+	private final int k;
+	private final int[] docs;
+	private final float[] scores;
+	private final ScoreDoc after;
+	private int size;
+
+	public TopKCollector(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * @param k
+	 * @param after
+	 *            上一页的最后一个文档，只收集排在它之后的文档；为null时从头开始
+	 */
+	public TopKCollector(int k, ScoreDoc after) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+		this.k = k;
+		this.docs = new int[k];
+		this.scores = new float[k];
+		this.after = after;
+	}
+
+	/**
+	 * @Description: 进入结果需要严格大于的得分，堆未满时为负无穷
+	 * @return: float
+	 */
+	public float minCompetitiveScore() {
+		return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+	}
+
+	/**
+	 * @Description: 收集一个文档，文档号必须递增
+	 * @param doc
+	 * @param score
+	 * @return: void
+	 */
+	public void collect(int doc, float score) {
+		if (after != null && !after.isBefore(score, doc)) {
+			return;
+		}
+		if (size < k) {
+			// 上浮
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!worse(score, doc, scores[parent], docs[parent])) {
+					break;
+				}
+				docs[i] = docs[parent];
+				scores[i] = scores[parent];
+				i = parent;
+			}
+			docs[i] = doc;
+			scores[i] = score;
+		} else if (score > scores[0]) {
+			replaceTop(doc, score);
+		}
+	}
+
+	private void replaceTop(int doc, float score) {
+		// 下沉
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && worse(scores[child + 1], docs[child + 1], scores[child], docs[child])) {
+				child++;
+			}
+			if (!worse(scores[child], docs[child], score, doc)) {
+				break;
+			}
+			docs[i] = docs[child];
+			scores[i] = scores[child];
+			i = child;
+		}
+		docs[i] = doc;
+		scores[i] = score;
+	}
+
+	private static boolean worse(float score1, int doc1, float score2, int doc2) {
+		return score1 < score2 || (score1 == score2 && doc1 > doc2);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @Description: 按得分降序输出结果，之后收集器不应再使用
+	 * @param totalHits
+	 * @param exact
+	 *            totalHits是否为精确值
+	 * @return: TopDocs
+	 */
+	public TopDocs topDocs(int totalHits, boolean exact) {
+		return topDocs(totalHits, exact, false);
+	}
+
+	/**
+	 * @Description: 按得分降序输出结果
+	 * @param totalHits
+	 * @param exact
+	 * @param timedOut
+	 *            是否因为到达截止时间而提前结束收集
+	 * @return: TopDocs
+	 */
+	public TopDocs topDocs(int totalHits, boolean exact, boolean timedOut) {
+		int count = size;
+		int[] sortedDocs = new int[count];
+		float[] sortedScores = new float[count];
+		for (int i = count - 1; i >= 0; i--) {
+			sortedDocs[i] = docs[0];
+			sortedScores[i] = scores[0];
+			size--;
+			if (size > 0) {
+				int lastDoc = docs[size];
+				float lastScore = scores[size];
+				replaceTop(lastDoc, lastScore);
+			}
+		}
+		return new TopDocs(totalHits, exact && !timedOut, null, sortedDocs, sortedScores, 0, timedOut);
+	}
+}
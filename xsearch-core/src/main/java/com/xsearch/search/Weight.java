@@ -0,0 +1,96 @@
+package com.xsearch.search;
+
+import com.xsearch.index.DeletedDocs;
+import com.xsearch.index.Segment;
+
+/**
+ * @Description: 查询在一个快照上的执行计划，保存与段无关的统计（idf、长度归一化表），为每个段创建Scorer
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 20, 2017 10:30:41 AM
+ */
+public abstract class Weight {
+
+	/**
+	 * @Description: 段上的打分器
+	 * @param segment
+	 * @return: Scorer 段中没有匹配的文档时返回null
+	 */
+	public abstract Scorer scorer(Segment segment);
+
+	/**
+	 * @Description: 在一个段上执行并收集结果
+	 * @param segment
+	 * @param deleted
+	 *            段的删除位图，可以为null
+	 * @param docBase
+	 *            段的文档号基数
+	 * @param collector
+	 * @return: int 命中数，isTotalHitsExact为false时是下界
+	 */
+	public int search(Segment segment, DeletedDocs deleted, int docBase, TopKCollector collector) {
+		return search(segment, deleted, docBase, 0, segment.maxDoc(), collector);
+	}
+
+	/**
+	 * @Description: 只在段内文档号 [minDoc, maxDoc) 的区间上执行，大段可以切成多个区间并行执行，缺省逐个文档打分
+	 * @param segment
+	 * @param deleted
+	 *            段的删除位图，可以为null
+	 * @param docBase
+	 *            段的文档号基数
+	 * @param minDoc
+	 * @param maxDoc
+	 * @param collector
+	 * @return: int 区间内的命中数，isTotalHitsExact为false时是下界
+	 */
+	public int search(Segment segment, DeletedDocs deleted, int docBase, int minDoc, int maxDoc,
+			TopKCollector collector) {
+		return search(segment, deleted, docBase, minDoc, maxDoc, collector, Deadline.NONE);
+	}
+
+	/**
+	 * @Description: 带截止时间执行，遍历中每隔Deadline.CHECK_INTERVAL个文档号检查一次，到达后返回已遍历部分的命中数
+	 * @param segment
+	 * @param deleted
+	 *            段的删除位图，可以为null
+	 * @param docBase
+	 *            段的文档号基数
+	 * @param minDoc
+	 * @param maxDoc
+	 * @param collector
+	 * @param deadline
+	 * @return: int 已遍历部分的命中数，isTotalHitsExact为false时是下界
+	 */
+	int search(Segment segment, DeletedDocs deleted, int docBase, int minDoc, int maxDoc, TopKCollector collector,
+			Deadline deadline) {
+		Scorer scorer = scorer(segment);
+		if (scorer == null) {
+			return 0;
+		}
+		int hits = 0;
+		int nextCheck = deadline.nextCheck(minDoc);
+		for (int doc = scorer.advance(minDoc); doc < maxDoc; doc = scorer.nextDoc()) {
+			if (doc >= nextCheck) {
+				if (deadline.check()) {
+					break;
+				}
+				nextCheck = deadline.nextCheck(doc);
+			}
+			if (deleted == null || !deleted.isDeleted(doc)) {
+				hits++;
+				collector.collect(docBase + doc, scorer.score());
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @Description: search返回的命中数是否精确，按得分剪枝执行时为false
+	 * @return: boolean
+	 */
+	public boolean isTotalHitsExact() {
+		return true;
+	}
+}
@@ -0,0 +1,251 @@
+package com.xsearch.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xsearch.analysis.EnglishAnalyzer;
+import com.xsearch.search.IndexSearcher;
+import com.xsearch.search.SearchRequest;
+
+/**
+ * @Description: IndexWriter 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 12, 2017 5:20:04 PM
+ */
+public class IndexWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Document doc(int id, String body) {
+		return new Document().addKeyword("id", String.valueOf(id)).addText("body", body);
+	}
+
+	private static int count(IndexSnapshot snapshot, String query) {
+		return new IndexSearcher(snapshot).search(new SearchRequest("body", query, 10)).getTotalHits();
+	}
+
+	/**
+	 * @Description: 复制索引目录中的文件，用于在writer不关闭的情况下得到进程崩溃时的目录状态
+	 */
+	private static void copyIndex(Path from, Path to) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(from)) {
+			for (Path file : files) {
+				Files.copy(file, to.resolve(file.getFileName()));
+			}
+		}
+	}
+
+	private static IndexWriterConfig manualFlushConfig() {
+		IndexWriterConfig config = new IndexWriterConfig();
+		config.setFlushInterval(60 * 60 * 1000L);
+		return config;
+	}
+
+	@Test
+	public void testUpdateDeleteAndReopen() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			for (int i = 0; i < 10; i++) {
+				writer.addDocument(doc(i, "apple v1"));
+			}
+			assertEquals(0, writer.getSnapshot().numDocs());
+			writer.flush();
+			IndexSnapshot first = writer.getSnapshot();
+			assertEquals(10, count(first, "apple"));
+
+			// 更新已刷写的文档，以及同一写缓冲中先加入再更新的文档
+			writer.updateDocument(new Term("id", "3"), doc(3, "apple v2"));
+			writer.addDocument(doc(10, "apple v1"));
+			writer.updateDocument(new Term("id", "10"), doc(10, "apple v2"));
+			writer.deleteDocuments(new Term("id", "5"));
+			writer.flush();
+
+			IndexSnapshot second = writer.getSnapshot();
+			assertEquals(10, count(second, "apple"));
+			assertEquals(2, count(second, "v2"));
+			assertEquals(10, second.numDocs());
+			// 旧快照不受影响
+			assertEquals(10, count(first, "v1"));
+		}
+
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			IndexSnapshot snapshot = writer.getSnapshot();
+			assertEquals(10, snapshot.numDocs());
+			assertEquals(8, count(snapshot, "v1"));
+			assertEquals(2, count(snapshot, "v2"));
+
+			// 删除一个段的全部文档后该段被去掉
+			for (int i = 0; i <= 10; i++) {
+				writer.deleteDocuments(new Term("id", String.valueOf(i)));
+			}
+			writer.flush();
+			assertEquals(0, writer.getSnapshot().size());
+		}
+	}
+
+	@Test
+	public void testAddDocumentsInParallel() throws Exception {
+		IndexWriterConfig config = manualFlushConfig();
+		config.setAnalyzer(new EnglishAnalyzer());
+		config.setAnalysisPool(new ForkJoinPool(4));
+		try (IndexWriter writer = new IndexWriter(folder.getRoot().toPath(), config)) {
+			List<Document> documents = new ArrayList<Document>();
+			for (int i = 0; i < 500; i++) {
+				documents.add(doc(i, "The Running dogs 搜索引擎 " + (i % 2 == 0 ? "even" : "odd")));
+			}
+			writer.addDocuments(documents);
+			writer.flush();
+
+			// 文档号与加入顺序一致
+			IndexSnapshot snapshot = writer.getSnapshot();
+			assertEquals(500, snapshot.numDocs());
+			for (int i = 0; i < 500; i += 50) {
+				assertEquals(String.valueOf(i), snapshot.segment(0).document(i).get("id"));
+			}
+			Segment segment = snapshot.segment(0);
+			assertEquals(500, segment.docFreq(new Term("body", "run")));
+			assertEquals(500, segment.docFreq(new Term("body", "dog")));
+			assertEquals(500, segment.docFreq(new Term("body", "引擎")));
+			assertEquals(0, segment.docFreq(new Term("body", "the")));
+			assertEquals(250, segment.docFreq(new Term("body", "even")));
+		}
+	}
+
+	@Test
+	public void testTimedFlush() throws Exception {
+		IndexWriterConfig config = new IndexWriterConfig();
+		config.setFlushInterval(20);
+		try (IndexWriter writer = new IndexWriter(folder.getRoot().toPath(), config)) {
+			writer.addDocument(doc(1, "near real time"));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (writer.getSnapshot().numDocs() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(1, count(writer.getSnapshot(), "real"));
+		}
+	}
+
+	@Test
+	public void testBackgroundMerge() throws Exception {
+		IndexWriterConfig config = manualFlushConfig();
+		config.setSegmentsPerTier(3);
+		config.setFloorSegmentSize(1024 * 1024);
+		config.setMergeBytesPerSecond(0);
+		Path dir = folder.getRoot().toPath();
+		try (IndexWriter writer = new IndexWriter(dir, config)) {
+			for (int i = 0; i < 30; i++) {
+				writer.addDocument(doc(i, "merge " + (i % 2 == 0 ? "even" : "odd")));
+				if (i % 2 == 1) {
+					writer.deleteDocuments(new Term("id", String.valueOf(i - 1)));
+				}
+				writer.flush();
+			}
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (writer.getSnapshot().size() >= 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			IndexSnapshot snapshot = writer.getSnapshot();
+			assertTrue(snapshot.toString(), snapshot.size() < 3);
+			assertEquals(15, snapshot.numDocs());
+			assertEquals(15, count(snapshot, "merge"));
+			assertEquals(0, count(snapshot, "even"));
+		}
+
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			assertEquals(15, count(writer.getSnapshot(), "odd"));
+		}
+	}
+
+	@Test
+	public void testReplayWriteAheadLog() throws Exception {
+		Path live = folder.newFolder("live").toPath();
+		Path dir = folder.newFolder("crashed").toPath();
+		try (IndexWriter crashed = new IndexWriter(live, manualFlushConfig())) {
+			crashed.addDocument(doc(1, "committed"));
+			crashed.flush();
+			crashed.addDocument(doc(2, "logged"));
+			crashed.updateDocument(new Term("id", "1"), doc(1, "logged again"));
+			crashed.deleteDocuments(new Term("id", "2"));
+			crashed.addDocument(doc(3, "logged"));
+			// 关闭前复制目录，模拟进程退出时写缓冲中的数据还没有刷写
+			copyIndex(live, dir);
+		}
+
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			IndexSnapshot snapshot = writer.getSnapshot();
+			assertEquals(2, snapshot.numDocs());
+			assertEquals(0, count(snapshot, "committed"));
+			assertEquals(2, count(snapshot, "logged"));
+			// 重放后立即刷写，旧日志被删除
+			assertEquals(1, WriteAheadLog.list(dir).size());
+		}
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			assertEquals(2, writer.getSnapshot().numDocs());
+		}
+	}
+
+	@Test
+	public void testReplayBeyondRamBufferAcrossLogs() throws Exception {
+		Path dir = folder.newFolder("live").toPath();
+		Path crashed = folder.newFolder("crashed").toPath();
+		try (IndexWriter writer = new IndexWriter(dir, manualFlushConfig())) {
+			for (int i = 0; i < 100; i++) {
+				writer.addDocument(doc(i, "first log"));
+			}
+			// 提交点之后的第一个日志
+			copyIndex(dir, crashed);
+			// 刷写切换到下一个日志，把它补到崩溃目录中，相当于切换日志之后、写提交点之前崩溃
+			writer.flush();
+			for (int i = 100; i < 200; i++) {
+				writer.addDocument(doc(i, "second log"));
+			}
+			List<Long> logs = WriteAheadLog.list(dir);
+			long last = logs.get(logs.size() - 1);
+			Files.copy(WriteAheadLog.file(dir, last), WriteAheadLog.file(crashed, last));
+		}
+		assertEquals(2, WriteAheadLog.list(crashed).size());
+
+		// 写缓冲很小，重放过程中多次写段
+		IndexWriterConfig config = manualFlushConfig();
+		config.setRamBufferSize(1024);
+		try (IndexWriter writer = new IndexWriter(crashed, config)) {
+			IndexSnapshot snapshot = writer.getSnapshot();
+			assertEquals(200, snapshot.numDocs());
+			assertEquals(100, count(snapshot, "first"));
+			assertEquals(100, count(snapshot, "second"));
+			assertEquals(1, WriteAheadLog.list(crashed).size());
+		}
+		try (IndexWriter writer = new IndexWriter(crashed, manualFlushConfig())) {
+			assertEquals(200, writer.getSnapshot().numDocs());
+		}
+	}
+
+	@Test
+	public void testTieredMergePolicy() {
+		TieredMergePolicy policy = new TieredMergePolicy(3, 100, 10000);
+		assertNull(policy.findMerge(new long[] { 10, 20 }));
+		// 10、50、20在最低一层，300和400在上一层
+		assertArrayEquals(new int[] { 0, 2, 4 }, policy.findMerge(new long[] { 10, 300, 50, 400, 20 }));
+		assertArrayEquals(new int[] { 0, 1, 3 }, policy.findMerge(new long[] { 300, 400, 50, 500 }));
+		// 超过maxMergedSegmentSize一半的段不再合并
+		assertNull(policy.findMerge(new long[] { 6000, 7000, 8000 }));
+	}
+}
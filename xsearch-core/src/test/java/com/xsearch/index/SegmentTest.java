@@ -0,0 +1,295 @@
+package com.xsearch.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @Description: 倒排编码和段的测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 4:10:52 PM
+ */
+public class SegmentTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPostingsRoundTrip() {
+		Random random = new Random(42);
+		int numDocs = 1000;
+		int[] docs = new int[numDocs];
+		int[] freqs = new int[numDocs];
+		int[][] positions = new int[numDocs][];
+
+		BytesOutput out = new BytesOutput();
+		out.writeVInt(12345); // 倒排不从0开始
+		PostingsWriter writer = new PostingsWriter(out);
+		writer.startTerm();
+		int doc = -1;
+		for (int i = 0; i < numDocs; i++) {
+			doc += 1 + random.nextInt(i % 200 == 0 ? 5000 : 10);
+			docs[i] = doc;
+			freqs[i] = random.nextInt(4) == 0 ? 1 + random.nextInt(5) : 1;
+			positions[i] = new int[freqs[i]];
+			writer.startDoc(doc, freqs[i], 1 + random.nextInt(255));
+			int position = 0;
+			for (int j = 0; j < freqs[i]; j++) {
+				position += random.nextInt(20);
+				positions[i][j] = position;
+				writer.addPosition(position);
+			}
+			writer.finishDoc();
+		}
+		long offset = writer.finishTerm();
+
+		BlockPostingsEnum postings = new BlockPostingsEnum(out.toByteBuffer()).reset(offset);
+		assertEquals(numDocs, postings.docFreq());
+		for (int i = 0; i < numDocs; i++) {
+			assertEquals(docs[i], postings.nextDoc());
+			assertEquals(freqs[i], postings.freq());
+			// 只读取部分文档的位置，验证跳过未读位置
+			if (i % 3 == 0) {
+				for (int j = 0; j < freqs[i]; j++) {
+					assertEquals(positions[i][j], postings.nextPosition());
+				}
+			}
+		}
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, postings.nextDoc());
+
+		// advance跨块跳跃，并在跳跃后读取位置
+		postings.reset(offset);
+		for (int i = 7; i < numDocs; i += 97) {
+			assertEquals(docs[i], postings.advance(docs[i - 1] + 1));
+			assertEquals(freqs[i], postings.freq());
+			assertEquals(positions[i][0], postings.nextPosition());
+		}
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, postings.advance(docs[numDocs - 1] + 1));
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, postings.advance(Integer.MAX_VALUE));
+
+		// 共享解码结果的遍历器互不影响，先跳跃再顺序遍历的遍历器读到已解码和未解码的块
+		BlockPostingsEnum.Shared shared = new BlockPostingsEnum.Shared(out.toByteBuffer(), offset);
+		assertEquals(numDocs, shared.docFreq());
+		BlockPostingsEnum skipping = new BlockPostingsEnum(shared);
+		BlockPostingsEnum sequential = new BlockPostingsEnum(shared);
+		for (int i = 0; i < numDocs; i++) {
+			if (i % 97 == 7) {
+				assertEquals(docs[i], skipping.advance(docs[i - 1] + 1));
+				assertEquals(freqs[i], skipping.freq());
+				assertEquals(positions[i][0], skipping.nextPosition());
+			}
+			assertEquals(docs[i], sequential.nextDoc());
+			assertEquals(freqs[i], sequential.freq());
+			for (int j = 0; j < freqs[i]; j++) {
+				assertEquals(positions[i][j], sequential.nextPosition());
+			}
+		}
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, sequential.nextDoc());
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, skipping.advance(docs[numDocs - 1] + 1));
+	}
+
+	@Test
+	public void testSegment() {
+		SegmentBuilder builder = new SegmentBuilder();
+		builder.addDocument(new Document().addKeyword("id", "1").addText("title", "Hello World").addStored("url", "a"));
+		builder.addDocument(new Document().addKeyword("id", "2").addText("title", "hello, hello 搜索"));
+		builder.addDocument(new Document().addKeyword("id", "3").addText("body", "world"));
+		Segment segment = builder.build("_0");
+
+		assertEquals(3, segment.maxDoc());
+		assertEquals(2, segment.docFreq(new Term("title", "hello")));
+		assertEquals(1, segment.docFreq(new Term("title", "world")));
+		assertEquals(1, segment.docFreq(new Term("title", "搜索")));
+		assertEquals(0, segment.docFreq(new Term("title", "搜")));
+		assertEquals(0, segment.docFreq(new Term("title", "missing")));
+		assertNull(segment.postings(new Term("id", "4")));
+
+		BlockPostingsEnum postings = segment.postings(new Term("title", "hello"));
+		assertEquals(0, postings.nextDoc());
+		assertEquals(1, postings.freq());
+		assertEquals(0, postings.nextPosition());
+		assertEquals(1, postings.nextDoc());
+		assertEquals(2, postings.freq());
+		assertEquals(0, postings.nextPosition());
+		assertEquals(1, postings.nextPosition());
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, postings.nextDoc());
+
+		postings = segment.postings(new Term("id", "3"));
+		assertEquals(2, postings.nextDoc());
+
+		// 词典按字节序排列
+		TermDictionary terms = segment.terms();
+		for (int i = 1; i < terms.size(); i++) {
+			assertTrue(Term.compareBytes(terms.key(i - 1), terms.key(i)) < 0);
+		}
+
+		assertEquals("Hello World", segment.document(0).get("title"));
+		assertEquals("a", segment.document(0).get("url"));
+		assertEquals("world", segment.document(2).get("body"));
+	}
+
+	@Test
+	public void testMappedSegment() throws Exception {
+		SegmentBuilder builder = new SegmentBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.addDocument(new Document().addKeyword("id", String.valueOf(i)).addText("body", "common doc" + i));
+		}
+		Segment heap = builder.build("_0");
+		Path dir = folder.getRoot().toPath().resolve("index");
+		Segment mapped = SegmentFiles.write(builder, dir, "_0");
+
+		assertTrue(SegmentFiles.exists(dir, "_0"));
+		assertTrue(mapped.storedFields().rawDocument(0).isDirect());
+		assertEquals(heap.maxDoc(), mapped.maxDoc());
+		assertEquals(heap.terms().size(), mapped.terms().size());
+
+		mapped = SegmentFiles.open(dir, "_0");
+		BlockPostingsEnum expected = heap.postings(new Term("body", "common"));
+		BlockPostingsEnum actual = mapped.postings(new Term("body", "common"));
+		int doc;
+		while ((doc = expected.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+			assertEquals(doc, actual.nextDoc());
+			assertEquals(expected.nextPosition(), actual.nextPosition());
+		}
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, actual.nextDoc());
+		assertEquals(1, mapped.docFreq(new Term("id", "999")));
+		assertEquals("common doc999", mapped.document(999).get("body"));
+
+		SegmentFiles.delete(dir, "_0");
+		assertEquals(false, SegmentFiles.exists(dir, "_0"));
+	}
+
+	@Test
+	public void testOpenCorruptSegment() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		SegmentFiles.write(new SegmentBuilder(), dir, "_1");
+		Files.write(SegmentFiles.files(dir, "_1")[1], ByteBuffer.allocate(16).putInt(7).array());
+		try {
+			SegmentFiles.open(dir, "_1");
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a segment file"));
+		}
+	}
+
+	@Test
+	public void testPackedInts() {
+		Random random = new Random(5);
+		for (int bits = 0; bits <= 64; bits++) {
+			int count = 1 + random.nextInt(300);
+			long[] values = new long[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = bits == 0 ? 0 : random.nextLong() >>> (64 - bits);
+			}
+			BytesOutput out = new BytesOutput();
+			out.writeByte((byte) 7); // 编码不要求从0开始
+			PackedInts.write(out, values, count, bits);
+			assertEquals(1 + PackedInts.byteCount(count, bits), out.size());
+
+			PackedInts.Reader reader = new PackedInts.Reader(out.toByteBuffer(), 1, bits);
+			for (int i = 0; i < count; i++) {
+				assertEquals("bits=" + bits + ", i=" + i, values[i], reader.get(i));
+			}
+		}
+		assertEquals(0, PackedInts.bitsRequired(0));
+		assertEquals(1, PackedInts.bitsRequired(1));
+		assertEquals(64, PackedInts.bitsRequired(-1L));
+	}
+
+	@Test
+	public void testDocValues() throws Exception {
+		SegmentBuilder builder = new SegmentBuilder();
+		String[] colors = { "red", "green", "blue", "\u7ea2", "black" };
+		for (int i = 0; i < 300; i++) {
+			Document document = new Document().addText("body", "doc" + i);
+			if (i % 10 != 3) {
+				document.addNumeric("price", 1000 - i * 7);
+			}
+			if (i % 4 != 0) {
+				document.addSortedKeyword("color", colors[i % colors.length]).addSortedKeyword("color", "ignored");
+			}
+			builder.addDocument(document.addNumeric("year", 2017));
+		}
+		Path dir = folder.getRoot().toPath();
+		Segment heap = builder.build("_0");
+		Segment mapped = SegmentFiles.write(builder, dir, "_0");
+		for (Segment segment : new Segment[] { heap, mapped }) {
+			DocValues.NumericDocValues price = segment.docValues().numeric("price");
+			assertEquals(270, price.docCount());
+			assertEquals(1000 - 299 * 7, price.minValue());
+			DocValues.NumericDocValues year = segment.docValues().numeric("year");
+			assertEquals(0, year.bitsPerValue());
+			DocValues.SortedDocValues color = segment.docValues().sorted("color");
+			assertEquals(colors.length, color.valueCount());
+			assertEquals("black", color.lookupOrd(0));
+			assertEquals("\u7ea2", color.lookupOrd(colors.length - 1));
+			assertEquals(-3, color.lookupTerm("cyan"));
+			for (int i = 0; i < 300; i++) {
+				assertEquals(i % 10 != 3, price.exists(i));
+				if (i % 10 != 3) {
+					assertEquals(1000 - i * 7, price.get(i));
+				}
+				assertEquals(2017, year.get(i));
+				int ord = color.ord(i);
+				assertEquals(i % 4 == 0 ? -1 : color.lookupTerm(colors[i % colors.length]), ord);
+			}
+			assertNull(segment.docValues().numeric("color"));
+			assertNull(segment.docValues().sorted("body"));
+		}
+		assertEquals("993", heap.document(1).get("price")); // 列存字段同样被存储
+
+		// 合并时去掉被删除文档，只被删除文档引用的值不再出现在字典中
+		SegmentBuilder other = new SegmentBuilder();
+		other.addDocument(new Document().addSortedKeyword("color", "white").addNumeric("price", -5));
+		other.addDocument(new Document().addSortedKeyword("color", "red"));
+		Segment second = SegmentFiles.write(other, dir, "_1");
+		long[] bits = new long[DeletedDocs.numWords(300)];
+		for (int i = 0; i < 300; i++) {
+			if (i % 5 == 2) {
+				bits[i >>> 6] |= 1L << i;
+			}
+		}
+		SegmentMerger merger = new SegmentMerger(new Segment[] { mapped, second },
+				new DeletedDocs[] { new DeletedDocs(bits, 300, 60), null });
+		Segment merged = merger.merge(dir, "_2", null);
+		assertEquals(242, merged.maxDoc());
+		DocValues.SortedDocValues color = merged.docValues().sorted("color");
+		assertTrue(color.lookupTerm("blue") < 0);
+		assertEquals(colors.length, color.valueCount());
+		assertEquals("white", color.lookupOrd(colors.length - 2));
+		DocValues.NumericDocValues price = merged.docValues().numeric("price");
+		assertEquals(1000 - 299 * 7, price.minValue());
+		assertEquals(1000, price.maxValue());
+		for (int s = 0; s < 2; s++) {
+			Segment source = s == 0 ? mapped : second;
+			for (int i = 0; i < source.maxDoc(); i++) {
+				int doc = merger.docMap(s)[i];
+				if (doc < 0) {
+					continue;
+				}
+				DocValues.SortedDocValues sourceColor = source.docValues().sorted("color");
+				int ord = sourceColor.ord(i);
+				assertEquals(ord < 0 ? null : sourceColor.lookupOrd(ord),
+						color.ord(doc) < 0 ? null : color.lookupOrd(color.ord(doc)));
+				DocValues.NumericDocValues sourcePrice = source.docValues().numeric("price");
+				assertEquals(sourcePrice.exists(i), price.exists(doc));
+				assertEquals(sourcePrice.exists(i) ? sourcePrice.get(i) : price.minValue(), price.get(doc));
+			}
+		}
+		assertEquals(2017, merged.docValues().numeric("year").get(0));
+		assertTrue(!merged.docValues().numeric("year").exists(241));
+	}
+}
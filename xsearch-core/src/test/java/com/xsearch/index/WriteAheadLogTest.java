@@ -0,0 +1,111 @@
+package com.xsearch.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @Description: WriteAheadLog 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 14, 2017 3:40:19 PM
+ */
+public class WriteAheadLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BytesOutput record(int value) {
+		BytesOutput out = new BytesOutput();
+		out.writeVInt(value);
+		return out;
+	}
+
+	private static List<Integer> replay(Path dir, long fromGeneration) throws Exception {
+		final List<Integer> values = new ArrayList<Integer>();
+		WriteAheadLog.replay(dir, fromGeneration, new WriteAheadLog.RecordHandler() {
+			@Override
+			public void record(ByteBuffer payload) {
+				values.add(VByte.readVInt(payload));
+			}
+		});
+		return values;
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		final WriteAheadLog wal = new WriteAheadLog(dir, 1, 20);
+		final int threads = 8;
+		final int perThread = 50;
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		for (int t = 0; t < threads; t++) {
+			final int base = t * perThread;
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < perThread; i++) {
+							wal.sync(wal.append(record(base + i)));
+						}
+					} catch (Throwable e) {
+						error.set(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+		assertEquals(null, error.get());
+		// 并发写入共享fsync
+		assertTrue("syncs: " + wal.getSyncCount(), wal.getSyncCount() < threads * perThread / 2);
+		wal.close();
+
+		List<Integer> values = replay(dir, 0);
+		assertEquals(threads * perThread, values.size());
+	}
+
+	@Test
+	public void testRollAndTornTail() throws Exception {
+		Path dir = folder.getRoot().toPath();
+		WriteAheadLog wal = new WriteAheadLog(dir, 1, 0);
+		wal.append(record(1));
+		assertEquals(2, wal.roll());
+		wal.append(record(2));
+		wal.sync(wal.append(record(3)));
+		wal.close();
+		assertEquals(2, WriteAheadLog.list(dir).size());
+		assertEquals("[1, 2, 3]", replay(dir, 0).toString());
+		assertEquals("[2, 3]", replay(dir, 2).toString());
+
+		// 最后一条记录只写了一半
+		try (FileChannel channel = FileChannel.open(WriteAheadLog.file(dir, 2), StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+		assertEquals("[1, 2]", replay(dir, 0).toString());
+
+		// 校验失败的记录及之后的记录被忽略，文件头8字节，记录头8字节
+		try (FileChannel channel = FileChannel.open(WriteAheadLog.file(dir, 2), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 99 }), 16);
+		}
+		assertEquals("[1]", replay(dir, 0).toString());
+
+		new WriteAheadLog(dir, 3, 0).deleteBefore(3);
+		assertEquals(1, WriteAheadLog.list(dir).size());
+	}
+}
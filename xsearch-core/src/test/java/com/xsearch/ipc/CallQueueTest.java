@@ -0,0 +1,124 @@
+package com.xsearch.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * @Description: CallQueue 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 23, 2017 2:31:06 PM
+ */
+public class CallQueueTest {
+
+	@Test
+	public void testArrayQueueBounded() throws Exception {
+		ArrayCallQueue<Integer> queue = new ArrayCallQueue<Integer>(3);
+		assertEquals(4, queue.capacity());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(i));
+		}
+		assertFalse(queue.offer(4));
+		assertEquals(4, queue.size());
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(Integer.valueOf(i), queue.take());
+		}
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testArrayQueueConcurrent() throws Exception {
+		final ArrayCallQueue<Long> queue = new ArrayCallQueue<Long>(64);
+		final int producers = 4;
+		final int consumers = 4;
+		final int perProducer = 50000;
+		final AtomicLong sum = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(producers * perProducer);
+
+		for (int c = 0; c < consumers; c++) {
+			Thread consumer = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							sum.addAndGet(queue.take());
+							done.countDown();
+						}
+					} catch (InterruptedException e) {
+						// 测试结束
+					}
+				}
+			};
+			consumer.setDaemon(true);
+			consumer.start();
+		}
+
+		for (int p = 0; p < producers; p++) {
+			Thread producer = new Thread() {
+				@Override
+				public void run() {
+					for (long i = 1; i <= perProducer; i++) {
+						while (!queue.offer(i)) {
+							Thread.yield();
+						}
+					}
+				}
+			};
+			producer.start();
+		}
+
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertEquals(producers * (long) perProducer * (perProducer + 1) / 2, sum.get());
+	}
+
+	@Test
+	public void testFairQueueRoundRobin() throws Exception {
+		FairCallQueue<String> queue = new FairCallQueue<String>(100, 10, new FairCallQueue.KeyExtractor<String>() {
+			@Override
+			public Object keyOf(String e) {
+				return e.substring(0, 1);
+			}
+		});
+
+		// 连接a先积压了很多请求，b和c后到
+		for (int i = 0; i < 5; i++) {
+			assertTrue(queue.offer("a" + i));
+		}
+		assertTrue(queue.offer("b0"));
+		assertTrue(queue.offer("b1"));
+		assertTrue(queue.offer("c0"));
+
+		String[] expected = { "a0", "b0", "c0", "a1", "b1", "a2", "a3", "a4" };
+		for (String e : expected) {
+			assertEquals(e, queue.take());
+		}
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testFairQueuePerKeyCapacity() {
+		FairCallQueue<String> queue = new FairCallQueue<String>(4, 2, new FairCallQueue.KeyExtractor<String>() {
+			@Override
+			public Object keyOf(String e) {
+				return e.substring(0, 1);
+			}
+		});
+
+		assertTrue(queue.offer("a0"));
+		assertTrue(queue.offer("a1"));
+		assertFalse(queue.offer("a2")); // 超过单个key的份额
+		assertTrue(queue.offer("b0"));
+		assertTrue(queue.offer("c0"));
+		assertFalse(queue.offer("d0")); // 超过总容量
+	}
+}
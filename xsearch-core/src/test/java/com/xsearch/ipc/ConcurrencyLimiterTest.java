@@ -0,0 +1,88 @@
+package com.xsearch.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.xsearch.rpc.RequestHeader;
+
+/**
+ * @Description: ConcurrencyLimiter 测试，用固定的延迟样本模拟负载
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 5:20:44 PM
+ */
+public class ConcurrencyLimiterTest {
+
+	/**
+	 * @Description: 用高优先级请求占满上限，再以相同的延迟全部完成
+	 */
+	private static void round(ConcurrencyLimiter limiter, long rttMillis) {
+		int admitted = 0;
+		while (limiter.tryAcquire(RequestHeader.PRIORITY_HIGH)) {
+			admitted++;
+		}
+		for (int i = 0; i < admitted; i++) {
+			limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+		}
+	}
+
+	@Test
+	public void testPriorityShares() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_LOW));
+		}
+		assertFalse(limiter.tryAcquire(RequestHeader.PRIORITY_LOW));
+		for (int i = 10; i < 18; i++) {
+			assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_NORMAL));
+		}
+		assertFalse(limiter.tryAcquire(RequestHeader.PRIORITY_NORMAL));
+		assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_HIGH));
+		assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_HIGH));
+		assertFalse(limiter.tryAcquire(RequestHeader.PRIORITY_HIGH));
+		assertEquals(20, limiter.getInFlight());
+
+		for (int i = 0; i < 20; i++) {
+			limiter.onIgnore();
+		}
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(20, limiter.getLimit());
+	}
+
+	@Test
+	public void testGradient() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 100);
+		// 延迟平稳时上限逐渐增大，直到最大值
+		for (int i = 0; i < 5; i++) {
+			round(limiter, 1);
+		}
+		int grown = limiter.getLimit();
+		assertTrue(limiter.toString(), grown > 20);
+		for (int i = 0; i < 200; i++) {
+			round(limiter, 1);
+		}
+		assertEquals(100, limiter.getLimit());
+
+		// 延迟突然升高说明开始排队，上限减小
+		round(limiter, 20);
+		assertTrue(limiter.toString(), limiter.getLimit() < 100);
+
+		// 请求被丢弃时乘性减，不低于最小值
+		int before = limiter.getLimit();
+		assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_HIGH));
+		limiter.onDropped();
+		assertEquals((int) (before * 0.9), limiter.getLimit(), 1);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(limiter.tryAcquire(RequestHeader.PRIORITY_HIGH));
+			limiter.onDropped();
+		}
+		assertEquals(4, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+}
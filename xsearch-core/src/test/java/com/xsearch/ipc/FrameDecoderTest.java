@@ -0,0 +1,110 @@
+package com.xsearch.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @Description: FrameDecoder 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 13, 2017 5:02:44 PM
+ */
+public class FrameDecoderTest {
+
+	private final List<String> frames = new ArrayList<String>();
+	private final BufferPool pool = new BufferPool();
+
+	private final FrameDecoder.FrameHandler collector = new FrameDecoder.FrameHandler() {
+		@Override
+		public void onFrame(ByteBuffer frame) {
+			byte[] bytes = new byte[frame.remaining()];
+			frame.get(bytes);
+			frames.add(new String(bytes));
+			pool.release(frame);
+		}
+	};
+
+	private static ByteBuffer frames(String... payloads) {
+		int size = 0;
+		for (String payload : payloads) {
+			size += 4 + payload.length();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (String payload : payloads) {
+			buffer.putInt(payload.length());
+			buffer.put(payload.getBytes());
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	@Test
+	public void testMultipleFramesInOneRead() throws Exception {
+		FrameDecoder decoder = new FrameDecoder(pool, 1024);
+		decoder.decode(frames("hello", "", "xsearch"), collector);
+
+		assertEquals(3, frames.size());
+		assertEquals("hello", frames.get(0));
+		assertEquals("", frames.get(1));
+		assertEquals("xsearch", frames.get(2));
+		assertFalse(decoder.hasPartialFrame());
+	}
+
+	@Test
+	public void testFrameSplitAcrossReads() throws Exception {
+		FrameDecoder decoder = new FrameDecoder(pool, 1024);
+		ByteBuffer data = frames("split frame", "second");
+
+		// 每次只喂一个字节，长度和数据都会被拆开
+		while (data.hasRemaining()) {
+			ByteBuffer one = ByteBuffer.allocate(1);
+			one.put(data.get());
+			one.flip();
+			decoder.decode(one, collector);
+		}
+
+		assertEquals(2, frames.size());
+		assertEquals("split frame", frames.get(0));
+		assertEquals("second", frames.get(1));
+	}
+
+	@Test
+	public void testPartialFrame() throws Exception {
+		FrameDecoder decoder = new FrameDecoder(pool, 1024);
+		ByteBuffer data = frames("partial");
+		data.limit(6);
+		decoder.decode(data, collector);
+
+		assertTrue(frames.isEmpty());
+		assertTrue(decoder.hasPartialFrame());
+		decoder.release();
+		assertFalse(decoder.hasPartialFrame());
+	}
+
+	@Test(expected = IOException.class)
+	public void testFrameTooLarge() throws Exception {
+		FrameDecoder decoder = new FrameDecoder(pool, 8);
+		decoder.decode(frames("larger than eight"), collector);
+	}
+
+	@Test
+	public void testBufferPoolReuse() {
+		ByteBuffer buffer = pool.acquire(1500);
+		assertTrue(buffer.isDirect());
+		assertEquals(2048, buffer.capacity());
+		assertEquals(1500, buffer.limit());
+		pool.release(buffer);
+
+		assertTrue(buffer == pool.acquire(2000));
+		assertFalse(pool.acquire(2 * 1024 * 1024).isDirect());
+	}
+}
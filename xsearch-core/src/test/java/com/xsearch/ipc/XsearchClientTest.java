@@ -0,0 +1,139 @@
+package com.xsearch.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @Description: XsearchClient 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Mar 17, 2017 4:52:30 PM
+ */
+public class XsearchClientTest {
+
+	private final List<XsearchServer> servers = new ArrayList<XsearchServer>();
+
+	@After
+	public void tearDown() {
+		for (XsearchServer server : servers) {
+			server.stop();
+		}
+	}
+
+	private InetSocketAddress start(XsearchServer server) {
+		servers.add(server);
+		server.start();
+		return new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+	}
+
+	private static String toString(ByteBuffer buffer) {
+		return StandardCharsets.UTF_8.decode(buffer).toString();
+	}
+
+	@Test
+	public void testPipelinedCalls() throws Exception {
+		InetSocketAddress address = start(new XsearchServer("localhost", 0));
+
+		try (XsearchClient client = new XsearchClient(2)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			for (int i = 0; i < 1000; i++) {
+				ByteBuffer param = ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8));
+				futures.add(client.call(address, param));
+			}
+
+			for (int i = 0; i < futures.size(); i++) {
+				assertEquals("query-" + i, toString(futures.get(i).get(5, TimeUnit.SECONDS)));
+			}
+		}
+	}
+
+	@Test
+	public void testLargeCall() throws Exception {
+		InetSocketAddress address = start(new XsearchServer("localhost", 0));
+
+		try (XsearchClient client = new XsearchClient(1)) {
+			byte[] payload = new byte[4 * 1024 * 1024];
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] = (byte) i;
+			}
+
+			ByteBuffer value = client.call(address, ByteBuffer.wrap(payload)).get(10, TimeUnit.SECONDS);
+			assertEquals(ByteBuffer.wrap(payload), value);
+		}
+	}
+
+	@Test
+	public void testRemoteException() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				throw new IllegalArgumentException(XsearchClientTest.toString(param));
+			}
+		});
+		InetSocketAddress address = start(server);
+
+		try (XsearchClient client = new XsearchClient()) {
+			client.call(address, ByteBuffer.wrap("bad query".getBytes(StandardCharsets.UTF_8))).get(5, TimeUnit.SECONDS);
+			fail("call should fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RemoteException);
+			assertEquals("java.lang.IllegalArgumentException: bad query", e.getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testCallTimeout() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				if (XsearchClientTest.toString(param.duplicate()).equals("slow")) {
+					Thread.sleep(500);
+				}
+				return param;
+			}
+		});
+		InetSocketAddress address = start(server);
+
+		try (XsearchClient client = new XsearchClient(1)) {
+			ByteBuffer slow = ByteBuffer.wrap("slow".getBytes(StandardCharsets.UTF_8));
+			try {
+				client.call(address, slow, 100, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+				fail("call should time out");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+
+			// 超时调用的响应晚到后被丢弃，不影响同一连接上的后续调用
+			ByteBuffer fast = ByteBuffer.wrap("fast".getBytes(StandardCharsets.UTF_8));
+			assertEquals("fast", toString(client.call(address, fast, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS)));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testConnectFailure() throws Exception {
+		try (XsearchClient client = new XsearchClient()) {
+			// 端口1上一般没有服务
+			CompletableFuture<ByteBuffer> future = client.call(new InetSocketAddress("localhost", 1), ByteBuffer.allocate(0));
+			assertTrue(future.isCompletedExceptionally());
+		}
+	}
+}
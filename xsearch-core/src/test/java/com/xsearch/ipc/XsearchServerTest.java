@@ -1,7 +1,37 @@
 package com.xsearch.ipc;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
+import com.xsearch.io.Writable;
+import com.xsearch.io.WritableUtils;
+import com.xsearch.metrics.MetricsRegistry;
+import com.xsearch.rpc.RequestHeader;
+import com.xsearch.rpc.ResponseHeader;
+
 /**
  * @Description: XsearchServer 测试
  *
@@ -19,4 +49,715 @@ public class XsearchServerTest {
 		Thread.sleep(100);
 	}
 
+	@Test
+	public void testPipelinedEcho() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.start();
+
+		InetSocketAddress address = server.getListenerAddress();
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", address.getPort()))) {
+			// 多个请求放在一次写里发出
+			int calls = 100;
+			ByteBuffer request = ByteBuffer.allocate(calls * 64);
+			for (int i = 0; i < calls; i++) {
+				byte[] payload = ("query-" + i).getBytes(StandardCharsets.UTF_8);
+				new RequestHeader(i, RequestHeader.DEFAULT_METHOD, 0).writeFrame(request, ByteBuffer.wrap(payload));
+			}
+			request.flip();
+			while (request.hasRemaining()) {
+				channel.write(request);
+			}
+
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			for (int i = 0; i < calls; i++) {
+				ByteBuffer frame = readFrame(in);
+				ResponseHeader header = new ResponseHeader();
+				header.readFields(frame);
+
+				assertEquals(ResponseStatus.SUCCESS, header.getStatus());
+				assertEquals("query-" + header.getCallId(), StandardCharsets.UTF_8.decode(frame).toString());
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testProcessorError() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				throw new IllegalStateException("boom");
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = server.getListenerAddress();
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", address.getPort()))) {
+			ByteBuffer request = ByteBuffer.allocate(4 + RequestHeader.MAX_SIZE);
+			new RequestHeader(7, RequestHeader.DEFAULT_METHOD, 0).writeFrame(request, ByteBuffer.allocate(0));
+			request.flip();
+			channel.write(request);
+
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			ByteBuffer frame = readFrame(in);
+			ResponseHeader header = new ResponseHeader();
+			header.readFields(frame);
+			assertEquals(7, header.getCallId());
+			assertEquals(ResponseStatus.ERROR, header.getStatus());
+			assertEquals("java.lang.IllegalStateException: boom", StandardCharsets.UTF_8.decode(frame).toString());
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testMethodDispatch() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(3, new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				String value = WritableUtils.readString(param);
+				ByteBuffer result = ByteBuffer.allocate(WritableUtils.stringSize(value) + 4);
+				WritableUtils.writeString(result, value.toUpperCase());
+				result.putInt(value.length());
+				result.flip();
+				return result;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient()) {
+			// 参数直接编码到请求帧中
+			Writable param = new Writable() {
+				private final String value = "xsearch 搜索";
+
+				@Override
+				public int serializedSize() {
+					return WritableUtils.stringSize(value);
+				}
+
+				@Override
+				public void write(ByteBuffer out) {
+					WritableUtils.writeString(out, value);
+				}
+
+				@Override
+				public void readFields(ByteBuffer in) {
+					throw new UnsupportedOperationException();
+				}
+			};
+			ByteBuffer value = client.call(address, 3, param, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+			assertEquals("XSEARCH 搜索", WritableUtils.readString(value));
+			assertEquals(10, value.getInt());
+
+			// 缺省方法仍为回显
+			ByteBuffer echo = client.call(address, ByteBuffer.wrap("echo".getBytes(StandardCharsets.UTF_8)), 5,
+					TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+			assertEquals("echo", StandardCharsets.UTF_8.decode(echo).toString());
+
+			try {
+				client.call(address, 42, ByteBuffer.allocate(0), 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RemoteException);
+				assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("Unknown method id 42"));
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testGatheringResponse() throws Exception {
+		// 一个大的直接内存块和多于一次聚集写上限的小块，其中有空的块
+		final ByteBuffer large = ByteBuffer.allocateDirect(4 * 1024 * 1024);
+		for (int i = 0; i < large.capacity(); i++) {
+			large.put(i, (byte) i);
+		}
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(5, new GatheringCallProcessor() {
+			@Override
+			public ByteBuffer[] processGathering(ByteBuffer param) throws Exception {
+				int pieces = param.getInt();
+				ByteBuffer[] values = new ByteBuffer[pieces + 1];
+				for (int i = 0; i < pieces; i++) {
+					values[i] = ByteBuffer.wrap(new byte[] { (byte) i, (byte) (i >>> 8) }, 0, i % 3);
+				}
+				values[pieces] = large.duplicate();
+				return values;
+			}
+
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				throw new UnsupportedOperationException();
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			// 同一个连接上流水线发出，响应的各段不能与其他响应交错
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			int[] pieces = { 0, 1, 200, 7, 500 };
+			for (int n : pieces) {
+				ByteBuffer param = ByteBuffer.allocate(4).putInt(n);
+				param.flip();
+				futures.add(client.call(address, 5, param, 5, TimeUnit.SECONDS));
+			}
+			for (int c = 0; c < pieces.length; c++) {
+				ByteBuffer value = futures.get(c).get(10, TimeUnit.SECONDS);
+				for (int i = 0; i < pieces[c]; i++) {
+					if (i % 3 > 0) {
+						assertEquals((byte) i, value.get());
+					}
+					if (i % 3 > 1) {
+						assertEquals((byte) (i >>> 8), value.get());
+					}
+				}
+				assertEquals(large.capacity(), value.remaining());
+				for (int i = 0; i < large.capacity(); i += 4093) {
+					assertEquals((byte) i, value.get(value.position() + i));
+				}
+			}
+			for (int i = 0; i < 100 && server.getMetrics().getWriteTime().count() < pieces.length; i++) {
+				Thread.sleep(10);
+			}
+			assertTrue(server.getMetrics().getBytesOut() > pieces.length * large.capacity());
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testMultipleAcceptorsAndReaders() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setAcceptorThreads(3);
+		config.setReaderThreads(4);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(16)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			for (int i = 0; i < 200; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				ByteBuffer value = futures.get(i).get(5, TimeUnit.SECONDS);
+				assertEquals("query-" + i, StandardCharsets.UTF_8.decode(value).toString());
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testPauseReadWhenQueueFull() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setCallQueueSize(2);
+		config.setHandlerThreads(1);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				Thread.sleep(1);
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			for (int i = 0; i < 200; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+			// 队列满时暂停读取，不丢弃也不乱序
+			for (int i = 0; i < futures.size(); i++) {
+				ByteBuffer value = futures.get(i).get(10, TimeUnit.SECONDS);
+				assertEquals("query-" + i, StandardCharsets.UTF_8.decode(value).toString());
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testRejectWhenQueueFull() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setCallQueueSize(2);
+		config.setHandlerThreads(1);
+		config.setOverloadPolicy(ServerConfig.OverloadPolicy.REJECT);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				started.countDown();
+				blocked.await();
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			futures.add(client.call(address, ByteBuffer.wrap("query-0".getBytes(StandardCharsets.UTF_8))));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			for (int i = 1; i < 10; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+
+			// 一个请求在处理中，两个在队列中，其余被拒绝
+			for (int i = 3; i < futures.size(); i++) {
+				try {
+					futures.get(i).get(5, TimeUnit.SECONDS);
+					fail("call " + i + " should be rejected");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof ServerBusyException);
+				}
+			}
+
+			blocked.countDown();
+			assertEquals("query-0", StandardCharsets.UTF_8.decode(futures.get(0).get(5, TimeUnit.SECONDS)).toString());
+		} finally {
+			blocked.countDown();
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testStopWhileReadsPaused() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setCallQueueSize(2);
+		config.setHandlerThreads(1);
+		final XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				started.countDown();
+				blocked.await();
+				return param;
+			}
+		});
+		server.start();
+
+		Thread stopper = new Thread("stopper") {
+			@Override
+			public void run() {
+				server.stop(10000);
+			}
+		};
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			futures.add(client.call(address, ByteBuffer.wrap("query-0".getBytes(StandardCharsets.UTF_8))));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			for (int i = 1; i < 4; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+			// 一个请求在处理中，两个在队列中，最后一个积压在暂停读取的连接上；暂停后连接上的后续数据不再读取，只多发一个
+			for (int i = 0; i < 100 && server.getMetrics().getCallsReceived() < futures.size(); i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(futures.size(), server.getMetrics().getCallsReceived());
+
+			// 停止时积压的请求立即得到BUSY响应，已经入队的请求仍然处理完
+			stopper.start();
+			for (int i = 3; i < futures.size(); i++) {
+				try {
+					futures.get(i).get(5, TimeUnit.SECONDS);
+					fail("call " + i + " should be rejected");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof ServerBusyException);
+				}
+			}
+			blocked.countDown();
+			for (int i = 0; i < 3; i++) {
+				ByteBuffer value = futures.get(i).get(5, TimeUnit.SECONDS);
+				assertEquals("query-" + i, StandardCharsets.UTF_8.decode(value).toString());
+			}
+			stopper.join(10000);
+			assertFalse(stopper.isAlive());
+		} finally {
+			blocked.countDown();
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testExpiredCallsDropped() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setHandlerThreads(1);
+		config.setMetricsRegistry(new MetricsRegistry());
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final List<Long> remaining = Collections.synchronizedList(new ArrayList<Long>());
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				blocked.await();
+				remaining.add(XsearchServer.getRemainingNanos());
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = server.getListenerAddress();
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", address.getPort()))) {
+			// 第一个请求占住唯一的Handler，后面两个超时很短的请求在队列中过期
+			writeCall(channel, new RequestHeader(0, RequestHeader.DEFAULT_METHOD, 0, 5000, RequestHeader.PRIORITY_NORMAL),
+					"query-0");
+			writeCall(channel, new RequestHeader(1, RequestHeader.DEFAULT_METHOD, 0, 20, RequestHeader.PRIORITY_NORMAL),
+					"query-1");
+			writeCall(channel, new RequestHeader(2, RequestHeader.DEFAULT_METHOD, 0, 20, RequestHeader.PRIORITY_NORMAL),
+					"query-2");
+			writeCall(channel, 3, "query-3");
+			Thread.sleep(200);
+			blocked.countDown();
+
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			assertEquals("query-0", readResponse(in, 0));
+			for (int id = 1; id <= 2; id++) {
+				ByteBuffer frame = readFrame(in);
+				ResponseHeader header = new ResponseHeader();
+				header.readFields(frame);
+				assertEquals(id, header.getCallId());
+				assertEquals(ResponseStatus.EXPIRED, header.getStatus());
+			}
+			assertEquals("query-3", readResponse(in, 3));
+		} finally {
+			server.stop();
+		}
+		assertEquals(2, server.getMetrics().getCallsExpired());
+		// 处理器中可以取到剩余时间，没有超时的请求为Long.MAX_VALUE
+		assertEquals(2, remaining.size());
+		assertTrue(remaining.get(0) > 0 && remaining.get(0) < TimeUnit.SECONDS.toNanos(5));
+		assertEquals(Long.MAX_VALUE, (long) remaining.get(1));
+		assertEquals(Long.MAX_VALUE, XsearchServer.getRemainingNanos());
+	}
+
+	@Test
+	public void testConcurrencyLimiter() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setHandlerThreads(1);
+		config.setMetricsRegistry(new MetricsRegistry());
+		config.setConcurrencyLimiter(new ConcurrencyLimiter(2, 1, 10));
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				started.countDown();
+				blocked.await();
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			CompletableFuture<ByteBuffer> first = client.call(address, ByteBuffer.wrap("query-0".getBytes(StandardCharsets.UTF_8)));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			// 上限为2：普通和低优先级只能用1个名额，已经被占用；高优先级还可以进入队列
+			CompletableFuture<ByteBuffer> normal = client.call(address, RequestHeader.DEFAULT_METHOD,
+					ByteBuffer.wrap("normal".getBytes(StandardCharsets.UTF_8)), 5, TimeUnit.SECONDS,
+					RequestHeader.PRIORITY_NORMAL);
+			CompletableFuture<ByteBuffer> low = client.call(address, RequestHeader.DEFAULT_METHOD,
+					ByteBuffer.wrap("low".getBytes(StandardCharsets.UTF_8)), 5, TimeUnit.SECONDS,
+					RequestHeader.PRIORITY_LOW);
+			CompletableFuture<ByteBuffer> high = client.call(address, RequestHeader.DEFAULT_METHOD,
+					ByteBuffer.wrap("high".getBytes(StandardCharsets.UTF_8)), 5, TimeUnit.SECONDS,
+					RequestHeader.PRIORITY_HIGH);
+			for (CompletableFuture<ByteBuffer> shed : Arrays.asList(normal, low)) {
+				try {
+					shed.get(5, TimeUnit.SECONDS);
+					fail("call should be shed");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof ServerBusyException);
+				}
+			}
+
+			blocked.countDown();
+			assertEquals("query-0", StandardCharsets.UTF_8.decode(first.get(5, TimeUnit.SECONDS)).toString());
+			assertEquals("high", StandardCharsets.UTF_8.decode(high.get(5, TimeUnit.SECONDS)).toString());
+			assertEquals(2, server.getMetrics().getCallsShed());
+			assertEquals(0, config.getConcurrencyLimiter().getInFlight());
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testVirtualThreadMode() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setHandlerMode(ServerConfig.HandlerMode.VIRTUAL_THREAD);
+		assertConcurrentBlockingCalls(config, 50);
+	}
+
+	@Test
+	public void testExecutorMode() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(50);
+		try {
+			ServerConfig config = new ServerConfig();
+			config.setHandlerMode(ServerConfig.HandlerMode.EXECUTOR);
+			config.setExecutor(executor);
+			assertConcurrentBlockingCalls(config, 50);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @Description: 每个请求都阻塞到所有请求同时在执行为止，只有并发度跟随请求数时才能完成
+	 * @param config
+	 * @param calls
+	 * @throws Exception
+	 * @return: void
+	 */
+	private void assertConcurrentBlockingCalls(ServerConfig config, int calls) throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch allRunning = new CountDownLatch(calls);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				allRunning.countDown();
+				assertTrue(allRunning.await(5, TimeUnit.SECONDS));
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(2)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			for (int i = 0; i < calls; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+			for (int i = 0; i < calls; i++) {
+				ByteBuffer value = futures.get(i).get(10, TimeUnit.SECONDS);
+				assertEquals("query-" + i, StandardCharsets.UTF_8.decode(value).toString());
+			}
+		}
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		ServerConfig config = new ServerConfig();
+		config.setMetricsRegistry(registry);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				if (param.remaining() == 0) {
+					throw new IllegalArgumentException("empty");
+				}
+				Thread.sleep(2);
+				return param;
+			}
+		});
+		server.start();
+
+		int calls = 50;
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			for (int i = 0; i < calls; i++) {
+				client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))).get(5, TimeUnit.SECONDS);
+			}
+			try {
+				client.call(address, ByteBuffer.allocate(0)).get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RemoteException);
+			}
+
+			ServerMetrics metrics = server.getMetrics();
+			String prefix = metrics.getPrefix();
+			assertEquals(1, metrics.getAccepted());
+			assertEquals(calls + 1, metrics.getCallsReceived());
+			assertEquals(1, metrics.getCallsFailed());
+			assertEquals(0, metrics.getCallsRejected());
+			assertTrue(metrics.getBytesIn() > calls * 8);
+			assertEquals(calls + 1, metrics.getQueueTime().count());
+			assertEquals(calls + 1, metrics.getHandleTime().count());
+			assertTrue(metrics.getHandleTime().percentile(50) >= 2000); // 处理器睡眠2毫秒
+			// 服务端在响应写完之后才记录，客户端可能先收到响应
+			for (int i = 0; i < 100 && metrics.getWriteTime().count() < calls + 1; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(calls + 1, metrics.getWriteTime().count());
+			assertTrue(metrics.getBytesOut() > calls * 8);
+
+			Map<String, Object> snapshot = registry.snapshot(prefix);
+			assertEquals(1L, snapshot.get(prefix + "connection.open"));
+			assertEquals(0L, snapshot.get(prefix + "call.queue_depth"));
+			assertEquals((long) calls + 1, ((Map<?, ?>) snapshot.get(prefix + "call.handle_us")).get("count"));
+
+			// 远程拉取的指标与服务端注册表一致，拉取本身也是一次请求
+			Map<String, Object> remote = MetricsProcessor.decode(client.call(address, MetricsProcessor.METHOD_ID,
+					MetricsProcessor.encodeRequest(prefix), 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+			assertEquals(snapshot.keySet(), remote.keySet());
+			assertEquals((long) calls + 2, remote.get(prefix + "call.received"));
+			assertEquals(1L, remote.get(prefix + "call.failed"));
+			assertEquals(((Map<?, ?>) snapshot.get(prefix + "call.handle_us")).keySet(),
+					((Map<?, ?>) remote.get(prefix + "call.handle_us")).keySet());
+			assertEquals(snapshot, MetricsProcessor.decode(MetricsProcessor.encode(snapshot)));
+		} finally {
+			server.stop();
+		}
+		assertTrue(registry.snapshot("").isEmpty());
+	}
+
+	private static void writeCall(SocketChannel channel, int id, String value) throws IOException {
+		writeCall(channel, new RequestHeader(id, RequestHeader.DEFAULT_METHOD, 0), value);
+	}
+
+	private static void writeCall(SocketChannel channel, RequestHeader header, String value) throws IOException {
+		byte[] payload = value.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer request = ByteBuffer.allocate(4 + RequestHeader.MAX_SIZE + payload.length);
+		header.writeFrame(request, ByteBuffer.wrap(payload));
+		request.flip();
+		while (request.hasRemaining()) {
+			channel.write(request);
+		}
+	}
+
+	private static String readResponse(DataInputStream in, int expectedId) throws IOException {
+		ByteBuffer frame = readFrame(in);
+		ResponseHeader header = new ResponseHeader();
+		header.readFields(frame);
+		assertEquals(expectedId, header.getCallId());
+		assertEquals(ResponseStatus.SUCCESS, header.getStatus());
+		return StandardCharsets.UTF_8.decode(frame).toString();
+	}
+
+	/**
+	 * @Description: 读取一个响应帧，返回长度前缀之后的内容
+	 */
+	private static ByteBuffer readFrame(DataInputStream in) throws IOException {
+		byte[] frame = new byte[in.readInt()];
+		in.readFully(frame);
+		return ByteBuffer.wrap(frame);
+	}
+
+	/**
+	 * @Description: 服务端关闭连接后读取返回-1
+	 */
+	private static boolean isClosedByServer(SocketChannel channel) throws IOException {
+		channel.socket().setSoTimeout(5000);
+		try {
+			return Channels.newInputStream(channel).read() < 0;
+		} catch (IOException e) {
+			return true; // connection reset
+		}
+	}
+
+	@Test
+	public void testIdleConnectionClosed() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setMaxIdleTime(200);
+		config.setIdleScanInterval(50);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		server.start();
+
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getListenerAddress().getPort()))) {
+			writeCall(channel, 1, "hello");
+			assertEquals("hello", readResponse(new DataInputStream(Channels.newInputStream(channel)), 1));
+			assertTrue(isClosedByServer(channel));
+		}
+
+		// 只发了半个帧的慢客户端同样被关闭，未拼完的帧缓冲在关闭时归还
+		try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getListenerAddress().getPort()))) {
+			ByteBuffer partial = ByteBuffer.allocate(8);
+			partial.putInt(1000).putInt(1);
+			partial.flip();
+			channel.write(partial);
+			assertTrue(isClosedByServer(channel));
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedConnectionEvicted() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setMaxConnections(2);
+		XsearchServer server = new XsearchServer("localhost", 0, config);
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (SocketChannel first = SocketChannel.open(address);
+				SocketChannel second = SocketChannel.open(address)) {
+			writeCall(first, 1, "first");
+			assertEquals("first", readResponse(new DataInputStream(Channels.newInputStream(first)), 1));
+			Thread.sleep(20);
+			writeCall(second, 2, "second");
+			assertEquals("second", readResponse(new DataInputStream(Channels.newInputStream(second)), 2));
+
+			// 第三个连接到来时，最久没有通信的第一个连接被淘汰
+			try (SocketChannel third = SocketChannel.open(address)) {
+				writeCall(third, 3, "third");
+				assertEquals("third", readResponse(new DataInputStream(Channels.newInputStream(third)), 3));
+				assertTrue(isClosedByServer(first));
+
+				writeCall(second, 4, "still open");
+				assertEquals("still open", readResponse(new DataInputStream(Channels.newInputStream(second)), 4));
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testGracefulStop() throws Exception {
+		ServerConfig config = new ServerConfig();
+		config.setHandlerThreads(1);
+		final XsearchServer server = new XsearchServer("localhost", 0, config);
+		final CountDownLatch started = new CountDownLatch(1);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				started.countDown();
+				Thread.sleep(20);
+				return param;
+			}
+		});
+		server.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient(1)) {
+			List<CompletableFuture<ByteBuffer>> futures = new ArrayList<CompletableFuture<ByteBuffer>>();
+			for (int i = 0; i < 10; i++) {
+				futures.add(client.call(address, ByteBuffer.wrap(("query-" + i).getBytes(StandardCharsets.UTF_8))));
+			}
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			Thread.sleep(20); // 等待所有请求都已经读入队列
+
+			// 停止时排队中的请求仍然全部处理完并返回
+			server.stop();
+			assertFalse(server.isRunning());
+			for (int i = 0; i < futures.size(); i++) {
+				ByteBuffer value = futures.get(i).get(5, TimeUnit.SECONDS);
+				assertEquals("query-" + i, StandardCharsets.UTF_8.decode(value).toString());
+			}
+		}
+
+		try {
+			SocketChannel.open(address).close();
+			fail("server should not accept connections after stop");
+		} catch (IOException e) {
+			// connection refused
+		}
+	}
+
 }
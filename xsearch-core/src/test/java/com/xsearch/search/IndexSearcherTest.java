@@ -0,0 +1,522 @@
+package com.xsearch.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.xsearch.index.Document;
+import com.xsearch.index.Segment;
+import com.xsearch.index.SegmentBuilder;
+import com.xsearch.index.SegmentFiles;
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: IndexSearcher 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 7, 2017 5:03:27 PM
+ */
+public class IndexSearcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static IndexSearcher newSearcher() {
+		SegmentBuilder first = new SegmentBuilder();
+		for (int i = 0; i < 500; i++) {
+			String text = "doc" + i + (i % 2 == 0 ? " even" : " odd") + (i % 7 == 0 ? " seven seven" : "");
+			first.addDocument(new Document().addText("body", text));
+		}
+		SegmentBuilder second = new SegmentBuilder();
+		second.addDocument(new Document().addText("body", "even seven"));
+		second.addDocument(new Document().addText("body", "odd seven seven seven"));
+		Segment[] segments = { first.build("_0"), second.build("_1") };
+		return new IndexSearcher(Arrays.asList(segments));
+	}
+
+	@Test
+	public void testConjunction() {
+		IndexSearcher searcher = newSearcher();
+		assertEquals(502, searcher.maxDoc());
+
+		// 0..499中14的倍数有36个，加上第二个段的1个
+		TopDocs topDocs = searcher.search(new SearchRequest("body", "Even SEVEN", 5));
+		assertEquals(37, topDocs.getTotalHits());
+		assertTrue(topDocs.isTotalHitsExact());
+		assertEquals(5, topDocs.size());
+		assertSorted(topDocs);
+
+		// 长度相同，词频高的得分高
+		topDocs = searcher.search(new SearchRequest("body", "odd seven", 2));
+		assertEquals(501, topDocs.doc(0));
+		assertEquals(7, topDocs.doc(1));
+		assertTrue(topDocs.score(0) > topDocs.score(1));
+		assertEquals("odd seven seven seven", searcher.document(501).get("body"));
+
+		assertEquals(0, searcher.search(new SearchRequest("body", "even odd", 10)).getTotalHits());
+		assertEquals(0, searcher.search(new SearchRequest("body", "missing", 10)).getTotalHits());
+		assertEquals(0, searcher.search(new SearchRequest("title", "even", 10)).getTotalHits());
+	}
+
+	private static void assertSorted(TopDocs topDocs) {
+		for (int i = 1; i < topDocs.size(); i++) {
+			assertTrue(topDocs.score(i - 1) > topDocs.score(i)
+					|| (topDocs.score(i - 1) == topDocs.score(i) && topDocs.doc(i - 1) < topDocs.doc(i)));
+		}
+	}
+
+	@Test
+	public void testDisjunctionMatchesExhaustive() {
+		Random random = new Random(7);
+		String[] words = { "a", "b", "c", "d", "e", "f", "g", "h" };
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 3; s++) {
+			SegmentBuilder builder = new SegmentBuilder();
+			for (int i = 0; i < 3000; i++) {
+				StringBuilder text = new StringBuilder();
+				int length = 1 + random.nextInt(30);
+				for (int j = 0; j < length; j++) {
+					// 前面的词更常见
+					text.append(words[Math.min(words.length - 1, (int) Math.abs(random.nextGaussian() * 3))]).append(' ');
+				}
+				builder.addDocument(new Document().addText("body", text.toString()));
+			}
+			segments.add(builder.build("_" + s));
+		}
+		IndexSearcher searcher = new IndexSearcher(segments);
+
+		String[] queries = { "a b", "a h", "g h", "b c d e", "a b c d e f g h", "h" };
+		boolean skipped = false;
+		for (String query : queries) {
+			TopDocs pruned = searcher.search(new SearchRequest("body", query, 10, SearchRequest.Operator.OR));
+			// topN覆盖所有文档时收集器门槛始终为负无穷，等价于逐个打分
+			TopDocs exhaustive = searcher.search(new SearchRequest("body", query, searcher.maxDoc(),
+					SearchRequest.Operator.OR));
+			assertFalse(pruned.isTotalHitsExact());
+			assertTrue(query, pruned.getTotalHits() <= exhaustive.getTotalHits());
+			skipped |= pruned.getTotalHits() < exhaustive.getTotalHits();
+			assertEquals(query, 10, pruned.size());
+			assertSorted(pruned);
+			for (int i = 0; i < pruned.size(); i++) {
+				assertEquals(query, exhaustive.doc(i), pruned.doc(i));
+				assertEquals(query, exhaustive.score(i), pruned.score(i), 0f);
+			}
+		}
+		assertTrue(skipped);
+	}
+
+	@Test
+	public void testSearchAfter() {
+		IndexSearcher searcher = newSearcher();
+		// 得分只有几种，同分的文档很多，翻页要按文档号接上
+		for (String query : new String[] { "even seven", "odd" }) {
+			SearchRequest request = new SearchRequest("body", query, 7, SearchRequest.Operator.OR);
+			TopDocs all = searcher.search(new SearchRequest(request.getQuery(), searcher.maxDoc()));
+			int seen = 0;
+			TopDocs page = searcher.search(request);
+			while (page.size() > 0) {
+				assertSorted(page);
+				for (int i = 0; i < page.size(); i++, seen++) {
+					assertEquals(query, all.doc(seen), page.doc(i));
+					assertEquals(query, all.score(seen), page.score(i), 0f);
+				}
+				page = searcher.search(request.withAfter(page.scoreDoc(page.size() - 1)));
+			}
+			assertEquals(query, all.size(), seen);
+		}
+
+		// 游标随请求编码
+		SearchRequest request = new SearchRequest(new TermQuery("body", "odd"), 5, new ScoreDoc(1.5f, 42));
+		SearchRequest decoded = SearchRequest.decode(request.encode());
+		assertEquals(request.getAfter(), decoded.getAfter());
+		assertEquals(request.toString(), decoded.toString());
+	}
+
+	@Test
+	public void testSortAndFacets() {
+		Random random = new Random(11);
+		String[] brands = { "acme", "zeta", "beta", "\u534e\u4e3a" };
+		List<Segment> segments = new ArrayList<Segment>();
+		final List<Document> documents = new ArrayList<Document>();
+		for (int s = 0; s < 3; s++) {
+			SegmentBuilder builder = new SegmentBuilder();
+			for (int i = 0; i < 400 + s * 100; i++) {
+				Document document = new Document().addText("body", random.nextBoolean() ? "phone case" : "phone");
+				if (random.nextInt(10) != 0) {
+					document.addNumeric("price", random.nextInt(500) - 100);
+				}
+				if (random.nextInt(8) != 0 && (s != 1 || i < 50)) {
+					document.addSortedKeyword("brand", brands[random.nextInt(brands.length)]);
+				}
+				builder.addDocument(document);
+				documents.add(document);
+			}
+			segments.add(builder.build("_" + s));
+		}
+		IndexSearcher searcher = new IndexSearcher(segments);
+		Query query = new TermQuery("body", "case");
+
+		// 与逐个文档读取存储字段的结果比较
+		final List<Integer> matched = new ArrayList<Integer>();
+		for (int doc = 0; doc < documents.size(); doc++) {
+			if (documents.get(doc).get("body").endsWith("case")) {
+				matched.add(doc);
+			}
+		}
+		for (final SortField sort : new SortField[] { new SortField("price", SortField.Type.LONG),
+				new SortField("price", SortField.Type.LONG, true), new SortField("brand", SortField.Type.STRING),
+				new SortField("brand", SortField.Type.STRING, true) }) {
+			List<Integer> expected = new ArrayList<Integer>(matched);
+			Collections.sort(expected, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					String v1 = documents.get(a).get(sort.getField());
+					String v2 = documents.get(b).get(sort.getField());
+					int c;
+					if (v1 == null || v2 == null) {
+						c = v1 == v2 ? 0 : v1 == null ? 1 : -1;
+					} else {
+						c = sort.getType() == SortField.Type.LONG ? Long.compare(Long.parseLong(v1), Long.parseLong(v2))
+								: TopFieldCollector.compareUtf8(v1, v2);
+						c = sort.isReverse() ? -c : c;
+					}
+					return c != 0 ? c : Integer.compare(a, b);
+				}
+			});
+			TopFieldDocs hits = searcher.search(query, 50, sort);
+			assertEquals(matched.size(), hits.getTotalHits());
+			assertEquals(50, hits.size());
+			for (int i = 0; i < hits.size(); i++) {
+				assertEquals(sort.toString(), expected.get(i).intValue(), hits.doc(i));
+				String value = documents.get(hits.doc(i)).get(sort.getField());
+				assertEquals(value, hits.value(i) == null ? null : hits.value(i).toString());
+			}
+			// 结果数超过命中数时取全部，没有值的文档在最后
+			hits = searcher.search(query, documents.size(), sort);
+			assertEquals(matched.size(), hits.size());
+			assertEquals(null, documents.get(hits.doc(hits.size() - 1)).get(sort.getField()));
+		}
+
+		Map<String, Integer> brandCounts = new HashMap<String, Integer>();
+		RangeFacetCollector.Range[] ranges = { new RangeFacetCollector.Range("negative", Long.MIN_VALUE, 0),
+				new RangeFacetCollector.Range("0-100", 0, 100), new RangeFacetCollector.Range("100+", 100, 1000),
+				new RangeFacetCollector.Range("all", Long.MIN_VALUE, Long.MAX_VALUE) };
+		int[] rangeCounts = new int[ranges.length];
+		for (int doc : matched) {
+			String brand = documents.get(doc).get("brand");
+			if (brand != null) {
+				Integer count = brandCounts.get(brand);
+				brandCounts.put(brand, count == null ? 1 : count + 1);
+			}
+			String price = documents.get(doc).get("price");
+			for (int r = 0; price != null && r < ranges.length; r++) {
+				long value = Long.parseLong(price);
+				if (value >= ranges[r].getMin() && value < ranges[r].getMax()) {
+					rangeCounts[r]++;
+				}
+			}
+		}
+
+		FacetResult terms = searcher.termsFacet(query, "brand", 10);
+		assertEquals(brands.length, terms.size());
+		for (int i = 0; i < terms.size(); i++) {
+			assertEquals(brandCounts.get(terms.label(i)).intValue(), terms.count(i));
+			assertTrue(i == 0 || terms.count(i - 1) >= terms.count(i));
+		}
+		assertEquals(2, searcher.termsFacet(query, "brand", 2).size());
+		assertEquals(0, searcher.termsFacet(query, "color", 10).size());
+
+		FacetResult prices = searcher.rangeFacet(query, "price", ranges);
+		for (int r = 0; r < ranges.length; r++) {
+			assertEquals(ranges[r].getLabel(), rangeCounts[r], prices.count(r));
+		}
+		assertEquals(prices.count("negative") + prices.count("0-100") + prices.count("100+"), prices.count("all"));
+	}
+
+	/**
+	 * @Description: 结果相同；WAND执行时命中数是下界，与分片的执行顺序有关，只在精确时比较
+	 */
+	private static void assertSameHits(String message, TopDocs expected, TopDocs actual) {
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.doc(i), actual.doc(i));
+			assertEquals(message, expected.score(i), actual.score(i), 0f);
+		}
+		assertEquals(message, expected.isTotalHitsExact(), actual.isTotalHitsExact());
+		if (expected.isTotalHitsExact()) {
+			assertEquals(message, expected.getTotalHits(), actual.getTotalHits());
+		}
+	}
+
+	@Test
+	public void testParallelSearch() {
+		Random random = new Random(13);
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int size : new int[] { 1200, 30, 45, 0, 700, 20 }) {
+			SegmentBuilder builder = new SegmentBuilder();
+			for (int i = 0; i < size; i++) {
+				StringBuilder text = new StringBuilder();
+				for (int t = 0; t < 1 + random.nextInt(8); t++) {
+					text.append(" w").append(random.nextInt(30));
+				}
+				builder.addDocument(new Document().addText("body", text.toString()));
+			}
+			segments.add(builder.build("_" + segments.size()));
+		}
+		IndexSearcher sequential = new IndexSearcher(segments);
+		IndexSearcher parallel = new IndexSearcher(segments);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try {
+			parallel.setExecutor(pool);
+			parallel.setSliceSize(100);
+			for (int parallelism : new int[] { 2, 8 }) {
+				parallel.setMaxParallelism(parallelism);
+				for (int q = 0; q < 50; q++) {
+					String text = "w" + random.nextInt(30) + " w" + random.nextInt(30);
+					SearchRequest.Operator operator = q % 2 == 0 ? SearchRequest.Operator.AND
+							: SearchRequest.Operator.OR;
+					SearchRequest request = new SearchRequest("body", text, 1 + random.nextInt(20), operator);
+					TopDocs expected = sequential.search(request);
+					assertSameHits(text, expected, parallel.search(request));
+					if (expected.size() > 0) {
+						ScoreDoc after = expected.scoreDoc(expected.size() / 2);
+						assertSameHits(text, sequential.search(request.withAfter(after)),
+								parallel.search(request.withAfter(after)));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSearchTimeout() {
+		IndexSearcher plain = newSearcher();
+		IndexSearcher searcher = new IndexSearcher(plain.getSnapshot(), new FilterCache(), new QueryResultCache());
+		SearchRequest request = new SearchRequest("body", "seven", 5);
+		TopDocs expected = plain.search(request);
+
+		// 已经到达截止时间，不遍历任何文档，超时的结果不进入结果缓存
+		TopDocs timedOut = searcher.search(request, 0);
+		assertTrue(timedOut.isTimedOut());
+		assertTrue(timedOut.isPartial());
+		assertFalse(timedOut.isTotalHitsExact());
+		assertEquals(0, timedOut.size());
+		assertEquals(timedOut.toString(), TopDocs.decode(timedOut.encode()).toString());
+		assertTrue(TopDocs.decode(timedOut.encode()).isTimedOut());
+		assertSameHits("cached", expected, searcher.search(request));
+
+		TopDocs inTime = searcher.search(request, TimeUnit.MINUTES.toNanos(1));
+		assertFalse(inTime.isTimedOut());
+		assertSameHits("in time", expected, inTime);
+		assertSameHits("after", plain.search(request.withAfter(expected.scoreDoc(1))),
+				searcher.search(request.withAfter(expected.scoreDoc(1)), TimeUnit.MINUTES.toNanos(1)));
+
+		// 任何一个分片超时，合并结果都是部分结果
+		TopDocs merged = TopDocs.merge(5, new TopDocs[] { expected, timedOut });
+		assertTrue(merged.isTimedOut());
+		assertEquals(0, merged.getFailedShards());
+		assertTrue(TopDocs.decode(merged.encode()).isTimedOut());
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			searcher.setExecutor(pool);
+			searcher.setSliceSize(100);
+			assertTrue(searcher.search(request.withAfter(expected.scoreDoc(0)), 0).isTimedOut());
+			assertSameHits("parallel", expected, searcher.search(request, TimeUnit.MINUTES.toNanos(1)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testDeadlineCheckedWithinSegment() {
+		SegmentBuilder builder = new SegmentBuilder();
+		int maxDoc = Deadline.CHECK_INTERVAL * 2 + 100;
+		for (int i = 0; i < maxDoc; i++) {
+			builder.addDocument(new Document().addText("body", i % 2 == 0 ? "even" : "odd"));
+		}
+		Segment segment = builder.build("_0");
+		IndexSearcher searcher = new IndexSearcher(Arrays.asList(segment));
+
+		// 一趟遍历中到达第一个检查点时停止，检查点之前的文档已经收集
+		Weight weight = new TermQuery("body", "even").createWeight(searcher, true);
+		TopKCollector collector = new TopKCollector(5);
+		Deadline deadline = Deadline.after(0);
+		assertEquals(Deadline.CHECK_INTERVAL / 2, weight.search(segment, null, 0, 0, maxDoc, collector, deadline));
+		assertTrue(deadline.reached);
+		assertEquals(maxDoc / 2, weight.search(segment, null, 0, 0, maxDoc, new TopKCollector(5), Deadline.NONE));
+
+		// 析取查询走Block-Max WAND，同样在一趟遍历中检查
+		Query disjunction = new BooleanQuery(Arrays.asList(
+				new BooleanClause(new TermQuery("body", "even"), BooleanClause.Occur.SHOULD),
+				new BooleanClause(new TermQuery("body", "odd"), BooleanClause.Occur.SHOULD)));
+		weight = disjunction.createWeight(searcher, true);
+		collector = new TopKCollector(5);
+		deadline = Deadline.after(0);
+		weight.search(segment, null, 0, 0, maxDoc, collector, deadline);
+		assertTrue(deadline.reached);
+		TopDocs topDocs = collector.topDocs(0, false, true);
+		assertEquals(5, topDocs.size());
+		for (int i = 0; i < topDocs.size(); i++) {
+			assertTrue(topDocs.doc(i) < Deadline.CHECK_INTERVAL);
+		}
+	}
+
+	@Test
+	public void testTopKCollector() {
+		TopKCollector collector = new TopKCollector(3);
+		float[] scores = { 1f, 5f, 3f, 5f, 2f, 4f, 3f };
+		for (int doc = 0; doc < scores.length; doc++) {
+			collector.collect(doc, scores[doc]);
+		}
+		assertEquals(4f, collector.minCompetitiveScore(), 0f);
+		TopDocs topDocs = collector.topDocs(scores.length, true);
+		assertEquals("TopDocs[totalHits=7, 1:5.0, 3:5.0, 5:4.0]", topDocs.toString());
+		assertEquals(topDocs.toString(), TopDocs.decode(topDocs.encode()).toString());
+	}
+
+	@Test
+	public void testBatchSearch() throws Exception {
+		IndexSearcher searcher = newSearcher();
+		// 重复的词、短语、游标和重复的查询，共享倒排的结果与逐个执行相同
+		List<SearchRequest> requests = new ArrayList<SearchRequest>();
+		requests.add(new SearchRequest("body", "seven", 10));
+		requests.add(new SearchRequest("body", "even seven", 10));
+		requests.add(new SearchRequest("body", "odd seven", 5, SearchRequest.Operator.OR));
+		requests.add(new SearchRequest("body", "\"seven seven\" odd", 10));
+		requests.add(new SearchRequest("body", "missing seven", 10));
+		requests.add(new SearchRequest("body", "seven", 10));
+		TopDocs first = searcher.search(requests.get(0));
+		requests.add(requests.get(0).withAfter(first.scoreDoc(4)));
+
+		TopDocs[] results = searcher.search(requests);
+		assertEquals(requests.size(), results.length);
+		for (int i = 0; i < requests.size(); i++) {
+			assertSameHits(requests.get(i).toString(), searcher.search(requests.get(i)), results[i]);
+		}
+		assertTrue(searcher.search(requests, 0)[0].isTimedOut());
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			searcher.setExecutor(pool);
+			searcher.setSliceSize(100);
+			TopDocs[] parallel = searcher.search(requests);
+			for (int i = 0; i < requests.size(); i++) {
+				assertSameHits("parallel " + requests.get(i), results[i], parallel[i]);
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		// 批量请求帧
+		XsearchServer server = new XsearchServer("localhost", 0);
+		BatchSearchProcessor.register(server, new SearchProcessor(newSearcher()));
+		server.start();
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+		try (XsearchClient client = new XsearchClient()) {
+			ByteBuffer param = new BatchSearchRequest(requests).encode();
+			TopDocs[] remote = BatchSearchRequest.decodeResults(client
+					.call(address, BatchSearchProcessor.METHOD_ID, param, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+			assertEquals(requests.size(), remote.length);
+			for (int i = 0; i < requests.size(); i++) {
+				assertEquals(results[i].toString(), remote[i].toString());
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testFetchDocuments() throws Exception {
+		// 映射打开的段，存储字段直接从映射发送
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 2; s++) {
+			SegmentBuilder builder = new SegmentBuilder();
+			for (int i = 0; i < 300; i++) {
+				String text = "doc" + i + " segment" + s + (i % 5 == 0 ? " five" : "");
+				builder.addDocument(new Document().addKeyword("id", s + "-" + i).addText("body", text));
+			}
+			segments.add(SegmentFiles.write(builder, folder.getRoot().toPath(), "_" + s));
+		}
+		IndexSearcher searcher = new IndexSearcher(segments);
+		assertTrue(searcher.rawDocument(450).isDirect());
+
+		XsearchServer server = new XsearchServer("localhost", 0);
+		SearchProcessor processor = new SearchProcessor(searcher);
+		server.setProcessor(processor);
+		DocumentFetchProcessor.register(server, processor);
+		server.start();
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchRequest request = new SearchRequest("body", "five", 100);
+			TopDocs topDocs = TopDocs.decode(client.call(address, request.encode()).get(5, TimeUnit.SECONDS));
+			assertEquals(120, topDocs.getTotalHits());
+			FetchRequest fetch = FetchRequest.of(topDocs);
+			Document[] documents = FetchRequest.decodeDocuments(client
+					.call(address, DocumentFetchProcessor.METHOD_ID, fetch.encode(), 5, TimeUnit.SECONDS)
+					.get(5, TimeUnit.SECONDS));
+			assertEquals(topDocs.size(), documents.length);
+			for (int i = 0; i < documents.length; i++) {
+				Document expected = searcher.document(topDocs.doc(i));
+				assertEquals(expected.get("id"), documents[i].get("id"));
+				assertEquals(expected.get("body"), documents[i].get("body"));
+				assertTrue(documents[i].get("body").endsWith(" five"));
+			}
+
+			// 不经过服务端时拼接成一个buffer，内容相同
+			ByteBuffer local = new DocumentFetchProcessor(processor).process(fetch.encode());
+			assertEquals(documents[3].get("id"), FetchRequest.decodeDocuments(local)[3].get("id"));
+
+			try {
+				client.call(address, DocumentFetchProcessor.METHOD_ID, new FetchRequest(0, 600).encode(), 5,
+						TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("out of range"));
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testSearchOverRpc() throws Exception {
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(new SearchProcessor(newSearcher()));
+		server.start();
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchRequest request = new SearchRequest("body", "doc42", 10);
+			TopDocs topDocs = TopDocs.decode(client.call(address, request.encode()).get(5, TimeUnit.SECONDS));
+			assertEquals(1, topDocs.getTotalHits());
+			assertEquals(42, topDocs.doc(0));
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.xsearch.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.xsearch.index.DeletedDocs;
+import com.xsearch.index.Document;
+import com.xsearch.index.IndexSnapshot;
+import com.xsearch.index.Segment;
+import com.xsearch.index.SegmentBuilder;
+
+/**
+ * @Description: 查询树测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 21, 2017 2:30:16 PM
+ */
+public class QueryTest {
+	private static final String[] WORDS = { "a", "b", "c", "d", "e" };
+	private static final String[] COLORS = { "Red", "Green", "Blue" };
+
+	private static IndexSearcher newSearcher(List<Set<String>> words, List<String> colors) {
+		Random random = new Random(11);
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 2; s++) {
+			SegmentBuilder builder = new SegmentBuilder();
+			for (int i = 0; i < 800; i++) {
+				StringBuilder text = new StringBuilder();
+				Set<String> docWords = new HashSet<String>();
+				for (int j = 0; j < 1 + random.nextInt(6); j++) {
+					String word = WORDS[random.nextInt(WORDS.length)];
+					text.append(word).append(' ');
+					docWords.add(word);
+				}
+				String color = COLORS[random.nextInt(COLORS.length)];
+				builder.addDocument(new Document().addText("body", text.toString()).addKeyword("color", color));
+				words.add(docWords);
+				colors.add(color);
+			}
+			segments.add(builder.build("_" + s));
+		}
+		return new IndexSearcher(segments);
+	}
+
+	private static Set<Integer> hits(IndexSearcher searcher, Query query) {
+		TopDocs topDocs = searcher.search(query, searcher.maxDoc());
+		Set<Integer> hits = new TreeSet<Integer>();
+		for (int i = 0; i < topDocs.size(); i++) {
+			hits.add(topDocs.doc(i));
+		}
+		assertEquals(query.toString(), topDocs.getTotalHits(), hits.size());
+		return hits;
+	}
+
+	@Test
+	public void testBooleanMatchesBruteForce() {
+		List<Set<String>> words = new ArrayList<Set<String>>();
+		List<String> colors = new ArrayList<String>();
+		IndexSearcher searcher = newSearcher(words, colors);
+		QueryParser parser = new QueryParser("body");
+		parser.setKeywordFields(Collections.singleton("color"));
+
+		String[] queries = { "a b", "a -b", "a b -c -d", "#color:Red a", "-a", "+a c d", "a (b c)",
+				"(b c) -color:Blue", "#(a b) -(c d)", "+a +(b d) #color:Green -e" };
+		for (String text : queries) {
+			Query query = parser.parse(text);
+			Set<Integer> expected = new TreeSet<Integer>();
+			for (int doc = 0; doc < words.size(); doc++) {
+				if (matches(text, words.get(doc), colors.get(doc))) {
+					expected.add(doc);
+				}
+			}
+			assertTrue(text, !expected.isEmpty());
+			assertEquals(text, expected, hits(searcher, query));
+		}
+
+		// 过滤子句不影响得分，只选出文档
+		TopDocs scored = searcher.search(parser.parse("a"), searcher.maxDoc());
+		TopDocs filtered = searcher.search(parser.parse("a #color:Red"), searcher.maxDoc());
+		int checked = 0;
+		for (int i = 0; i < scored.size(); i++) {
+			if (colors.get(scored.doc(i)).equals("Red")) {
+				assertEquals(scored.doc(i), filtered.doc(checked));
+				assertEquals(scored.score(i), filtered.score(checked), 0f);
+				checked++;
+			}
+		}
+		assertEquals(filtered.size(), checked);
+	}
+
+	/**
+	 * @Description: 按查询文本直接判断文档是否匹配
+	 */
+	private static boolean matches(String text, Set<String> words, String color) {
+		switch (text) {
+		case "a b":
+			return words.contains("a") && words.contains("b");
+		case "a -b":
+			return words.contains("a") && !words.contains("b");
+		case "a b -c -d":
+			return words.contains("a") && words.contains("b") && !words.contains("c") && !words.contains("d");
+		case "#color:Red a":
+			return color.equals("Red") && words.contains("a");
+		case "-a":
+			return !words.contains("a");
+		case "+a c d":
+			return words.contains("a") && words.contains("c") && words.contains("d");
+		case "a (b c)":
+			return words.contains("a") && words.contains("b") && words.contains("c");
+		case "(b c) -color:Blue":
+			return words.contains("b") && words.contains("c") && !color.equals("Blue");
+		case "#(a b) -(c d)":
+			return words.contains("a") && words.contains("b") && !(words.contains("c") && words.contains("d"));
+		case "+a +(b d) #color:Green -e":
+			return words.contains("a") && words.contains("b") && words.contains("d") && color.equals("Green")
+					&& !words.contains("e");
+		default:
+			throw new IllegalArgumentException(text);
+		}
+	}
+
+	@Test
+	public void testDisjunctionWithRequiredClause() {
+		List<Set<String>> words = new ArrayList<Set<String>>();
+		List<String> colors = new ArrayList<String>();
+		IndexSearcher searcher = newSearcher(words, colors);
+		QueryParser parser = new QueryParser("body", SearchRequest.Operator.OR);
+
+		// 必须子句决定匹配，可选子句只加分
+		Set<Integer> expected = new TreeSet<Integer>();
+		for (int doc = 0; doc < words.size(); doc++) {
+			if (words.get(doc).contains("a")) {
+				expected.add(doc);
+			}
+		}
+		assertEquals(expected, hits(searcher, parser.parse("+a b c")));
+
+		expected.clear();
+		for (int doc = 0; doc < words.size(); doc++) {
+			if (words.get(doc).contains("a") || words.get(doc).contains("b")) {
+				expected.add(doc);
+			}
+		}
+		assertEquals(expected, hits(searcher, parser.parse("a b")));
+		assertTrue(hits(searcher, parser.parse("a b -*")).isEmpty());
+	}
+
+	@Test
+	public void testPhrase() {
+		SegmentBuilder builder = new SegmentBuilder();
+		builder.addDocument(new Document().addText("body", "quick brown fox"));
+		builder.addDocument(new Document().addText("body", "brown quick fox"));
+		builder.addDocument(new Document().addText("body", "the quick brown dog and the quick brown cat"));
+		builder.addDocument(new Document().addText("body", "quick quick brown brown"));
+		builder.addDocument(new Document().addText("body", "quick").addText("body", "brown"));
+		builder.addDocument(new Document().addText("body", "北京大学 京大"));
+		builder.addDocument(new Document().addText("body", "the quick brown dog and the slow brown cat"));
+		IndexSearcher searcher = new IndexSearcher(Arrays.asList(builder.build("_0")));
+		QueryParser parser = new QueryParser("body");
+
+		assertEquals(new TreeSet<Integer>(Arrays.asList(0, 2, 3, 6)), hits(searcher, parser.parse("\"quick brown\"")));
+		assertEquals(new TreeSet<Integer>(Arrays.asList(1)), hits(searcher, parser.parse("\"brown quick fox\"")));
+		assertEquals(new TreeSet<Integer>(Arrays.asList(0)), hits(searcher, parser.parse("\"quick brown\" fox")));
+		assertEquals(new TreeSet<Integer>(Arrays.asList(2, 3, 6)), hits(searcher, parser.parse("\"quick brown\" -fox")));
+		assertEquals(new TreeSet<Integer>(Arrays.asList(5)), hits(searcher, parser.parse("\"京大\"")));
+		assertEquals(0, hits(searcher, new PhraseQuery("body", "brown", "quick", "quick")).size());
+
+		// 长度相同时短语出现两次的得分更高
+		TopDocs topDocs = searcher.search(parser.parse("\"quick brown\""), 10);
+		float[] scores = new float[7];
+		for (int i = 0; i < topDocs.size(); i++) {
+			scores[topDocs.doc(i)] = topDocs.score(i);
+		}
+		assertTrue(scores[2] > scores[6]);
+	}
+
+	@Test
+	public void testFilterCache() {
+		List<Set<String>> words = new ArrayList<Set<String>>();
+		List<String> colors = new ArrayList<String>();
+		IndexSearcher searcher = newSearcher(words, colors);
+		FilterCache cache = searcher.getFilterCache();
+		Query query = new BooleanQuery(Arrays.asList(
+				new BooleanClause(new TermQuery("body", "a"), BooleanClause.Occur.MUST),
+				new BooleanClause(new TermQuery("color", "Red"), BooleanClause.Occur.FILTER),
+				new BooleanClause(new TermQuery("body", "e"), BooleanClause.Occur.MUST_NOT)));
+
+		TopDocs first = searcher.search(query, 10);
+		assertEquals(4, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(4, cache.size());
+
+		TopDocs second = searcher.search(query, 10);
+		assertEquals(4, cache.getMissCount());
+		assertEquals(4, cache.getHitCount());
+		assertEquals(first.toString(), second.toString());
+
+		// 共享缓存的新搜索器复用未变化的段
+		IndexSearcher reopened = new IndexSearcher(searcher.getSnapshot(), cache);
+		assertEquals(first.toString(), reopened.search(query, 10).toString());
+		assertEquals(8, cache.getHitCount());
+	}
+
+	@Test
+	public void testResultCache() {
+		List<Set<String>> words = new ArrayList<Set<String>>();
+		List<String> colors = new ArrayList<String>();
+		IndexSearcher plain = newSearcher(words, colors);
+		IndexSnapshot snapshot = plain.getSnapshot();
+		QueryResultCache cache = new QueryResultCache();
+		IndexSearcher searcher = new IndexSearcher(snapshot, plain.getFilterCache(), cache);
+
+		Query query = new QueryParser("body").parse("+a b -e #color:Red");
+		TopDocs first = searcher.search(query, 10);
+		assertEquals(plain.search(query, 10).toString(), first.toString());
+		assertEquals(1, cache.getMissCount());
+
+		// 子句顺序不同的等价查询规范化后命中
+		Query reordered = new QueryParser("body").parse("#color:Red -e b +a #color:Red");
+		assertEquals(query.normalize(), reordered.normalize());
+		assertTrue(first == searcher.search(reordered, 10));
+		assertEquals(1, cache.getHitCount());
+		searcher.search(query, 20);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.size());
+
+		// 新的快照代数上不命中，旧代数的结果被清空
+		Segment[] segments = snapshot.segments().toArray(new Segment[snapshot.size()]);
+		DeletedDocs[] deletedDocs = new DeletedDocs[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			deletedDocs[i] = snapshot.deletedDocs(i);
+		}
+		IndexSearcher refreshed = new IndexSearcher(new IndexSnapshot(snapshot.generation() + 1, segments,
+				deletedDocs), plain.getFilterCache(), cache);
+		TopDocs second = refreshed.search(query, 10);
+		assertTrue(first != second);
+		assertEquals(first.toString(), second.toString());
+		assertEquals(3, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		// 旧快照上的查询不再读写缓存
+		searcher.search(query, 10);
+		assertEquals(3, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testParseAndEncode() {
+		QueryParser parser = new QueryParser("body");
+		parser.setKeywordFields(Collections.singleton("id"));
+		Query query = parser.parse("Hello hello +title:World -\"New York\" #id:A-1 (x OR-y) *");
+		assertEquals("+body:hello +title:world -body:\"new york\" #id:A-1 +(+body:x +body:or +body:y) +*",
+				query.toString());
+
+		SearchRequest request = SearchRequest.decode(new SearchRequest(query, 7).encode());
+		assertEquals(query, request.getQuery());
+		assertEquals(query.hashCode(), request.getQuery().hashCode());
+		assertEquals(7, request.getTopN());
+
+		assertEquals("a:b c:d", new QueryParser("f", SearchRequest.Operator.OR).parse("a:b c:d").toString());
+		assertEquals("", parser.parse(" () \"\" ").toString());
+		for (String invalid : new String[] { "(a b", "a )", "\"a b" }) {
+			try {
+				parser.parse(invalid);
+				fail(invalid);
+			} catch (IllegalArgumentException e) {
+				// 预期
+			}
+		}
+
+		// 嵌套过深的请求帧
+		Query deep = new TermQuery("f", "x");
+		for (int i = 0; i <= Query.MAX_DEPTH; i++) {
+			deep = new BooleanQuery(Arrays.asList(new BooleanClause(deep, BooleanClause.Occur.MUST)));
+		}
+		try {
+			Query.decode(deep.encode());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// 预期
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.xsearch.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.xsearch.index.DocIdSetIterator;
+
+/**
+ * @Description: RoaringDocSet 测试，与TreeSet逐一比较
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 25, 2017 5:41:09 PM
+ */
+public class RoaringDocSetTest {
+
+	private static DocIdSetIterator iterator(final TreeSet<Integer> docs) {
+		return new DocIdSetIterator() {
+			private int doc = -1;
+
+			@Override
+			public int docID() {
+				return doc;
+			}
+
+			@Override
+			public int nextDoc() {
+				Integer next = docs.higher(doc);
+				return doc = next == null ? NO_MORE_DOCS : next;
+			}
+
+			@Override
+			public int advance(int target) {
+				Integer next = docs.ceiling(target);
+				return doc = next == null ? NO_MORE_DOCS : next;
+			}
+
+			@Override
+			public long cost() {
+				return docs.size();
+			}
+		};
+	}
+
+	private static void check(TreeSet<Integer> docs, int maxDoc, Random random) {
+		RoaringDocSet set = RoaringDocSet.of(iterator(docs));
+		assertEquals(docs.size(), set.cardinality());
+
+		DocIdSetIterator it = set.iterator();
+		for (int expected : docs) {
+			assertEquals(expected, it.nextDoc());
+		}
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.nextDoc());
+		assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.nextDoc());
+
+		for (int i = 0; i < 1000; i++) {
+			int doc = random.nextInt(maxDoc + 10);
+			assertEquals(docs.contains(doc), set.contains(doc));
+		}
+
+		it = set.iterator();
+		int target = 0;
+		while (true) {
+			target += random.nextInt(Integer.MAX_VALUE - target < 5000 ? 1 : 5000);
+			Integer expected = docs.ceiling(target);
+			int doc = it.advance(target);
+			if (expected == null) {
+				assertEquals(DocIdSetIterator.NO_MORE_DOCS, doc);
+				break;
+			}
+			assertEquals(expected.intValue(), doc);
+			target = doc + 1;
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(3);
+		int maxDoc = 300000;
+		for (int density : new int[] { 2, 50, 5000 }) {
+			TreeSet<Integer> docs = new TreeSet<Integer>();
+			for (int doc = 0; doc < maxDoc; doc++) {
+				if (random.nextInt(density) == 0) {
+					docs.add(doc);
+				}
+			}
+			check(docs, maxDoc, random);
+		}
+		check(new TreeSet<Integer>(), maxDoc, random);
+	}
+
+	@Test
+	public void testRuns() {
+		Random random = new Random(4);
+		TreeSet<Integer> docs = new TreeSet<Integer>();
+		for (int doc = 10; doc < 140000; doc++) {
+			docs.add(doc);
+		}
+		for (int doc = 200000; doc < 200100; doc++) {
+			docs.add(doc);
+		}
+		docs.add(65535);
+		docs.add(Integer.MAX_VALUE - 1);
+		check(docs, 250000, random);
+
+		// 连续区间远小于定长位图
+		RoaringDocSet set = RoaringDocSet.of(iterator(docs));
+		assertTrue(set.toString(), set.ramBytesUsed() < 1000);
+	}
+}
@@ -0,0 +1,246 @@
+package com.xsearch.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xsearch.index.Document;
+import com.xsearch.index.SegmentBuilder;
+import com.xsearch.ipc.CallProcessor;
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.ipc.XsearchServer;
+
+/**
+ * @Description: SearchCoordinator 测试，多个分片为本机不同端口上的XsearchServer
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 24, 2017 3:12:45 PM
+ */
+public class SearchCoordinatorTest {
+	private final List<XsearchServer> servers = new ArrayList<XsearchServer>();
+	private final List<IndexSearcher> searchers = new ArrayList<IndexSearcher>();
+
+	@After
+	public void tearDown() {
+		for (XsearchServer server : servers) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * @Description: 启动一个分片，分片s中文档i的正文为 "shard{s} doc{i} common"，i是3的倍数时再加一个 common
+	 */
+	private InetSocketAddress startShard(int s, final long delay) throws Exception {
+		SegmentBuilder builder = new SegmentBuilder();
+		for (int i = 0; i < 50 + s * 10; i++) {
+			String text = "shard" + s + " doc" + i + " common" + (i % 3 == 0 ? " common" : "");
+			builder.addDocument(new Document().addText("body", text));
+		}
+		IndexSearcher searcher = new IndexSearcher(Arrays.asList(builder.build("_0")));
+		searchers.add(searcher);
+		final SearchProcessor processor = new SearchProcessor(searcher);
+
+		XsearchServer server = new XsearchServer("localhost", 0);
+		server.setProcessor(new CallProcessor() {
+			@Override
+			public ByteBuffer process(ByteBuffer param) throws Exception {
+				Thread.sleep(delay);
+				return processor.process(param);
+			}
+		});
+		server.setProcessor(BatchSearchProcessor.METHOD_ID, new BatchSearchProcessor(processor));
+		server.start();
+		servers.add(server);
+		return new InetSocketAddress("localhost", server.getListenerAddress().getPort());
+	}
+
+	@Test
+	public void testScatterGather() throws Exception {
+		List<InetSocketAddress> shards = new ArrayList<InetSocketAddress>();
+		for (int s = 0; s < 3; s++) {
+			shards.add(startShard(s, 0));
+		}
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchCoordinator coordinator = new SearchCoordinator(client, shards);
+			SearchRequest request = new SearchRequest("body", "common", 10);
+			TopDocs merged = coordinator.search(request).get(5, TimeUnit.SECONDS);
+
+			// 合并结果等于各分片结果按得分归并
+			TopDocs[] local = new TopDocs[3];
+			int totalHits = 0;
+			for (int s = 0; s < 3; s++) {
+				local[s] = searchers.get(s).search(request);
+				totalHits += local[s].getTotalHits();
+			}
+			assertEquals(50 + 60 + 70, totalHits);
+			assertEquals(totalHits, merged.getTotalHits());
+			assertFalse(merged.isPartial());
+			assertEquals(10, merged.size());
+			assertEquals(TopDocs.merge(10, local).toString(), merged.toString());
+			for (int i = 0; i < merged.size(); i++) {
+				Document document = searchers.get(merged.shard(i)).document(merged.doc(i));
+				assertTrue(document.get("body").startsWith("shard" + merged.shard(i) + " "));
+				assertTrue(document.get("body").endsWith("common common"));
+				assertTrue(i == 0 || merged.score(i - 1) >= merged.score(i));
+			}
+
+			// 协调器挂在XsearchServer上，客户端按单机的帧格式请求
+			XsearchServer front = new XsearchServer("localhost", 0);
+			front.setProcessor(coordinator);
+			front.start();
+			servers.add(front);
+			InetSocketAddress address = new InetSocketAddress("localhost", front.getListenerAddress().getPort());
+			TopDocs remote = TopDocs.decode(client.call(address, request.encode()).get(5, TimeUnit.SECONDS));
+			assertEquals(merged.toString(), remote.toString());
+		}
+	}
+
+	@Test
+	public void testSearchAfter() throws Exception {
+		List<InetSocketAddress> shards = new ArrayList<InetSocketAddress>();
+		for (int s = 0; s < 3; s++) {
+			shards.add(startShard(s, 0));
+		}
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchCoordinator coordinator = new SearchCoordinator(client, shards);
+			// 每个分片内得分只有两种，同分的文档按文档号接上
+			SearchRequest request = new SearchRequest("body", "common", 13);
+			TopDocs all = coordinator.search(new SearchRequest(request.getQuery(), 1000)).get(5, TimeUnit.SECONDS);
+			assertEquals(180, all.size());
+
+			int seen = 0;
+			TopDocs page = coordinator.search(request).get(5, TimeUnit.SECONDS);
+			while (page.size() > 0) {
+				assertEquals(all.getTotalHits(), page.getTotalHits());
+				for (int i = 0; i < page.size(); i++, seen++) {
+					assertEquals(all.shard(seen), page.shard(i));
+					assertEquals(all.doc(seen), page.doc(i));
+				}
+				page = coordinator.search(request.withAfter(page.scoreDoc(page.size() - 1)), 1000).get(5,
+						TimeUnit.SECONDS);
+			}
+			assertEquals(all.size(), seen);
+		}
+	}
+
+	@Test
+	public void testBatchScatterGather() throws Exception {
+		List<InetSocketAddress> shards = new ArrayList<InetSocketAddress>();
+		for (int s = 0; s < 3; s++) {
+			shards.add(startShard(s, 0));
+		}
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchCoordinator coordinator = new SearchCoordinator(client, shards);
+			SearchRequest common = new SearchRequest("body", "common", 10);
+			TopDocs firstPage = coordinator.search(common).get(5, TimeUnit.SECONDS);
+			List<SearchRequest> requests = Arrays.asList(common, new SearchRequest("body", "doc7 common", 5),
+					new SearchRequest("body", "shard1 common", 3), common.withAfter(firstPage.scoreDoc(9)));
+
+			// 每个查询的合并结果与单独执行相同
+			TopDocs[] batch = coordinator.search(requests, 1000).get(5, TimeUnit.SECONDS);
+			assertEquals(requests.size(), batch.length);
+			for (int i = 0; i < requests.size(); i++) {
+				assertEquals(coordinator.search(requests.get(i)).get(5, TimeUnit.SECONDS).toString(),
+						batch[i].toString());
+			}
+
+			XsearchServer front = new XsearchServer("localhost", 0);
+			front.setProcessor(coordinator);
+			front.setProcessor(BatchSearchProcessor.METHOD_ID, coordinator.batchProcessor());
+			front.start();
+			servers.add(front);
+			InetSocketAddress address = new InetSocketAddress("localhost", front.getListenerAddress().getPort());
+			ByteBuffer param = new BatchSearchRequest(requests).encode();
+			TopDocs[] remote = BatchSearchRequest.decodeResults(client
+					.call(address, BatchSearchProcessor.METHOD_ID, param, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+			for (int i = 0; i < requests.size(); i++) {
+				assertEquals(batch[i].toString(), remote[i].toString());
+			}
+		}
+	}
+
+	@Test
+	public void testCursorAcrossTiedShards() {
+		// 三个分片的得分相同，合并结果中同分的文档按分片号排列
+		TopDocs[] shardHits = new TopDocs[3];
+		for (int s = 0; s < 3; s++) {
+			shardHits[s] = new TopDocs(4, new int[] { 1, 2, 3, 4 }, new float[] { 2f, 1f, 1f, 0.5f });
+		}
+		TopDocs all = TopDocs.merge(100, shardHits);
+		for (int cut = 0; cut < all.size(); cut++) {
+			ScoreDoc after = all.scoreDoc(cut);
+			TopDocs[] rest = new TopDocs[3];
+			for (int s = 0; s < 3; s++) {
+				ScoreDoc local = after.forShard(s);
+				List<Integer> kept = new ArrayList<Integer>();
+				for (int i = 0; i < shardHits[s].size(); i++) {
+					if (local.isBefore(shardHits[s].score(i), shardHits[s].doc(i))) {
+						kept.add(i);
+					}
+				}
+				int[] docs = new int[kept.size()];
+				float[] scores = new float[kept.size()];
+				for (int i = 0; i < docs.length; i++) {
+					docs[i] = shardHits[s].doc(kept.get(i));
+					scores[i] = shardHits[s].score(kept.get(i));
+				}
+				rest[s] = new TopDocs(docs.length, docs, scores);
+			}
+			TopDocs next = TopDocs.merge(100, rest);
+			assertEquals(all.size() - cut - 1, next.size());
+			for (int i = 0; i < next.size(); i++) {
+				assertEquals(all.scoreDoc(cut + 1 + i), next.scoreDoc(i));
+			}
+		}
+	}
+
+	@Test
+	public void testSlowShard() throws Exception {
+		List<InetSocketAddress> shards = new ArrayList<InetSocketAddress>();
+		shards.add(startShard(0, 0));
+		shards.add(startShard(1, 3000));
+		shards.add(startShard(2, 0));
+
+		try (XsearchClient client = new XsearchClient()) {
+			SearchCoordinator coordinator = new SearchCoordinator(client, shards);
+			coordinator.setShardTimeout(200);
+			SearchRequest request = new SearchRequest("body", "common", 10);
+
+			long start = System.currentTimeMillis();
+			TopDocs partial = coordinator.search(request).get(5, TimeUnit.SECONDS);
+			assertTrue(System.currentTimeMillis() - start < 2000);
+			assertTrue(partial.isPartial());
+			assertEquals(1, partial.getFailedShards());
+			assertFalse(partial.isTotalHitsExact());
+			assertEquals(50 + 70, partial.getTotalHits());
+			for (int i = 0; i < partial.size(); i++) {
+				assertTrue(partial.shard(i) != 1);
+			}
+			assertEquals(partial.toString(), TopDocs.decode(partial.encode()).toString());
+
+			coordinator.setAllowPartialResults(false);
+			try {
+				coordinator.search(request).get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof SearchCoordinator.ShardFailureException);
+			}
+		}
+	}
+}
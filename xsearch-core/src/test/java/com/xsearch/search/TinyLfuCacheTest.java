@@ -0,0 +1,84 @@
+package com.xsearch.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @Description: TinyLfuCache 测试
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 25, 2017 5:20:14 PM
+ */
+public class TinyLfuCacheTest {
+	private static final TinyLfuCache.Weigher<Integer, String> LENGTH = new TinyLfuCache.Weigher<Integer, String>() {
+		@Override
+		public long weigh(Integer key, String value) {
+			return value.length();
+		}
+	};
+
+	@Test
+	public void testWeightBound() {
+		TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(1000, LENGTH);
+		Random random = new Random(5);
+		for (int i = 0; i < 5000; i++) {
+			int key = random.nextInt(300);
+			if (cache.get(key) == null) {
+				cache.put(key, new String(new char[1 + key % 20]));
+			}
+			assertTrue(cache.weight() <= 1000);
+		}
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getHitCount() > 0);
+
+		// 超过总容量的条目不缓存
+		cache.put(-1, new String(new char[1001]));
+		assertNull(cache.get(-1));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testScanResistance() {
+		TinyLfuCache<Integer, String> cache = new TinyLfuCache<Integer, String>(100, LENGTH);
+		// 80个热门条目各访问多次
+		for (int round = 0; round < 5; round++) {
+			for (int key = 0; key < 80; key++) {
+				if (cache.get(key) == null) {
+					cache.put(key, "x");
+				}
+			}
+		}
+		// 热门条目继续被访问的同时，扫描大量只出现一次的条目
+		for (int key = 1000; key < 21000; key++) {
+			if (cache.get(key) == null) {
+				cache.put(key, "x");
+			}
+			if (cache.get(key % 80) == null) {
+				cache.put(key % 80, "x");
+			}
+		}
+		int retained = 0;
+		for (int key = 0; key < 80; key++) {
+			if (cache.get(key) != null) {
+				retained++;
+			}
+		}
+		// 每个热门条目两次访问之间有159个不同的键，纯LRU下会全部被冲掉
+		assertTrue("retained " + retained, retained >= 75);
+		assertTrue(cache.getEvictionCount() >= 19000);
+
+		cache.put(7, "yy");
+		assertNotNull(cache.get(7));
+		assertTrue(cache.weight() <= 100);
+	}
+}
@@ -0,0 +1,51 @@
+package com.xsearch.config;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.search.SearchCoordinator;
+
+/**
+ * @Description: 搜索后端配置，web节点通过XsearchClient把查询发给各分片，不在servlet线程上等待
+ *               <p>
+ *               xsearch.search.shards 为逗号分隔的分片地址 host:port，下标为分片号；
+ *               xsearch.search.timeout 为缺省的查询超时（毫秒）。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 5:10:22 PM
+ */
+@Configuration
+public class SearchConfiguration {
+
+	@Bean(destroyMethod = "close")
+	public XsearchClient xsearchClient() throws IOException {
+		return new XsearchClient();
+	}
+
+	@Bean
+	public SearchCoordinator searchCoordinator(XsearchClient client,
+			@Value("${xsearch.search.shards:localhost:9090}") String shards,
+			@Value("${xsearch.search.timeout:1000}") long timeout) {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (String shard : shards.split(",")) {
+			shard = shard.trim();
+			int colon = shard.lastIndexOf(':');
+			if (colon <= 0) {
+				throw new IllegalArgumentException("Expected host:port in xsearch.search.shards: " + shard);
+			}
+			addresses.add(new InetSocketAddress(shard.substring(0, colon), Integer.parseInt(shard
+					.substring(colon + 1))));
+		}
+		SearchCoordinator coordinator = new SearchCoordinator(client, addresses);
+		coordinator.setShardTimeout(timeout);
+		return coordinator;
+	}
+}
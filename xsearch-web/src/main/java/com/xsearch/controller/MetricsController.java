@@ -0,0 +1,93 @@
+package com.xsearch.controller;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.xsearch.ipc.MetricsProcessor;
+import com.xsearch.ipc.XsearchClient;
+import com.xsearch.metrics.MetricsRegistry;
+import com.xsearch.search.SearchCoordinator;
+
+/**
+ * @Description: 以JSON导出本进程和各分片的指标，如 /metrics?prefix=ipc.9090.
+ *               <p>
+ *               web节点只运行XsearchClient和SearchCoordinator，本进程中没有ipc.{端口}.指标，
+ *               服务端的指标通过MetricsProcessor.METHOD_ID向每个分片拉取，前缀在分片上过滤。
+ *               本进程的指标保持原名，分片的指标名前加 shard.{分片号}.，分片没有响应时为 shard.{分片号}.error。
+ *               计数为累计值，直方图为 {count, mean, max, p50, p90, p99, p999}，时间单位为微秒。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 27, 2017 5:46:10 PM
+ */
+@RestController
+public class MetricsController {
+
+	@Autowired
+	private XsearchClient client;
+
+	@Autowired
+	private SearchCoordinator coordinator;
+
+	@Value("${xsearch.search.timeout:1000}")
+	private long timeout;
+
+	@RequestMapping("/metrics")
+	public DeferredResult<Map<String, Object>> metrics(
+			@RequestParam(value = "prefix", required = false, defaultValue = "") String prefix) {
+		final DeferredResult<Map<String, Object>> result = new DeferredResult<Map<String, Object>>();
+		final Map<String, Object> merged = new TreeMap<String, Object>(MetricsRegistry.getDefault().snapshot(prefix));
+
+		List<InetSocketAddress> shards = coordinator.getShards();
+		CompletableFuture<?>[] calls = new CompletableFuture<?>[shards.size()];
+		for (int i = 0; i < calls.length; i++) {
+			final String shardPrefix = "shard." + i + ".";
+			calls[i] = client.call(shards.get(i), MetricsProcessor.METHOD_ID, MetricsProcessor.encodeRequest(prefix),
+					timeout, TimeUnit.MILLISECONDS).handle(new BiFunction<ByteBuffer, Throwable, Void>() {
+						@Override
+						public Void apply(ByteBuffer value, Throwable e) {
+							// 各分片在自己的IO线程上完成，合并时加锁
+							synchronized (merged) {
+								if (e != null) {
+									merged.put(shardPrefix + "error", String.valueOf(e));
+									return null;
+								}
+								try {
+									for (Map.Entry<String, Object> entry : MetricsProcessor.decode(value).entrySet()) {
+										merged.put(shardPrefix + entry.getKey(), entry.getValue());
+									}
+								} catch (RuntimeException decodeError) {
+									merged.put(shardPrefix + "error", String.valueOf(decodeError));
+								}
+							}
+							return null;
+						}
+					});
+		}
+
+		CompletableFuture.allOf(calls).thenApply(new Function<Void, Void>() {
+			@Override
+			public Void apply(Void ignored) {
+				synchronized (merged) {
+					result.setResult(merged);
+				}
+				return null;
+			}
+		});
+		return result;
+	}
+}
@@ -0,0 +1,151 @@
+package com.xsearch.controller;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.xsearch.search.ScoreDoc;
+import com.xsearch.search.SearchCoordinator;
+import com.xsearch.search.SearchRequest;
+import com.xsearch.search.TopDocs;
+
+/**
+ * @Description: 搜索接口 GET /search?q=...&field=body&size=10&op=and&cursor=...&timeout=...
+ *               <p>
+ *               查询通过SearchCoordinator异步发给各分片，servlet线程在发出请求后立即返回，
+ *               结果由XsearchClient的IO线程写回DeferredResult，同时等待中的查询数不受servlet线程数限制。
+ *               超时后先返回已到达分片的部分结果，所有分片都没有返回时为504。
+ *               <p>
+ *               分页用search-after游标：响应中的cursor是本页最后一个文档的位置，作为下一页的cursor参数，
+ *               每页只需各分片收集size个文档，不随页数增加；没有更多结果时cursor为null。
+ *               部分结果（partial为true）可能缺少失败或超时分片上得分更高的文档，从它继续会跳过这些文档，
+ *               所以部分结果不返回cursor，客户端应重试本页。
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 28, 2017 5:24:39 PM
+ */
+@RestController
+public class SearchController {
+	private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
+
+	private static final long TIMEOUT_GRACE = 200L; // 分片超时之后再等待合并结果的时间
+
+	@Autowired
+	private SearchCoordinator coordinator;
+
+	@Value("${xsearch.search.timeout:1000}")
+	private long defaultTimeout;
+
+	@Value("${xsearch.search.max-timeout:10000}")
+	private long maxTimeout;
+
+	@Value("${xsearch.search.max-size:100}")
+	private int maxSize;
+
+	@RequestMapping(value = "/search", method = RequestMethod.GET)
+	public DeferredResult<ResponseEntity<Map<String, Object>>> search(@RequestParam("q") String q,
+			@RequestParam(value = "field", defaultValue = "body") String field,
+			@RequestParam(value = "size", defaultValue = "10") int size,
+			@RequestParam(value = "op", defaultValue = "and") String op,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "timeout", required = false) Long timeout) {
+		long timeoutMillis = timeout == null ? defaultTimeout : Math.min(Math.max(1, timeout), maxTimeout);
+		final DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<ResponseEntity<Map<String, Object>>>(
+				timeoutMillis + TIMEOUT_GRACE, error(HttpStatus.GATEWAY_TIMEOUT, "Search timed out after "
+						+ timeoutMillis + "ms"));
+
+		final SearchRequest request;
+		try {
+			if (size <= 0 || size > maxSize) {
+				throw new IllegalArgumentException("size must be in [1, " + maxSize + "]: " + size);
+			}
+			SearchRequest.Operator operator = SearchRequest.Operator.valueOf(op.toUpperCase());
+			request = new SearchRequest(new SearchRequest(field, q, size, operator).getQuery(), size,
+					cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor));
+		} catch (RuntimeException e) {
+			result.setResult(error(HttpStatus.BAD_REQUEST, e.getMessage()));
+			return result;
+		}
+
+		coordinator.search(request, timeoutMillis).whenComplete(new BiConsumer<TopDocs, Throwable>() {
+			@Override
+			public void accept(TopDocs hits, Throwable e) {
+				if (e != null) {
+					Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+					logger.warn("Search failed for " + request + ": " + cause);
+					result.setResult(error(HttpStatus.BAD_GATEWAY, String.valueOf(cause.getMessage())));
+				} else {
+					result.setResult(new ResponseEntity<Map<String, Object>>(toJson(hits, request.getTopN()), HttpStatus.OK));
+				}
+			}
+		});
+		return result;
+	}
+
+	private static Map<String, Object> toJson(TopDocs hits, int size) {
+		List<Map<String, Object>> docs = new ArrayList<Map<String, Object>>(hits.size());
+		for (int i = 0; i < hits.size(); i++) {
+			Map<String, Object> doc = new LinkedHashMap<String, Object>();
+			doc.put("shard", hits.shard(i));
+			doc.put("doc", hits.doc(i));
+			doc.put("score", hits.score(i));
+			docs.add(doc);
+		}
+
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		json.put("totalHits", hits.getTotalHits());
+		json.put("totalHitsExact", hits.isTotalHitsExact());
+		json.put("partial", hits.isPartial());
+		json.put("failedShards", hits.getFailedShards());
+		json.put("timedOut", hits.isTimedOut());
+		json.put("hits", docs);
+		// 不满一页说明已经没有更多结果；部分结果的游标可能跳过缺失分片上的文档
+		boolean more = !hits.isPartial() && hits.size() >= size;
+		json.put("cursor", more ? encodeCursor(hits.scoreDoc(hits.size() - 1)) : null);
+		return json;
+	}
+
+	private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+		Map<String, Object> json = new LinkedHashMap<String, Object>();
+		json.put("error", message);
+		return new ResponseEntity<Map<String, Object>>(json, status);
+	}
+
+	/**
+	 * @Description: 游标编码为 [分片号 int][文档号 int][得分 float] 的URL安全Base64
+	 */
+	static String encodeCursor(ScoreDoc after) {
+		ByteBuffer buffer = ByteBuffer.allocate(12);
+		buffer.putInt(after.getShard()).putInt(after.getDoc()).putFloat(after.getScore());
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+	}
+
+	static ScoreDoc decodeCursor(String cursor) {
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length != 12) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int shard = buffer.getInt();
+		int doc = buffer.getInt();
+		return new ScoreDoc(buffer.getFloat(), doc, shard);
+	}
+}
@@ -0,0 +1,183 @@
+package com.xsearch.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import com.xsearch.search.ScoreDoc;
+import com.xsearch.search.SearchCoordinator;
+import com.xsearch.search.SearchRequest;
+import com.xsearch.search.TopDocs;
+
+/**
+ * @Description: SearchController 测试，协调器替换为返回给定结果的桩，不启动分片
+ *
+ * @author: wuming.zy
+ * @version: v1.0
+ * @since: Apr 29, 2017 4:18:52 PM
+ */
+public class SearchControllerTest {
+
+	private StubCoordinator coordinator;
+	private MockMvc mockMvc;
+
+	/**
+	 * @Description: 记录收到的请求，结果由测试完成
+	 */
+	private static class StubCoordinator extends SearchCoordinator {
+		CompletableFuture<TopDocs> result = new CompletableFuture<TopDocs>();
+		SearchRequest request;
+
+		StubCoordinator() {
+			super(null, Collections.singletonList(new InetSocketAddress("localhost", 1)));
+		}
+
+		@Override
+		public CompletableFuture<TopDocs> search(SearchRequest request, long timeout) {
+			this.request = request;
+			return result;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		coordinator = new StubCoordinator();
+		SearchController controller = new SearchController();
+		ReflectionTestUtils.setField(controller, "coordinator", coordinator);
+		ReflectionTestUtils.setField(controller, "defaultTimeout", 1000L);
+		ReflectionTestUtils.setField(controller, "maxTimeout", 10000L);
+		ReflectionTestUtils.setField(controller, "maxSize", 100);
+		// 接口不用Bean Validation，不初始化校验器
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).setValidator(new Validator() {
+			@Override
+			public boolean supports(Class<?> clazz) {
+				return false;
+			}
+
+			@Override
+			public void validate(Object target, Errors errors) {
+			}
+		}).build();
+	}
+
+	private static TopDocs page(int failedShards, boolean timedOut) {
+		return new TopDocs(30, true, new int[] { 0, 1 }, new int[] { 5, 7 }, new float[] { 2.0f, 1.5f }, failedShards,
+				timedOut);
+	}
+
+	@Test
+	public void testCursor() {
+		ScoreDoc after = new ScoreDoc(1.5f, 7, 1);
+		String cursor = SearchController.encodeCursor(after);
+		assertEquals(after, SearchController.decodeCursor(cursor));
+		// URL安全，不带填充
+		assertEquals(16, cursor.length());
+		assertEquals(cursor, SearchController.encodeCursor(SearchController.decodeCursor(cursor)));
+
+		try {
+			SearchController.decodeCursor("AAAA");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("Invalid cursor: AAAA", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testPaging() throws Exception {
+		MvcResult first = mockMvc.perform(get("/search").param("q", "apple").param("size", "2"))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertNull(coordinator.request.getAfter());
+		coordinator.result.complete(page(0, false));
+		String cursor = SearchController.encodeCursor(new ScoreDoc(1.5f, 7, 1));
+		mockMvc.perform(asyncDispatch(first)).andExpect(status().isOk()).andExpect(jsonPath("$.totalHits").value(30))
+				.andExpect(jsonPath("$.partial").value(false)).andExpect(jsonPath("$.hits[1].shard").value(1))
+				.andExpect(jsonPath("$.hits[1].doc").value(7)).andExpect(jsonPath("$.cursor").value(cursor));
+
+		// 下一页带上游标
+		coordinator.result = new CompletableFuture<TopDocs>();
+		MvcResult second = mockMvc
+				.perform(get("/search").param("q", "apple").param("size", "2").param("cursor", cursor))
+				.andExpect(request().asyncStarted()).andReturn();
+		assertEquals(new ScoreDoc(1.5f, 7, 1), coordinator.request.getAfter());
+		coordinator.result.complete(new TopDocs(30, true, new int[] { 0 }, new int[] { 9 }, new float[] { 1.0f }, 0,
+				false));
+		// 不满一页，没有更多结果
+		mockMvc.perform(asyncDispatch(second)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.cursor").value(nullValue()));
+	}
+
+	@Test
+	public void testPartialPageHasNoCursor() throws Exception {
+		MvcResult failed = mockMvc.perform(get("/search").param("q", "apple").param("size", "2")).andReturn();
+		coordinator.result.complete(page(1, false));
+		mockMvc.perform(asyncDispatch(failed)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.partial").value(true)).andExpect(jsonPath("$.failedShards").value(1)).andExpect(jsonPath("$.cursor").value(nullValue()));
+
+		coordinator.result = new CompletableFuture<TopDocs>();
+		MvcResult timedOut = mockMvc.perform(get("/search").param("q", "apple").param("size", "2")).andReturn();
+		coordinator.result.complete(page(0, true));
+		mockMvc.perform(asyncDispatch(timedOut)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.timedOut").value(true)).andExpect(jsonPath("$.cursor").value(nullValue()));
+	}
+
+	@Test
+	public void testBadRequest() throws Exception {
+		MvcResult result = mockMvc.perform(get("/search").param("q", "apple").param("size", "0")).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value(containsString("size must be in [1, 100]")));
+
+		result = mockMvc.perform(get("/search").param("q", "apple").param("cursor", "AAAA")).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest())
+				.andExpect(jsonPath("$.error").value("Invalid cursor: AAAA"));
+
+		result = mockMvc.perform(get("/search").param("q", "apple").param("op", "xor")).andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+		assertNull(coordinator.request);
+	}
+
+	@Test
+	public void testShardFailure() throws Exception {
+		MvcResult result = mockMvc.perform(get("/search").param("q", "apple")).andReturn();
+		coordinator.result.completeExceptionally(new SearchCoordinator.ShardFailureException("All 1 shards failed",
+				null));
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadGateway())
+				.andExpect(jsonPath("$.error").value("All 1 shards failed"));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		MvcResult result = mockMvc.perform(get("/search").param("q", "apple").param("timeout", "50"))
+				.andExpect(request().asyncStarted()).andReturn();
+		// 没有分片返回，由servlet容器触发DeferredResult的超时
+		MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+		for (AsyncListener listener : context.getListeners()) {
+			listener.onTimeout(new AsyncEvent(context));
+		}
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isGatewayTimeout())
+				.andExpect(jsonPath("$.error").value("Search timed out after 50ms"));
+	}
+}